@@ -3,6 +3,7 @@ package com.afs.restapi.agent;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * API工具配置模型
@@ -13,6 +14,14 @@ public class ApiToolConfig {
     @JsonProperty("apiTools")
     private List<ApiTool> apiTools;
 
+    /** 所有工具共用的 HTTP 客户端默认设置，单个工具可通过 http 覆盖 */
+    @JsonProperty("httpClient")
+    private HttpSettings httpClient;
+
+    /** 按后端主机名限流，key 为主机名（不含端口），同一主机上的所有工具共享 */
+    @JsonProperty("rateLimits")
+    private Map<String, RateLimitSettings> rateLimits;
+
     public List<ApiTool> getApiTools() {
         return apiTools;
     }
@@ -21,6 +30,22 @@ public class ApiToolConfig {
         this.apiTools = apiTools;
     }
 
+    public HttpSettings getHttpClient() {
+        return httpClient;
+    }
+
+    public void setHttpClient(HttpSettings httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public Map<String, RateLimitSettings> getRateLimits() {
+        return rateLimits;
+    }
+
+    public void setRateLimits(Map<String, RateLimitSettings> rateLimits) {
+        this.rateLimits = rateLimits;
+    }
+
     /**
      * API工具定义
      */
@@ -34,6 +59,15 @@ public class ApiToolConfig {
         private Object requestBody;
         private String successMessage;
         private String errorMessage;
+        private HttpSettings http;
+        private String resourceKey; // 资源标识模板，如 shipment:{shipmentNumber}，修改类调用成功后失效同一资源的缓存
+        private CacheSettings cache; // 配置后缓存 GET 响应
+        private Boolean coalesce; // 是否合并相同的并发请求，未配置时只合并 GET/HEAD
+        private RateLimitSettings rateLimit; // 工具级限流，与主机级限流同时生效
+        private BatchSettings batch; // 后端支持批量接口时，把排队的调用合并为一次请求
+        private List<String> resultFields; // 总结提示词中成功响应只保留这些字段（点号分隔的路径），未配置时保留完整响应；工具调用本身返回完整响应
+        private boolean readOnly; // 没有副作用的只读工具，配置 speculate 后可以在规划期间预先执行
+        private SpeculateSettings speculate; // 用户输入匹配时，在 LLM 规划期间预先调用该工具
 
         // Getters and Setters
         public String getName() {
@@ -107,6 +141,349 @@ public class ApiToolConfig {
         public void setErrorMessage(String errorMessage) {
             this.errorMessage = errorMessage;
         }
+
+        public HttpSettings getHttp() {
+            return http;
+        }
+
+        public void setHttp(HttpSettings http) {
+            this.http = http;
+        }
+
+        public String getResourceKey() {
+            return resourceKey;
+        }
+
+        public void setResourceKey(String resourceKey) {
+            this.resourceKey = resourceKey;
+        }
+
+        public CacheSettings getCache() {
+            return cache;
+        }
+
+        public void setCache(CacheSettings cache) {
+            this.cache = cache;
+        }
+
+        public Boolean getCoalesce() {
+            return coalesce;
+        }
+
+        public void setCoalesce(Boolean coalesce) {
+            this.coalesce = coalesce;
+        }
+
+        public RateLimitSettings getRateLimit() {
+            return rateLimit;
+        }
+
+        public void setRateLimit(RateLimitSettings rateLimit) {
+            this.rateLimit = rateLimit;
+        }
+
+        public BatchSettings getBatch() {
+            return batch;
+        }
+
+        public void setBatch(BatchSettings batch) {
+            this.batch = batch;
+        }
+
+        public List<String> getResultFields() {
+            return resultFields;
+        }
+
+        public void setResultFields(List<String> resultFields) {
+            this.resultFields = resultFields;
+        }
+
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+
+        public void setReadOnly(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+
+        public SpeculateSettings getSpeculate() {
+            return speculate;
+        }
+
+        public void setSpeculate(SpeculateSettings speculate) {
+            this.speculate = speculate;
+        }
+    }
+
+    /**
+     * 预先执行设置（仅对 readOnly 工具生效）
+     * 用 inputPattern 在用户输入中查找匹配，每个匹配预先调用一次工具：
+     * 与参数同名的命名分组（如 (?<shipmentNumber>\d{10})）作为参数值，parameters 为固定参数，其余参数使用默认值
+     */
+    public static class SpeculateSettings {
+        private String inputPattern;
+        private Map<String, String> parameters;
+        private int maxCalls = 3; // 每次请求最多预先调用的次数
+
+        public String getInputPattern() {
+            return inputPattern;
+        }
+
+        public void setInputPattern(String inputPattern) {
+            this.inputPattern = inputPattern;
+        }
+
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+
+        public void setParameters(Map<String, String> parameters) {
+            this.parameters = parameters;
+        }
+
+        public int getMaxCalls() {
+            return maxCalls;
+        }
+
+        public void setMaxCalls(int maxCalls) {
+            this.maxCalls = maxCalls;
+        }
+    }
+
+    /**
+     * 令牌桶限流设置
+     */
+    public static class RateLimitSettings {
+        private double permitsPerSecond;
+        private int burst; // 桶容量，未配置时等于每秒许可数（至少为 1）
+        private long maxWaitMs = 1000; // 排队等待令牌的最长时间，超过则直接拒绝
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst > 0 ? burst : Math.max(1, (int) Math.ceil(permitsPerSecond));
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+
+        public void setMaxWaitMs(long maxWaitMs) {
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RateLimitSettings that)) return false;
+            return Double.compare(permitsPerSecond, that.permitsPerSecond) == 0
+                    && getBurst() == that.getBurst()
+                    && maxWaitMs == that.maxWaitMs;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(permitsPerSecond, getBurst(), maxWaitMs);
+        }
+    }
+
+    /**
+     * 批量调用设置
+     * 同一工具在 maxDelayMs 内排队的调用（最多 maxSize 个）合并为一次请求：
+     * 请求体为各调用参数组成的 JSON 数组（配置 requestField 时包装为 {requestField: [...]}），
+     * 响应为按相同顺序排列的 JSON 数组（配置 responseField 时从该字段读取），每个元素作为对应调用的响应
+     */
+    public static class BatchSettings {
+        private String url;
+        private String method = "POST";
+        private int maxSize = 20;
+        private long maxDelayMs = 10;
+        private String requestField;
+        private String responseField;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public long getMaxDelayMs() {
+            return maxDelayMs;
+        }
+
+        public void setMaxDelayMs(long maxDelayMs) {
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        public String getRequestField() {
+            return requestField;
+        }
+
+        public void setRequestField(String requestField) {
+            this.requestField = requestField;
+        }
+
+        public String getResponseField() {
+            return responseField;
+        }
+
+        public void setResponseField(String responseField) {
+            this.responseField = responseField;
+        }
+    }
+
+    /**
+     * GET 响应缓存设置
+     */
+    public static class CacheSettings {
+        private long ttlMs = 30000;
+        private int maxEntries = 256;
+        private List<String> varyHeaders; // 参与缓存 key 的请求头
+
+        public long getTtlMs() {
+            return ttlMs;
+        }
+
+        public void setTtlMs(long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public List<String> getVaryHeaders() {
+            return varyHeaders;
+        }
+
+        public void setVaryHeaders(List<String> varyHeaders) {
+            this.varyHeaders = varyHeaders;
+        }
+    }
+
+    /**
+     * HTTP 客户端设置（连接池、超时、keep-alive）
+     * 未设置的字段依次继承顶层 httpClient 和内置默认值
+     */
+    public static class HttpSettings {
+        private Integer connectTimeoutMs;
+        private Integer readTimeoutMs;
+        private Integer maxConnections;
+        private Long keepAliveMs;
+
+        public static HttpSettings defaults() {
+            HttpSettings settings = new HttpSettings();
+            settings.setConnectTimeoutMs(5000);
+            settings.setReadTimeoutMs(30000);
+            settings.setMaxConnections(20);
+            settings.setKeepAliveMs(30000L);
+            return settings;
+        }
+
+        /**
+         * 用 overrides 中已设置的字段覆盖当前设置，返回新对象
+         */
+        public HttpSettings merge(HttpSettings overrides) {
+            HttpSettings merged = new HttpSettings();
+            merged.setConnectTimeoutMs(overrides != null && overrides.getConnectTimeoutMs() != null
+                    ? overrides.getConnectTimeoutMs() : connectTimeoutMs);
+            merged.setReadTimeoutMs(overrides != null && overrides.getReadTimeoutMs() != null
+                    ? overrides.getReadTimeoutMs() : readTimeoutMs);
+            merged.setMaxConnections(overrides != null && overrides.getMaxConnections() != null
+                    ? overrides.getMaxConnections() : maxConnections);
+            merged.setKeepAliveMs(overrides != null && overrides.getKeepAliveMs() != null
+                    ? overrides.getKeepAliveMs() : keepAliveMs);
+            return merged;
+        }
+
+        public Integer getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(Integer connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public Integer getReadTimeoutMs() {
+            return readTimeoutMs;
+        }
+
+        public void setReadTimeoutMs(Integer readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+        }
+
+        public Integer getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(Integer maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Long getKeepAliveMs() {
+            return keepAliveMs;
+        }
+
+        public void setKeepAliveMs(Long keepAliveMs) {
+            this.keepAliveMs = keepAliveMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof HttpSettings that)) return false;
+            return Objects.equals(connectTimeoutMs, that.connectTimeoutMs)
+                    && Objects.equals(readTimeoutMs, that.readTimeoutMs)
+                    && Objects.equals(maxConnections, that.maxConnections)
+                    && Objects.equals(keepAliveMs, that.keepAliveMs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(connectTimeoutMs, readTimeoutMs, maxConnections, keepAliveMs);
+        }
+
+        @Override
+        public String toString() {
+            return "HttpSettings{" +
+                    "connectTimeoutMs=" + connectTimeoutMs +
+                    ", readTimeoutMs=" + readTimeoutMs +
+                    ", maxConnections=" + maxConnections +
+                    ", keepAliveMs=" + keepAliveMs +
+                    '}';
+        }
     }
 
     /**
@@ -15,10 +15,11 @@ public class MCPConfig {
      * 包括：
      * - TodoService（4个工具）
      * - MessageService（1个工具）
-     * - DynamicApiToolService（包含Shipment工具 + 其他JSON配置的动态工具）⭐ 已迁移
+     * - DynamicApiToolService（组合多个API调用的工具）
      * 
-     * 📝 注意：ShipmentService 已被移除，其功能已迁移到 DynamicApiToolService
-     *         现在所有工具都通过 JSON 配置驱动，无需为每个 API 编写 Service 类！
+     * 📝 注意：api-tools-config.json 中的每个API由 ApiToolCallbackProvider 直接生成工具回调，
+     *         它本身也是 ToolCallbackProvider Bean，会被 MCP 服务器自动注册；
+     *         配置热更新后由 McpToolSync 同步到 MCP 服务器，无需为每个 API 编写 @Tool 方法！
      */
     @Bean
     public ToolCallbackProvider myTools(
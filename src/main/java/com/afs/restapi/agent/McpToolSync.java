@@ -0,0 +1,94 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.service.ApiToolCallback;
+import com.afs.restapi.service.ApiToolCallbackProvider;
+import com.afs.restapi.service.ApiToolConfigChangedEvent;
+import com.afs.restapi.service.ApiToolConfigRegistry;
+import io.modelcontextprotocol.server.McpSyncServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * API 工具配置热更新后同步 MCP 服务器的工具列表
+ * 比较新旧配置生成的工具定义：删除的工具从 MCP 服务器移除，新增或定义变化的工具重新注册，
+ * MCP 服务器随后向客户端发送 tools/list_changed 通知
+ */
+@Component
+public class McpToolSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpToolSync.class);
+
+    private final ObjectProvider<McpSyncServer> mcpServer;
+    private final ApiToolCallbackProvider apiToolCallbackProvider;
+
+    private Map<String, ToolDefinition> published;
+
+    public McpToolSync(ObjectProvider<McpSyncServer> mcpServer, ApiToolCallbackProvider apiToolCallbackProvider) {
+        this.mcpServer = mcpServer;
+        this.apiToolCallbackProvider = apiToolCallbackProvider;
+    }
+
+    @EventListener
+    public synchronized void onApiToolConfigChanged(ApiToolConfigChangedEvent event) {
+        McpSyncServer server = mcpServer.getIfAvailable();
+        if (server == null) {
+            return;
+        }
+
+        Map<String, ToolDefinition> previous = published != null ? published : definitions(event.previous());
+        Map<String, ToolCallback> current = new LinkedHashMap<>();
+        for (ToolCallback callback : apiToolCallbackProvider.getToolCallbacks()) {
+            current.put(callback.getToolDefinition().name(), callback);
+        }
+
+        int removed = 0;
+        int added = 0;
+        for (String name : previous.keySet()) {
+            ToolCallback callback = current.get(name);
+            if (callback == null || !callback.getToolDefinition().equals(previous.get(name))) {
+                removeTool(server, name);
+                removed++;
+            }
+        }
+        for (ToolCallback callback : current.values()) {
+            ToolDefinition definition = callback.getToolDefinition();
+            if (!definition.equals(previous.get(definition.name()))) {
+                server.addTool(McpToolUtils.toSyncToolSpecification(callback));
+                added++;
+            }
+        }
+
+        Map<String, ToolDefinition> next = new LinkedHashMap<>();
+        current.forEach((name, callback) -> next.put(name, callback.getToolDefinition()));
+        published = next;
+        logger.info("MCP tools synced with API tools configuration v{}: {} removed, {} added",
+                event.current().version(), removed, added);
+    }
+
+    /**
+     * 启动时 MCP 服务器注册的是首个配置快照生成的工具
+     */
+    private Map<String, ToolDefinition> definitions(ApiToolConfigRegistry.Snapshot snapshot) {
+        Map<String, ToolDefinition> definitions = new LinkedHashMap<>();
+        snapshot.tools().values().forEach(tool ->
+                definitions.put(tool.getName(), ApiToolCallback.toolDefinition(tool.getTool())));
+        return definitions;
+    }
+
+    private void removeTool(McpSyncServer server, String name) {
+        try {
+            server.removeTool(name);
+        } catch (Exception e) {
+            logger.warn("Failed to remove MCP tool {}: {}", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.afs.restapi.agent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 执行计划缓存
+ * 按归一化后的用户输入缓存解析好的执行计划：输入中的字面量（shipment 号、id、引号内容等）被提取为槽位，
+ * 计划中出现的同一字面量也替换为槽位；命中时用本次输入的字面量重新绑定，
+ * 因此 "verify shipment 7261242220" 和 "Verify shipment 7261242221" 共享同一条缓存
+ * <p>
+ * 只缓存能完整参数化的计划：输入中的每个字面量都绑定到了计划参数，且参数中没有残留未绑定的数字
+ * （如 "delete todos 1-3" 提取出字面量 1-3，而计划参数是 startId=1、endId=3，无法按槽位重新绑定，不缓存）。
+ * 调用方只在计划的所有步骤都执行成功后才放入缓存
+ * <p>
+ * 按容量（LRU）和 TTL 淘汰，工具目录版本变化时整体失效
+ */
+@Component
+public class PlanCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanCache.class);
+
+    /** 引号中的内容，或包含数字的标识符 */
+    private static final Pattern LITERAL = Pattern.compile("\"([^\"]+)\"|'([^']+)'|\\b[\\w-]*\\d[\\w-]*\\b");
+    private static final String SLOT_PREFIX = "\u0000slot:";
+    private static final String SLOT_SUFFIX = "\u0000";
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long catalogueVersion = -1;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public PlanCache(MeterRegistry meterRegistry,
+                     @Value("${agent.plan-cache.enabled:true}") boolean enabled,
+                     @Value("${agent.plan-cache.max-size:256}") int maxSize,
+                     @Value("${agent.plan-cache.ttl:10m}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.meterRegistry = meterRegistry;
+        this.hits = meterRegistry.counter("agent.plan.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("agent.plan.cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("agent.plan.cache.evictions");
+    }
+
+    /**
+     * 构造完成后再注册缓存大小指标，避免把未初始化完的对象交给 MeterRegistry
+     */
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("agent.plan.cache.size", this, PlanCache::size).register(meterRegistry);
+    }
+
+    /**
+     * 归一化用户输入：提取字面量为槽位，统一大小写和空白
+     */
+    public NormalizedInput normalize(String input) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder key = new StringBuilder(input.length());
+        Matcher matcher = LITERAL.matcher(input);
+        int last = 0;
+        while (matcher.find()) {
+            key.append(input, last, matcher.start());
+            String literal = literal(matcher);
+            int slot = literals.indexOf(literal);
+            if (slot < 0) {
+                slot = literals.size();
+                literals.add(literal);
+            }
+            key.append("{#").append(slot).append('}');
+            last = matcher.end();
+        }
+        key.append(input.substring(last));
+
+        String normalized = key.toString()
+                .toLowerCase()
+                .replaceAll("\\s+", " ")
+                .replaceAll("[\\s.!?。！？]+$", "")
+                .trim();
+        return new NormalizedInput(normalized, literals);
+    }
+
+    /**
+     * 按出现顺序提取输入中不重复的字面量（引号中的内容、包含数字的标识符），与 {@link #normalize} 的槽位一致
+     */
+    public static List<String> extractLiterals(String input) {
+        List<String> literals = new ArrayList<>();
+        Matcher matcher = LITERAL.matcher(input);
+        while (matcher.find()) {
+            String literal = literal(matcher);
+            if (!literals.contains(literal)) {
+                literals.add(literal);
+            }
+        }
+        return literals;
+    }
+
+    private static String literal(Matcher matcher) {
+        return matcher.group(1) != null ? matcher.group(1)
+                : matcher.group(2) != null ? matcher.group(2) : matcher.group();
+    }
+
+    /**
+     * 查找缓存的计划，命中时返回绑定了本次字面量的计划副本
+     */
+    public synchronized PlannerService.PlanTaskResult get(NormalizedInput input, ToolCatalogue catalogue) {
+        if (!enabled) {
+            return null;
+        }
+        checkCatalogueVersion(catalogue);
+
+        Entry entry = entries.get(input.key());
+        if (entry != null && System.currentTimeMillis() - entry.createdAt() > ttlMillis) {
+            entries.remove(input.key());
+            evictions.increment();
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        logger.info("Plan cache hit for '{}'", input.key());
+        return new PlannerService.PlanTaskResult(bindPlans(entry.plans(), input.literals()));
+    }
+
+    /**
+     * 缓存执行成功的计划，计划中的字面量替换为槽位后保存
+     *
+     * @return 计划无法完整参数化而未缓存时返回 false
+     */
+    public synchronized boolean put(NormalizedInput input, ToolCatalogue catalogue, PlannerService.PlanTaskResult plan) {
+        if (!enabled || plan.getPlans().isEmpty()) {
+            return false;
+        }
+        checkCatalogueVersion(catalogue);
+
+        List<PlanInfo> templates = extractPlans(plan.getPlans(), input.literals());
+        if (!fullyBound(templates, input.literals().size())) {
+            logger.info("Plan for '{}' is not cached: its parameters cannot be re-bound from the input literals", input.key());
+            return false;
+        }
+
+        entries.put(input.key(), new Entry(templates, System.currentTimeMillis()));
+        while (entries.size() > maxSize) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+            evictions.increment();
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void checkCatalogueVersion(ToolCatalogue catalogue) {
+        if (catalogueVersion != catalogue.getVersion()) {
+            if (!entries.isEmpty()) {
+                logger.info("Tool catalogue changed to v{}, clearing {} cached plans", catalogue.getVersion(), entries.size());
+                entries.clear();
+            }
+            catalogueVersion = catalogue.getVersion();
+        }
+    }
+
+    private List<PlanInfo> extractPlans(List<PlanInfo> plans, List<String> literals) {
+        // 长的字面量优先替换，避免其中包含的短字面量先被替换
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < literals.size(); i++) {
+            slots.add(i);
+        }
+        slots.sort(Comparator.comparingInt((Integer i) -> literals.get(i).length()).reversed());
+
+        List<PlanInfo> templates = new ArrayList<>(plans.size());
+        for (PlanInfo plan : plans) {
+            templates.add(copyPlan(plan,
+                    text -> extractText(text, literals, slots),
+                    value -> extractValue(value, literals, slots)));
+        }
+        return templates;
+    }
+
+    private Object extractValue(Object value, List<String> literals, List<Integer> slots) {
+        if (value instanceof Number || value instanceof String) {
+            String text = value.toString();
+            for (int slot : slots) {
+                if (text.equals(literals.get(slot))) {
+                    return new SlotRef(slot, value instanceof Number);
+                }
+            }
+        }
+        return value instanceof String text ? extractText(text, literals, slots) : value;
+    }
+
+    /**
+     * 单次扫描替换文本中的字面量，只替换完整的词（前后不是字母数字），避免误伤更长数字中的片段
+     */
+    private String extractText(String text, List<String> literals, List<Integer> slots) {
+        if (text == null || literals.isEmpty()) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        int i = 0;
+        outer:
+        while (i < text.length()) {
+            if (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                for (int slot : slots) {
+                    String literal = literals.get(slot);
+                    int end = i + literal.length();
+                    if (text.startsWith(literal, i)
+                            && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+                        result.append(SLOT_PREFIX).append(slot).append(SLOT_SUFFIX);
+                        i = end;
+                        continue outer;
+                    }
+                }
+            }
+            result.append(text.charAt(i++));
+        }
+        return result.toString();
+    }
+
+    /**
+     * 每个字面量都出现在计划参数的槽位中，且参数里没有未替换为槽位的数字
+     */
+    private boolean fullyBound(List<PlanInfo> templates, int literalCount) {
+        boolean[] bound = new boolean[literalCount];
+        for (PlanInfo template : templates) {
+            if (template.getVariables() != null && !checkBound(template.getVariables(), bound)) {
+                return false;
+            }
+        }
+        for (boolean slotBound : bound) {
+            if (!slotBound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkBound(Object value, boolean[] bound) {
+        if (value instanceof Map<?, ?> map) {
+            return map.values().stream().allMatch(item -> checkBound(item, bound));
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().allMatch(item -> checkBound(item, bound));
+        }
+        if (value instanceof SlotRef slotRef) {
+            bound[slotRef.index()] = true;
+            return true;
+        }
+        if (value instanceof Number) {
+            return false;
+        }
+        if (value instanceof String text) {
+            StringBuilder unbound = new StringBuilder(text.length());
+            int i = 0;
+            int start;
+            while ((start = text.indexOf(SLOT_PREFIX, i)) >= 0) {
+                int end = text.indexOf(SLOT_SUFFIX, start + SLOT_PREFIX.length());
+                unbound.append(text, i, start);
+                bound[Integer.parseInt(text.substring(start + SLOT_PREFIX.length(), end))] = true;
+                i = end + SLOT_SUFFIX.length();
+            }
+            unbound.append(text.substring(i));
+            return unbound.chars().noneMatch(Character::isDigit);
+        }
+        return true;
+    }
+
+    private List<PlanInfo> bindPlans(List<PlanInfo> templates, List<String> literals) {
+        List<PlanInfo> plans = new ArrayList<>(templates.size());
+        for (PlanInfo template : templates) {
+            plans.add(copyPlan(template,
+                    text -> bindText(text, literals),
+                    value -> bindValue(value, literals)));
+        }
+        return plans;
+    }
+
+    private Object bindValue(Object value, List<String> literals) {
+        if (value instanceof SlotRef slotRef) {
+            String literal = literals.get(slotRef.index());
+            return slotRef.numeric() ? parseNumber(literal) : literal;
+        }
+        return value instanceof String text ? bindText(text, literals) : value;
+    }
+
+    private String bindText(String text, List<String> literals) {
+        if (text == null || !text.contains(SLOT_PREFIX)) {
+            return text;
+        }
+        for (int slot = 0; slot < literals.size(); slot++) {
+            text = text.replace(SLOT_PREFIX + slot + SLOT_SUFFIX, literals.get(slot));
+        }
+        return text;
+    }
+
+    private Object parseNumber(String literal) {
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            return literal;
+        }
+    }
+
+    /**
+     * 复制计划步骤，对描述和所有参数值（包括嵌套的 Map/List）应用转换
+     */
+    private PlanInfo copyPlan(PlanInfo plan, UnaryOperator<String> textTransform, UnaryOperator<Object> transform) {
+        PlanInfo copy = new PlanInfo(plan.getFunctionName(),
+                textTransform.apply(plan.getDescription()),
+                plan.getVariables() != null ? copyMap(plan.getVariables(), transform) : null);
+        copy.setId(plan.getId());
+        copy.setDependsOn(plan.getDependsOn());
+        return copy;
+    }
+
+    private Map<String, Object> copyMap(Map<String, Object> source, UnaryOperator<Object> transform) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        source.forEach((key, value) -> copy.put(key, copyValue(value, transform)));
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object copyValue(Object value, UnaryOperator<Object> transform) {
+        if (value instanceof Map<?, ?> map) {
+            return copyMap((Map<String, Object>) map, transform);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(copyValue(item, transform));
+            }
+            return copy;
+        }
+        return transform.apply(value);
+    }
+
+    /**
+     * 归一化后的输入：缓存 key 和按出现顺序提取的字面量
+     */
+    public record NormalizedInput(String key, List<String> literals) {
+    }
+
+    private record Entry(List<PlanInfo> plans, long createdAt) {
+    }
+
+    /** 计划中与某个字面量完全相等的参数值 */
+    private record SlotRef(int index, boolean numeric) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.afs.restapi.agent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式规划（/plan/stream）的事件
+ * <p>
+ * - planned：一个步骤提交执行（包含步骤序号和步骤内容）；开头的只读步骤解析出后立即提交，
+ *   第一个修改类步骤及其后的步骤等完整计划解析成功后才提交
+ * - plan：规划完成后的完整执行计划（步骤列表）；由于步骤边规划边执行，可能晚于部分 step 事件
+ * - step：单个步骤执行完成，按完成顺序发送（并行步骤可能乱序），包含步骤序号、工具名和结果
+ * - summary：最终总结的一个文本片段，按 LLM 流式输出的顺序发送；使用模板总结时只发送一次完整文本
+ * - done：全部完成
+ * - error：发生错误，之后不再有其他事件
+ *
+ * @param type 事件类型，作为 SSE 的 event 名称
+ * @param data 事件数据
+ */
+public record PlanEvent(String type, Object data) {
+
+    public static PlanEvent plan(List<PlanInfo> plans) {
+        return new PlanEvent("plan", plans);
+    }
+
+    public static PlanEvent planned(int stepNumber, PlanInfo plan) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("step", stepNumber);
+        data.put("plan", plan);
+        return new PlanEvent("planned", data);
+    }
+
+    public static PlanEvent step(int stepNumber, PlanInfo plan, String result) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("step", stepNumber);
+        data.put("function", plan.getFunctionName());
+        data.put("result", result);
+        return new PlanEvent("step", data);
+    }
+
+    public static PlanEvent summary(String token) {
+        return new PlanEvent("summary", token);
+    }
+
+    public static PlanEvent done() {
+        return new PlanEvent("done", "");
+    }
+
+    public static PlanEvent error(String message) {
+        return new PlanEvent("error", message != null ? message : "Unknown error");
+    }
+}
@@ -0,0 +1,272 @@
+package com.afs.restapi.agent;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 执行计划调度器
+ * 按步骤的 dependsOn 构建依赖图（DAG），互不依赖的步骤在有界线程池上并行执行，
+ * 所有步骤完成后按计划顺序返回结果
+ * <p>
+ * 依赖规则：
+ * - dependsOn 为 null：依赖上一步（与原来的顺序执行保持一致）
+ * - dependsOn 为空列表：不依赖任何步骤，可立即执行
+ * - 只能依赖排在前面的步骤，因此不会出现环；dependsOn 中有任何一个编号无法解析（未知、靠后或重复声明的 id）时，
+ *   整个 dependsOn 作废，退回为依赖上一步，避免本应排在修改之后的步骤提前执行
+ * - 编号优先匹配步骤声明的 id；没有步骤声明该 id 时，再按计划序号匹配未声明 id 的步骤
+ * <p>
+ * 步骤也可以通过 {@link #start} 边规划边提交（流式解析计划时使用）
+ * <p>
+ * 开启虚拟线程模式（默认跟随 spring.threads.virtual.enabled）时每个步骤运行在独立的虚拟线程上，
+ * 阻塞的工具调用不再占用平台线程；并发步骤数仍由 max-concurrency 限制，避免压垮后端：
+ * 许可在步骤返回的 future 完成后才释放，因此非阻塞的 API 步骤同样计入并发数。
+ * 平台线程模式下 max-concurrency 是线程池大小，只限制同时占用线程的步骤，非阻塞步骤不受限制
+ */
+@Component
+public class PlanExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanExecutor.class);
+
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+
+    public PlanExecutor(@Value("${agent.plan.executor.max-concurrency:8}") int maxConcurrency,
+                        @Value("${agent.plan.executor.virtual-threads:${spring.threads.virtual.enabled:false}}") boolean virtualThreads) {
+        if (virtualThreads) {
+            this.executorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("plan-step-", 1).factory());
+            this.permits = new Semaphore(maxConcurrency);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executorService = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "plan-step-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.permits = null;
+        }
+        logger.info("PlanExecutor initialized with max concurrency {} on {} threads",
+                maxConcurrency, virtualThreads ? "virtual" : "platform");
+    }
+
+    /**
+     * 执行计划中的所有步骤
+     *
+     * @param plans      计划步骤（按计划顺序）
+     * @param stepRunner 单个步骤的执行逻辑
+     * @return 与 plans 顺序一致的步骤结果
+     */
+    public List<String> execute(List<PlanInfo> plans, Function<PlanInfo, String> stepRunner) {
+        return executeAsync(plans, plan -> CompletableFuture.completedFuture(stepRunner.apply(plan))).join();
+    }
+
+    /**
+     * 执行计划中的所有步骤，步骤本身可以是异步的
+     * stepRunner 在调度线程上被调用，返回的 future 完成前不占用调度线程，
+     * 因此非阻塞的 API 调用可以大量并发而不受线程池大小限制
+     *
+     * @param plans      计划步骤（按计划顺序）
+     * @param stepRunner 单个步骤的执行逻辑，返回该步骤结果的 future
+     * @return 所有步骤完成后，与 plans 顺序一致的步骤结果
+     */
+    public CompletableFuture<List<String>> executeAsync(List<PlanInfo> plans,
+                                                        Function<PlanInfo, CompletableFuture<String>> stepRunner) {
+        return executeAsync(plans, stepRunner, (stepNumber, plan, result) -> {
+        });
+    }
+
+    /**
+     * 执行计划中的所有步骤，每个步骤完成时（包括失败）立即通知 listener，用于流式返回步骤结果
+     *
+     * @param plans      计划步骤（按计划顺序）
+     * @param stepRunner 单个步骤的执行逻辑，返回该步骤结果的 future
+     * @param listener   步骤完成回调，可能在多个线程上并发调用
+     * @return 所有步骤完成后，与 plans 顺序一致的步骤结果
+     */
+    public CompletableFuture<List<String>> executeAsync(List<PlanInfo> plans,
+                                                        Function<PlanInfo, CompletableFuture<String>> stepRunner,
+                                                        StepListener listener) {
+        Execution execution = start(stepRunner, listener);
+        plans.forEach(execution::submit);
+        return execution.finish();
+    }
+
+    /**
+     * 开始一次增量执行：步骤可以边解析边提交，提交后只要依赖已完成就立即开始执行，
+     * 不必等待完整的计划
+     *
+     * @param stepRunner 单个步骤的执行逻辑，返回该步骤结果的 future
+     * @param listener   步骤完成回调，可能在多个线程上并发调用
+     */
+    public Execution start(Function<PlanInfo, CompletableFuture<String>> stepRunner, StepListener listener) {
+        return new Execution(stepRunner, listener);
+    }
+
+    /**
+     * 一次计划执行，按提交顺序为步骤编号；依赖只能指向已提交的步骤，因此增量提交与一次性提交的依赖关系相同
+     */
+    public final class Execution {
+
+        private final Function<PlanInfo, CompletableFuture<String>> stepRunner;
+        private final StepListener listener;
+        // 步骤声明的 id（LLM 给出），与按提交顺序的序号分开登记，部分步骤声明 id 时也不会互相覆盖
+        private final Map<Integer, CompletableFuture<String>> stepsById = new HashMap<>();
+        private final Set<Integer> duplicateIds = new HashSet<>();
+        private final List<PlanInfo> plans = new ArrayList<>();
+        private final List<CompletableFuture<String>> steps = new ArrayList<>();
+        private CompletableFuture<String> previous;
+
+        private Execution(Function<PlanInfo, CompletableFuture<String>> stepRunner, StepListener listener) {
+            this.stepRunner = stepRunner;
+            this.listener = listener;
+        }
+
+        /**
+         * 提交下一个步骤
+         *
+         * @return 该步骤在计划中的序号（从 1 开始）
+         */
+        public synchronized int submit(PlanInfo plan) {
+            int stepNumber = plans.size() + 1;
+            List<CompletableFuture<String>> dependencies = resolveDependencies(plan, stepNumber);
+
+            CompletableFuture<String> step = CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                    .thenComposeAsync(ignored -> runStep(stepNumber, plan, stepRunner), executorService)
+                    .exceptionally(e -> {
+                        logger.error("Step {} ({}) failed", stepNumber, plan.getFunctionName(), e);
+                        return String.format("Error executing step %d: %s", stepNumber, e.getMessage());
+                    })
+                    .thenApply(result -> {
+                        try {
+                            listener.onStepCompleted(stepNumber, plan, result);
+                        } catch (RuntimeException e) {
+                            logger.warn("Step listener failed for step {}", stepNumber, e);
+                        }
+                        return result;
+                    });
+
+            if (plan.getId() != null && stepsById.putIfAbsent(plan.getId(), step) != null) {
+                logger.warn("Step {} repeats step id {}, references to it are ambiguous", stepNumber, plan.getId());
+                duplicateIds.add(plan.getId());
+            }
+            plans.add(plan);
+            steps.add(step);
+            previous = step;
+            return stepNumber;
+        }
+
+        /**
+         * 解析步骤依赖，只允许依赖已经提交的前序步骤；有无法解析的编号时退回为依赖上一步
+         */
+        private List<CompletableFuture<String>> resolveDependencies(PlanInfo plan, int stepNumber) {
+            List<CompletableFuture<String>> sequential = previous != null ? List.of(previous) : List.of();
+            if (plan.getDependsOn() == null) {
+                return sequential;
+            }
+
+            List<CompletableFuture<String>> dependencies = new ArrayList<>(plan.getDependsOn().size());
+            for (Integer dependencyId : plan.getDependsOn()) {
+                CompletableFuture<String> dependency = dependencyId != null ? lookup(dependencyId) : null;
+                if (dependency == null) {
+                    logger.warn("Step {} depends on unknown, later or ambiguous step {}, running it after the previous step",
+                            stepNumber, dependencyId);
+                    return sequential;
+                }
+                dependencies.add(dependency);
+            }
+            return dependencies;
+        }
+
+        /**
+         * 按声明的 id 查找；没有步骤声明该 id 时按序号查找未声明 id 的步骤
+         */
+        private CompletableFuture<String> lookup(int dependencyId) {
+            if (duplicateIds.contains(dependencyId)) {
+                return null;
+            }
+            CompletableFuture<String> declared = stepsById.get(dependencyId);
+            if (declared != null) {
+                return declared;
+            }
+            if (dependencyId >= 1 && dependencyId <= plans.size() && plans.get(dependencyId - 1).getId() == null) {
+                return steps.get(dependencyId - 1);
+            }
+            return null;
+        }
+
+        /**
+         * 已提交的步骤（按提交顺序）
+         */
+        public synchronized List<PlanInfo> getPlans() {
+            return List.copyOf(plans);
+        }
+
+        /**
+         * 不再提交新步骤
+         *
+         * @return 所有已提交步骤完成后，与提交顺序一致的步骤结果
+         */
+        public synchronized CompletableFuture<List<String>> finish() {
+            List<CompletableFuture<String>> submitted = List.copyOf(steps);
+            return CompletableFuture.allOf(submitted.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(ignored -> submitted.stream().map(CompletableFuture::join).toList());
+        }
+    }
+
+    /**
+     * 在调度线程上执行一个步骤；虚拟线程模式下先获取许可（阻塞虚拟线程的代价很低），步骤的 future 完成后释放
+     */
+    private CompletableFuture<String> runStep(int stepNumber, PlanInfo plan,
+                                              Function<PlanInfo, CompletableFuture<String>> stepRunner) {
+        if (permits == null) {
+            logger.info("Executing step {}: {}", stepNumber, plan.getFunctionName());
+            return stepRunner.apply(plan);
+        }
+
+        permits.acquireUninterruptibly();
+        CompletableFuture<String> result;
+        try {
+            logger.info("Executing step {}: {}", stepNumber, plan.getFunctionName());
+            result = stepRunner.apply(plan);
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+        return result.whenComplete((value, error) -> permits.release());
+    }
+
+    /**
+     * 步骤完成回调
+     */
+    @FunctionalInterface
+    public interface StepListener {
+
+        /**
+         * @param stepNumber 步骤在计划中的序号（从 1 开始）
+         * @param plan       步骤
+         * @param result     步骤结果（失败时为错误描述）
+         */
+        void onStepCompleted(int stepNumber, PlanInfo plan, String result);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+}
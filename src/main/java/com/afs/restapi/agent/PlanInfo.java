@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,7 +12,11 @@ import java.util.Map;
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class PlanInfo {
-    
+
+    @JsonProperty("id")
+    @JsonAlias({"step"})
+    private Integer id;
+
     @JsonProperty("function")
     private String functionName;
     
@@ -21,6 +26,12 @@ public class PlanInfo {
     @JsonProperty("input")
     @JsonAlias({"parameters", "variables"})
     private Map<String, Object> variables;
+
+    /**
+     * 依赖的前序步骤编号；null 表示依赖上一步，空列表表示可与其他步骤并行执行
+     */
+    @JsonProperty("dependsOn")
+    private List<Integer> dependsOn;
     
     public PlanInfo() {}
     
@@ -30,6 +41,14 @@ public class PlanInfo {
         this.variables = variables;
     }
 
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
     public String getFunctionName() {
         return functionName;
     }
@@ -54,12 +73,22 @@ public class PlanInfo {
         this.variables = variables;
     }
 
+    public List<Integer> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<Integer> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
     @Override
     public String toString() {
         return "{" +
-                " function='" + functionName + '\'' +
+                " id=" + id +
+                ", function='" + functionName + '\'' +
                 ", description='" + description + '\'' +
                 ", variables=" + variables +
+                ", dependsOn=" + dependsOn +
                 '}';
     }
 }
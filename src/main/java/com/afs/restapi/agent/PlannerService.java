@@ -1,5 +1,7 @@
 package com.afs.restapi.agent;
 
+import com.afs.restapi.service.ApiToolCallback;
+import com.afs.restapi.service.GenericApiService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -10,11 +12,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.tool.ToolCallback;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * AI Agent Planning Service
@@ -36,13 +44,36 @@ public class PlannerService {
 
     private static final Logger logger = LoggerFactory.getLogger(PlannerService.class);
 
+    private static final String PLAN_PROMPT = "plan-prompt.txt";
+    private static final String SUMMARY_PROMPT = "summary-prompt.txt";
+    private static final String SUMMARY_REQUEST = "Please provide a comprehensive summary based on the above information.";
+
     private final ChatClient chatClient;
     private final ToolLoader toolLoader;
+    private final PlanExecutor planExecutor;
+    private final PromptTemplateRegistry promptTemplates;
+    private final ToolSelector toolSelector;
+    private final PlanCache planCache;
+    private final GenericApiService genericApiService;
+    private final SummaryPolicy summaryPolicy;
+    private final PromptBudget promptBudget;
+    private final SpeculativeExecutor speculativeExecutor;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public PlannerService(ChatClient.Builder chatClientBuilder, ToolLoader toolLoader) {
+    public PlannerService(ChatClient.Builder chatClientBuilder, ToolLoader toolLoader, PlanExecutor planExecutor,
+                          PromptTemplateRegistry promptTemplates, ToolSelector toolSelector, PlanCache planCache,
+                          GenericApiService genericApiService, SummaryPolicy summaryPolicy,
+                          PromptBudget promptBudget, SpeculativeExecutor speculativeExecutor) {
         this.chatClient = chatClientBuilder.build();
         this.toolLoader = toolLoader;
+        this.planExecutor = planExecutor;
+        this.promptTemplates = promptTemplates;
+        this.toolSelector = toolSelector;
+        this.planCache = planCache;
+        this.genericApiService = genericApiService;
+        this.summaryPolicy = summaryPolicy;
+        this.promptBudget = promptBudget;
+        this.speculativeExecutor = speculativeExecutor;
     }
 
     /**
@@ -103,56 +134,241 @@ public class PlannerService {
         logger.info("Starting AI Agent planning workflow, user input: {}", input);
 
         // Phase 1: Tool Discovery - AI Agent needs to know what tools it can use
-        List<ToolCallback> availableTools = discoverAvailableTools();
-
-        // Phase 2: Plan Creation - AI analyzes requirements and creates execution strategy
-        logger.info("Phase 2: Creating execution plan");
-
-        // Step 2.1: Prepare AI system prompt
-        String systemPrompt = prepareSystemPrompt(input, availableTools);
-
-        // Step 2.2: Call AI model to create plan
-        String aiResponse = callAIModelForPlanning(input, systemPrompt);
-
-        // Step 2.3: Parse AI response to extract execution plan
-        PlanTaskResult executionPlan = parseAIResponse(aiResponse);
-
-        logger.info("AI created {} execution steps", executionPlan.getPlans().size());
+        ToolCatalogue catalogue = discoverAvailableTools();
 
-        // Phase 3: Plan Execution - Execute tool calls according to AI's plan
-        String executionResult = executeExecutionPlan(executionPlan);
+        // Phase 2 + 3: Plan Creation and Execution - AI streams its execution strategy,
+        // and each step starts running as soon as it has been parsed
+        PlanRun run;
+        try {
+            run = planAndExecute(input, catalogue, PlanListener.NONE).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
 
         logger.info("AI Agent planning workflow completed");
         
         // Phase 4: according User's input and the execution result, generate final result
-        String finalResult = callLLMForFinalResult(input, executionResult, executionPlan);
+        // (deterministic results skip the LLM round-trip, see SummaryPolicy)
+        List<PlanInfo> plans = run.executionPlan().getPlans();
+        if (summaryPolicy.decide(plans, run.stepResults()).template()) {
+            logger.info("Phase 4: Final result generated from template");
+            return summaryPolicy.renderTemplate(plans, run.stepResults());
+        }
+
+        String finalResult = callLLMForFinalResult(input, run);
         logger.info("Phase 4: Final result generated by LLM");
 
         return finalResult;
     }
 
+    /**
+     * Streaming variant of {@link #plan(String)}
+     * <p>
+     * Runs the same four phases but emits events as work happens instead of returning once at the end:
+     * the parsed plan as soon as the planning call returns, each step result as soon as that step
+     * completes, and the final summary token by token from {@code chatClient.prompt().stream()}
+     * (or as a single event when {@link SummaryPolicy} picks the template summary).
+     * The first event is therefore only delayed by the planning call.
+     *
+     * @param input User input describing the requirements
+     * @return Plan, step, summary and done events; a failure ends the stream with an error event
+     */
+    public Flux<PlanEvent> planStream(String input) {
+        logger.info("Starting streaming AI Agent planning workflow, user input: {}", input);
+
+        // Tool discovery and selection may block, so keep them off the request thread
+        return Mono.fromCallable(this::discoverAvailableTools)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(catalogue -> {
+                    AtomicReference<PlanRun> run = new AtomicReference<>();
+
+                    // Phases 2-3: emit each step as it is planned and again as it completes
+                    // (steps may finish out of plan order)
+                    Flux<PlanEvent> execution = Flux.create(sink -> planAndExecute(input, catalogue, new PlanListener() {
+                        @Override
+                        public void onStepPlanned(int stepNumber, PlanInfo plan) {
+                            sink.next(PlanEvent.planned(stepNumber, plan));
+                        }
+
+                        @Override
+                        public void onPlanCompleted(PlanTaskResult executionPlan) {
+                            sink.next(PlanEvent.plan(executionPlan.getPlans()));
+                        }
+
+                        @Override
+                        public void onStepCompleted(int stepNumber, PlanInfo plan, String result) {
+                            sink.next(PlanEvent.step(stepNumber, plan, result));
+                        }
+                    }).whenComplete((result, error) -> {
+                        if (error != null) {
+                            sink.error(error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error);
+                        } else {
+                            run.set(result);
+                            sink.complete();
+                        }
+                    }));
+
+                    // Phase 4: stream the summary tokens, or emit the template summary as a single event
+                    Flux<PlanEvent> summary = Flux.defer(() -> {
+                                List<PlanInfo> plans = run.get().executionPlan().getPlans();
+                                if (summaryPolicy.decide(plans, run.get().stepResults()).template()) {
+                                    return Flux.just(summaryPolicy.renderTemplate(plans, run.get().stepResults()));
+                                }
+                                return streamLLMForFinalResult(input, run.get());
+                            })
+                            .map(PlanEvent::summary);
+
+                    return Flux.concat(execution, summary, Flux.just(PlanEvent.done()));
+                })
+                .doOnComplete(() -> logger.info("Streaming AI Agent planning workflow completed"))
+                .onErrorResume(e -> {
+                    logger.error("Streaming AI Agent planning workflow failed", e);
+                    return Flux.just(PlanEvent.error(e.getMessage()));
+                });
+    }
+
+    /**
+     * Phases 2 and 3: Plan Creation overlapped with Plan Execution
+     * <p>
+     * The planning response is streamed and parsed incrementally ({@link StreamingPlanParser}):
+     * read-only steps are submitted to the {@link PlanExecutor} as soon as their JSON object closes,
+     * so step 1 can already be running while the model is still writing step 3. The first step with
+     * side effects, and every step after it, waits until the whole plan has arrived and parsed cleanly.
+     * Steps form a dependency graph (see {@link PlanInfo#getDependsOn()}):
+     * independent steps run concurrently, and results are stitched back in plan order.
+     * Steps backed by a configured API tool run on the non-blocking client, so many
+     * backend calls can be in flight without holding an executor thread each.
+     * Read-only tools the input clearly refers to may already be running before the plan asks
+     * for them ({@link SpeculativeExecutor}); a step with the same arguments reuses that call.
+     *
+     * @param input     User input
+     * @param catalogue Tool catalogue snapshot used to create the plan
+     * @param listener  Notified as steps are planned and completed
+     * @return The execution plan together with the step results
+     */
+    private CompletableFuture<PlanRun> planAndExecute(String input, ToolCatalogue catalogue, PlanListener listener) {
+        // Reuse the catalogue's tool mapping table for fast lookup
+        Map<String, ToolCallback> toolMap = catalogue.getToolsByName();
+        SpeculativeExecutor.Speculation speculation = speculativeExecutor.begin(toolMap);
+        // Prompt tokens used by this request, shared by the planning and summary calls
+        PromptBudget.Usage promptUsage = promptBudget.begin();
+        PlanExecutor.Execution execution = planExecutor.start(
+                plan -> executeSinglePlanStepAsync(plan, toolMap, speculation), listener);
+
+        // Step 2.0: Look for a cached plan for an equivalent input, re-bound to this input's literals
+        PlanCache.NormalizedInput normalizedInput = planCache.normalize(input);
+        PlanTaskResult cachedPlan = planCache.get(normalizedInput, catalogue);
+
+        CompletableFuture<PlanRun> run;
+        try {
+            run = createExecutionPlan(input, catalogue, cachedPlan, speculation, promptUsage,
+                    plan -> {
+                        // A write to a resource invalidates speculative reads of it for the rest of the plan
+                        speculation.stepSubmitted(plan);
+                        listener.onStepPlanned(execution.submit(plan), plan);
+                    })
+                    .thenCompose(executionPlan -> {
+                        listener.onPlanCompleted(executionPlan);
+
+                        logger.info("Phase 3: Waiting for {} execution steps", executionPlan.getPlans().size());
+                        if (executionPlan.getPlans().isEmpty()) {
+                            logger.warn("No execution plan to execute");
+                            return CompletableFuture.completedFuture(new PlanRun(executionPlan, List.of(), promptUsage));
+                        }
+                        return execution.finish().thenApply(stepResults -> {
+                            if (executionPlan != cachedPlan) {
+                                cachePlan(normalizedInput, catalogue, executionPlan, stepResults);
+                            }
+                            return new PlanRun(executionPlan, stepResults, promptUsage);
+                        });
+                    });
+        } catch (RuntimeException e) {
+            speculation.close();
+            throw e;
+        }
+        // Speculative results the plan did not use are discarded once the request is done
+        return run.whenComplete((result, error) -> speculation.close());
+    }
+
+    /**
+     * Phase 2: Plan Creation
+     * <p>
+     * Reuses a cached plan for an equivalent input when possible; otherwise streams a new plan from the AI model.
+     *
+     * @param input       User input
+     * @param catalogue   Snapshot of available tools
+     * @param cachedPlan  Plan found in the {@link PlanCache} for this input, or null
+     * @param speculation Started when the AI model has to be asked, to overlap read-only tool calls with planning
+     * @param promptUsage Prompt tokens used by this request so far
+     * @param stepPlanned Called with each step, in plan order, as soon as it is available
+     * @return Execution plan, once the whole plan is known
+     */
+    private CompletableFuture<PlanTaskResult> createExecutionPlan(String input, ToolCatalogue catalogue,
+                                                                  PlanTaskResult cachedPlan,
+                                                                  SpeculativeExecutor.Speculation speculation,
+                                                                  PromptBudget.Usage promptUsage,
+                                                                  Consumer<PlanInfo> stepPlanned) {
+        logger.info("Phase 2: Creating execution plan");
+
+        if (cachedPlan != null) {
+            cachedPlan.getPlans().forEach(stepPlanned);
+            return CompletableFuture.completedFuture(cachedPlan);
+        }
+
+        // Planning will take a while: start read-only tools the input clearly refers to in the meantime
+        speculation.start(input);
+
+        // Step 2.1: Pre-select the tools relevant to this input and prepare AI system prompt
+        List<ToolCallback> promptTools = toolSelector.select(input, catalogue);
+        String systemPrompt = prepareSystemPrompt(input, catalogue, promptTools, promptUsage);
+
+        // Step 2.2: Stream the plan from the AI model, handing over each step as soon as it is parsed
+        return streamAIModelForPlanning(input, systemPrompt, stepPlanned)
+                .thenApply(executionPlan -> {
+                    logger.info("AI created {} execution steps", executionPlan.getPlans().size());
+                    return executionPlan;
+                });
+    }
+
+    /**
+     * Cache a freshly created plan, but only once every step has succeeded:
+     * a plan that failed against the backend must not be replayed for the next equivalent input
+     */
+    private void cachePlan(PlanCache.NormalizedInput normalizedInput, ToolCatalogue catalogue,
+                           PlanTaskResult executionPlan, List<String> stepResults) {
+        if (stepResults.stream().anyMatch(summaryPolicy::isFailure)) {
+            logger.info("Not caching plan for '{}': not all steps succeeded", normalizedInput.key());
+            return;
+        }
+        planCache.put(normalizedInput, catalogue, executionPlan);
+    }
+
     /**
      * Phase 1: Tool Discovery
      * <p>
      * AI Agent first needs to understand what tools it can use.
      * This is like a human checking their toolbox before starting work.
+     * The catalogue is a cached snapshot that only changes when tools are registered or removed.
      *
-     * @return List of available tools
+     * @return Snapshot of available tools
      */
-    private List<ToolCallback> discoverAvailableTools() {
+    private ToolCatalogue discoverAvailableTools() {
         logger.info("Phase 1: Discovering available tools");
 
-        List<ToolCallback> generalTools = toolLoader.getGeneralTools();
-        logger.info("Discovered {} available tools", generalTools.size());
+        ToolCatalogue catalogue = toolLoader.getToolCatalogue();
+        logger.info("Discovered {} available tools (catalogue v{})", catalogue.size(), catalogue.getVersion());
 
         // Log basic information for each tool to help understanding
-        for (ToolCallback tool : generalTools) {
-            logger.debug("Tool: {} - {}",
-                    tool.getToolDefinition().name(),
-                    tool.getToolDefinition().description());
+        if (logger.isDebugEnabled()) {
+            for (ToolCallback tool : catalogue.getTools()) {
+                logger.debug("Tool: {} - {}",
+                        tool.getToolDefinition().name(),
+                        tool.getToolDefinition().description());
+            }
         }
 
-        return generalTools;
+        return catalogue;
     }
 
     /**
@@ -163,64 +379,80 @@ public class PlannerService {
      * - Available tools and their usage
      * - Expected output format
      *
-     * @param input          User input
-     * @param availableTools Available tools
+     * @param input       User input
+     * @param catalogue   Snapshot of available tools with pre-rendered descriptions
+     * @param promptTools Tools selected for this input (the whole catalogue when selection falls back)
+     * @param promptUsage Prompt tokens used by this request so far
      * @return Complete system prompt
      */
-    private String prepareSystemPrompt(String input, List<ToolCallback> availableTools) {
-        // Load prompt template
-        String planTemplate = loadPromptTemplate();
-
-        // Inject tool information into template
-        String toolsDescription = formatToolsDescription(availableTools);
-        String systemPrompt = planTemplate
-                .replace("{{ $functions }}", toolsDescription)
-                .replace("{{$functions}}", toolsDescription)
-                .replace("{{ $input }}", input)
-                .replace("{{$input}}", input);
-
-        logger.debug("System prompt prepared, containing {} tool descriptions", availableTools.size());
-        return systemPrompt;
-    }
+    private String prepareSystemPrompt(String input, ToolCatalogue catalogue, List<ToolCallback> promptTools,
+                                       PromptBudget.Usage promptUsage) {
+        PromptTemplate template = promptTemplates.get(PLAN_PROMPT);
+
+        // Keep the tool catalogue within the prompt token budget
+        if (promptBudget.isEnabled()) {
+            int fixedTokens = promptBudget.estimateTokens(template.render(Map.of("functions", "", "input", input)))
+                    + promptBudget.estimateTokens(input);
+            promptTools = promptBudget.fitTools(promptTools, catalogue, fixedTokens, promptUsage);
+        }
 
-    /**
-     * Format tool descriptions
-     * <p>
-     * Convert tool information to a format that AI can understand,
-     * including tool name, description, and input parameter schema
-     */
-    private String formatToolsDescription(List<ToolCallback> tools) {
-        return tools.stream()
-                .map(tool -> {
-                    String name = tool.getToolDefinition().name();
-                    String description = tool.getToolDefinition().description();
-                    String schema = tool.getToolDefinition().inputSchema();
-
-                    return String.format(
-                            "{\"function\":\"%s\",\"description\":\"%s\",\"schema\":\"%s\"}",
-                            name, description, schema
-                    );
-                })
-                .collect(Collectors.joining());
+        // Inject tool information into the precompiled template
+        String systemPrompt = template.render(Map.of(
+                "functions", catalogue.describe(promptTools),
+                "input", input));
+        promptBudget.record(promptUsage, "planning", systemPrompt, input);
+
+        logger.debug("System prompt prepared, containing {} tool descriptions", promptTools.size());
+        return systemPrompt;
     }
 
     /**
      * Call AI model to create plan
      * <p>
      * This is the "brain" part of the AI Agent:
-     * AI analyzes user requirements, understands available tools, then creates execution strategy
+     * AI analyzes user requirements, understands available tools, then creates execution strategy.
+     * The response is streamed and parsed as it arrives (Step 2.3). Leading read-only steps are handed
+     * over while the model is still writing the rest of the plan; from the first step that may change
+     * data onwards, steps are held back until the stream completes, so a plan that turns out to be
+     * malformed or truncated never gets to write anything. A malformed or truncated step fails the
+     * plan: the full response is only re-parsed when nothing was recognised (and nothing started) while streaming.
      */
-    private String callAIModelForPlanning(String input, String systemPrompt) {
+    private CompletableFuture<PlanTaskResult> streamAIModelForPlanning(String input, String systemPrompt,
+                                                                       Consumer<PlanInfo> stepPlanned) {
         logger.info("Calling AI model to create execution plan");
 
-        String response = chatClient.prompt()
+        StreamingPlanParser parser = new StreamingPlanParser(objectMapper);
+        List<PlanInfo> plans = new ArrayList<>();
+        // Number of leading steps already handed over; they are all read-only
+        AtomicInteger started = new AtomicInteger();
+
+        return chatClient.prompt()
                 .system(systemPrompt)
                 .user(input)
-                .call()
-                .content();
-
-        logger.debug("AI model response: {}", response);
-        return response;
+                .stream()
+                .content()
+                .doOnNext(chunk -> parser.feed(chunk).forEach(plan -> {
+                    plans.add(plan);
+                    if (started.get() == plans.size() - 1 && genericApiService.isReadOnlyTool(plan.getFunctionName())) {
+                        started.incrementAndGet();
+                        stepPlanned.accept(plan);
+                    }
+                }))
+                .then(Mono.fromCallable(() -> {
+                    logger.debug("AI model response: {}", parser.getText());
+                    parser.finish();
+                    if (!plans.isEmpty()) {
+                        // The plan is complete: release the held-back steps in plan order
+                        plans.subList(started.get(), plans.size()).forEach(stepPlanned);
+                        return new PlanTaskResult(plans);
+                    }
+                    // Nothing recognised while streaming, so nothing has started yet:
+                    // fall back to parsing the full response
+                    PlanTaskResult executionPlan = parseAIResponse(parser.getText());
+                    executionPlan.getPlans().forEach(stepPlanned);
+                    return executionPlan;
+                }))
+                .toFuture();
     }
 
     /**
@@ -315,64 +547,50 @@ public class PlannerService {
     }
 
     /**
-     * Phase 3: Plan Execution
-     * <p>
-     * Execute tool calls according to AI's plan.
-     * This is like following a recipe step by step.
-     *
-     * @param executionPlan Execution plan
-     * @return Execution results
+     * Stitch step results back together in plan order
      */
-    private String executeExecutionPlan(PlanTaskResult executionPlan) {
-        logger.info("Phase 3: Executing execution plan");
-
-        if (executionPlan.getPlans().isEmpty()) {
-            logger.warn("No execution plan to execute");
-            return null;
-        }
-
-        // Prepare tool mapping table for fast lookup
-        Map<String, ToolCallback> toolMap = prepareToolMap();
-
-        // Execute each plan step sequentially
+    private String combineStepResults(List<PlanInfo> plans, List<String> stepResults) {
         StringBuilder results = new StringBuilder();
-        for (int i = 0; i < executionPlan.getPlans().size(); i++) {
-            PlanInfo plan = executionPlan.getPlans().get(i);
-            logger.info("Executing step {}/{}: {}", i + 1, executionPlan.getPlans().size(), plan.getFunctionName());
-
-            String stepResult = executeSinglePlanStep(plan, toolMap);
+        for (int i = 0; i < plans.size(); i++) {
+            String stepResult = stepResults.get(i);
             if (stepResult != null) {
                 if (!results.isEmpty()) {
                     results.append("\n");
                 }
 
                 results.append("Plan ").append(i + 1)
-                        .append(plan)
+                        .append(plans.get(i))
                         .append("\nResult : ").append(stepResult);
             }
         }
 
         String finalResult = "Results:\n" + results;
-        logger.info("Execution plan completed, result length: {}", finalResult != null ? finalResult.length() : 0);
+        logger.debug("Combined step results, length: {}", finalResult.length());
         return finalResult;
     }
 
     /**
-     * Prepare tool mapping table
+     * Execute single plan step without blocking the executor thread when possible
      * <p>
-     * Create mapping from tool name to tool instance,
-     * improving lookup efficiency during execution
+     * Tools defined in api-tools-config.json are called through
+     * {@link GenericApiService#executeApiCallAsync} (or reuse a speculative call with the same
+     * arguments); all other tools fall back to the synchronous {@link ToolCallback#call(String)}.
      */
-    private Map<String, ToolCallback> prepareToolMap() {
-        List<ToolCallback> availableTools = toolLoader.getAllAvailableTools();
-        Map<String, ToolCallback> toolMap = new HashMap<>();
+    private CompletableFuture<String> executeSinglePlanStepAsync(PlanInfo plan, Map<String, ToolCallback> toolMap,
+                                                                 SpeculativeExecutor.Speculation speculation) {
+        String toolName = plan.getFunctionName();
+        if (!toolMap.containsKey(toolName) || !genericApiService.hasTool(toolName)) {
+            return CompletableFuture.completedFuture(executeSinglePlanStep(plan, toolMap));
+        }
 
-        for (ToolCallback tool : availableTools) {
-            toolMap.put(tool.getToolDefinition().name(), tool);
+        Map<String, String> params = ApiToolCallback.toApiParameters(plan.getVariables());
+        CompletableFuture<String> speculated = speculation.claim(toolName, params);
+        if (speculated != null) {
+            return speculated;
         }
 
-        logger.debug("Tool mapping table prepared, containing {} tools", toolMap.size());
-        return toolMap;
+        logger.info("Executing API tool: {}, input parameters: {}", toolName, plan.getVariables());
+        return genericApiService.executeApiCallAsync(toolName, params).toFuture();
     }
 
     /**
@@ -410,19 +628,6 @@ public class PlannerService {
         }
     }
 
-    /**
-     * Load prompt template from resource file
-     */
-    private String loadPromptTemplate() {
-        try {
-            ClassPathResource resource = new ClassPathResource("plan-prompt.txt");
-            return resource.getContentAsString(java.nio.charset.StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            logger.error("Unable to load prompt template", e);
-            throw new RuntimeException("Unable to load prompt template", e);
-        }
-    }
-
     /**
      * Phase 4: Call LLM to Generate Final Result
      * <p>
@@ -435,33 +640,17 @@ public class PlannerService {
      * 3. Generate a user-friendly summary
      * 4. Provide insights and recommendations if appropriate
      *
-     * @param userInput      The user's original input/request
-     * @param executionResult The raw execution results from Phase 3
-     * @param executionPlan  The execution plan that was followed
+     * @param userInput The user's original input/request
+     * @param run       The execution plan that was followed and its results from Phase 3
      * @return A comprehensive final result generated by LLM
      */
-    private String callLLMForFinalResult(String userInput, String executionResult, PlanTaskResult executionPlan) {
+    private String callLLMForFinalResult(String userInput, PlanRun run) {
         logger.info("Calling LLM to generate final result for user input: {}", userInput);
 
-        // Prepare the system prompt for final result generation with variable substitution
-        String systemPrompt = prepareFinalResultSystemPrompt();
-
-        // Prepare execution plan summary
-        String executionPlanSummary = prepareExecutionPlanSummary(executionPlan);
-
-        // Replace variables in the system prompt
-        systemPrompt = systemPrompt
-                .replace("{{ $userInput }}", userInput)
-                .replace("{{$userInput}}", userInput)
-                .replace("{{ $executionPlan }}", executionPlanSummary)
-                .replace("{{$executionPlan}}", executionPlanSummary)
-                .replace("{{ $executionResult }}", executionResult != null ? executionResult : "No execution results")
-                .replace("{{$executionResult}}", executionResult != null ? executionResult : "No execution results");
-
         // Call LLM to generate final result
         String finalResult = chatClient.prompt()
-                .system(systemPrompt)
-                .user("Please provide a comprehensive summary based on the above information.")
+                .system(prepareSummaryPrompt(userInput, run))
+                .user(SUMMARY_REQUEST)
                 .call()
                 .content();
 
@@ -470,16 +659,59 @@ public class PlannerService {
     }
 
     /**
-     * Prepare system prompt for final result generation
+     * Phase 4 (streaming): same prompt as {@link #callLLMForFinalResult}, returned token by token
      */
-    private String prepareFinalResultSystemPrompt() {
-        try {
-            ClassPathResource resource = new ClassPathResource("summary-prompt.txt");
-            return resource.getContentAsString(java.nio.charset.StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            logger.error("Unable to load summary prompt template", e);
-            throw new RuntimeException("Unable to load summary prompt template", e);
+    private Flux<String> streamLLMForFinalResult(String userInput, PlanRun run) {
+        logger.info("Streaming LLM final result for user input: {}", userInput);
+
+        return chatClient.prompt()
+                .system(prepareSummaryPrompt(userInput, run))
+                .user(SUMMARY_REQUEST)
+                .stream()
+                .content();
+    }
+
+    /**
+     * Render the precompiled summary template with the plan summary and execution results
+     * <p>
+     * API tool results are first projected to their configured resultFields, then shrunk to fit the prompt
+     * token budget before they are combined (see {@link PromptBudget}): whatever the planning prompt used counts
+     * against the per-request ceiling.
+     */
+    private String prepareSummaryPrompt(String userInput, PlanRun run) {
+        PromptTemplate template = promptTemplates.get(SUMMARY_PROMPT);
+        List<PlanInfo> plans = run.executionPlan().getPlans();
+        String executionPlan = prepareExecutionPlanSummary(run.executionPlan());
+
+        List<String> stepResults = projectStepResults(plans, run.stepResults());
+        if (promptBudget.isEnabled() && !stepResults.isEmpty()) {
+            int fixedTokens = promptBudget.estimateTokens(template.render(Map.of(
+                    "userInput", userInput,
+                    "executionPlan", executionPlan,
+                    "executionResult", combineStepResults(plans, Collections.nCopies(plans.size(), "")))))
+                    + promptBudget.estimateTokens(SUMMARY_REQUEST);
+            stepResults = promptBudget.fitResults(stepResults, fixedTokens, run.promptUsage());
+        }
+
+        String summaryPrompt = template.render(Map.of(
+                "userInput", userInput,
+                "executionPlan", executionPlan,
+                "executionResult", stepResults.isEmpty() ? "No execution results" : combineStepResults(plans, stepResults)));
+        promptBudget.record(run.promptUsage(), "summary", summaryPrompt, SUMMARY_REQUEST);
+        return summaryPrompt;
+    }
+
+    /**
+     * Keep only the configured resultFields of each API tool response; other results are left as they are
+     */
+    private List<String> projectStepResults(List<PlanInfo> plans, List<String> stepResults) {
+        List<String> projected = new ArrayList<>(stepResults.size());
+        for (int i = 0; i < stepResults.size(); i++) {
+            projected.add(i < plans.size()
+                    ? genericApiService.projectResult(plans.get(i).getFunctionName(), stepResults.get(i))
+                    : stepResults.get(i));
         }
+        return projected;
     }
 
     /**
@@ -501,6 +733,38 @@ public class PlannerService {
         return summary.toString();
     }
 
+    /**
+     * Listener for the combined planning and execution phases
+     */
+    private interface PlanListener extends PlanExecutor.StepListener {
+
+        PlanListener NONE = new PlanListener() {
+        };
+
+        /**
+         * A step has been parsed and submitted for execution
+         */
+        default void onStepPlanned(int stepNumber, PlanInfo plan) {
+        }
+
+        /**
+         * The whole plan is known (all steps have been submitted)
+         */
+        default void onPlanCompleted(PlanTaskResult executionPlan) {
+        }
+
+        @Override
+        default void onStepCompleted(int stepNumber, PlanInfo plan, String result) {
+        }
+    }
+
+    /**
+     * Execution plan together with its step results in plan order,
+     * and the prompt tokens the request has used so far
+     */
+    private record PlanRun(PlanTaskResult executionPlan, List<String> stepResults, PromptBudget.Usage promptUsage) {
+    }
+
     /**
      * Execution plan result wrapper class
      */
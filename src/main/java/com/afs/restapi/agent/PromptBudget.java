@@ -0,0 +1,289 @@
+package com.afs.restapi.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 提示词 token 预算
+ * 每次 LLM 调用的提示词（系统提示词 + 用户消息）估算 token 数不超过 max-tokens，
+ * 同一请求中所有调用的提示词合计不超过 max-request-tokens（按 {@link #begin()} 返回的 Usage 累计）：
+ * - 规划：模板和用户输入之外的预算留给工具目录，超出时按预选顺序截掉排在后面的工具（至少保留一个）
+ * - 总结：请求预算扣除规划已用部分后，再扣除模板、用户输入和计划摘要，剩余预算分给各步骤结果，
+ *   结果小的先足额分配，剩余预算由大结果平分；超出分配的结果先压缩 JSON，再逐步缩短数组和长字符串，最后直接截断
+ * <p>
+ * 每个步骤结果至少保留 min-result-tokens，工具目录至少保留一个工具，因此模板本身过大时仍可能超出预算。
+ * <p>
+ * token 数按字符估算：ASCII 字符按 chars-per-token 折算，其他字符（如中文）每个计 1 个 token。
+ * 指标：agent.prompt.tokens{phase}（估算值）、agent.prompt.truncations{phase}
+ */
+@Component
+public class PromptBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptBudget.class);
+
+    private static final String RESPONSE_MARKER = "Response: ";
+    private static final String TRUNCATED = "... [truncated]";
+    private static final int[] ARRAY_LIMITS = {10, 5, 3, 1};
+    private static final int MAX_STRING_LENGTH = 200;
+
+    private final boolean enabled;
+    private final int maxTokens;
+    private final int maxRequestTokens;
+    private final double charsPerToken;
+    private final int minResultTokens;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public PromptBudget(MeterRegistry meterRegistry,
+                        @Value("${agent.prompt-budget.enabled:true}") boolean enabled,
+                        @Value("${agent.prompt-budget.max-tokens:8000}") int maxTokens,
+                        @Value("${agent.prompt-budget.max-request-tokens:12000}") int maxRequestTokens,
+                        @Value("${agent.prompt-budget.chars-per-token:4}") double charsPerToken,
+                        @Value("${agent.prompt-budget.min-result-tokens:100}") int minResultTokens) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxTokens = maxTokens;
+        this.maxRequestTokens = maxRequestTokens;
+        this.charsPerToken = charsPerToken;
+        this.minResultTokens = minResultTokens;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开始一次请求的 token 统计
+     */
+    public Usage begin() {
+        return new Usage();
+    }
+
+    /**
+     * 估算文本的 token 数
+     */
+    public int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128) {
+                ascii++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return (int) Math.ceil(ascii / charsPerToken) + other;
+    }
+
+    /**
+     * 按预算截取规划提示词中的工具
+     *
+     * @param tools       预选后的工具，按相关度排序
+     * @param catalogue   工具目录，用于获取预先渲染的工具描述
+     * @param fixedTokens 提示词中工具描述以外部分的 token 数
+     * @param usage       本次请求已使用的 token
+     * @return 放得下的前若干个工具；全部放得下时返回原列表
+     */
+    public List<ToolCallback> fitTools(List<ToolCallback> tools, ToolCatalogue catalogue, int fixedTokens, Usage usage) {
+        if (!enabled || tools.isEmpty()) {
+            return tools;
+        }
+        int limit = callLimit(usage);
+        int available = limit - fixedTokens;
+        int used = 0;
+        for (int i = 0; i < tools.size(); i++) {
+            used += estimateTokens(catalogue.describe(List.of(tools.get(i))));
+            if (used > available) {
+                int kept = Math.max(1, i);
+                logger.info("Prompt budget of {} tokens leaves room for {} of {} tools", limit, kept, tools.size());
+                truncated("planning");
+                return tools.subList(0, kept);
+            }
+        }
+        return tools;
+    }
+
+    /**
+     * 按预算缩减总结提示词中的步骤结果
+     *
+     * @param results     按计划顺序的步骤结果
+     * @param fixedTokens 提示词中步骤结果以外部分的 token 数
+     * @param usage       本次请求已使用的 token（规划阶段的提示词）
+     * @return 缩减后的步骤结果，顺序不变；全部放得下时返回原列表
+     */
+    public List<String> fitResults(List<String> results, int fixedTokens, Usage usage) {
+        if (!enabled || results.isEmpty()) {
+            return results;
+        }
+        int[] tokens = new int[results.size()];
+        int total = 0;
+        for (int i = 0; i < results.size(); i++) {
+            tokens[i] = estimateTokens(results.get(i));
+            total += tokens[i];
+        }
+        int limit = callLimit(usage);
+        int available = limit - fixedTokens;
+        if (total <= available) {
+            return results;
+        }
+
+        // 从小到大依次分配：放得下的结果足额分配，剩余预算由更大的结果平分
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt(i -> tokens[i]));
+        int[] allotted = new int[results.size()];
+        int remaining = Math.max(0, available);
+        for (int k = 0; k < order.size(); k++) {
+            int index = order.get(k);
+            int share = Math.max(minResultTokens, remaining / (order.size() - k));
+            allotted[index] = Math.min(tokens[index], share);
+            remaining = Math.max(0, remaining - allotted[index]);
+        }
+
+        List<String> fitted = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            fitted.add(tokens[i] > allotted[i] ? shrink(results.get(i), allotted[i]) : results.get(i));
+        }
+        logger.info("Prompt budget of {} tokens: step results shrunk from ~{} to ~{} tokens",
+                limit, total, fitted.stream().mapToInt(this::estimateTokens).sum());
+        truncated("summary");
+        return fitted;
+    }
+
+    /**
+     * 记录一次 LLM 调用的提示词估算 token 数，并计入本次请求的用量
+     */
+    public void record(Usage usage, String phase, String... promptParts) {
+        int tokens = 0;
+        for (String part : promptParts) {
+            tokens += estimateTokens(part);
+        }
+        usage.add(tokens);
+        meterRegistry.summary("agent.prompt.tokens", "phase", phase).record(tokens);
+        logger.debug("Estimated {} prompt tokens for {} ({} so far in this request)", tokens, phase, usage.getTokens());
+    }
+
+    /**
+     * 下一次调用可用的 token 数：单次上限和请求剩余预算中较小的一个
+     */
+    private int callLimit(Usage usage) {
+        return Math.min(maxTokens, maxRequestTokens - usage.getTokens());
+    }
+
+    /**
+     * 把单个结果缩减到指定 token 数以内：结果中的 JSON 响应体按结构缩减，其他文本直接截断
+     */
+    private String shrink(String result, int tokens) {
+        int marker = result.indexOf(RESPONSE_MARKER);
+        String prefix = marker >= 0 ? result.substring(0, marker + RESPONSE_MARKER.length()) : "";
+        String body = result.substring(prefix.length());
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            if (json != null && json.isContainerNode()) {
+                return prefix + shrinkJson(json, tokens - estimateTokens(prefix));
+            }
+        } catch (Exception e) {
+            logger.trace("Step result body is not JSON, truncating as text");
+        }
+        return cut(result, tokens);
+    }
+
+    private String shrinkJson(JsonNode json, int tokens) throws Exception {
+        String compact = objectMapper.writeValueAsString(json);
+        if (estimateTokens(compact) <= tokens) {
+            return compact;
+        }
+        for (int limit : ARRAY_LIMITS) {
+            compact = objectMapper.writeValueAsString(limitArrays(json.deepCopy(), limit));
+            if (estimateTokens(compact) <= tokens) {
+                return compact;
+            }
+        }
+        return cut(compact, tokens);
+    }
+
+    /**
+     * 数组只保留前 limit 个元素（追加一个说明省略数量的元素），过长的字符串截断
+     */
+    private JsonNode limitArrays(JsonNode node, int limit) {
+        if (node.isArray()) {
+            ArrayNode array = (ArrayNode) node;
+            int omitted = array.size() - limit;
+            while (array.size() > limit) {
+                array.remove(array.size() - 1);
+            }
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, limitArrays(array.get(i), limit));
+            }
+            if (omitted > 0) {
+                array.add("... " + omitted + " more items");
+            }
+        } else if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                field.setValue(limitArrays(field.getValue(), limit));
+            }
+        } else if (node.isTextual() && node.textValue().length() > MAX_STRING_LENGTH) {
+            return objectMapper.getNodeFactory().textNode(node.textValue().substring(0, MAX_STRING_LENGTH) + "...");
+        }
+        return node;
+    }
+
+    private String cut(String text, int tokens) {
+        int estimated = estimateTokens(text);
+        if (estimated <= tokens) {
+            return text;
+        }
+        int keep = Math.max(0, (int) ((long) text.length() * Math.max(0, tokens - estimateTokens(TRUNCATED)) / estimated));
+        if (keep > 0 && Character.isHighSurrogate(text.charAt(keep - 1))) {
+            keep--;
+        }
+        return text.substring(0, keep) + TRUNCATED;
+    }
+
+    private void truncated(String phase) {
+        meterRegistry.counter("agent.prompt.truncations", "phase", phase).increment();
+    }
+
+    /**
+     * 一次请求中各次 LLM 调用已使用的提示词 token 数
+     */
+    public static final class Usage {
+
+        private final AtomicInteger tokens = new AtomicInteger();
+
+        private Usage() {
+        }
+
+        public int getTokens() {
+            return tokens.get();
+        }
+
+        private void add(int count) {
+            tokens.addAndGet(count);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.afs.restapi.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的提示词模板
+ * 加载时把模板拆分为“文本片段 + 占位符”交替的序列，渲染时只需一次遍历写入预估好容量的 StringBuilder，
+ * 不再对整段模板做多次 String.replace
+ * <p>
+ * 占位符格式：{{ $name }} 或 {{$name}}；没有提供值的占位符原样保留
+ */
+public final class PromptTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*\\$(\\w+)\\s*}}");
+
+    /** literals.length == names.length + 1，渲染顺序为 literal[0], name[0], literal[1], ... */
+    private final String[] literals;
+    private final String[] names;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private PromptTemplate(String[] literals, String[] names, String[] placeholders) {
+        this.literals = literals;
+        this.names = names;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板文本
+     */
+    public static PromptTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        Matcher matcher = PLACEHOLDER.matcher(source);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(source.substring(last, matcher.start()));
+            names.add(matcher.group(1));
+            placeholders.add(matcher.group());
+            last = matcher.end();
+        }
+        literals.add(source.substring(last));
+
+        return new PromptTemplate(
+                literals.toArray(new String[0]),
+                names.toArray(new String[0]),
+                placeholders.toArray(new String[0]));
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param values 占位符名称（不含 $）到取值的映射
+     * @return 渲染结果
+     */
+    public String render(Map<String, String> values) {
+        int capacity = literalLength;
+        for (int i = 0; i < names.length; i++) {
+            String value = values.get(names[i]);
+            capacity += value != null ? value.length() : placeholders[i].length();
+        }
+
+        StringBuilder result = new StringBuilder(capacity);
+        result.append(literals[0]);
+        for (int i = 0; i < names.length; i++) {
+            String value = values.get(names[i]);
+            result.append(value != null ? value : placeholders[i]);
+            result.append(literals[i + 1]);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.afs.restapi.agent;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 提示词模板注册表
+ * 启动时加载并编译模板，之后每次请求直接复用编译结果；
+ * 开启 hot-reload 时按检查间隔比较文件修改时间，文件变化后重新编译
+ */
+@Component
+public class PromptTemplateRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptTemplateRegistry.class);
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final List<String> preload;
+    private final boolean hotReload;
+    private final long reloadCheckIntervalMs;
+
+    private final Map<String, LoadedTemplate> templates = new ConcurrentHashMap<>();
+
+    public PromptTemplateRegistry(ResourceLoader resourceLoader,
+                                  @Value("${agent.prompt.location:classpath:}") String location,
+                                  @Value("${agent.prompt.preload:plan-prompt.txt,summary-prompt.txt}") List<String> preload,
+                                  @Value("${agent.prompt.hot-reload:false}") boolean hotReload,
+                                  @Value("${agent.prompt.reload-check-interval-ms:2000}") long reloadCheckIntervalMs) {
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        this.preload = preload;
+        this.hotReload = hotReload;
+        this.reloadCheckIntervalMs = reloadCheckIntervalMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String name : preload) {
+            get(name);
+        }
+        logger.info("✅ Loaded {} prompt templates from '{}' (hot reload: {})", templates.size(), location, hotReload);
+    }
+
+    /**
+     * 获取编译后的模板
+     *
+     * @param name 模板文件名，如 plan-prompt.txt
+     */
+    public PromptTemplate get(String name) {
+        LoadedTemplate loaded = templates.computeIfAbsent(name, this::load);
+        if (hotReload) {
+            loaded = reloadIfModified(name, loaded);
+        }
+        return loaded.template();
+    }
+
+    private LoadedTemplate reloadIfModified(String name, LoadedTemplate loaded) {
+        long now = System.currentTimeMillis();
+        if (now - loaded.checkedAt() < reloadCheckIntervalMs) {
+            return loaded;
+        }
+
+        long lastModified = lastModified(loaded.resource());
+        if (lastModified == loaded.lastModified()) {
+            LoadedTemplate checked = new LoadedTemplate(loaded.resource(), loaded.template(), lastModified, now);
+            templates.replace(name, loaded, checked);
+            return checked;
+        }
+
+        try {
+            LoadedTemplate reloaded = load(name);
+            templates.put(name, reloaded);
+            logger.info("Prompt template reloaded: {}", name);
+            return reloaded;
+        } catch (RuntimeException e) {
+            // 文件可能正在写入，保留旧模板，下次再检查
+            logger.warn("Failed to reload prompt template {}, keeping previous version", name, e);
+            return loaded;
+        }
+    }
+
+    private LoadedTemplate load(String name) {
+        Resource resource = resourceLoader.getResource(location + name);
+        try {
+            String source = resource.getContentAsString(StandardCharsets.UTF_8);
+            return new LoadedTemplate(resource, PromptTemplate.compile(source),
+                    lastModified(resource), System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.error("Unable to load prompt template: {}", name, e);
+            throw new RuntimeException("Unable to load prompt template: " + name, e);
+        }
+    }
+
+    private long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private record LoadedTemplate(Resource resource, PromptTemplate template, long lastModified, long checkedAt) {
+    }
+}
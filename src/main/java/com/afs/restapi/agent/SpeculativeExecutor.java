@@ -0,0 +1,243 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.service.ApiToolCallback;
+import com.afs.restapi.service.ApiToolConfigRegistry;
+import com.afs.restapi.service.CompiledApiTool;
+import com.afs.restapi.service.GenericApiService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 只读工具的预先执行
+ * 等待 LLM 规划期间后端处于空闲状态：对配置了 readOnly 和 speculate 的 API 工具，
+ * 用户输入匹配 inputPattern 时（如输入中包含 shipment 号）立即发起调用，结果放入本次请求的 Speculation；
+ * 计划中以相同参数调用该工具的步骤直接使用已发起的调用，不再重复请求
+ * <p>
+ * 参数按工具声明的参数比较，未传入的参数按默认值补齐。请求结束时未被使用的结果直接丢弃（已发出的调用不取消，
+ * 配置了 cache 的工具仍会写入响应缓存）。
+ * <p>
+ * 预先调用的结果反映的是发起时的资源状态，以下情况作废（之后的步骤重新调用）：
+ * - 计划中提交了 resourceKey 相同的修改类（非 readOnly）步骤；未配置 resourceKey 的修改类 API 工具视为可能修改任何资源
+ * - 发起之后有 resourceKey 相同的修改类调用开始执行（包括其他请求发起的调用）；
+ *   未配置 resourceKey 的修改类调用开始执行时，所有请求中的预先结果都作废
+ * 计划中的步骤只能依赖排在前面的步骤，因此依赖中的修改类步骤一定已经提交过。
+ * 指标：agent.plan.speculation{tool, result=started|used|invalidated|discarded}
+ */
+@Component
+public class SpeculativeExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeculativeExecutor.class);
+
+    private final ApiToolConfigRegistry configRegistry;
+    private final GenericApiService genericApiService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxCalls;
+    private final Set<Speculation> active = ConcurrentHashMap.newKeySet();
+
+    public SpeculativeExecutor(ApiToolConfigRegistry configRegistry, GenericApiService genericApiService,
+                               MeterRegistry meterRegistry,
+                               @Value("${agent.speculation.enabled:true}") boolean enabled,
+                               @Value("${agent.speculation.max-calls:4}") int maxCalls) {
+        this.configRegistry = configRegistry;
+        this.genericApiService = genericApiService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxCalls = maxCalls;
+        genericApiService.addWriteListener(this::writeStarted);
+    }
+
+    /**
+     * 为一次请求创建预先执行的上下文
+     *
+     * @param toolMap 本次请求可用的工具，只预先执行其中的工具
+     */
+    public Speculation begin(Map<String, ToolCallback> toolMap) {
+        return new Speculation(toolMap);
+    }
+
+    /**
+     * 修改类调用开始执行：作废所有请求中同一资源的预先结果，resourceKey 为 null 时作废全部预先结果
+     */
+    private void writeStarted(String resourceKey) {
+        active.forEach(speculation -> speculation.invalidate(resourceKey));
+    }
+
+    private void record(String toolName, String result) {
+        meterRegistry.counter("agent.plan.speculation", "tool", toolName, "result", result).increment();
+    }
+
+    /**
+     * 按工具声明的参数（补齐默认值后）生成调用标识
+     */
+    private static String key(CompiledApiTool tool, Map<String, String> params) {
+        Map<String, String> declared = new TreeMap<>();
+        List<ApiToolConfig.Parameter> parameters = tool.getTool().getParameters();
+        if (parameters != null) {
+            for (ApiToolConfig.Parameter param : parameters) {
+                String value = params.getOrDefault(param.getName(), param.getDefaultValue());
+                if (value != null) {
+                    declared.put(param.getName(), value);
+                }
+            }
+        }
+        return tool.getName() + declared;
+    }
+
+    /**
+     * 一次请求中预先发起的调用
+     */
+    public final class Speculation {
+
+        private final Map<String, ToolCallback> toolMap;
+        private final Map<String, Call> calls = new ConcurrentHashMap<>();
+        private volatile ApiToolConfigRegistry.Snapshot snapshot;
+
+        private Speculation(Map<String, ToolCallback> toolMap) {
+            this.toolMap = toolMap;
+        }
+
+        /**
+         * 按用户输入发起匹配的只读工具调用，不等待结果
+         */
+        public void start(String input) {
+            if (!enabled) {
+                return;
+            }
+            snapshot = configRegistry.getSnapshot();
+            int started = 0;
+            for (CompiledApiTool tool : snapshot.tools().values()) {
+                Pattern pattern = tool.getSpeculatePattern();
+                if (pattern == null || !toolMap.containsKey(tool.getName())) {
+                    continue;
+                }
+                ApiToolConfig.SpeculateSettings settings = tool.getTool().getSpeculate();
+                Matcher matcher = pattern.matcher(input);
+                int toolCalls = 0;
+                while (toolCalls < settings.getMaxCalls() && started < maxCalls && matcher.find()) {
+                    Map<String, String> params = bind(tool, matcher);
+                    String key = key(tool, params);
+                    if (calls.containsKey(key)) {
+                        continue;
+                    }
+                    logger.info("Speculatively executing read-only tool: {}, parameters: {}", tool.getName(), params);
+                    // 先登记再发起调用：发起之后开始的写入一定能看到这次调用
+                    active.add(this);
+                    calls.put(key, new Call(tool.getName(), tool.resolveResourceKey(params),
+                            genericApiService.executeApiCallAsync(tool.getName(), params).toFuture()));
+                    record(tool.getName(), "started");
+                    toolCalls++;
+                    started++;
+                }
+            }
+        }
+
+        /**
+         * 计划中的一个步骤已提交执行：修改类步骤作废同一资源的预先结果，需在步骤提交前调用
+         */
+        public void stepSubmitted(PlanInfo plan) {
+            ApiToolConfigRegistry.Snapshot current = snapshot;
+            if (current == null || calls.isEmpty()) {
+                return;
+            }
+            CompiledApiTool tool = current.getTool(plan.getFunctionName());
+            if (tool == null || tool.getTool().isReadOnly()) {
+                return;
+            }
+            invalidate(tool.resolveResourceKey(ApiToolCallback.toApiParameters(plan.getVariables())));
+        }
+
+        /**
+         * 取出以相同参数预先发起的调用
+         *
+         * @return 没有对应的预先调用时返回 null
+         */
+        public CompletableFuture<String> claim(String toolName, Map<String, String> params) {
+            ApiToolConfigRegistry.Snapshot current = snapshot;
+            if (current == null || calls.isEmpty()) {
+                return null;
+            }
+            CompiledApiTool tool = current.getTool(toolName);
+            Call call = tool != null ? calls.remove(key(tool, params)) : null;
+            if (call == null) {
+                return null;
+            }
+            logger.info("Using speculative result for tool: {}", toolName);
+            record(toolName, "used");
+            return call.result();
+        }
+
+        /**
+         * 请求结束：丢弃未被使用的结果
+         */
+        public void close() {
+            active.remove(this);
+            calls.values().forEach(call -> record(call.toolName(), "discarded"));
+            if (!calls.isEmpty()) {
+                logger.info("Discarded {} unused speculative results", calls.size());
+            }
+            calls.clear();
+        }
+
+        /**
+         * 作废同一资源的预先结果；resourceKey 为 null（修改的资源未知）时全部作废
+         */
+        private void invalidate(String resourceKey) {
+            calls.forEach((key, call) -> {
+                if (resourceKey == null || resourceKey.equals(call.resourceKey())) {
+                    invalidateCall(key);
+                }
+            });
+        }
+
+        private void invalidateCall(String key) {
+            Call call = calls.remove(key);
+            if (call != null) {
+                logger.info("Speculative result for tool {} invalidated by a write to {}", call.toolName(),
+                        call.resourceKey() != null ? call.resourceKey() : "an unknown resource");
+                record(call.toolName(), "invalidated");
+            }
+        }
+
+        /**
+         * 匹配到的命名分组作为同名参数，再加上配置的固定参数
+         */
+        private Map<String, String> bind(CompiledApiTool tool, Matcher matcher) {
+            Map<String, String> params = new TreeMap<>();
+            ApiToolConfig.SpeculateSettings settings = tool.getTool().getSpeculate();
+            if (settings.getParameters() != null) {
+                params.putAll(settings.getParameters());
+            }
+            List<ApiToolConfig.Parameter> parameters = tool.getTool().getParameters();
+            if (parameters != null) {
+                for (ApiToolConfig.Parameter param : parameters) {
+                    try {
+                        String value = matcher.group(param.getName());
+                        if (value != null) {
+                            params.put(param.getName(), value);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // 正则中没有与该参数同名的分组
+                    }
+                }
+            }
+            return params;
+        }
+    }
+
+    private record Call(String toolName, String resourceKey, CompletableFuture<String> result) {
+    }
+}
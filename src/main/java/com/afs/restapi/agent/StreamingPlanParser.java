@@ -0,0 +1,176 @@
+package com.afs.restapi.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量解析流式输出的执行计划
+ * 每收到一段文本就继续扫描，跟踪 JSON 的括号深度和字符串状态，某个顶层 JSON 对象一闭合就立即解析为 PlanInfo，
+ * 不需要等待完整响应，也不需要对整个响应做 Markdown 解析
+ * <p>
+ * 支持与 parseAIResponse 相同的两种格式：
+ * - 响应直接以 { 开头：每个顶层 JSON 对象是一个步骤
+ * - Markdown：只解析 ``` 代码块内的顶层 JSON 对象，代码块外的说明文字（即使包含括号）会被忽略
+ * <p>
+ * 闭合的对象无法解析为步骤（JSON 不合法或缺少 function）时抛出 {@link MalformedPlanException}，
+ * 不会跳过该步骤继续执行后面的步骤；响应结束时调用 {@link #finish()} 检查是否有未闭合（被截断）的步骤。
+ * <p>
+ * 非线程安全，每次规划使用一个实例
+ */
+public class StreamingPlanParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingPlanParser.class);
+
+    private static final String FENCE = "```";
+
+    private final ObjectMapper objectMapper;
+    private final StringBuilder buffer = new StringBuilder();
+
+    private int position;
+    private boolean started;
+    private boolean direct;
+    private boolean inFence;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private int objectStart = -1;
+    private int parsedCount;
+
+    public StreamingPlanParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 追加一段流式文本
+     *
+     * @return 这段文本中闭合的步骤（可能为空）
+     * @throws MalformedPlanException 闭合的对象不是合法的步骤
+     */
+    public List<PlanInfo> feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return List.of();
+        }
+        buffer.append(chunk);
+        return scan();
+    }
+
+    /**
+     * 响应结束：检查最后一个步骤是否完整
+     *
+     * @throws MalformedPlanException 响应在某个步骤的 JSON 中间结束
+     */
+    public void finish() {
+        if (depth > 0) {
+            throw new MalformedPlanException("Plan response ended inside step " + (parsedCount + 1) + ": "
+                    + buffer.substring(objectStart));
+        }
+    }
+
+    /**
+     * 已解析出的步骤数
+     */
+    public int getParsedCount() {
+        return parsedCount;
+    }
+
+    /**
+     * 目前收到的完整文本
+     */
+    public String getText() {
+        return buffer.toString();
+    }
+
+    private List<PlanInfo> scan() {
+        List<PlanInfo> parsed = new ArrayList<>();
+        while (position < buffer.length()) {
+            char c = buffer.charAt(position);
+
+            if (!started) {
+                if (Character.isWhitespace(c)) {
+                    position++;
+                    continue;
+                }
+                started = true;
+                direct = c == '{';
+            }
+
+            if (depth == 0) {
+                if (!direct && c == '`' && (position == 0 || buffer.charAt(position - 1) == '\n')) {
+                    // 代码块标记行：等整行（包括语言标记）到齐后再切换状态
+                    if (buffer.length() - position < FENCE.length()) {
+                        break;
+                    }
+                    if (buffer.indexOf(FENCE, position) == position) {
+                        int lineEnd = buffer.indexOf("\n", position);
+                        if (lineEnd < 0) {
+                            break;
+                        }
+                        inFence = !inFence;
+                        position = lineEnd + 1;
+                        continue;
+                    }
+                }
+                if (c == '{' && (direct || inFence)) {
+                    objectStart = position;
+                    depth = 1;
+                }
+                position++;
+                continue;
+            }
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                parsed.add(parse(buffer.substring(objectStart, position + 1)));
+                objectStart = -1;
+            }
+            position++;
+        }
+        return parsed;
+    }
+
+    private PlanInfo parse(String json) {
+        PlanInfo plan;
+        try {
+            plan = objectMapper.readValue(json, PlanInfo.class);
+        } catch (Exception e) {
+            throw new MalformedPlanException("Unable to parse plan step " + (parsedCount + 1) + ": " + json, e);
+        }
+        if (plan.getFunctionName() == null || plan.getFunctionName().isBlank()) {
+            throw new MalformedPlanException("Plan step " + (parsedCount + 1) + " has no function: " + json);
+        }
+        parsedCount++;
+        logger.debug("Parsed plan step {} while streaming: {}", parsedCount, plan.getFunctionName());
+        return plan;
+    }
+
+    /**
+     * 流式输出的步骤不合法或被截断
+     */
+    public static class MalformedPlanException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public MalformedPlanException(String message) {
+            super(message);
+        }
+
+        public MalformedPlanException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.afs.restapi.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 最终结果（Phase 4）的生成策略
+ * 决定执行结果是直接按模板拼接返回，还是再调用一次 LLM 生成总结：
+ * - template：始终使用模板，不调用 LLM
+ * - adaptive：步骤全部成功且步骤数不超过 max-template-steps 时使用模板（工具结果本身就是 successMessage），
+ *   有步骤失败、多步骤或计划为空时调用 LLM
+ * - llm：始终调用 LLM
+ * <p>
+ * 步骤失败按结果文本识别：❌ 开头、执行异常、工具不存在，以及 API 工具的非 2xx / 限流 / 熔断消息。
+ * 指标：agent.plan.summary{path=template|llm, reason}
+ */
+@Component
+public class SummaryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(SummaryPolicy.class);
+
+    private static final List<String> FAILURE_PREFIXES = List.of("❌", "Error executing", "Tool not found");
+    private static final List<String> FAILURE_MARKERS = List.of(". Status: ", ". Rate limited: ", ". Backend unavailable: ");
+
+    public enum Mode {
+        TEMPLATE, ADAPTIVE, LLM
+    }
+
+    /**
+     * 本次选择的生成方式及原因
+     */
+    public record Decision(boolean template, String reason) {
+    }
+
+    private final Mode mode;
+    private final int maxTemplateSteps;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public SummaryPolicy(MeterRegistry meterRegistry,
+                         @Value("${agent.summary.mode:adaptive}") String mode,
+                         @Value("${agent.summary.max-template-steps:1}") int maxTemplateSteps) {
+        this.meterRegistry = meterRegistry;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.maxTemplateSteps = maxTemplateSteps;
+    }
+
+    /**
+     * 根据模式和执行结果决定是否跳过 LLM，并记录指标
+     *
+     * @param plans       执行计划的步骤
+     * @param stepResults 按计划顺序的步骤结果
+     */
+    public Decision decide(List<PlanInfo> plans, List<String> stepResults) {
+        Decision decision = switch (mode) {
+            case TEMPLATE -> new Decision(true, "forced");
+            case LLM -> new Decision(false, "forced");
+            case ADAPTIVE -> {
+                if (plans.isEmpty()) {
+                    yield new Decision(false, "empty-plan");
+                }
+                if (stepResults.stream().anyMatch(this::isFailure)) {
+                    yield new Decision(false, "failure");
+                }
+                if (plans.size() > maxTemplateSteps) {
+                    yield new Decision(false, "multi-step");
+                }
+                yield new Decision(true, "success");
+            }
+        };
+
+        logger.info("Summary path: {} ({}, mode {})", decision.template() ? "template" : "llm", decision.reason(), mode);
+        meterRegistry.counter("agent.plan.summary",
+                "path", decision.template() ? "template" : "llm",
+                "reason", decision.reason()).increment();
+        return decision;
+    }
+
+    /**
+     * 不调用 LLM 的最终结果：单个步骤直接返回其结果，多个步骤按计划顺序逐条列出
+     */
+    public String renderTemplate(List<PlanInfo> plans, List<String> stepResults) {
+        if (plans.isEmpty()) {
+            return "No actions were needed.";
+        }
+        if (plans.size() == 1) {
+            return unwrap(stepResults.get(0));
+        }
+
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < plans.size(); i++) {
+            if (!summary.isEmpty()) {
+                summary.append("\n");
+            }
+            summary.append(i + 1).append(". ").append(plans.get(i).getFunctionName())
+                    .append(": ").append(unwrap(stepResults.get(i)));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * 步骤结果是否表示失败
+     */
+    public boolean isFailure(String result) {
+        if (result == null) {
+            return true;
+        }
+        String text = unwrap(result).trim();
+        return FAILURE_PREFIXES.stream().anyMatch(text::startsWith)
+                || FAILURE_MARKERS.stream().anyMatch(text::contains);
+    }
+
+    /**
+     * @Tool 方法的结果被序列化为 JSON 字符串（带引号），还原为原始文本
+     */
+    private String unwrap(String result) {
+        if (result == null) {
+            return "";
+        }
+        if (result.length() > 1 && result.startsWith("\"") && result.endsWith("\"")) {
+            try {
+                JsonNode node = objectMapper.readTree(result);
+                if (node.isTextual()) {
+                    return node.textValue();
+                }
+            } catch (Exception e) {
+                logger.debug("Step result is not a JSON string, using it as is");
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package com.afs.restapi.agent;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工具目录快照（不可变）
+ * 同时保存规划提示词中使用的工具描述字符串和 工具名 -> ToolCallback 映射，
+ * 只有在工具注册或移除时才会生成新版本，请求期间直接复用
+ */
+public final class ToolCatalogue {
+
+    private final long version;
+    private final List<ToolCallback> tools;
+    private final Map<String, ToolCallback> toolsByName;
+    private final Map<String, String> descriptionsByName;
+    private final String description;
+
+    private ToolCatalogue(long version, Map<String, ToolCallback> toolsByName,
+                          Map<String, String> descriptionsByName, String description) {
+        this.version = version;
+        this.tools = List.copyOf(toolsByName.values());
+        this.toolsByName = Collections.unmodifiableMap(toolsByName);
+        this.descriptionsByName = Collections.unmodifiableMap(descriptionsByName);
+        this.description = description;
+    }
+
+    /**
+     * 根据工具回调创建快照，同名工具只保留第一个
+     */
+    public static ToolCatalogue of(long version, List<ToolCallback> callbacks) {
+        Map<String, ToolCallback> toolsByName = new LinkedHashMap<>();
+        for (ToolCallback callback : callbacks) {
+            toolsByName.putIfAbsent(callback.getToolDefinition().name(), callback);
+        }
+
+        Map<String, String> descriptionsByName = new LinkedHashMap<>();
+        StringBuilder description = new StringBuilder();
+        for (Map.Entry<String, ToolCallback> entry : toolsByName.entrySet()) {
+            String toolDescription = renderDescription(entry.getValue().getToolDefinition());
+            descriptionsByName.put(entry.getKey(), toolDescription);
+            description.append(toolDescription);
+        }
+        return new ToolCatalogue(version, toolsByName, descriptionsByName, description.toString());
+    }
+
+    /**
+     * 将工具信息转换为 AI 可理解的格式：名称、描述和输入参数 schema
+     */
+    private static String renderDescription(ToolDefinition definition) {
+        return "{\"function\":\"" + definition.name() +
+                "\",\"description\":\"" + definition.description() +
+                "\",\"schema\":\"" + definition.inputSchema() +
+                "\"}";
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ToolCallback> getTools() {
+        return tools;
+    }
+
+    public Map<String, ToolCallback> getToolsByName() {
+        return toolsByName;
+    }
+
+    /**
+     * 预先渲染好的工具描述，用于规划提示词
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 拼接部分工具的描述（如语义预选后的工具），复用预先渲染好的单个工具描述
+     */
+    public String describe(List<ToolCallback> selectedTools) {
+        if (selectedTools == tools) {
+            return description;
+        }
+        StringBuilder result = new StringBuilder();
+        for (ToolCallback tool : selectedTools) {
+            String toolDescription = descriptionsByName.get(tool.getToolDefinition().name());
+            result.append(toolDescription != null ? toolDescription : renderDescription(tool.getToolDefinition()));
+        }
+        return result.toString();
+    }
+
+    public int size() {
+        return tools.size();
+    }
+}
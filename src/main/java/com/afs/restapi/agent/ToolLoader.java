@@ -1,25 +1,43 @@
 package com.afs.restapi.agent;
 
+import com.afs.restapi.service.ApiToolCallbackProvider;
+import com.afs.restapi.service.ApiToolConfigChangedEvent;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 工具加载器，负责动态加载和管理工具函数
  * 自动扫描 Spring Bean 中 @Tool 注解，能够自动发现所有带有 @Tool 注解的 Spring Bean
- * 同时保持对配置生成工具的支持
+ * 同时包含 ApiToolCallbackProvider 根据 api-tools-config.json 生成的工具
+ * <p>
+ * 工具只扫描一次，结果以不可变快照的形式通过 volatile 引用发布：
+ * 读取工具无需加锁，注册/移除工具时复制一份新快照再整体替换（copy-on-write）
  */
 @Component
 @Primary
@@ -27,17 +45,29 @@ public class ToolLoader {
 
     private static final Logger logger = LoggerFactory.getLogger(ToolLoader.class);
 
+    /** 构建时由 generateToolIndex 任务生成，每行一个声明了 @Tool 方法的类名，或以 "package " 开头的已扫描包名 */
+    static final String TOOL_INDEX_LOCATION = "META-INF/tool-beans.idx";
+
+    private static final String INDEX_PACKAGE_PREFIX = "package ";
+
     private final ApplicationContext applicationContext;
 
     private final ChatClient chatClient;
 
-    private final List<ToolCallbackProvider> generalToolProviders = new ArrayList<>();
-    private final List<Object> scannedToolBeans = new ArrayList<>();
-    private boolean hasScanned = false;
+    private final boolean useToolIndex;
+
+    private final ApiToolCallbackProvider apiToolCallbackProvider;
 
-    public ToolLoader(ApplicationContext applicationContext, ChatClient.Builder chatClientBuilder) {
+    private final Object writeLock = new Object();
+    private volatile ToolRegistry registry;
+
+    public ToolLoader(ApplicationContext applicationContext, ChatClient.Builder chatClientBuilder,
+                      @Value("${agent.tools.use-index:true}") boolean useToolIndex,
+                      ApiToolCallbackProvider apiToolCallbackProvider) {
         this.applicationContext = applicationContext;
         this.chatClient = chatClientBuilder.build();
+        this.useToolIndex = useToolIndex;
+        this.apiToolCallbackProvider = apiToolCallbackProvider;
     }
 
     /**
@@ -48,65 +78,82 @@ public class ToolLoader {
     private void initializeTools() {
         logger.info("ToolLoader initialized, starting tool scanning...");
         // 立即扫描所有工具，确保在 MCP 服务器启动前完成
-        ensureToolsScanned();
+        currentRegistry();
     }
 
     /**
-     * 延迟扫描工具 Bean，只在第一次访问时执行
+     * 获取当前工具快照，第一次访问时扫描并发布
      */
-    private synchronized void ensureToolsScanned() {
-        if (!hasScanned) {
-            scanForToolBeans();
+    private ToolRegistry currentRegistry() {
+        ToolRegistry current = registry;
+        if (current != null) {
+            return current;
+        }
+        synchronized (writeLock) {
+            if (registry == null) {
+                registry = ToolRegistry.EMPTY.withToolBeans(scanForToolBeans(), apiToolCallbackProvider.getToolCallbacks());
+            }
+            return registry;
         }
-        initializeGeneralTools();
     }
 
     /**
      * 扫描所有 Spring Bean 中的 @Tool 注解
+     * <p>
+     * 只根据 Bean 定义的类型判断是否包含 @Tool 方法，不会为了扫描而提前创建 Bean（包括懒加载 Bean），
+     * 只有确实承载工具的 Bean 才会被实例化。
+     * 定义类型是接口或抽象类（例如 @Bean 方法声明的返回类型）时无法据此判断，
+     * 对非懒加载的单例改为检查实例的实际类型（这些 Bean 在容器启动时本来就会被创建）。
+     * 如果存在构建时生成的索引 META-INF/tool-beans.idx，索引覆盖的包内直接按索引匹配类名，
+     * 省去对每个 Bean 类的反射；索引未覆盖的类（依赖库、其他模块）仍按反射判断
      */
-    private void scanForToolBeans() {
-        if (hasScanned) {
-            return;
-        }
-
+    private List<Object> scanForToolBeans() {
         logger.info("Scanning for @Tool annotated methods in Spring beans...");
+        long startTime = System.nanoTime();
 
+        ToolIndex toolIndex = useToolIndex ? loadToolIndex() : null;
+        List<Object> toolBeans = new ArrayList<>();
         String[] beanNames = applicationContext.getBeanDefinitionNames();
-        int toolBeansFound = 0;
         int toolMethodsFound = 0;
+        int beansInstantiated = 0;
 
         for (String beanName : beanNames) {
             try {
-                Object bean = applicationContext.getBean(beanName);
-                Class<?> beanClass = bean.getClass();
-
-                // 跳过代理类，获取真实类
-                if (beanClass.getName().contains("$$")) {
-                    beanClass = beanClass.getSuperclass();
+                // 只取类型，不触发 Bean 创建；跳过代理类，获取真实类
+                Class<?> beanType = applicationContext.getType(beanName, false);
+                if (beanType == null) {
+                    continue;
                 }
-
-                // 检查是否有 @Tool 注解的方法
-                Method[] methods = beanClass.getDeclaredMethods();
-                boolean hasToolMethods = false;
-
-                for (Method method : methods) {
-                    if (method.isAnnotationPresent(org.springframework.ai.tool.annotation.Tool.class)) {
-                        hasToolMethods = true;
-                        toolMethodsFound++;
-
-                        org.springframework.ai.tool.annotation.Tool toolAnnotation =
-                                method.getAnnotation(org.springframework.ai.tool.annotation.Tool.class);
-                        logger.debug("Found @Tool method: {}.{} - {}",
-                                beanClass.getSimpleName(), method.getName(), toolAnnotation.description());
+                Object bean = null;
+                if (isInterfaceOrAbstract(beanType)) {
+                    if (!isEagerSingleton(beanName)) {
+                        logger.debug("Skipping bean {}: declared type {} cannot be inspected without creating it",
+                                beanName, beanType.getName());
+                        continue;
                     }
+                    bean = applicationContext.getBean(beanName);
+                    beansInstantiated++;
+                    beanType = bean.getClass();
                 }
+                Class<?> beanClass = ClassUtils.getUserClass(beanType);
 
-                if (hasToolMethods) {
-                    scannedToolBeans.add(bean);
-                    toolBeansFound++;
-                    logger.info("Registered tool bean: {} ({}) with {} @Tool methods", 
-                            beanName, beanClass.getSimpleName(), 
-                            methods.length > 0 ? (int)java.util.Arrays.stream(methods).filter(m -> m.isAnnotationPresent(org.springframework.ai.tool.annotation.Tool.class)).count() : 0);
+                boolean candidate = toolIndex != null && toolIndex.covers(beanClass)
+                        ? toolIndex.contains(beanClass)
+                        : countToolMethods(beanClass) > 0;
+                if (!candidate) {
+                    continue;
+                }
+
+                int beanToolMethods = countToolMethods(beanClass);
+                if (beanToolMethods > 0) {
+                    if (bean == null) {
+                        bean = applicationContext.getBean(beanName);
+                        beansInstantiated++;
+                    }
+                    toolBeans.add(bean);
+                    toolMethodsFound += beanToolMethods;
+                    logger.info("Registered tool bean: {} ({}) with {} @Tool methods",
+                            beanName, beanClass.getSimpleName(), beanToolMethods);
                 }
 
             } catch (Exception e) {
@@ -115,30 +162,141 @@ public class ToolLoader {
             }
         }
 
-        logger.info("Tool scanning completed: {} beans with {} @Tool methods found",
-                toolBeansFound, toolMethodsFound);
-        hasScanned = true;
+        logger.info("Tool scanning completed in {} ms (index: {}): {} beans with {} @Tool methods found, "
+                        + "{} of {} bean definitions instantiated for scanning",
+                (System.nanoTime() - startTime) / 1_000_000, toolIndex != null ? "yes" : "no",
+                toolBeans.size(), toolMethodsFound, beansInstantiated, beanNames.length);
+        return toolBeans;
+    }
+
+    private static boolean isInterfaceOrAbstract(Class<?> type) {
+        return type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type == Object.class;
     }
 
     /**
-     * 初始化通用工具
+     * 是否为非懒加载的单例：这类 Bean 在容器启动时总会被创建，提前获取实例不会多创建 Bean
      */
-    private void initializeGeneralTools() {
-        // 将所有扫描到的工具 Bean 作为通用工具
-        for (Object toolBean : scannedToolBeans) {
-            try {
-                ToolCallbackProvider provider = MethodToolCallbackProvider.builder()
-                        .toolObjects(toolBean)
-                        .build();
-                generalToolProviders.add(provider);
+    private boolean isEagerSingleton(String beanName) {
+        if (!(applicationContext instanceof ConfigurableApplicationContext configurable)) {
+            return false;
+        }
+        BeanDefinition definition = configurable.getBeanFactory().getBeanDefinition(beanName);
+        return definition.isSingleton() && !definition.isLazyInit() && !definition.isAbstract();
+    }
 
-                logger.debug("Added tool bean {} to general tools with {} callbacks",
-                        toolBean.getClass().getSimpleName(), provider.getToolCallbacks().length);
+    /**
+     * 统计类中 @Tool 注解的方法数量
+     */
+    private int countToolMethods(Class<?> beanClass) {
+        int count = 0;
+        for (Method method : beanClass.getDeclaredMethods()) {
+            Tool toolAnnotation = method.getAnnotation(Tool.class);
+            if (toolAnnotation != null) {
+                count++;
+                logger.debug("Found @Tool method: {}.{} - {}",
+                        beanClass.getSimpleName(), method.getName(), toolAnnotation.description());
+            }
+        }
+        return count;
+    }
 
-            } catch (Exception e) {
-                logger.error("Failed to create tool provider for bean: {}",
-                        toolBean.getClass().getSimpleName(), e);
+    /**
+     * 读取构建时生成的 @Tool 类索引，不存在时返回 null，回退到按类型反射扫描
+     */
+    private ToolIndex loadToolIndex() {
+        try {
+            Resource[] resources = applicationContext.getResources("classpath*:" + TOOL_INDEX_LOCATION);
+            if (resources.length == 0) {
+                logger.info("No tool index found at {}, falling back to reflective scanning", TOOL_INDEX_LOCATION);
+                return null;
             }
+
+            Set<String> toolClasses = new HashSet<>();
+            Set<String> packages = new HashSet<>();
+            for (Resource resource : resources) {
+                String content = resource.getContentAsString(StandardCharsets.UTF_8);
+                for (String line : content.split("\\R")) {
+                    String entry = line.trim();
+                    if (entry.startsWith(INDEX_PACKAGE_PREFIX)) {
+                        packages.add(entry.substring(INDEX_PACKAGE_PREFIX.length()).trim());
+                    } else if (!entry.isEmpty()) {
+                        toolClasses.add(entry);
+                    }
+                }
+            }
+            logger.info("Loaded tool index with {} classes covering {} packages", toolClasses.size(), packages.size());
+            return new ToolIndex(toolClasses, packages);
+        } catch (Exception e) {
+            logger.warn("Failed to read tool index, falling back to reflective scanning", e);
+            return null;
+        }
+    }
+
+    /**
+     * 构建时生成的 @Tool 类索引：声明了 @Tool 方法的类名，以及生成索引时扫描过的包
+     */
+    private record ToolIndex(Set<String> toolClasses, Set<String> packages) {
+
+        /** 类所在的包参与了索引生成时，索引中没有该类就说明它没有 @Tool 方法 */
+        boolean covers(Class<?> beanClass) {
+            return packages.contains(beanClass.getPackageName());
+        }
+
+        boolean contains(Class<?> beanClass) {
+            return toolClasses.contains(beanClass.getName());
+        }
+    }
+
+    /**
+     * 获取工具目录快照
+     * 快照在工具注册或移除之前一直有效，不会每次请求都重新构建
+     *
+     * @return 当前版本的工具目录
+     */
+    public ToolCatalogue getToolCatalogue() {
+        return currentRegistry().catalogue();
+    }
+
+    /**
+     * 注册新的工具 Bean，发布新的工具快照
+     */
+    public void registerToolBean(Object toolBean) {
+        synchronized (writeLock) {
+            ToolRegistry current = currentRegistry();
+            if (current.toolBeans().containsKey(toolBean)) {
+                return;
+            }
+            List<Object> toolBeans = new ArrayList<>(current.toolBeans().keySet());
+            toolBeans.add(toolBean);
+            registry = current.withToolBeans(toolBeans, apiToolCallbackProvider.getToolCallbacks());
+        }
+    }
+
+    /**
+     * 移除工具 Bean，发布新的工具快照
+     */
+    public void unregisterToolBean(Object toolBean) {
+        synchronized (writeLock) {
+            ToolRegistry current = currentRegistry();
+            if (!current.toolBeans().containsKey(toolBean)) {
+                return;
+            }
+            List<Object> toolBeans = new ArrayList<>(current.toolBeans().keySet());
+            toolBeans.remove(toolBean);
+            registry = current.withToolBeans(toolBeans, apiToolCallbackProvider.getToolCallbacks());
+        }
+    }
+
+    /**
+     * API 工具配置重新加载后按新配置生成的工具发布新版本的工具目录，
+     * 依赖目录版本的缓存（执行计划缓存、工具预选索引）随之失效
+     */
+    @EventListener
+    public void onApiToolConfigChanged(ApiToolConfigChangedEvent event) {
+        synchronized (writeLock) {
+            ToolRegistry current = currentRegistry();
+            registry = current.withToolBeans(new ArrayList<>(current.toolBeans().keySet()),
+                    apiToolCallbackProvider.getToolCallbacks());
         }
     }
 
@@ -148,24 +306,57 @@ public class ToolLoader {
      * @return 所有可用工具回调列表
      */
     public List<ToolCallback> getAllAvailableTools() {
-        List<ToolCallback> allTools = new ArrayList<>();
-
-        allTools.addAll(getGeneralTools());
-
-        return allTools.stream().distinct().toList();
+        return getGeneralTools();
     }
 
     /**
      * 获取所有通用工具回调
      *
-     * @return 通用工具回调列表
+     * @return 通用工具回调列表（不可变）
      */
     public List<ToolCallback> getGeneralTools() {
-        ensureToolsScanned();
-        List<ToolCallback> allGeneralTools = new ArrayList<>();
-        for (ToolCallbackProvider provider : generalToolProviders) {
-            allGeneralTools.addAll(Arrays.asList(provider.getToolCallbacks()));
+        return currentRegistry().catalogue().getTools();
+    }
+
+    /**
+     * 工具注册表快照：工具 Bean -> 该 Bean 的工具回调，以及由此生成的工具目录
+     */
+    private record ToolRegistry(Map<Object, List<ToolCallback>> toolBeans, ToolCatalogue catalogue) {
+
+        static final ToolRegistry EMPTY = new ToolRegistry(Map.of(), ToolCatalogue.of(0, List.of()));
+
+        /**
+         * 基于新的工具 Bean 列表和配置生成的工具回调生成下一个版本的快照，已有 Bean 的工具回调直接复用
+         */
+        ToolRegistry withToolBeans(List<Object> beans, ToolCallback[] generatedCallbacks) {
+            Map<Object, List<ToolCallback>> nextToolBeans = new LinkedHashMap<>();
+            List<ToolCallback> callbacks = new ArrayList<>();
+
+            for (Object toolBean : beans) {
+                List<ToolCallback> beanCallbacks = toolBeans.get(toolBean);
+                try {
+                    if (beanCallbacks == null) {
+                        ToolCallbackProvider provider = MethodToolCallbackProvider.builder()
+                                .toolObjects(toolBean)
+                                .build();
+                        beanCallbacks = List.of(provider.getToolCallbacks());
+                    }
+                    nextToolBeans.put(toolBean, beanCallbacks);
+                    callbacks.addAll(beanCallbacks);
+
+                    logger.debug("Added tool bean {} to general tools with {} callbacks",
+                            toolBean.getClass().getSimpleName(), beanCallbacks.size());
+                } catch (Exception e) {
+                    logger.error("Failed to create tool provider for bean: {}",
+                            toolBean.getClass().getSimpleName(), e);
+                }
+            }
+
+            callbacks.addAll(List.of(generatedCallbacks));
+
+            ToolCatalogue nextCatalogue = ToolCatalogue.of(catalogue.getVersion() + 1, callbacks);
+            logger.info("Tool catalogue v{} published with {} tools", nextCatalogue.getVersion(), nextCatalogue.size());
+            return new ToolRegistry(Collections.unmodifiableMap(nextToolBeans), nextCatalogue);
         }
-        return allGeneralTools;
     }
 }
@@ -0,0 +1,124 @@
+package com.afs.restapi.agent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工具语义预选
+ * 工具描述只在工具目录版本变化时嵌入一次，规划前按用户输入检索最相关的 top-k 个工具放入提示词，
+ * 避免工具越来越多时提示词和 LLM 延迟线性增长
+ * <p>
+ * 以下情况回退为完整工具列表：未开启、工具数量不超过 min-catalogue-size 或 top-k、检索无结果或检索失败
+ */
+@Component
+public class ToolSelector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolSelector.class);
+
+    private static final String TOOL_NAME_METADATA = "toolName";
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final int topK;
+    private final double similarityThreshold;
+    private final int minCatalogueSize;
+
+    private volatile ToolIndex toolIndex;
+
+    public ToolSelector(EmbeddingModel embeddingModel,
+                        @Value("${agent.tool-selection.enabled:true}") boolean enabled,
+                        @Value("${agent.tool-selection.top-k:8}") int topK,
+                        @Value("${agent.tool-selection.similarity-threshold:0.0}") double similarityThreshold,
+                        @Value("${agent.tool-selection.min-catalogue-size:16}") int minCatalogueSize) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.topK = topK;
+        this.similarityThreshold = similarityThreshold;
+        this.minCatalogueSize = minCatalogueSize;
+    }
+
+    /**
+     * 为用户输入选择放入规划提示词的工具
+     *
+     * @param userInput 用户输入
+     * @param catalogue 当前工具目录
+     * @return 选中的工具；回退时返回 catalogue.getTools() 本身
+     */
+    public List<ToolCallback> select(String userInput, ToolCatalogue catalogue) {
+        if (!enabled || catalogue.size() <= Math.max(topK, minCatalogueSize)) {
+            return catalogue.getTools();
+        }
+
+        try {
+            List<Document> matches = indexFor(catalogue).similaritySearch(SearchRequest.builder()
+                    .query(userInput)
+                    .topK(topK)
+                    .similarityThreshold(similarityThreshold)
+                    .build());
+
+            List<ToolCallback> selected = new ArrayList<>(matches.size());
+            for (Document match : matches) {
+                ToolCallback tool = catalogue.getToolsByName().get((String) match.getMetadata().get(TOOL_NAME_METADATA));
+                if (tool != null) {
+                    selected.add(tool);
+                }
+            }
+
+            if (selected.isEmpty()) {
+                logger.info("Tool selection found no relevant tools, using all {} tools", catalogue.size());
+                return catalogue.getTools();
+            }
+
+            logger.info("Selected {} of {} tools for planning", selected.size(), catalogue.size());
+            return selected;
+        } catch (Exception e) {
+            logger.warn("Tool selection failed, using all {} tools", catalogue.size(), e);
+            return catalogue.getTools();
+        }
+    }
+
+    /**
+     * 获取与工具目录版本对应的向量索引，版本变化时重新嵌入
+     */
+    private VectorStore indexFor(ToolCatalogue catalogue) {
+        ToolIndex current = toolIndex;
+        if (current != null && current.version() == catalogue.getVersion()) {
+            return current.store();
+        }
+
+        synchronized (this) {
+            current = toolIndex;
+            if (current != null && current.version() == catalogue.getVersion()) {
+                return current.store();
+            }
+
+            List<Document> documents = new ArrayList<>(catalogue.size());
+            for (ToolCallback tool : catalogue.getTools()) {
+                String name = tool.getToolDefinition().name();
+                documents.add(new Document(name + ": " + tool.getToolDefinition().description(),
+                        Map.of(TOOL_NAME_METADATA, name)));
+            }
+
+            VectorStore store = SimpleVectorStore.builder(embeddingModel).build();
+            store.add(documents);
+            toolIndex = new ToolIndex(catalogue.getVersion(), store);
+            logger.info("Embedded {} tool descriptions for catalogue v{}", documents.size(), catalogue.getVersion());
+            return store;
+        }
+    }
+
+    private record ToolIndex(long version, VectorStore store) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.afs.restapi.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * actuator 端点：/actuator/apibackends
+ * 展示各后端主机的熔断状态、失败率、并发调用数、延迟分位数和当前的自适应超时
+ */
+@Component
+@Endpoint(id = "apibackends")
+public class ApiBackendEndpoint {
+
+    private final ApiBackendGuard backendGuard;
+
+    public ApiBackendEndpoint(ApiBackendGuard backendGuard) {
+        this.backendGuard = backendGuard;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> backends() {
+        return backendGuard.backendStats();
+    }
+}
@@ -0,0 +1,462 @@
+package com.afs.restapi.config;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 按后端主机（host:port）隔离 API 工具调用
+ * <p>
+ * - 舱壁：每个主机同时进行的调用数有上限，超过后等待 max-wait-ms，仍拿不到许可时直接拒绝；
+ *   非阻塞调用不占用线程等待，而是每隔几毫秒重试一次，直到 max-wait-ms
+ * - 熔断：最近 sliding-window 次调用的失败率超过阈值后打开，open-duration 内直接拒绝；
+ *   之后进入半开状态放行 half-open-calls 次试探调用，全部成功才关闭，任一失败重新打开。
+ *   只有半开状态下放行的试探调用计入试探结果，打开前发出、之后才返回的调用不影响半开判断
+ * - 自适应超时：按最近调用耗时的分位数乘以 multiplier 作为读取超时，
+ *   不低于 min-ms，不超过工具配置的 readTimeoutMs；样本不足时和半开试探时使用 readTimeoutMs。
+ *   超时的调用按已等待的时长记为截尾样本（实际耗时至少这么长），避免样本只剩快速返回的调用而使超时越算越短
+ * <p>
+ * 连接失败、超时和 5xx 计为失败，4xx 说明后端正常，计为成功。
+ * 状态通过 actuator 端点 apibackends 暴露，拒绝次数记录在 agent.api.backend.rejected{host, reason}
+ */
+@Component
+public class ApiBackendGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiBackendGuard.class);
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final long ASYNC_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final MeterRegistry meterRegistry;
+    private final int maxConcurrentCalls;
+    private final long maxWaitMs;
+    private final int failureRateThreshold;
+    private final int slidingWindow;
+    private final int minimumCalls;
+    private final long openMillis;
+    private final int halfOpenCalls;
+    private final double timeoutPercentile;
+    private final double timeoutMultiplier;
+    private final long timeoutMinMs;
+    private final int timeoutMinSamples;
+    private final LongSupplier nanoTime;
+
+    private final Map<String, Backend> backends = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ApiBackendGuard(MeterRegistry meterRegistry,
+                           @Value("${agent.api-tools.backend.max-concurrent-calls:16}") int maxConcurrentCalls,
+                           @Value("${agent.api-tools.backend.max-wait-ms:100}") long maxWaitMs,
+                           @Value("${agent.api-tools.backend.breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                           @Value("${agent.api-tools.backend.breaker.sliding-window:20}") int slidingWindow,
+                           @Value("${agent.api-tools.backend.breaker.minimum-calls:10}") int minimumCalls,
+                           @Value("${agent.api-tools.backend.breaker.open-duration:30s}") Duration openDuration,
+                           @Value("${agent.api-tools.backend.breaker.half-open-calls:3}") int halfOpenCalls,
+                           @Value("${agent.api-tools.backend.timeout.percentile:0.99}") double timeoutPercentile,
+                           @Value("${agent.api-tools.backend.timeout.multiplier:3.0}") double timeoutMultiplier,
+                           @Value("${agent.api-tools.backend.timeout.min-ms:1000}") long timeoutMinMs,
+                           @Value("${agent.api-tools.backend.timeout.min-samples:20}") int timeoutMinSamples) {
+        this(meterRegistry, maxConcurrentCalls, maxWaitMs, failureRateThreshold, slidingWindow, minimumCalls,
+                openDuration, halfOpenCalls, timeoutPercentile, timeoutMultiplier, timeoutMinMs, timeoutMinSamples,
+                System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime 单调时钟（纳秒），用于熔断打开时长和调用耗时，测试时可以替换
+     */
+    ApiBackendGuard(MeterRegistry meterRegistry, int maxConcurrentCalls, long maxWaitMs, int failureRateThreshold,
+                    int slidingWindow, int minimumCalls, Duration openDuration, int halfOpenCalls,
+                    double timeoutPercentile, double timeoutMultiplier, long timeoutMinMs, int timeoutMinSamples,
+                    LongSupplier nanoTime) {
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitMs = maxWaitMs;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slidingWindow = slidingWindow;
+        this.minimumCalls = Math.min(minimumCalls, slidingWindow);
+        this.openMillis = openDuration.toMillis();
+        this.halfOpenCalls = halfOpenCalls;
+        this.timeoutPercentile = timeoutPercentile;
+        this.timeoutMultiplier = timeoutMultiplier;
+        this.timeoutMinMs = timeoutMinMs;
+        this.timeoutMinSamples = timeoutMinSamples;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * 获取调用许可，最多等待 max-wait-ms（同步调用）
+     *
+     * @throws BackendUnavailableException 熔断打开或舱壁已满
+     */
+    public Permit acquire(URI uri) {
+        return acquire(uri, maxWaitMs);
+    }
+
+    /**
+     * 获取调用许可，不等待
+     *
+     * @throws BackendUnavailableException 熔断打开或舱壁已满
+     */
+    public Permit tryAcquire(URI uri) {
+        return acquire(uri, 0);
+    }
+
+    /**
+     * 非阻塞地获取调用许可：舱壁已满时不占用线程，每隔几毫秒重试一次，最多等待 max-wait-ms
+     * <p>
+     * 订阅时才开始获取；等待期间取消时没有占用许可
+     *
+     * @return 发出许可，或以 {@link BackendUnavailableException} 结束（熔断打开或等待超时）
+     */
+    public Mono<Permit> acquireAsync(URI uri) {
+        return Mono.defer(() -> {
+            Backend backend = backend(uri);
+            return acquireUntil(backend, nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+        });
+    }
+
+    private Mono<Permit> acquireUntil(Backend backend, long deadline) {
+        long remaining = deadline - nanoTime.getAsLong();
+        Permit permit = admit(backend, 0, remaining <= 0);
+        if (permit != null) {
+            return Mono.just(permit);
+        }
+        return Mono.delay(Duration.ofNanos(Math.min(ASYNC_RETRY_NANOS, remaining)))
+                .then(Mono.defer(() -> acquireUntil(backend, deadline)));
+    }
+
+    private Permit acquire(URI uri, long waitMs) {
+        return admit(backend(uri), waitMs, true);
+    }
+
+    /**
+     * @param rejectWhenFull 舱壁已满时抛出异常（并计入拒绝次数），否则返回 null 由调用方稍后重试
+     */
+    private Permit admit(Backend backend, long waitMs, boolean rejectWhenFull) {
+        Admission admission = backend.allowCall();
+        if (admission == null) {
+            reject(backend, "open");
+            throw new BackendUnavailableException("circuit breaker for " + backend.host + " is open");
+        }
+
+        boolean acquired;
+        try {
+            acquired = waitMs > 0
+                    ? backend.bulkhead.tryAcquire(waitMs, TimeUnit.MILLISECONDS)
+                    : backend.bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            backend.cancelTrial(admission);
+            if (!rejectWhenFull) {
+                return null;
+            }
+            reject(backend, "bulkhead");
+            throw new BackendUnavailableException("too many concurrent calls to " + backend.host);
+        }
+        return new Permit(backend, admission, nanoTime.getAsLong());
+    }
+
+    /**
+     * 本次调用使用的读取超时；半开试探时使用配置的 readTimeoutMs，避免按故障前的延迟过早判定失败
+     */
+    public Duration responseTimeout(URI uri, ApiToolConfig.HttpSettings settings) {
+        long configured = settings.getReadTimeoutMs();
+        long adaptive = backend(uri).adaptiveTimeoutMs();
+        if (adaptive <= 0) {
+            return Duration.ofMillis(configured);
+        }
+        return Duration.ofMillis(Math.min(configured, Math.max(timeoutMinMs, adaptive)));
+    }
+
+    /**
+     * 各后端的熔断状态、并发数和延迟统计
+     */
+    public Map<String, Map<String, Object>> backendStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        backends.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> stats.put(entry.getKey(), entry.getValue().stats()));
+        return stats;
+    }
+
+    private Backend backend(URI uri) {
+        int port = uri.getPort() >= 0 ? uri.getPort() : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        return backends.computeIfAbsent(uri.getHost() + ":" + port, Backend::new);
+    }
+
+    private void reject(Backend backend, String reason) {
+        meterRegistry.counter("agent.api.backend.rejected", "host", backend.host, "reason", reason).increment();
+    }
+
+    /**
+     * 后端是否失败：HTTP 错误响应只有 5xx 计为失败，其余异常（连接失败、超时等）都计为失败
+     */
+    static boolean isBackendFailure(Throwable error) {
+        HttpStatusCode status = null;
+        if (error instanceof RestClientResponseException e) {
+            status = e.getStatusCode();
+        } else if (error instanceof WebClientResponseException e) {
+            status = e.getStatusCode();
+        }
+        return status == null || status.is5xxServerError();
+    }
+
+    /**
+     * 是否为读取超时（同步调用为 SocketTimeoutException，非阻塞调用为 Netty 的 ReadTimeoutException）
+     */
+    static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof TimeoutException
+                    || cause instanceof ReadTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 调用许可，调用结束后必须调用 {@link #complete(Throwable)} 或 {@link #cancel()} 归还
+     */
+    public final class Permit {
+
+        private final Backend backend;
+        private final Admission admission;
+        private final long startNanos;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Permit(Backend backend, Admission admission, long startNanos) {
+            this.backend = backend;
+            this.admission = admission;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 记录调用结果并归还许可
+         *
+         * @param error 调用异常，成功时为 null
+         */
+        public void complete(Throwable error) {
+            if (done.compareAndSet(false, true)) {
+                backend.bulkhead.release();
+                backend.record(admission, error == null || !isBackendFailure(error), error != null && isTimeout(error),
+                        TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong() - startNanos));
+            }
+        }
+
+        /**
+         * 调用被取消，只归还许可，不记录结果
+         */
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                backend.bulkhead.release();
+                backend.cancelTrial(admission);
+            }
+        }
+    }
+
+    /**
+     * 熔断打开或舱壁已满时拒绝调用
+     */
+    public static class BackendUnavailableException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public BackendUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 放行时的状态
+     *
+     * @param trial 是否为半开状态下的试探调用
+     * @param epoch 放行时的状态代数，每次状态转换加一
+     */
+    private record Admission(boolean trial, long epoch) {
+    }
+
+    /**
+     * 单个后端主机的舱壁、熔断和延迟样本
+     */
+    private final class Backend {
+
+        private final String host;
+        private final Semaphore bulkhead = new Semaphore(maxConcurrentCalls);
+
+        // 以下状态由 this 保护
+        private final boolean[] outcomes = new boolean[slidingWindow];
+        private int outcomeCount;
+        private int outcomeIndex;
+        private int failures;
+        private State state = State.CLOSED;
+        private long epoch;
+        private long openedAtNanos;
+        private int trialsStarted;
+        private int trialsSucceeded;
+
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private int latencyCount;
+        private int latencyIndex;
+        private long adaptiveTimeoutMs;
+
+        private Backend(String host) {
+            this.host = host;
+        }
+
+        /**
+         * @return 拒绝时返回 null
+         */
+        synchronized Admission allowCall() {
+            if (state == State.OPEN) {
+                if (millisSinceOpened() < openMillis) {
+                    return null;
+                }
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialsStarted >= halfOpenCalls) {
+                    return null;
+                }
+                trialsStarted++;
+                return new Admission(true, epoch);
+            }
+            return new Admission(false, epoch);
+        }
+
+        synchronized void cancelTrial(Admission admission) {
+            if (isCurrentTrial(admission) && trialsStarted > 0) {
+                trialsStarted--;
+            }
+        }
+
+        synchronized void record(Admission admission, boolean success, boolean timedOut, long latencyMs) {
+            if (success || timedOut) {
+                latencies[latencyIndex] = latencyMs;
+                latencyIndex = (latencyIndex + 1) % latencies.length;
+                latencyCount = Math.min(latencyCount + 1, latencies.length);
+                adaptiveTimeoutMs = computeTimeout();
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (!isCurrentTrial(admission)) {
+                    return;
+                }
+                if (!success) {
+                    transition(State.OPEN);
+                } else if (++trialsSucceeded >= halfOpenCalls) {
+                    transition(State.CLOSED);
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                return;
+            }
+
+            if (outcomeCount == outcomes.length && !outcomes[outcomeIndex]) {
+                failures--;
+            }
+            outcomes[outcomeIndex] = success;
+            outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+            outcomeCount = Math.min(outcomeCount + 1, outcomes.length);
+            if (!success) {
+                failures++;
+            }
+            if (outcomeCount >= minimumCalls && failures * 100 >= failureRateThreshold * outcomeCount) {
+                transition(State.OPEN);
+            }
+        }
+
+        /**
+         * @return 样本不足或半开试探期间返回 0
+         */
+        synchronized long adaptiveTimeoutMs() {
+            return state == State.HALF_OPEN ? 0 : adaptiveTimeoutMs;
+        }
+
+        private long millisSinceOpened() {
+            return TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong() - openedAtNanos);
+        }
+
+        private boolean isCurrentTrial(Admission admission) {
+            return state == State.HALF_OPEN && admission.trial() && admission.epoch() == epoch;
+        }
+
+        private long computeTimeout() {
+            if (latencyCount < timeoutMinSamples) {
+                return 0;
+            }
+            return (long) Math.ceil(percentile(timeoutPercentile) * timeoutMultiplier);
+        }
+
+        private long percentile(double percentile) {
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        private void transition(State next) {
+            logger.warn("Circuit breaker for {} changed from {} to {}", host, state, next);
+            state = next;
+            epoch++;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+            if (next == State.OPEN) {
+                openedAtNanos = nanoTime.getAsLong();
+            }
+            if (next == State.CLOSED) {
+                Arrays.fill(outcomes, false);
+                outcomeCount = 0;
+                outcomeIndex = 0;
+                failures = 0;
+            }
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("state", state);
+            stats.put("failureRate", outcomeCount == 0 ? 0 : failures * 100 / outcomeCount);
+            stats.put("calls", outcomeCount);
+            stats.put("inFlight", maxConcurrentCalls - bulkhead.availablePermits());
+            stats.put("maxConcurrentCalls", maxConcurrentCalls);
+            if (state == State.OPEN) {
+                stats.put("retryInMs", Math.max(0, openMillis - millisSinceOpened()));
+            }
+            if (latencyCount > 0) {
+                stats.put("p50Ms", percentile(0.5));
+                stats.put("p99Ms", percentile(0.99));
+            }
+            stats.put("adaptiveTimeoutMs", adaptiveTimeoutMs > 0 ? Math.max(timeoutMinMs, adaptiveTimeoutMs) : null);
+            return stats;
+        }
+    }
+}
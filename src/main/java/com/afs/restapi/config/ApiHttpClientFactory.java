@@ -0,0 +1,260 @@
+package com.afs.restapi.config;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带连接池的 HTTP 客户端工厂
+ * 每个客户端（按名称，通常是 API 工具名）独享一个 Apache HttpClient 连接池，
+ * 按 HttpSettings 配置连接/读取超时、最大连接数（同时作为单路由上限）和 keep-alive 时长；
+ * 连接池状态通过 Micrometer 和 actuator 端点 apipool 暴露
+ * <p>
+ * 非阻塞调用使用 Reactor Netty 的 WebClient，按同样的设置创建独立的连接池
+ * <p>
+ * 读取超时在每次请求时由 ApiBackendGuard 按后端主机的延迟分位数计算，readTimeoutMs 为上限
+ */
+@Component
+public class ApiHttpClientFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiHttpClientFactory.class);
+
+    private static final String POOL_METRIC_PREFIX = "httpcomponents.httpclient.pool";
+
+    private final MeterRegistry meterRegistry;
+    private final ApiBackendGuard backendGuard;
+    private final Map<String, PooledClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ReactiveClient> reactiveClients = new ConcurrentHashMap<>();
+
+    public ApiHttpClientFactory(MeterRegistry meterRegistry, ApiBackendGuard backendGuard) {
+        this.meterRegistry = meterRegistry;
+        this.backendGuard = backendGuard;
+    }
+
+    /**
+     * 获取指定名称的 RestTemplate，设置变化时重建连接池
+     */
+    public RestTemplate restTemplate(String name, ApiToolConfig.HttpSettings settings) {
+        PooledClient current = clients.get(name);
+        if (current != null && current.settings().equals(settings)) {
+            return current.restTemplate();
+        }
+
+        synchronized (clients) {
+            current = clients.get(name);
+            if (current != null && current.settings().equals(settings)) {
+                return current.restTemplate();
+            }
+            PooledClient created = create(name, settings);
+            clients.put(name, created);
+            if (current != null) {
+                closeLater(name, current, current.settings());
+            }
+            return created.restTemplate();
+        }
+    }
+
+    /**
+     * 获取指定名称的非阻塞 WebClient，设置变化时重建连接池
+     */
+    public WebClient webClient(String name, ApiToolConfig.HttpSettings settings) {
+        ReactiveClient current = reactiveClients.get(name);
+        if (current != null && current.settings().equals(settings)) {
+            return current.webClient();
+        }
+
+        synchronized (reactiveClients) {
+            current = reactiveClients.get(name);
+            if (current != null && current.settings().equals(settings)) {
+                return current.webClient();
+            }
+            ReactiveClient created = createReactive(name, settings);
+            reactiveClients.put(name, created);
+            if (current != null) {
+                closeLater(name, current, current.settings());
+            }
+            return created.webClient();
+        }
+    }
+
+    private ReactiveClient createReactive(String name, ApiToolConfig.HttpSettings settings) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("api-" + name)
+                .maxConnections(settings.getMaxConnections())
+                .pendingAcquireTimeout(Duration.ofMillis(settings.getConnectTimeoutMs()))
+                .maxIdleTime(Duration.ofMillis(settings.getKeepAliveMs()))
+                .evictInBackground(Duration.ofMillis(settings.getKeepAliveMs()))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, settings.getConnectTimeoutMs())
+                .responseTimeout(Duration.ofMillis(settings.getReadTimeoutMs()));
+        WebClient webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter((request, next) -> next.exchange(ClientRequest.from(request)
+                        .httpRequest(httpRequest -> httpRequest.<HttpClientRequest>getNativeRequest()
+                                .responseTimeout(backendGuard.responseTimeout(request.url(), settings)))
+                        .build()))
+                .build();
+
+        return new ReactiveClient(settings, connectionProvider, webClient);
+    }
+
+    /**
+     * 释放不再使用的连接池（例如工具已从配置中删除）
+     */
+    public void release(String name) {
+        PooledClient pooled = clients.remove(name);
+        if (pooled != null) {
+            closeLater(name, pooled, pooled.settings());
+        }
+        ReactiveClient reactive = reactiveClients.remove(name);
+        if (reactive != null) {
+            closeLater(name, reactive, reactive.settings());
+        }
+        logger.info("HTTP connection pool '{}' released", name);
+    }
+
+    /**
+     * 各连接池的当前状态
+     */
+    public Map<String, Map<String, Object>> poolStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        clients.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    PoolStats total = entry.getValue().connectionManager().getTotalStats();
+                    Map<String, Object> pool = new LinkedHashMap<>();
+                    pool.put("leased", total.getLeased());
+                    pool.put("available", total.getAvailable());
+                    pool.put("pending", total.getPending());
+                    pool.put("max", total.getMax());
+                    pool.put("routes", entry.getValue().connectionManager().getRoutes().size());
+                    pool.put("settings", entry.getValue().settings());
+                    stats.put(entry.getKey(), pool);
+                });
+        return stats;
+    }
+
+    private PooledClient create(String name, ApiToolConfig.HttpSettings settings) {
+        Timeout connectTimeout = Timeout.ofMilliseconds(settings.getConnectTimeoutMs());
+        Timeout readTimeout = Timeout.ofMilliseconds(settings.getReadTimeoutMs());
+        TimeValue keepAlive = TimeValue.ofMilliseconds(settings.getKeepAliveMs());
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.getMaxConnections())
+                .setMaxConnPerRoute(settings.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(readTimeout)
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(connectTimeout)
+                        .setResponseTimeout(readTimeout)
+                        .build())
+                // 服务端 Keep-Alive 头给出的时长更短时以服务端为准
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue server = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return server != null && server.compareTo(keepAlive) < 0 ? server : keepAlive;
+                })
+                .evictIdleConnections(keepAlive)
+                .evictExpiredConnections()
+                .build();
+
+        // 重建连接池时先移除旧连接池的指标，否则同名 gauge 仍指向旧连接池
+        meterRegistry.getMeters().stream()
+                .filter(meter -> meter.getId().getName().startsWith(POOL_METRIC_PREFIX)
+                        && name.equals(meter.getId().getTag("httpclient")))
+                .toList()
+                .forEach(meterRegistry::remove);
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+        logger.info("HTTP connection pool '{}' created with {}", name, settings);
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(connectTimeout)
+                    .setResponseTimeout(Timeout.of(backendGuard.responseTimeout(uri, settings)))
+                    .build());
+            return context;
+        });
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        return new PooledClient(settings, connectionManager, httpClient, restTemplate);
+    }
+
+    /**
+     * 被替换的连接池延迟到最长请求时间之后再关闭，正在使用旧连接池的调用可以正常完成
+     */
+    private void closeLater(String name, Object client, ApiToolConfig.HttpSettings settings) {
+        long delay = (long) settings.getConnectTimeoutMs() + settings.getReadTimeoutMs();
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            if (client instanceof PooledClient pooled) {
+                close(name, pooled);
+            } else if (client instanceof ReactiveClient reactive) {
+                reactive.connectionProvider().dispose();
+            }
+        });
+    }
+
+    private void close(String name, PooledClient client) {
+        try {
+            client.httpClient().close();
+        } catch (IOException e) {
+            logger.warn("Failed to close HTTP connection pool '{}'", name, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.forEach(this::close);
+        clients.clear();
+        reactiveClients.values().forEach(client -> client.connectionProvider().dispose());
+        reactiveClients.clear();
+    }
+
+    private record PooledClient(ApiToolConfig.HttpSettings settings,
+                                PoolingHttpClientConnectionManager connectionManager,
+                                CloseableHttpClient httpClient,
+                                RestTemplate restTemplate) {
+    }
+
+    private record ReactiveClient(ApiToolConfig.HttpSettings settings,
+                                  ConnectionProvider connectionProvider,
+                                  WebClient webClient) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.afs.restapi.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * actuator 端点：/actuator/apipool
+ * 展示各 API 工具 HTTP 连接池的租用/空闲/等待连接数和生效的设置
+ */
+@Component
+@Endpoint(id = "apipool")
+public class ApiPoolEndpoint {
+
+    private final ApiHttpClientFactory httpClientFactory;
+
+    public ApiPoolEndpoint(ApiHttpClientFactory httpClientFactory) {
+        this.httpClientFactory = httpClientFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> pools() {
+        return httpClientFactory.poolStats();
+    }
+}
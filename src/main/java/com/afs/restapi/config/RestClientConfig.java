@@ -1,18 +1,20 @@
 package com.afs.restapi.config;
 
+import com.afs.restapi.agent.ApiToolConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
 /**
  * REST 客户端配置
- * 为 ShipmentService 和其他需要调用外部 API 的服务提供 RestTemplate
+ * 为 ShipmentService 和其他需要调用外部 API 的服务提供 RestTemplate（带连接池和默认超时）
+ * API 工具使用 GenericApiService 按工具配置创建的独立连接池
  */
 @Configuration
 public class RestClientConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(ApiHttpClientFactory httpClientFactory) {
+        return httpClientFactory.restTemplate("default", ApiToolConfig.HttpSettings.defaults());
     }
 }
@@ -0,0 +1,50 @@
+package com.afs.restapi.config;
+
+import com.afs.restapi.vectorstore.HnswVectorStore;
+import com.afs.restapi.vectorstore.MappedFileVectorStore;
+import com.afs.restapi.vectorstore.VectorStoreChangedEvent;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * 向量库配置
+ * RAG 使用持久化的向量库，重启后直接复用已计算的嵌入：
+ * mapped（默认）为内存映射文件上的精确暴力检索，hnsw 为 HNSW 图上的近似检索，适合较大的文档集
+ * <p>
+ * 文档增删后发布 {@link VectorStoreChangedEvent}，依赖语料的响应缓存据此失效
+ */
+@Configuration
+public class VectorStoreConfig {
+
+    @Bean
+    public VectorStore vectorStore(EmbeddingModel embeddingModel, ApplicationEventPublisher eventPublisher,
+                                   @Value("${agent.vector-store.type:mapped}") String type,
+                                   @Value("${agent.vector-store.path:./data/vector-store}") String path,
+                                   @Value("${agent.vector-store.compaction-min-dead-records:1000}") int compactionMinDeadRecords,
+                                   @Value("${agent.vector-store.hnsw.m:16}") int m,
+                                   @Value("${agent.vector-store.hnsw.ef-construction:200}") int efConstruction,
+                                   @Value("${agent.vector-store.hnsw.ef-search:64}") int efSearch) {
+        Consumer<VectorStoreChangedEvent> changeListener = eventPublisher::publishEvent;
+        return switch (type) {
+            case "mapped" -> {
+                MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, Path.of(path), compactionMinDeadRecords);
+                store.setChangeListener(changeListener);
+                yield store;
+            }
+            case "hnsw" -> {
+                HnswVectorStore store = new HnswVectorStore(embeddingModel, Path.of(path, "hnsw.graph"),
+                        m, efConstruction, efSearch);
+                store.setChangeListener(changeListener);
+                yield store;
+            }
+            default -> throw new IllegalArgumentException("Unknown agent.vector-store.type: " + type);
+        };
+    }
+}
@@ -2,8 +2,10 @@ package com.afs.restapi.controller;
 
 import com.afs.restapi.dto.PlanRequestDto;
 import com.afs.restapi.agent.PlannerService;
+import com.afs.restapi.service.SemanticResponseCache;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
@@ -13,17 +15,22 @@ public class SemanticController {
 
     private final PlannerService plannerService;
 
-    public SemanticController(ChatClient.Builder chatClientBuilder, PlannerService plannerService) {
+    private final SemanticResponseCache responseCache;
+
+    public SemanticController(ChatClient.Builder chatClientBuilder, PlannerService plannerService,
+                              SemanticResponseCache responseCache) {
         this.chatClient = chatClientBuilder.build();
         this.plannerService = plannerService;
+        this.responseCache = responseCache;
     }
 
     @GetMapping("/chat")
-    String normalChat(String userInput) {
-        return this.chatClient.prompt()
+    String normalChat(String userInput,
+                      @RequestHeader(value = SemanticResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache) {
+        return responseCache.call("chat", userInput, bypassCache, () -> this.chatClient.prompt()
                 .user(userInput)
                 .call()
-                .content();
+                .content());
     }
 
     @PostMapping("/plan")
@@ -32,12 +39,24 @@ public class SemanticController {
         return plannerService.plan(userInput);
     }
 
+    /**
+     * /plan 的流式版本：依次推送 plan、step、summary（逐个文本片段）和 done 事件，出错时推送 error 事件
+     */
+    @PostMapping(value = "/plan/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    Flux<ServerSentEvent<Object>> planStream(@RequestBody PlanRequestDto request) {
+        return plannerService.planStream(request.getUserInput())
+                .map(event -> ServerSentEvent.builder(event.data())
+                        .event(event.type())
+                        .build());
+    }
+
     @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    Flux<String> streamChat(@RequestParam String userInput) {
-        return this.chatClient.prompt()
+    Flux<String> streamChat(@RequestParam String userInput,
+                            @RequestHeader(value = SemanticResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache) {
+        return responseCache.stream("chat", userInput, bypassCache, () -> this.chatClient.prompt()
                 .user(userInput)
                 .stream()
-                .content();
+                .content());
     }
 
     @GetMapping(value = "/chat/todo", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
@@ -1,13 +1,15 @@
 package com.afs.restapi.controller;
 
+import com.afs.restapi.service.SemanticResponseCache;
+import com.afs.restapi.vectorstore.VectorStoreChangedEvent;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
@@ -17,18 +19,27 @@ import java.util.Map;
 
 @RestController
 public class SemanticQueryController {
+    private static final String CACHE_NAMESPACE = "query";
+
     private final ChatClient chatClient;
     private final VectorStore vectorStore;
+    private final SemanticResponseCache responseCache;
 
-    public SemanticQueryController(ChatClient.Builder chatClientBuilder, EmbeddingModel embeddingModel) {
+    public SemanticQueryController(ChatClient.Builder chatClientBuilder, VectorStore vectorStore,
+                                   SemanticResponseCache responseCache) {
         this.chatClient = chatClientBuilder.build();
-        this.vectorStore = SimpleVectorStore.builder(embeddingModel).build();
+        this.vectorStore = vectorStore;
+        this.responseCache = responseCache;
 
         initializeVectorStore();
     }
 
+    /**
+     * 使用固定的文档 id：持久化向量库中内容未变化的文档会被跳过，重启时不会重新嵌入
+     */
     private void initializeVectorStore() {
         Document product1 = new Document(
+            "product-iphone-15-pro",
             "The iPhone 15 Pro features a titanium design, A17 Pro chip, and advanced camera system with 3x telephoto lens. Price starts at $999.",
             Map.of(
                 "category", "smartphone",
@@ -38,6 +49,7 @@ public class SemanticQueryController {
         );
 
         Document product2 = new Document(
+            "product-galaxy-s24-ultra",
             "Samsung Galaxy S24 Ultra offers S Pen functionality, 200MP camera, and 6.8-inch Dynamic AMOLED display. Available from $1199.",
             Map.of(
                 "category", "smartphone",
@@ -47,6 +59,7 @@ public class SemanticQueryController {
         );
 
         Document policy1 = new Document(
+            "policy-shipping",
             "Free shipping is available for orders over $50. Standard delivery takes 3-5 business days. Express shipping available for $15.",
             Map.of(
                 "type", "shipping",
@@ -55,6 +68,7 @@ public class SemanticQueryController {
         );
 
         Document support1 = new Document(
+            "support-return-policy",
             "To return a product, contact customer service within 30 days. Items must be in original packaging and unused condition.",
             Map.of(
                 "type", "return_policy",
@@ -65,12 +79,21 @@ public class SemanticQueryController {
         vectorStore.add(List.of(product1, product2, policy1, support1));
     }
 
+    /**
+     * RAG 语料变化后，之前基于旧语料生成的回答不再可信
+     */
+    @EventListener
+    public void onVectorStoreChanged(VectorStoreChangedEvent event) {
+        responseCache.invalidate(CACHE_NAMESPACE);
+    }
+
     @GetMapping(value = "/query", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> query(@RequestParam String userText) {
-        return this.chatClient.prompt()
+    public Flux<String> query(@RequestParam String userText,
+                              @RequestHeader(value = SemanticResponseCache.BYPASS_HEADER, defaultValue = "false") boolean bypassCache) {
+        return responseCache.stream(CACHE_NAMESPACE, userText, bypassCache, () -> this.chatClient.prompt()
             .advisors(new QuestionAnswerAdvisor(vectorStore))
             .user(userText)
             .stream()
-            .content();
+            .content());
     }
 }
@@ -0,0 +1,183 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API 工具的客户端限流（令牌桶）
+ * 按 api-tools-config.json 中顶层 rateLimits（按主机名）和工具的 rateLimit 分别限流，两者同时生效；
+ * 令牌不足时预约下一个令牌并排队等待，需要等待的时间超过 maxWaitMs 时直接拒绝
+ * <p>
+ * 同步调用在当前线程等待，非阻塞调用按返回的等待时间延迟发出请求；
+ * 预约后调用没有发出（如被 ApiBackendGuard 拒绝、等待期间被取消）时调用 {@link #refund} 归还令牌。
+ * 配置重新加载后只重建设置发生变化的令牌桶（下次使用时），设置不变的令牌桶保留当前令牌，
+ * 重新加载不会让已经用完的配额重新可用。指标：agent.api.ratelimit{scope, result=passed|delayed|rejected}
+ */
+@Component
+public class ApiRateLimiter {
+
+    private final ApiToolConfigRegistry configRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public ApiRateLimiter(ApiToolConfigRegistry configRegistry, MeterRegistry meterRegistry) {
+        this.configRegistry = configRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 预约一次调用
+     *
+     * @return 需要等待的纳秒数，0 表示可以立即调用
+     * @throws RateLimitedException 需要等待的时间超过 maxWaitMs
+     */
+    public long reserve(CompiledApiTool tool, URI uri) {
+        ApiToolConfig.RateLimitSettings hostLimit = hostLimit(uri);
+        ApiToolConfig.RateLimitSettings toolLimit = tool.getTool().getRateLimit();
+
+        long hostWait = 0;
+        String hostScope = "host:" + uri.getHost();
+        if (hostLimit != null) {
+            hostWait = reserve(hostScope, hostLimit);
+        }
+        if (toolLimit == null) {
+            return hostWait;
+        }
+
+        try {
+            return Math.max(hostWait, reserve("tool:" + tool.getName(), toolLimit));
+        } catch (RateLimitedException e) {
+            // 工具级被拒绝时归还已预约的主机令牌
+            if (hostLimit != null) {
+                bucket(hostScope, hostLimit).refund();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 同步调用：预约并在当前线程等待
+     */
+    public void acquire(CompiledApiTool tool, URI uri) {
+        long waitNanos = reserve(tool, uri);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RateLimitedException("interrupted while waiting for rate limit");
+            }
+        }
+    }
+
+    /**
+     * 归还一次已预约但没有发出的调用的令牌（主机级和工具级）
+     */
+    public void refund(CompiledApiTool tool, URI uri) {
+        ApiToolConfig.RateLimitSettings hostLimit = hostLimit(uri);
+        if (hostLimit != null) {
+            bucket("host:" + uri.getHost(), hostLimit).refund();
+        }
+        ApiToolConfig.RateLimitSettings toolLimit = tool.getTool().getRateLimit();
+        if (toolLimit != null) {
+            bucket("tool:" + tool.getName(), toolLimit).refund();
+        }
+    }
+
+    private long reserve(String scope, ApiToolConfig.RateLimitSettings settings) {
+        long waitNanos = bucket(scope, settings).reserve(TimeUnit.MILLISECONDS.toNanos(settings.getMaxWaitMs()));
+        if (waitNanos < 0) {
+            record(scope, "rejected");
+            throw new RateLimitedException("rate limit of " + settings.getPermitsPerSecond()
+                    + "/s exceeded for " + scope);
+        }
+        record(scope, waitNanos > 0 ? "delayed" : "passed");
+        return waitNanos;
+    }
+
+    private ApiToolConfig.RateLimitSettings hostLimit(URI uri) {
+        Map<String, ApiToolConfig.RateLimitSettings> rateLimits = configRegistry.getSnapshot().config().getRateLimits();
+        return rateLimits != null && uri.getHost() != null ? rateLimits.get(uri.getHost()) : null;
+    }
+
+    private TokenBucket bucket(String scope, ApiToolConfig.RateLimitSettings settings) {
+        return buckets.compute(scope, (key, existing) ->
+                existing != null && existing.settings().equals(settings) ? existing : new TokenBucket(settings));
+    }
+
+    private void record(String scope, String result) {
+        meterRegistry.counter("agent.api.ratelimit", "scope", scope, "result", result).increment();
+    }
+
+    /**
+     * 需要等待的时间超过 maxWaitMs 时拒绝调用
+     */
+    public static class RateLimitedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public RateLimitedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 令牌桶：令牌数可以为负，表示已被排队的调用预约
+     */
+    private static final class TokenBucket {
+
+        private final ApiToolConfig.RateLimitSettings settings;
+        private final double permitsPerNano;
+        private final int capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(ApiToolConfig.RateLimitSettings settings) {
+            this.settings = settings;
+            this.permitsPerNano = settings.getPermitsPerSecond() / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = settings.getBurst();
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        ApiToolConfig.RateLimitSettings settings() {
+            return settings;
+        }
+
+        /**
+         * @return 需要等待的纳秒数，超过 maxWaitNanos 时返回 -1 且不消耗令牌
+         */
+        synchronized long reserve(long maxWaitNanos) {
+            refill();
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            if (permitsPerNano <= 0) {
+                return -1;
+            }
+            long waitNanos = (long) Math.ceil((1 - tokens) / permitsPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+
+        synchronized void refund() {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import com.afs.restapi.config.ApiBackendGuard;
+import com.afs.restapi.config.ApiHttpClientFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量调用合并器
+ * 配置了 batch 的工具，调用先进入该工具的队列；第一个调用入队 maxDelayMs 后或队列达到 maxSize 时，
+ * 把队列中的调用合并为一次请求发往批量接口，再按顺序把响应数组中的元素分发给各调用
+ * <p>
+ * 合并后的请求和普通调用一样经过限流（整批只消耗一个令牌，被 ApiBackendGuard 拒绝时归还）和 ApiBackendGuard，
+ * 使用非阻塞 WebClient 发送；
+ * 批量请求失败时队列中的所有调用都失败。指标：agent.api.batch.size{tool}
+ */
+@Component
+public class ApiRequestBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiRequestBatcher.class);
+
+    private final ObjectMapper objectMapper;
+    private final ApiHttpClientFactory httpClientFactory;
+    private final ApiBackendGuard backendGuard;
+    private final ApiRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+
+    // 按编译后的工具区分队列，配置重新加载后新旧配置的调用不会混在同一批
+    private final Map<CompiledApiTool, Batch> pending = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "api-batch-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ApiRequestBatcher(ObjectMapper objectMapper, ApiHttpClientFactory httpClientFactory,
+                             ApiBackendGuard backendGuard, ApiRateLimiter rateLimiter, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.httpClientFactory = httpClientFactory;
+        this.backendGuard = backendGuard;
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 把一次调用加入所属工具的批次
+     *
+     * @return 该调用在批量响应中对应的结果
+     */
+    public CompletableFuture<ResponseEntity<String>> submit(CompiledApiTool tool, Map<String, String> params) {
+        ApiToolConfig.BatchSettings settings = tool.getTool().getBatch();
+        CompletableFuture<ResponseEntity<String>> result = new CompletableFuture<>();
+        Batch full = null;
+
+        synchronized (pending) {
+            Batch batch = pending.get(tool);
+            if (batch == null) {
+                batch = new Batch(tool);
+                pending.put(tool, batch);
+                Batch scheduled = batch;
+                scheduler.schedule(() -> flush(scheduled), settings.getMaxDelayMs(), TimeUnit.MILLISECONDS);
+            }
+            batch.items().add(item(tool, params));
+            batch.results().add(result);
+            if (batch.items().size() >= settings.getMaxSize()) {
+                pending.remove(tool);
+                full = batch;
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        }
+        return result;
+    }
+
+    private void flush(Batch batch) {
+        synchronized (pending) {
+            if (!pending.remove(batch.tool(), batch)) {
+                return;
+            }
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        CompiledApiTool tool = batch.tool();
+        ApiToolConfig.BatchSettings settings = tool.getTool().getBatch();
+        URI uri = URI.create(settings.getUrl());
+        Object body = settings.getRequestField() != null
+                ? Map.of(settings.getRequestField(), batch.items())
+                : batch.items();
+
+        meterRegistry.summary("agent.api.batch.size", "tool", tool.getName()).record(batch.items().size());
+        logger.info("Sending batch of {} calls for API tool: {}", batch.items().size(), tool.getName());
+
+        Mono.defer(() -> {
+                    long waitNanos = rateLimiter.reserve(tool, uri);
+                    Mono<ResponseEntity<String>> exchange = Mono.defer(() -> {
+                        ApiBackendGuard.Permit permit;
+                        try {
+                            permit = backendGuard.tryAcquire(uri);
+                        } catch (ApiBackendGuard.BackendUnavailableException e) {
+                            rateLimiter.refund(tool, uri);
+                            return Mono.error(e);
+                        }
+                        return httpClientFactory.webClient(tool.getName(), tool.getHttpSettings())
+                                .method(HttpMethod.valueOf(settings.getMethod()))
+                                .uri(uri)
+                                .headers(headers -> {
+                                    headers.addAll(tool.getHeaders());
+                                    headers.setContentType(MediaType.APPLICATION_JSON);
+                                })
+                                .bodyValue(body)
+                                .retrieve()
+                                .toEntity(String.class)
+                                .doOnSuccess(response -> permit.complete(null))
+                                .doOnError(permit::complete)
+                                .doOnCancel(permit::cancel);
+                    });
+                    return waitNanos > 0 ? Mono.delay(Duration.ofNanos(waitNanos)).then(exchange) : exchange;
+                })
+                .subscribe(response -> dispatch(batch, response),
+                        error -> batch.results().forEach(result -> result.completeExceptionally(error)));
+    }
+
+    /**
+     * 按顺序把响应数组中的元素分发给批次中的各调用
+     */
+    private void dispatch(Batch batch, ResponseEntity<String> response) {
+        ApiToolConfig.BatchSettings settings = batch.tool().getTool().getBatch();
+        try {
+            JsonNode root = objectMapper.readTree(response.getBody());
+            JsonNode results = settings.getResponseField() != null ? root.path(settings.getResponseField()) : root;
+            if (!results.isArray() || results.size() != batch.results().size()) {
+                throw new IllegalStateException(String.format("Batch response for %s has %s items, expected %d",
+                        batch.tool().getName(), results.isArray() ? results.size() : "no", batch.results().size()));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                batch.results().get(i).complete(ResponseEntity.status(response.getStatusCode())
+                        .body(objectMapper.writeValueAsString(results.get(i))));
+            }
+        } catch (Exception e) {
+            batch.results().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 批量请求中的单个元素：工具声明的参数（未传入时使用默认值）
+     */
+    private Map<String, String> item(CompiledApiTool tool, Map<String, String> params) {
+        Map<String, String> item = new LinkedHashMap<>();
+        if (tool.getTool().getParameters() != null) {
+            for (ApiToolConfig.Parameter param : tool.getTool().getParameters()) {
+                String value = params.getOrDefault(param.getName(), param.getDefaultValue());
+                if (value != null) {
+                    item.put(param.getName(), value);
+                }
+            }
+        }
+        return item;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 同一工具排队中的调用；按引用比较，避免内容相同的两个批次被误判为同一批
+     */
+    private static final class Batch {
+
+        private final CompiledApiTool tool;
+        private final List<Map<String, String>> items = new ArrayList<>();
+        private final List<CompletableFuture<ResponseEntity<String>>> results = new ArrayList<>();
+
+        Batch(CompiledApiTool tool) {
+            this.tool = tool;
+        }
+
+        CompiledApiTool tool() {
+            return tool;
+        }
+
+        List<Map<String, String>> items() {
+            return items;
+        }
+
+        List<CompletableFuture<ResponseEntity<String>>> results() {
+            return results;
+        }
+    }
+}
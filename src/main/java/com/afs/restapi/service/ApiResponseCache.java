@@ -0,0 +1,248 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * API 工具的 GET 响应缓存
+ * 只对配置了 cache 的 GET 工具生效（按工具启用），key 为解析后的完整 URL 加上实际请求中 varyHeaders 的值；
+ * 每个工具独立按 maxEntries（LRU）和 ttlMs 淘汰
+ * <p>
+ * - 过期但带 ETag 的条目不会立即删除，下次请求带上 If-None-Match 重新验证，后端返回 304 时直接复用缓存
+ * - 修改类（非 GET）调用成功后，按 resourceKey 失效所有工具中属于同一资源的缓存
+ * - 配置重新加载后清空全部缓存
+ * - 查找时记录失效代数，期间发生过失效的调用完成后不写入缓存，避免失效前发出的请求把旧响应写回
+ * <p>
+ * 指标：agent.api.cache.requests{tool, result=hit|miss|revalidated}，hit/miss 在查找时记录，
+ * revalidated 是 miss 中后端返回 304 的部分
+ */
+@Component
+public class ApiResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiResponseCache.class);
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ToolCache> caches = new ConcurrentHashMap<>();
+    // 每次失效加一
+    private final AtomicLong generation = new AtomicLong();
+
+    public ApiResponseCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 调用前查找缓存
+     *
+     * @param headers 实际发送的请求头，varyHeaders 从中取值
+     * @return 查找结果；工具未启用缓存时返回 {@link Lookup#NONE}
+     */
+    public Lookup lookup(CompiledApiTool tool, URI uri, HttpHeaders headers, Map<String, String> params) {
+        ApiToolConfig.CacheSettings settings = tool.getTool().getCache();
+        if (settings == null || tool.getMethod() != HttpMethod.GET) {
+            return Lookup.NONE;
+        }
+
+        // 先记录代数再读取条目：之后发生的失效都会使本次写入作废
+        long currentGeneration = generation.get();
+        String key = cacheKey(uri, headers, settings);
+        ToolCache cache = caches.compute(tool.getName(), (name, existing) ->
+                existing != null && existing.maxEntries() == settings.getMaxEntries()
+                        ? existing : new ToolCache(settings.getMaxEntries()));
+
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.entries().get(key);
+            if (entry != null && entry.isExpired() && entry.etag() == null) {
+                cache.entries().remove(key);
+                entry = null;
+            }
+        }
+
+        String resourceKey = tool.resolveResourceKey(params);
+        if (entry != null && !entry.isExpired()) {
+            record(tool, "hit");
+            return new Lookup(key, entry, true, resourceKey, settings.getTtlMs(), currentGeneration);
+        }
+        record(tool, "miss");
+        return new Lookup(key, entry, false, resourceKey, settings.getTtlMs(), currentGeneration);
+    }
+
+    /**
+     * 需要重新验证时在请求头中加上 If-None-Match
+     */
+    public HttpHeaders requestHeaders(Lookup lookup, HttpHeaders headers) {
+        if (lookup.entry() == null || lookup.fresh() || lookup.entry().etag() == null) {
+            return headers;
+        }
+        HttpHeaders revalidation = new HttpHeaders();
+        revalidation.addAll(headers);
+        revalidation.setIfNoneMatch(lookup.entry().etag());
+        return revalidation;
+    }
+
+    /**
+     * 处理后端响应：304 时复用并续期缓存，2xx 时写入缓存（查找后发生过失效则不写入）；
+     * 修改类调用成功后失效同一资源的缓存
+     *
+     * @return 交给调用方格式化的响应（304 时为缓存的响应）
+     */
+    public ResponseEntity<String> complete(CompiledApiTool tool, Map<String, String> params, Lookup lookup,
+                                           ResponseEntity<String> response) {
+        if (lookup != Lookup.NONE) {
+            ToolCache cache = caches.get(tool.getName());
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && lookup.entry() != null) {
+                Entry renewed = lookup.entry().renew(lookup.ttlMs());
+                store(cache, lookup, renewed);
+                record(tool, "revalidated");
+                return renewed.toResponse();
+            }
+
+            if (response.getStatusCode().is2xxSuccessful()) {
+                store(cache, lookup, new Entry(response.getStatusCode().value(), response.getBody(),
+                        response.getHeaders().getETag(), lookup.resourceKey(),
+                        System.currentTimeMillis() + lookup.ttlMs()));
+            }
+            return response;
+        }
+
+        if (tool.getMethod() != HttpMethod.GET && response.getStatusCode().is2xxSuccessful()) {
+            String resourceKey = tool.resolveResourceKey(params);
+            if (resourceKey != null) {
+                invalidate(resourceKey);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * 失效所有工具中属于指定资源的缓存
+     */
+    public void invalidate(String resourceKey) {
+        generation.incrementAndGet();
+        int removed = 0;
+        for (ToolCache cache : caches.values()) {
+            synchronized (cache) {
+                Iterator<Entry> iterator = cache.entries().values().iterator();
+                while (iterator.hasNext()) {
+                    if (resourceKey.equals(iterator.next().resourceKey())) {
+                        iterator.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        if (removed > 0) {
+            logger.info("Invalidated {} cached API responses for {}", removed, resourceKey);
+        }
+    }
+
+    @EventListener
+    public void onConfigChanged(ApiToolConfigChangedEvent event) {
+        generation.incrementAndGet();
+        caches.clear();
+    }
+
+    /**
+     * 写入缓存；代数检查和写入在同一把锁内，失效要么在写入前使其作废，要么在写入后把它删除
+     */
+    private void store(ToolCache cache, Lookup lookup, Entry entry) {
+        if (cache == null) {
+            return;
+        }
+        synchronized (cache) {
+            if (generation.get() != lookup.generation()) {
+                logger.debug("API response cache invalidated while the call was in flight, not caching {}", lookup.key());
+                return;
+            }
+            cache.entries().put(lookup.key(), entry);
+        }
+    }
+
+    private String cacheKey(URI uri, HttpHeaders headers, ApiToolConfig.CacheSettings settings) {
+        List<String> varyHeaders = settings.getVaryHeaders();
+        if (varyHeaders == null || varyHeaders.isEmpty()) {
+            return uri.toString();
+        }
+        StringBuilder key = new StringBuilder(uri.toString());
+        for (String header : varyHeaders) {
+            key.append('\n').append(header).append('=').append(headers.get(header));
+        }
+        return key.toString();
+    }
+
+    private void record(CompiledApiTool tool, String result) {
+        meterRegistry.counter("agent.api.cache.requests", "tool", tool.getName(), "result", result).increment();
+    }
+
+    /**
+     * 缓存查找结果
+     *
+     * @param key         缓存 key
+     * @param entry       找到的条目（可能已过期，等待重新验证）
+     * @param fresh       条目是否仍在有效期内，可直接使用
+     * @param resourceKey 本次请求对应的资源标识
+     * @param ttlMs       写入或续期时使用的有效期
+     * @param generation  查找时的失效代数
+     */
+    public record Lookup(String key, Entry entry, boolean fresh, String resourceKey, long ttlMs, long generation) {
+
+        public static final Lookup NONE = new Lookup(null, null, false, null, 0, 0);
+
+        /**
+         * 缓存命中时直接使用的响应
+         */
+        public ResponseEntity<String> cachedResponse() {
+            return fresh ? entry.toResponse() : null;
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    public record Entry(int status, String body, String etag, String resourceKey, long expiresAt) {
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+
+        Entry renew(long ttlMs) {
+            return new Entry(status, body, etag, resourceKey, System.currentTimeMillis() + ttlMs);
+        }
+
+        ResponseEntity<String> toResponse() {
+            HttpHeaders headers = new HttpHeaders();
+            if (etag != null) {
+                headers.setETag(etag);
+            }
+            return ResponseEntity.status(status).headers(headers).body(body);
+        }
+    }
+
+    private record ToolCache(int maxEntries, Map<String, Entry> entries) {
+
+        ToolCache(int maxEntries) {
+            this(maxEntries, new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            });
+        }
+    }
+}
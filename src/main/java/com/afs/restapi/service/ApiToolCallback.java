@@ -0,0 +1,134 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由 api-tools-config.json 中的一个工具配置直接生成的 ToolCallback
+ * 输入参数的 JSON Schema 由 Parameter 定义生成，调用时解析 JSON 参数后直接进入
+ * GenericApiService 的预编译请求流程，不经过反射
+ */
+public class ApiToolCallback implements ToolCallback {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ToolDefinition toolDefinition;
+    private final GenericApiService genericApiService;
+
+    public ApiToolCallback(ApiToolConfig.ApiTool tool, GenericApiService genericApiService) {
+        this.toolDefinition = toolDefinition(tool);
+        this.genericApiService = genericApiService;
+    }
+
+    /**
+     * 工具配置对应的工具定义（名称、描述、输入参数 JSON Schema）
+     */
+    public static ToolDefinition toolDefinition(ApiToolConfig.ApiTool tool) {
+        return ToolDefinition.builder()
+                .name(tool.getName())
+                .description(tool.getDescription())
+                .inputSchema(inputSchema(tool))
+                .build();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public String call(String toolInput) {
+        Map<String, Object> arguments;
+        try {
+            arguments = StringUtils.hasText(toolInput)
+                    ? OBJECT_MAPPER.readValue(toolInput, new TypeReference<Map<String, Object>>() {
+                    })
+                    : Map.of();
+        } catch (JsonProcessingException e) {
+            return String.format("❌ Invalid input for tool %s: %s", toolDefinition.name(), e.getOriginalMessage());
+        }
+        return genericApiService.executeApiCall(toolDefinition.name(), toApiParameters(arguments));
+    }
+
+    /**
+     * 把工具参数转换为 API 参数：标量转为文本，嵌套的对象/数组序列化为 JSON，null 忽略
+     */
+    public static Map<String, String> toApiParameters(Map<String, ?> arguments) {
+        Map<String, String> params = new HashMap<>();
+        if (arguments == null) {
+            return params;
+        }
+        arguments.forEach((name, value) -> {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof Map<?, ?> || value instanceof Collection<?>) {
+                try {
+                    params.put(name, OBJECT_MAPPER.writeValueAsString(value));
+                } catch (JsonProcessingException e) {
+                    params.put(name, value.toString());
+                }
+            } else {
+                params.put(name, value.toString());
+            }
+        });
+        return params;
+    }
+
+    /**
+     * 根据参数定义生成输入参数的 JSON Schema
+     * 有默认值的参数即使标记为 required 也可以省略
+     */
+    static String inputSchema(ApiToolConfig.ApiTool tool) {
+        ObjectNode schema = OBJECT_MAPPER.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = OBJECT_MAPPER.createArrayNode();
+
+        List<ApiToolConfig.Parameter> parameters = tool.getParameters() != null ? tool.getParameters() : List.of();
+        for (ApiToolConfig.Parameter param : parameters) {
+            ObjectNode property = properties.putObject(param.getName());
+            property.put("type", jsonType(param.getType()));
+            if (param.getDescription() != null) {
+                property.put("description", param.getDescription());
+            }
+            if (param.getDefaultValue() != null) {
+                property.put("default", param.getDefaultValue());
+            } else if (param.isRequired()) {
+                required.add(param.getName());
+            }
+        }
+
+        if (!required.isEmpty()) {
+            schema.set("required", required);
+        }
+        schema.put("additionalProperties", false);
+        return schema.toString();
+    }
+
+    private static String jsonType(String type) {
+        if (type == null) {
+            return "string";
+        }
+        return switch (type.toLowerCase()) {
+            case "int", "integer", "long", "short" -> "integer";
+            case "number", "double", "float", "decimal", "bigdecimal" -> "number";
+            case "boolean", "bool" -> "boolean";
+            case "object", "map" -> "object";
+            case "array", "list" -> "array";
+            default -> "string";
+        };
+    }
+}
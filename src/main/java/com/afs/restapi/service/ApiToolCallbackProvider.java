@@ -0,0 +1,49 @@
+package com.afs.restapi.service;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 根据 api-tools-config.json 生成工具回调
+ * 配置是 API 工具的唯一来源：新增后端接口只需添加配置，不需要再写 @Tool 方法；
+ * 配置热更新后按新快照重新生成
+ */
+@Component
+public class ApiToolCallbackProvider implements ToolCallbackProvider {
+
+    private final ApiToolConfigRegistry configRegistry;
+    private final GenericApiService genericApiService;
+
+    private volatile GeneratedCallbacks generated;
+
+    public ApiToolCallbackProvider(ApiToolConfigRegistry configRegistry, GenericApiService genericApiService) {
+        this.configRegistry = configRegistry;
+        this.genericApiService = genericApiService;
+    }
+
+    @Override
+    public ToolCallback[] getToolCallbacks() {
+        ApiToolConfigRegistry.Snapshot snapshot = configRegistry.getSnapshot();
+        GeneratedCallbacks current = generated;
+        if (current == null || current.version() != snapshot.version()) {
+            current = generate(snapshot);
+            generated = current;
+        }
+        return current.callbacks().clone();
+    }
+
+    private GeneratedCallbacks generate(ApiToolConfigRegistry.Snapshot snapshot) {
+        List<ToolCallback> callbacks = new ArrayList<>(snapshot.tools().size());
+        for (CompiledApiTool tool : snapshot.tools().values()) {
+            callbacks.add(new ApiToolCallback(tool.getTool(), genericApiService));
+        }
+        return new GeneratedCallbacks(snapshot.version(), callbacks.toArray(ToolCallback[]::new));
+    }
+
+    private record GeneratedCallbacks(long version, ToolCallback[] callbacks) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.afs.restapi.service;
+
+/**
+ * API 工具配置重新加载后发布的事件
+ *
+ * @param previous 替换前的快照
+ * @param current  新的快照
+ */
+public record ApiToolConfigChangedEvent(ApiToolConfigRegistry.Snapshot previous,
+                                        ApiToolConfigRegistry.Snapshot current) {
+}
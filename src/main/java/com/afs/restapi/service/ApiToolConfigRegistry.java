@@ -0,0 +1,215 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API 工具配置注册表
+ * 所有使用 api-tools-config.json 的组件共享同一份编译好的配置快照；
+ * 配置放在外部文件（file:）时用 WatchService 监听文件变化，重新加载成功后原子替换快照并发布
+ * {@link ApiToolConfigChangedEvent}，正在执行的调用继续使用旧快照，不会被阻塞；
+ * 新配置解析失败时保留旧快照。监听器处理变更事件失败时记录错误并抛给调用方，
+ * 文件监听线程不会因此退出，下次文件变化仍会重新加载
+ */
+@Service
+public class ApiToolConfigRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiToolConfigRegistry.class);
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String location;
+    private final boolean watch;
+    private final long debounceMs;
+
+    private volatile Snapshot snapshot;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public ApiToolConfigRegistry(ResourceLoader resourceLoader, ObjectMapper objectMapper,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${agent.api-tools.location:classpath:api-tools-config.json}") String location,
+                                 @Value("${agent.api-tools.watch:true}") boolean watch,
+                                 @Value("${agent.api-tools.watch-debounce-ms:300}") long debounceMs) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.location = location;
+        this.watch = watch;
+        this.debounceMs = debounceMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        Resource resource = resourceLoader.getResource(location);
+        try {
+            snapshot = load(resource, 1);
+        } catch (IOException e) {
+            logger.error("❌ Failed to load API tools configuration", e);
+            throw new RuntimeException("Failed to load API tools configuration", e);
+        }
+        logger.info("✅ Loaded {} API tools from '{}'", snapshot.tools().size(), location);
+
+        if (watch && resource.isFile()) {
+            try {
+                startWatching(resource.getFile().toPath().toAbsolutePath());
+            } catch (IOException e) {
+                logger.warn("Failed to watch API tools configuration at '{}', hot reload disabled", location, e);
+            }
+        }
+    }
+
+    /**
+     * 当前配置快照
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 重新加载配置，成功时替换快照并发布变更事件
+     *
+     * @return 是否加载成功
+     * @throws RuntimeException 新快照已生效，但有监听器处理变更事件失败（之后的监听器不会收到事件）
+     */
+    public synchronized boolean reload() {
+        Snapshot previous = snapshot;
+        Snapshot next;
+        try {
+            next = load(resourceLoader.getResource(location), previous.version() + 1);
+        } catch (Exception e) {
+            logger.error("❌ Failed to reload API tools configuration from '{}', keeping v{}", location,
+                    previous.version(), e);
+            return false;
+        }
+
+        snapshot = next;
+        logger.info("API tools configuration v{} loaded with {} tools", next.version(), next.tools().size());
+        try {
+            eventPublisher.publishEvent(new ApiToolConfigChangedEvent(previous, next));
+        } catch (RuntimeException e) {
+            logger.error("❌ API tools configuration v{} is active but a change listener failed, "
+                    + "components that did not apply it may still use v{}", next.version(), previous.version(), e);
+            throw e;
+        }
+        return true;
+    }
+
+    private Snapshot load(Resource resource, long version) throws IOException {
+        ApiToolConfig config;
+        try (InputStream in = resource.getInputStream()) {
+            config = objectMapper.readValue(in, ApiToolConfig.class);
+        }
+        List<ApiToolConfig.ApiTool> apiTools = config.getApiTools() != null ? config.getApiTools() : List.of();
+
+        // 设置优先级：工具的 http > 顶层 httpClient > 内置默认值；同名工具第一个生效
+        ApiToolConfig.HttpSettings defaults = ApiToolConfig.HttpSettings.defaults().merge(config.getHttpClient());
+        Map<String, CompiledApiTool> tools = new LinkedHashMap<>();
+        for (ApiToolConfig.ApiTool tool : apiTools) {
+            tools.putIfAbsent(tool.getName(), CompiledApiTool.compile(tool, defaults.merge(tool.getHttp())));
+        }
+        return new Snapshot(version, config, Collections.unmodifiableMap(tools));
+    }
+
+    private void startWatching(Path file) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+
+        watcher = new Thread(() -> watch(file), "api-tools-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching {} for API tool changes", file);
+    }
+
+    private void watch(Path file) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = containsFile(key, file);
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+
+                // 编辑器保存时通常会触发多次事件，等待写入结束后只加载一次
+                Thread.sleep(debounceMs);
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    // reload 已记录错误，继续监听，下次文件变化时再加载
+                    logger.warn("API tools configuration watcher continues after a failed reload: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("API tools configuration watcher stopped");
+        }
+    }
+
+    private boolean containsFile(WatchKey key, Path file) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path changedPath && changedPath.equals(file.getFileName())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close watch service", e);
+            }
+        }
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    /**
+     * 编译好的不可变配置快照
+     *
+     * @param version 快照版本，每次重新加载加一
+     * @param config  原始配置
+     * @param tools   按名称索引的预编译工具（保持配置顺序）
+     */
+    public record Snapshot(long version, ApiToolConfig config, Map<String, CompiledApiTool> tools) {
+
+        public CompiledApiTool getTool(String name) {
+            return tools.get(name);
+        }
+    }
+}
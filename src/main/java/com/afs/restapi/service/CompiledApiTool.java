@@ -0,0 +1,213 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.util.UriUtils;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的API工具描述
+ * 加载配置时解析一次：URL 模板切分为字面量和路径参数槽位，查询参数预先编码参数名，
+ * 请求头构建为只读 HttpHeaders，Content-Type 解析为 MediaType，resultFields 编译为字段投影，
+ * 只读工具的 speculate.inputPattern 编译为正则；
+ * 每次调用只需绑定参数值
+ */
+public final class CompiledApiTool {
+
+    private final ApiToolConfig.ApiTool tool;
+    private final HttpMethod method;
+    private final String[] pathLiterals;
+    private final PathSlot[] pathSlots;
+    private final QuerySlot[] querySlots;
+    private final char querySeparator;
+    private final HttpHeaders headers;
+    private final MediaType contentType;
+    private final ApiToolConfig.HttpSettings httpSettings;
+    private final ResponseProjection projection;
+    private final Pattern speculatePattern;
+
+    private CompiledApiTool(ApiToolConfig.ApiTool tool, HttpMethod method, String[] pathLiterals, PathSlot[] pathSlots,
+                            QuerySlot[] querySlots, char querySeparator, HttpHeaders headers, MediaType contentType,
+                            ApiToolConfig.HttpSettings httpSettings, ResponseProjection projection,
+                            Pattern speculatePattern) {
+        this.tool = tool;
+        this.method = method;
+        this.pathLiterals = pathLiterals;
+        this.pathSlots = pathSlots;
+        this.querySlots = querySlots;
+        this.querySeparator = querySeparator;
+        this.headers = headers;
+        this.contentType = contentType;
+        this.httpSettings = httpSettings;
+        this.projection = projection;
+        this.speculatePattern = speculatePattern;
+    }
+
+    /**
+     * 编译工具配置
+     *
+     * @param tool         工具配置
+     * @param httpSettings 合并默认值后生效的 HTTP 客户端设置
+     */
+    public static CompiledApiTool compile(ApiToolConfig.ApiTool tool, ApiToolConfig.HttpSettings httpSettings) {
+        List<ApiToolConfig.Parameter> parameters = tool.getParameters() != null ? tool.getParameters() : List.of();
+
+        // 按出现位置切分 URL 中声明为 path 的参数占位符
+        String url = tool.getUrl();
+        List<String> literals = new ArrayList<>();
+        List<PathSlot> pathSlots = new ArrayList<>();
+        int last = 0;
+        while (true) {
+            int next = -1;
+            ApiToolConfig.Parameter nextParam = null;
+            for (ApiToolConfig.Parameter param : parameters) {
+                if ("path".equals(param.getLocation())) {
+                    int index = url.indexOf("{" + param.getName() + "}", last);
+                    if (index >= 0 && (next < 0 || index < next)) {
+                        next = index;
+                        nextParam = param;
+                    }
+                }
+            }
+            if (nextParam == null) {
+                break;
+            }
+            literals.add(url.substring(last, next));
+            pathSlots.add(new PathSlot(nextParam.getName(), nextParam.getDefaultValue()));
+            last = next + nextParam.getName().length() + 2;
+        }
+        literals.add(url.substring(last));
+
+        List<QuerySlot> querySlots = new ArrayList<>();
+        for (ApiToolConfig.Parameter param : parameters) {
+            if ("query".equals(param.getLocation())) {
+                querySlots.add(new QuerySlot(param.getName(),
+                        UriUtils.encodeQueryParam(param.getName(), StandardCharsets.UTF_8), param.getDefaultValue()));
+            }
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        if (tool.getHeaders() != null) {
+            tool.getHeaders().forEach((key, value) -> {
+                if ("Content-Type".equalsIgnoreCase(key)) {
+                    headers.setContentType(MediaType.parseMediaType(value));
+                } else {
+                    headers.set(key, value);
+                }
+            });
+        }
+
+        return new CompiledApiTool(tool,
+                HttpMethod.valueOf(tool.getMethod()),
+                literals.toArray(String[]::new),
+                pathSlots.toArray(PathSlot[]::new),
+                querySlots.toArray(QuerySlot[]::new),
+                url.contains("?") ? '&' : '?',
+                HttpHeaders.readOnlyHttpHeaders(headers),
+                headers.getContentType(),
+                httpSettings,
+                ResponseProjection.compile(tool.getResultFields()),
+                tool.isReadOnly() && tool.getSpeculate() != null && tool.getSpeculate().getInputPattern() != null
+                        ? Pattern.compile(tool.getSpeculate().getInputPattern()) : null);
+    }
+
+    /**
+     * 绑定路径参数和查询参数，生成已编码的请求 URI；路径参数按单个路径段编码（其中的 / 也会编码）
+     */
+    public URI bindUri(Map<String, String> params) {
+        StringBuilder url = new StringBuilder(tool.getUrl().length() + 32);
+        for (int i = 0; i < pathSlots.length; i++) {
+            url.append(pathLiterals[i]);
+            String value = params.getOrDefault(pathSlots[i].name(), pathSlots[i].defaultValue());
+            if (value == null) {
+                throw new IllegalArgumentException("Missing path parameter: " + pathSlots[i].name());
+            }
+            url.append(UriUtils.encodePathSegment(value, StandardCharsets.UTF_8));
+        }
+        url.append(pathLiterals[pathSlots.length]);
+
+        char separator = querySeparator;
+        for (QuerySlot slot : querySlots) {
+            String value = params.getOrDefault(slot.name(), slot.defaultValue());
+            if (value != null) {
+                url.append(separator).append(slot.encodedName()).append('=')
+                        .append(UriUtils.encodeQueryParam(value, StandardCharsets.UTF_8));
+                separator = '&';
+            }
+        }
+        return URI.create(url.toString());
+    }
+
+    public ApiToolConfig.ApiTool getTool() {
+        return tool;
+    }
+
+    public String getName() {
+        return tool.getName();
+    }
+
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * 只读请求头，可在多次调用间共享
+     */
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public MediaType getContentType() {
+        return contentType;
+    }
+
+    public ApiToolConfig.HttpSettings getHttpSettings() {
+        return httpSettings;
+    }
+
+    /**
+     * 按 resultFields 投影成功响应的响应体，未配置时原样返回
+     */
+    public String projectResponse(String body) {
+        return projection != null ? projection.apply(body) : body;
+    }
+
+    /**
+     * 按参数替换 resourceKey 模板中的占位符，得到本次调用对应的资源标识
+     *
+     * @return 未配置 resourceKey 时返回 null
+     */
+    public String resolveResourceKey(Map<String, String> params) {
+        String resourceKey = tool.getResourceKey();
+        if (resourceKey == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (param.getValue() != null) {
+                resourceKey = resourceKey.replace("{" + param.getKey() + "}", param.getValue());
+            }
+        }
+        return resourceKey;
+    }
+
+    /**
+     * 预先执行时用于匹配用户输入的正则，未配置或不是只读工具时为 null
+     */
+    public Pattern getSpeculatePattern() {
+        return speculatePattern;
+    }
+
+    private record PathSlot(String name, String defaultValue) {
+    }
+
+    private record QuerySlot(String name, String encodedName, String defaultValue) {
+    }
+}
@@ -1,50 +1,79 @@
 package com.afs.restapi.service;
 
 import com.afs.restapi.agent.ApiToolConfig;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.afs.restapi.config.ApiBackendGuard;
+import com.afs.restapi.config.ApiHttpClientFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
 import jakarta.annotation.PostConstruct;
-import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * 通用API服务
  * 
  * 从JSON配置文件加载API定义，动态执行API调用
  * 只需添加JSON配置即可将任何API转换为可调用的服务
+ * 每次调用读取 ApiToolConfigRegistry 的当前快照，配置热更新后立即生效
+ * 后端调用先经过 ApiRateLimiter（客户端限流），再经过 ApiBackendGuard（按主机的舱壁和熔断），
+ * 被拒绝时立即返回工具的 errorMessage（被 ApiBackendGuard 拒绝时归还已预约的令牌）；配置了 batch 的工具交给 ApiRequestBatcher 合并发送
+ * 修改类（非 readOnly）工具发出请求前，以解析后的 resourceKey 通知写入监听（如预先执行的只读结果需要作废）
  */
 @Service
 public class GenericApiService {
 
     private static final Logger logger = LoggerFactory.getLogger(GenericApiService.class);
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-    private ApiToolConfig apiToolConfig;
+    private static final String RESPONSE_MARKER = ". Response: ";
+    private final ApiToolConfigRegistry configRegistry;
+    private final ApiHttpClientFactory httpClientFactory;
+    private final ApiResponseCache responseCache;
+    private final SingleFlight singleFlight;
+    private final ApiBackendGuard backendGuard;
+    private final ApiRateLimiter rateLimiter;
+    private final ApiRequestBatcher requestBatcher;
+    private final List<Consumer<String>> writeListeners = new CopyOnWriteArrayList<>();
 
-    public GenericApiService(RestTemplate restTemplate, ObjectMapper objectMapper) {
-        this.restTemplate = restTemplate;
-        this.objectMapper = objectMapper;
+    public GenericApiService(ApiToolConfigRegistry configRegistry, ApiHttpClientFactory httpClientFactory,
+                             ApiResponseCache responseCache, SingleFlight singleFlight,
+                             ApiBackendGuard backendGuard, ApiRateLimiter rateLimiter,
+                             ApiRequestBatcher requestBatcher) {
+        this.configRegistry = configRegistry;
+        this.httpClientFactory = httpClientFactory;
+        this.responseCache = responseCache;
+        this.singleFlight = singleFlight;
+        this.backendGuard = backendGuard;
+        this.rateLimiter = rateLimiter;
+        this.requestBatcher = requestBatcher;
         logger.info("✅ GenericApiService Bean created successfully");
     }
 
     @PostConstruct
     public void init() {
-        try {
-            ClassPathResource resource = new ClassPathResource("api-tools-config.json");
-            apiToolConfig = objectMapper.readValue(resource.getInputStream(), ApiToolConfig.class);
-            logger.info("✅ Loaded {} API tools from configuration", 
-                    apiToolConfig.getApiTools().size());
-        } catch (IOException e) {
-            logger.error("❌ Failed to load API tools configuration", e);
-            throw new RuntimeException("Failed to load API tools configuration", e);
+        createClients(configRegistry.getSnapshot());
+    }
+
+    /**
+     * 配置重新加载后为新的工具设置创建连接池，并释放已删除工具的连接池
+     */
+    @EventListener
+    public void onConfigChanged(ApiToolConfigChangedEvent event) {
+        createClients(event.current());
+        for (String toolName : event.previous().tools().keySet()) {
+            if (!event.current().tools().containsKey(toolName)) {
+                httpClientFactory.release(toolName);
+            }
         }
     }
 
@@ -56,106 +85,281 @@ public class GenericApiService {
      * @return API调用结果
      */
     public String executeApiCall(String toolName, Map<String, String> params) {
-        try {
-            // 查找工具配置
-            ApiToolConfig.ApiTool tool = findTool(toolName);
-            if (tool == null) {
-                return String.format("❌ Tool '%s' not found in configuration", toolName);
-            }
+        // 查找工具配置
+        CompiledApiTool tool = configRegistry.getSnapshot().getTool(toolName);
+        if (tool == null) {
+            return String.format("❌ Tool '%s' not found in configuration", toolName);
+        }
 
+        try {
             logger.info("Executing API tool: {}", toolName);
+            writeStarted(tool, params);
 
-            // 构建URL
-            String url = buildUrl(tool, params);
-            
-            // 设置请求头
-            HttpHeaders headers = buildHeaders(tool);
-            
-            // 构建请求体
-            Object body = buildRequestBody(tool, params);
-            
-            // 创建请求实体
-            HttpEntity<Object> requestEntity = new HttpEntity<>(body, headers);
-            
-            // 发送请求
-            HttpMethod method = HttpMethod.valueOf(tool.getMethod());
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url,
-                    method,
-                    requestEntity,
-                    String.class
-            );
+            // 构建请求（URL、请求头、请求体）
+            ApiRequest request = buildRequest(tool, params);
 
-            logger.info("API call response: status={}", response.getStatusCode());
+            // 命中响应缓存时不再请求后端
+            ApiResponseCache.Lookup cached = responseCache.lookup(tool, request.uri(), request.headers(), params);
+            if (cached.fresh()) {
+                logger.info("API response cache hit: {}", toolName);
+                return formatResponse(tool, params, cached.cachedResponse());
+            }
 
-            // 处理响应
-            if (response.getStatusCode().is2xxSuccessful()) {
-                String message = replaceParameters(tool.getSuccessMessage(), params);
-                return String.format("%s. Response: %s", message, response.getBody());
-            } else {
-                String message = replaceParameters(tool.getErrorMessage(), params);
-                return String.format("%s. Status: %s, Response: %s",
-                        message, response.getStatusCode(), response.getBody());
+            // 相同请求同时进行时合并为一次后端调用
+            if (!isCoalescable(tool)) {
+                return exchange(tool, params, request, cached);
             }
+            return singleFlight.execute(tool.getName(), flightKey(tool, request),
+                    () -> exchange(tool, params, request, cached));
 
+        } catch (ApiBackendGuard.BackendUnavailableException | ApiRateLimiter.RateLimitedException e) {
+            logger.warn("API call rejected for tool: {}: {}", toolName, e.getMessage());
+            return formatRejected(tool, params, e);
         } catch (Exception e) {
             logger.error("Error executing API call for tool: {}", toolName, e);
             return String.format("❌ Error executing API call: %s", e.getMessage());
         }
     }
 
+    private String exchange(CompiledApiTool tool, Map<String, String> params, ApiRequest request,
+                            ApiResponseCache.Lookup cached) {
+        // 批量工具：等待所在批次的响应
+        if (tool.getTool().getBatch() != null) {
+            ResponseEntity<String> response;
+            try {
+                response = requestBatcher.submit(tool, params).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            return formatResponse(tool, params, responseCache.complete(tool, params, cached, response));
+        }
+
+        // 创建请求实体（缓存过期时带上 If-None-Match 重新验证）
+        HttpEntity<Object> requestEntity = new HttpEntity<>(request.body(),
+                responseCache.requestHeaders(cached, request.headers()));
+
+        // 发送请求（先按限流排队，再获取后端主机的调用许可）
+        rateLimiter.acquire(tool, request.uri());
+        ApiBackendGuard.Permit permit;
+        try {
+            permit = backendGuard.acquire(request.uri());
+        } catch (ApiBackendGuard.BackendUnavailableException e) {
+            rateLimiter.refund(tool, request.uri());
+            throw e;
+        }
+        ResponseEntity<String> response;
+        try {
+            response = httpClientFactory.restTemplate(tool.getName(), tool.getHttpSettings()).exchange(
+                    request.uri(),
+                    request.method(),
+                    requestEntity,
+                    String.class
+            );
+        } catch (RuntimeException e) {
+            permit.complete(e);
+            throw e;
+        }
+        permit.complete(null);
+
+        // 处理响应
+        return formatResponse(tool, params, responseCache.complete(tool, params, cached, response));
+    }
+
     /**
-     * 查找工具配置
+     * 非阻塞执行API调用
+     * 基于 WebClient，等待后端响应期间不占用线程；返回的字符串与 executeApiCall 完全一致，
+     * 失败时同样返回错误描述而不是错误信号
+     *
+     * @param toolName 工具名称（对应JSON配置中的name）
+     * @param params 参数Map，key为参数名，value为参数值
+     * @return API调用结果
      */
-    private ApiToolConfig.ApiTool findTool(String toolName) {
-        return apiToolConfig.getApiTools().stream()
-                .filter(tool -> tool.getName().equals(toolName))
-                .findFirst()
-                .orElse(null);
+    public Mono<String> executeApiCallAsync(String toolName, Map<String, String> params) {
+        CompiledApiTool tool = configRegistry.getSnapshot().getTool(toolName);
+        if (tool == null) {
+            return Mono.just(String.format("❌ Tool '%s' not found in configuration", toolName));
+        }
+
+        return Mono.defer(() -> {
+                    logger.info("Executing API tool asynchronously: {}", toolName);
+                    writeStarted(tool, params);
+                    ApiRequest request = buildRequest(tool, params);
+
+                    ApiResponseCache.Lookup cached = responseCache.lookup(tool, request.uri(), request.headers(), params);
+                    if (cached.fresh()) {
+                        logger.info("API response cache hit: {}", toolName);
+                        return Mono.just(formatResponse(tool, params, cached.cachedResponse()));
+                    }
+
+                    if (!isCoalescable(tool)) {
+                        return exchangeAsync(tool, params, request, cached);
+                    }
+                    return singleFlight.executeAsync(tool.getName(), flightKey(tool, request),
+                            () -> exchangeAsync(tool, params, request, cached));
+                })
+                .onErrorResume(e -> e instanceof ApiBackendGuard.BackendUnavailableException
+                        || e instanceof ApiRateLimiter.RateLimitedException, e -> {
+                    logger.warn("API call rejected for tool: {}: {}", toolName, e.getMessage());
+                    return Mono.just(formatRejected(tool, params, (RuntimeException) e));
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error executing API call for tool: {}", toolName, e);
+                    return Mono.just(String.format("❌ Error executing API call: %s", e.getMessage()));
+                });
+    }
+
+    private Mono<String> exchangeAsync(CompiledApiTool tool, Map<String, String> params, ApiRequest request,
+                                       ApiResponseCache.Lookup cached) {
+        if (tool.getTool().getBatch() != null) {
+            return Mono.defer(() -> Mono.fromFuture(requestBatcher.submit(tool, params), true))
+                    .map(response -> formatResponse(tool, params, responseCache.complete(tool, params, cached, response)));
+        }
+
+        // 等待舱壁许可期间不占用线程；被拒绝或拿到许可前被取消时请求没有发出，归还限流令牌
+        // （flatMap 取消时也会取消上游，所以要记下是否已经拿到许可，避免请求发出后再归还）
+        Mono<ResponseEntity<String>> exchange = Mono.defer(() -> {
+            AtomicBoolean admitted = new AtomicBoolean();
+            return backendGuard.acquireAsync(request.uri())
+                    .doOnNext(permit -> admitted.set(true))
+                    .doOnError(ApiBackendGuard.BackendUnavailableException.class, e -> rateLimiter.refund(tool, request.uri()))
+                    .doOnCancel(() -> {
+                        if (!admitted.get()) {
+                            rateLimiter.refund(tool, request.uri());
+                        }
+                    })
+                    .flatMap(permit -> httpClientFactory.webClient(tool.getName(), tool.getHttpSettings())
+                            .method(request.method())
+                            .uri(request.uri())
+                            .headers(headers -> headers.addAll(responseCache.requestHeaders(cached, request.headers())))
+                            .bodyValue(request.body())
+                            .retrieve()
+                            .toEntity(String.class)
+                            .doOnSuccess(response -> permit.complete(null))
+                            .doOnError(permit::complete)
+                            .doOnCancel(permit::cancel));
+        });
+
+        // 限流等待期间不占用线程，到点后再发出请求；等待期间被取消时请求不会发出，归还预约的令牌
+        return Mono.defer(() -> {
+                    long waitNanos = rateLimiter.reserve(tool, request.uri());
+                    if (waitNanos == 0) {
+                        return exchange;
+                    }
+                    return Mono.delay(Duration.ofNanos(waitNanos))
+                            .doOnCancel(() -> rateLimiter.refund(tool, request.uri()))
+                            .then(exchange);
+                })
+                .map(response -> formatResponse(tool, params, responseCache.complete(tool, params, cached, response)));
     }
 
     /**
-     * 构建URL，替换路径参数和添加查询参数
+     * 是否合并相同的并发请求：配置了 coalesce 时按配置，否则只合并 GET/HEAD
      */
-    private String buildUrl(ApiToolConfig.ApiTool tool, Map<String, String> params) {
-        String url = tool.getUrl();
-        UriComponentsBuilder builder = null;
+    private boolean isCoalescable(CompiledApiTool tool) {
+        Boolean coalesce = tool.getTool().getCoalesce();
+        if (coalesce != null) {
+            return coalesce;
+        }
+        return tool.getMethod() == HttpMethod.GET || tool.getMethod() == HttpMethod.HEAD;
+    }
 
-        for (ApiToolConfig.Parameter param : tool.getParameters()) {
-            String value = params.getOrDefault(param.getName(), param.getDefaultValue());
-            
-            if (value != null) {
-                if ("path".equals(param.getLocation())) {
-                    // 替换路径参数
-                    url = url.replace("{" + param.getName() + "}", value);
-                } else if ("query".equals(param.getLocation())) {
-                    // 添加查询参数
-                    if (builder == null) {
-                        builder = UriComponentsBuilder.fromUriString(url);
-                    }
-                    builder.queryParam(param.getName(), value);
-                }
-            }
+    /**
+     * 合并 key：工具名 + 解析后的请求（方法、URI、请求体）
+     */
+    private String flightKey(CompiledApiTool tool, ApiRequest request) {
+        return tool.getName() + '\n' + request.method() + ' ' + request.uri() + '\n' + request.body();
+    }
+
+    /**
+     * 注册写入监听：修改类工具发出请求前，以解析后的 resourceKey 回调；
+     * 工具未配置 resourceKey（可能修改任何资源）时以 null 回调
+     */
+    public void addWriteListener(Consumer<String> listener) {
+        writeListeners.add(listener);
+    }
+
+    private void writeStarted(CompiledApiTool tool, Map<String, String> params) {
+        if (tool.getTool().isReadOnly() || writeListeners.isEmpty()) {
+            return;
         }
+        String resourceKey = tool.resolveResourceKey(params);
+        writeListeners.forEach(listener -> listener.accept(resourceKey));
+    }
 
-        return builder != null ? builder.toUriString() : url;
+    /**
+     * 是否为配置文件中定义的API工具
+     */
+    public boolean hasTool(String toolName) {
+        return configRegistry.getSnapshot().getTool(toolName) != null;
     }
 
     /**
-     * 构建请求头
+     * 按工具的 resultFields 投影成功结果中的响应体（RESPONSE_MARKER 之后的部分），供总结提示词使用
+     * 工具调用本身（包括 MCP 客户端和模板总结）始终返回完整响应；不是API工具、未配置 resultFields 或结果不含响应体时原样返回
      */
-    private HttpHeaders buildHeaders(ApiToolConfig.ApiTool tool) {
-        HttpHeaders headers = new HttpHeaders();
-        if (tool.getHeaders() != null) {
-            tool.getHeaders().forEach((key, value) -> {
-                if ("Content-Type".equalsIgnoreCase(key)) {
-                    headers.setContentType(MediaType.parseMediaType(value));
-                } else {
-                    headers.set(key, value);
-                }
-            });
+    public String projectResult(String toolName, String result) {
+        CompiledApiTool tool = configRegistry.getSnapshot().getTool(toolName);
+        int marker = result != null ? result.indexOf(RESPONSE_MARKER) : -1;
+        if (tool == null || marker < 0) {
+            return result;
+        }
+        int bodyStart = marker + RESPONSE_MARKER.length();
+        return result.substring(0, bodyStart) + tool.projectResponse(result.substring(bodyStart));
+    }
+
+    /**
+     * 是否为配置了 readOnly（没有副作用）的API工具
+     */
+    public boolean isReadOnlyTool(String toolName) {
+        CompiledApiTool tool = configRegistry.getSnapshot().getTool(toolName);
+        return tool != null && tool.getTool().isReadOnly();
+    }
+
+    /**
+     * 构建请求：绑定参数得到 URI，请求方法和请求头直接复用预编译结果
+     */
+    private ApiRequest buildRequest(CompiledApiTool tool, Map<String, String> params) {
+        return new ApiRequest(
+                tool.bindUri(params),
+                tool.getMethod(),
+                tool.getHeaders(),
+                buildRequestBody(tool.getTool(), params));
+    }
+
+    /**
+     * 根据响应状态生成成功或失败消息
+     */
+    private String formatResponse(CompiledApiTool tool, Map<String, String> params, ResponseEntity<String> response) {
+        logger.info("API call response: status={}", response.getStatusCode());
+
+        if (response.getStatusCode().is2xxSuccessful()) {
+            String message = replaceParameters(tool.getTool().getSuccessMessage(), params);
+            return String.format("%s%s%s", message, RESPONSE_MARKER, response.getBody());
+        } else {
+            String message = replaceParameters(tool.getTool().getErrorMessage(), params);
+            return String.format("%s. Status: %s, Response: %s",
+                    message, response.getStatusCode(), response.getBody());
+        }
+    }
+
+    /**
+     * 调用被限流、熔断或舱壁拒绝时的快速失败消息
+     */
+    private String formatRejected(CompiledApiTool tool, Map<String, String> params, RuntimeException e) {
+        String message = replaceParameters(tool.getTool().getErrorMessage(), params);
+        String reason = e instanceof ApiRateLimiter.RateLimitedException ? "Rate limited" : "Backend unavailable";
+        return String.format("%s. %s: %s", message, reason, e.getMessage());
+    }
+
+    /**
+     * 为每个工具预先创建独立连接池的 RestTemplate（同步调用）和 WebClient（非阻塞调用）
+     * 调用时按工具名和设置从 ApiHttpClientFactory 取用，设置变化时自动重建
+     */
+    private void createClients(ApiToolConfigRegistry.Snapshot snapshot) {
+        for (CompiledApiTool tool : snapshot.tools().values()) {
+            httpClientFactory.restTemplate(tool.getName(), tool.getHttpSettings());
+            httpClientFactory.webClient(tool.getName(), tool.getHttpSettings());
         }
-        return headers;
     }
 
     /**
@@ -193,16 +397,17 @@ public class GenericApiService {
      * 获取所有可用的工具名称
      */
     public String[] getAvailableTools() {
-        return apiToolConfig.getApiTools().stream()
-                .map(ApiToolConfig.ApiTool::getName)
-                .toArray(String[]::new);
+        return configRegistry.getSnapshot().tools().keySet().toArray(String[]::new);
     }
 
     /**
      * 获取工具的描述信息
      */
     public String getToolDescription(String toolName) {
-        ApiToolConfig.ApiTool tool = findTool(toolName);
-        return tool != null ? tool.getDescription() : "Tool not found";
+        CompiledApiTool tool = configRegistry.getSnapshot().getTool(toolName);
+        return tool != null ? tool.getTool().getDescription() : "Tool not found";
+    }
+
+    private record ApiRequest(URI uri, HttpMethod method, HttpHeaders headers, Object body) {
     }
 }
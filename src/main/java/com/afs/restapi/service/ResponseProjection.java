@@ -0,0 +1,92 @@
+package com.afs.restapi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 响应体字段投影
+ * 按工具配置的 resultFields（点号分隔的字段路径，如 data.shipmentNumber）预编译为字段树，
+ * 只保留这些字段再交给 LLM；路径上遇到数组时对每个元素分别投影，路径终点保留整个子树
+ * <p>
+ * 响应不是 JSON 或投影结果为空时返回原始响应体
+ */
+public final class ResponseProjection {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // 子字段为空表示保留整个子树
+    private final Map<String, ResponseProjection> children = new LinkedHashMap<>();
+
+    private ResponseProjection() {
+    }
+
+    /**
+     * 编译字段路径
+     *
+     * @return 未配置字段时返回 null
+     */
+    public static ResponseProjection compile(List<String> resultFields) {
+        if (resultFields == null || resultFields.isEmpty()) {
+            return null;
+        }
+        ResponseProjection root = new ResponseProjection();
+        for (String path : resultFields) {
+            ResponseProjection node = root;
+            for (String field : path.trim().split("\\.")) {
+                node = node.children.computeIfAbsent(field, key -> new ResponseProjection());
+            }
+        }
+        return root;
+    }
+
+    /**
+     * 投影 JSON 响应体
+     */
+    public String apply(String body) {
+        if (body == null || body.isBlank()) {
+            return body;
+        }
+        try {
+            JsonNode projected = project(OBJECT_MAPPER.readTree(body));
+            return projected != null ? OBJECT_MAPPER.writeValueAsString(projected) : body;
+        } catch (Exception e) {
+            return body;
+        }
+    }
+
+    private JsonNode project(JsonNode node) {
+        if (children.isEmpty()) {
+            return node;
+        }
+        if (node.isArray()) {
+            ArrayNode result = OBJECT_MAPPER.createArrayNode();
+            for (JsonNode element : node) {
+                JsonNode projected = project(element);
+                if (projected != null) {
+                    result.add(projected);
+                }
+            }
+            return result.isEmpty() ? null : result;
+        }
+        if (!node.isObject()) {
+            return null;
+        }
+        ObjectNode result = OBJECT_MAPPER.createObjectNode();
+        children.forEach((field, child) -> {
+            JsonNode value = node.get(field);
+            if (value != null) {
+                JsonNode projected = child.project(value);
+                if (projected != null) {
+                    result.set(field, projected);
+                }
+            }
+        });
+        return result.isEmpty() ? null : result;
+    }
+}
@@ -0,0 +1,414 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.PlanCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 语义响应缓存
+ * 放在 ChatClient 前面：问题先做精确匹配，再按向量余弦相似度匹配之前回答过的相似问题（同义改写），
+ * 相似度超过阈值时直接返回缓存的回答，不再调用 LLM。
+ * 语义匹配还要求问题中的字面量（单号、数字、引号中的内容，按 PlanCache 的规则提取）完全一致，
+ * 只差一个单号的两个问题向量几乎相同，但回答不能互相复用
+ * <p>
+ * 流式接口缓存的是原始的分片序列，命中时按相同分片重放为 Flux，SSE 客户端看到的帧结构不变。
+ * 每个命名空间单独存放，向量连续存放在一个 float 数组中：查找只持有该命名空间的读锁，
+ * 并发请求可以同时检索，写入和淘汰才需要写锁。
+ * 每个命名空间按容量（最久未访问的先淘汰）和 TTL 淘汰；请求头 X-Cache-Bypass: true 可跳过缓存。
+ * 命名空间可以整体失效（如 RAG 语料变化时），失效前开始、失效后才完成的回答不会写入缓存
+ */
+@Service
+public class SemanticResponseCache {
+
+    public static final String BYPASS_HEADER = "X-Cache-Bypass";
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticResponseCache.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+
+    public SemanticResponseCache(EmbeddingModel embeddingModel, MeterRegistry meterRegistry,
+                                 @Value("${agent.response-cache.enabled:true}") boolean enabled,
+                                 @Value("${agent.response-cache.similarity-threshold:0.95}") double similarityThreshold,
+                                 @Value("${agent.response-cache.max-entries:500}") int maxEntries,
+                                 @Value("${agent.response-cache.ttl:30m}") Duration ttl) {
+        this.embeddingModel = embeddingModel;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * 同步调用：命中时返回缓存的回答，否则调用 loader 并缓存结果
+     *
+     * @param namespace 缓存命名空间，不同提示词/上下文的接口使用不同命名空间
+     * @param question  用户问题
+     * @param bypass    是否跳过缓存
+     * @param loader    实际调用 LLM 的逻辑
+     */
+    public String call(String namespace, String question, boolean bypass, Supplier<String> loader) {
+        if (!enabled || bypass || question == null) {
+            return loader.get();
+        }
+
+        Lookup lookup = lookup(namespace, question);
+        if (lookup.entry() != null) {
+            return String.join("", lookup.entry().chunks());
+        }
+
+        String answer = loader.get();
+        if (answer != null) {
+            store(lookup, question, List.of(answer));
+        }
+        return answer;
+    }
+
+    /**
+     * 流式调用：命中时按缓存的分片重放，否则透传 loader 的分片并在正常结束后缓存
+     * <p>
+     * 查找和分片收集都在订阅时进行，同一个 Flux 被多次订阅时各自独立
+     */
+    public Flux<String> stream(String namespace, String question, boolean bypass, Supplier<Flux<String>> loader) {
+        if (!enabled || bypass || question == null) {
+            return loader.get();
+        }
+
+        return Flux.defer(() -> {
+            Lookup lookup = lookup(namespace, question);
+            if (lookup.entry() != null) {
+                return Flux.fromIterable(lookup.entry().chunks());
+            }
+
+            List<String> chunks = new ArrayList<>();
+            return loader.get()
+                    .doOnNext(chunks::add)
+                    .doOnComplete(() -> store(lookup, question, List.copyOf(chunks)));
+        });
+    }
+
+    /**
+     * 使命名空间中的所有缓存失效，正在生成的回答完成后也不会写入
+     */
+    public void invalidate(String namespace) {
+        Partition partition = partitions.get(namespace);
+        if (partition == null) {
+            return;
+        }
+        int cleared = partition.clear();
+        if (cleared > 0) {
+            logger.info("Response cache namespace '{}' invalidated, {} entries cleared", namespace, cleared);
+        }
+    }
+
+    private Lookup lookup(String namespace, String question) {
+        Partition partition = partitions.computeIfAbsent(namespace, key -> new Partition());
+        long generation = partition.generation();
+        String key = question.trim();
+
+        Entry exact = partition.exact(key);
+        if (exact != null) {
+            record(namespace, "hit");
+            return new Lookup(namespace, partition, generation, exact, exact.embedding(), exact.literals());
+        }
+
+        float[] embedding;
+        try {
+            embedding = normalize(embeddingModel.embed(question));
+        } catch (Exception e) {
+            logger.warn("Failed to embed question, skipping response cache", e);
+            record(namespace, "miss");
+            return new Lookup(namespace, partition, generation, null, null, null);
+        }
+
+        List<String> literals = PlanCache.extractLiterals(key);
+        Scored best = partition.nearest(embedding, literals);
+        if (best != null) {
+            logger.info("Response cache hit ({}): '{}' ~ '{}' (similarity {})",
+                    namespace, question, best.entry().question(), String.format("%.3f", best.similarity()));
+            record(namespace, "hit");
+            return new Lookup(namespace, partition, generation, best.entry(), embedding, literals);
+        }
+
+        record(namespace, "miss");
+        return new Lookup(namespace, partition, generation, null, embedding, literals);
+    }
+
+    private void store(Lookup lookup, String question, List<String> chunks) {
+        if (lookup.embedding() == null) {
+            return;
+        }
+        if (!lookup.partition().put(lookup.generation(), question.trim(), lookup.embedding(), lookup.literals(), chunks)) {
+            logger.debug("Response cache namespace '{}' was invalidated while answering, not caching", lookup.namespace());
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt() > ttlMillis;
+    }
+
+    private void record(String namespace, String result) {
+        meterRegistry.counter("agent.response.cache.requests", "namespace", namespace, "result", result).increment();
+    }
+
+    /**
+     * 归一化为单位向量，之后余弦相似度即点积
+     */
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    /**
+     * 一个命名空间的缓存条目：槽位 i 的向量存放在 vectors[i * dimensions, (i + 1) * dimensions)，
+     * 删除时把最后一个槽位移到空出的位置，保持槽位连续
+     */
+    private final class Partition {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Integer> slotsByQuestion = new HashMap<>();
+        private Entry[] entries = new Entry[16];
+        private float[] vectors = new float[0];
+        private int size;
+        private int dimensions;
+        private volatile long generation;
+
+        long generation() {
+            return generation;
+        }
+
+        Entry exact(String question) {
+            lock.readLock().lock();
+            try {
+                Integer slot = slotsByQuestion.get(question);
+                if (slot == null) {
+                    return null;
+                }
+                Entry entry = entries[slot];
+                long now = System.currentTimeMillis();
+                if (isExpired(entry, now)) {
+                    return null;
+                }
+                entry.touch(now);
+                return entry;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 相似度不低于阈值且字面量完全一致的最相近条目
+         */
+        Scored nearest(float[] embedding, List<String> literals) {
+            lock.readLock().lock();
+            try {
+                if (size == 0 || embedding.length != dimensions) {
+                    return null;
+                }
+                long now = System.currentTimeMillis();
+                int best = -1;
+                double bestSimilarity = similarityThreshold;
+                for (int slot = 0; slot < size; slot++) {
+                    int base = slot * dimensions;
+                    double similarity = 0;
+                    for (int i = 0; i < dimensions; i++) {
+                        similarity += vectors[base + i] * embedding[i];
+                    }
+                    if (similarity >= bestSimilarity && !isExpired(entries[slot], now)
+                            && entries[slot].literals().equals(literals)) {
+                        best = slot;
+                        bestSimilarity = similarity;
+                    }
+                }
+                if (best < 0) {
+                    return null;
+                }
+                entries[best].touch(now);
+                return new Scored(entries[best], bestSimilarity);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return 查找之后命名空间已失效时不写入并返回 false
+         */
+        boolean put(long expectedGeneration, String question, float[] embedding, List<String> literals, List<String> chunks) {
+            lock.writeLock().lock();
+            try {
+                if (generation != expectedGeneration) {
+                    return false;
+                }
+                if (embedding.length != dimensions) {
+                    // 嵌入模型变化，旧向量无法比较
+                    clearEntries();
+                    dimensions = embedding.length;
+                }
+
+                long now = System.currentTimeMillis();
+                Entry entry = new Entry(question, embedding, literals, chunks, now);
+                Integer existing = slotsByQuestion.get(question);
+                int slot;
+                if (existing != null) {
+                    slot = existing;
+                } else {
+                    evictExpired(now);
+                    if (size >= maxEntries && size > 0) {
+                        remove(leastRecentlyUsed());
+                    }
+                    slot = size++;
+                    ensureCapacity(size);
+                    slotsByQuestion.put(question, slot);
+                }
+                entries[slot] = entry;
+                System.arraycopy(embedding, 0, vectors, slot * dimensions, dimensions);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int clear() {
+            lock.writeLock().lock();
+            try {
+                generation++;
+                int cleared = size;
+                clearEntries();
+                return cleared;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void clearEntries() {
+            Arrays.fill(entries, 0, size, null);
+            slotsByQuestion.clear();
+            size = 0;
+        }
+
+        private void evictExpired(long now) {
+            for (int slot = size - 1; slot >= 0; slot--) {
+                if (isExpired(entries[slot], now)) {
+                    remove(slot);
+                }
+            }
+        }
+
+        private int leastRecentlyUsed() {
+            int eldest = 0;
+            for (int slot = 1; slot < size; slot++) {
+                if (entries[slot].lastAccess() < entries[eldest].lastAccess()) {
+                    eldest = slot;
+                }
+            }
+            return eldest;
+        }
+
+        private void remove(int slot) {
+            int last = size - 1;
+            slotsByQuestion.remove(entries[slot].question());
+            if (slot != last) {
+                entries[slot] = entries[last];
+                System.arraycopy(vectors, last * dimensions, vectors, slot * dimensions, dimensions);
+                slotsByQuestion.put(entries[slot].question(), slot);
+            }
+            entries[last] = null;
+            size = last;
+        }
+
+        private void ensureCapacity(int slots) {
+            if (slots > entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(slots, entries.length * 2));
+            }
+            if ((long) slots * dimensions > vectors.length) {
+                vectors = Arrays.copyOf(vectors, Math.max(slots, entries.length) * dimensions);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String question;
+        private final float[] embedding;
+        private final List<String> literals;
+        private final List<String> chunks;
+        private final long createdAt;
+        private volatile long lastAccess;
+
+        Entry(String question, float[] embedding, List<String> literals, List<String> chunks, long createdAt) {
+            this.question = question;
+            this.embedding = embedding;
+            this.literals = literals;
+            this.chunks = chunks;
+            this.createdAt = createdAt;
+            this.lastAccess = createdAt;
+        }
+
+        String question() {
+            return question;
+        }
+
+        float[] embedding() {
+            return embedding;
+        }
+
+        List<String> literals() {
+            return literals;
+        }
+
+        List<String> chunks() {
+            return chunks;
+        }
+
+        long createdAt() {
+            return createdAt;
+        }
+
+        long lastAccess() {
+            return lastAccess;
+        }
+
+        void touch(long now) {
+            lastAccess = now;
+        }
+    }
+
+    private record Scored(Entry entry, double similarity) {
+    }
+
+    private record Lookup(String namespace, Partition partition, long generation, Entry entry, float[] embedding,
+                          List<String> literals) {
+    }
+}
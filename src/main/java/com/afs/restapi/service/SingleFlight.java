@@ -0,0 +1,94 @@
+package com.afs.restapi.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * 相同 key 的调用同时进行时只执行第一个，其余调用等待并共享它的结果；
+ * 调用结束后立即移除，之后的调用重新执行（不做缓存）。同步和非阻塞调用共享同一个在途表。
+ * 第一个调用无论正常返回还是抛出任何异常（包括 Error）都会完成共享结果并移除在途记录，等待者不会永久挂起
+ * <p>
+ * 指标：agent.api.calls{tool, result=executed|coalesced}
+ */
+@Component
+public class SingleFlight {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 同步执行，相同 key 的调用在途时等待其结果
+     *
+     * @param toolName 工具名（指标标签）
+     * @param key      合并 key
+     * @param call     实际调用
+     */
+    public String execute(String toolName, String key, Supplier<String> call) {
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            record(toolName, "coalesced");
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        record(toolName, "executed");
+        try {
+            String result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 非阻塞执行，相同 key 的调用在途时共享其结果
+     * 第一个调用独立订阅实际请求，某个订阅者取消不会影响其他等待者
+     */
+    public Mono<String> executeAsync(String toolName, String key, Supplier<Mono<String>> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<String> flight = new CompletableFuture<>();
+            CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                record(toolName, "coalesced");
+                return Mono.fromFuture(existing, true);
+            }
+
+            record(toolName, "executed");
+            flight.whenComplete((result, error) -> inFlight.remove(key, flight));
+            try {
+                call.get().subscribe(flight::complete, flight::completeExceptionally, () -> flight.complete(null));
+            } catch (Throwable e) {
+                // 创建调用时同步抛出的异常同样交给等待者
+                flight.completeExceptionally(e);
+            }
+            return Mono.fromFuture(flight, true);
+        });
+    }
+
+    private void record(String toolName, String result) {
+        meterRegistry.counter("agent.api.calls", "tool", toolName, "result", result).increment();
+    }
+}
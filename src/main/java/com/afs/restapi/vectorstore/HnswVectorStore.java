@@ -0,0 +1,779 @@
+package com.afs.restapi.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.util.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 基于 HNSW 图的近似最近邻向量库
+ * <p>
+ * 支持增量插入和删除（删除为逻辑删除，节点仍参与图遍历但不会出现在结果中），
+ * 参数 M / efConstruction / efSearch 可调。嵌入在写锁外计算，不阻塞检索。
+ * <p>
+ * 持久化：图结构快照保存在文件中，每次 add / delete 先追加到预写日志（同名 .wal 文件）并刷盘，
+ * 重启时加载快照再重放日志（日志中保存了向量，无需重新嵌入），进程崩溃也不会丢失已返回的写入；
+ * close / save 时写入新快照并清空日志。
+ * 逻辑删除的节点超过总数的 1/4 时重建图结构，清除这些节点，避免图和快照随更新次数无限增长
+ */
+public class HnswVectorStore implements VectorStore, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HnswVectorStore.class);
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int FORMAT_VERSION = 1;
+    private static final byte WAL_ADD = 1;
+    private static final byte WAL_DELETE = 2;
+    private static final int MIN_PURGE_NODES = 64;
+
+    private final EmbeddingModel embeddingModel;
+    private final Path file;
+    private final Path walFile;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object saveLock = new Object();
+    private volatile Consumer<VectorStoreChangedEvent> changeListener = event -> {
+    };
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int dimensions;
+    private int deletedNodes;
+    private volatile boolean dirty;
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, Path file, int m, int efConstruction, int efSearch) {
+        this.embeddingModel = embeddingModel;
+        this.file = file;
+        this.walFile = file.resolveSibling(file.getFileName() + ".wal");
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        if (Files.exists(file)) {
+            load();
+        }
+        replayWal();
+        logger.info("✅ HnswVectorStore opened at {} with {} documents (M={}, efConstruction={}, efSearch={})",
+                file, nodesById.size(), m, efConstruction, efSearch);
+    }
+
+    /**
+     * 设置文档增删后的回调，在写锁释放后调用
+     */
+    public void setChangeListener(Consumer<VectorStoreChangedEvent> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        // 内容没有变化的文档跳过，避免重复嵌入
+        List<Document> changed = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Document document : documents) {
+                String hash = contentHash(document);
+                if (!isCurrent(document.getId(), hash)) {
+                    changed.add(document);
+                    hashes.add(hash);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // 嵌入可能很慢（远程模型），在锁外计算
+        List<float[]> embeddings = embeddingModel.embed(changed.stream().map(Document::getText).toList());
+
+        List<String> addedIds = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            List<Node> added = new ArrayList<>();
+            for (int i = 0; i < changed.size(); i++) {
+                Document document = changed.get(i);
+                // 嵌入期间其他线程可能已经写入了相同的内容
+                if (!isCurrent(document.getId(), hashes.get(i))) {
+                    added.add(new Node(document.getId(), document.getText(), new HashMap<>(document.getMetadata()),
+                            hashes.get(i), MappedFileVectorStore.normalize(embeddings.get(i)), randomLevel(), m));
+                }
+            }
+            if (added.isEmpty()) {
+                return;
+            }
+
+            // 先校验再写日志，无法插入的记录不能落盘，否则每次重启重放都会失败
+            checkDimensions(added);
+            appendWal(added, List.of());
+            for (Node node : added) {
+                replace(node);
+                addedIds.add(node.id);
+            }
+            dirty = true;
+            purgeIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+            if (!addedIds.isEmpty()) {
+                changeListener.accept(new VectorStoreChangedEvent(addedIds, List.of()));
+            }
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        List<String> deletedIds = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                if (nodesById.containsKey(id)) {
+                    deletedIds.add(id);
+                }
+            }
+            if (deletedIds.isEmpty()) {
+                return;
+            }
+
+            appendWal(List.of(), deletedIds);
+            deletedIds.forEach(this::markDeleted);
+            dirty = true;
+            purgeIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+            if (!deletedIds.isEmpty()) {
+                changeListener.accept(new VectorStoreChangedEvent(List.of(), deletedIds));
+            }
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = MetadataFilter.of(filterExpression);
+        List<String> matching = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Node node : nodes) {
+                if (!node.deleted && filter.test(node.metadata)) {
+                    matching.add(node.id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(matching);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = MappedFileVectorStore.normalize(embeddingModel.embed(request.getQuery()));
+        Predicate<Map<String, Object>> filter = MetadataFilter.of(request.getFilterExpression());
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || query.length != dimensions) {
+                return List.of();
+            }
+
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                current = closest(query, current, layer);
+            }
+
+            // 过滤掉的结果较多时逐步放大 ef，直到凑够 topK 或遍历完整个图
+            List<Candidate> matches = new ArrayList<>();
+            int ef = Math.max(efSearch, request.getTopK());
+            while (true) {
+                matches.clear();
+                for (Candidate candidate : searchLayer(query, List.of(current), ef, 0)) {
+                    Node node = nodes.get(candidate.node());
+                    double score = 1 - candidate.distance();
+                    if (!node.deleted && score >= request.getSimilarityThreshold() && filter.test(node.metadata)) {
+                        matches.add(candidate);
+                    }
+                }
+                if (matches.size() >= request.getTopK() || ef >= nodes.size()) {
+                    break;
+                }
+                ef = Math.min(ef * 2, nodes.size());
+            }
+
+            matches.sort(Comparator.comparingDouble(Candidate::distance));
+            List<Document> results = new ArrayList<>(Math.min(matches.size(), request.getTopK()));
+            for (Candidate candidate : matches.subList(0, Math.min(matches.size(), request.getTopK()))) {
+                Node node = nodes.get(candidate.node());
+                results.add(Document.builder()
+                        .id(node.id)
+                        .text(node.text)
+                        .metadata(node.metadata)
+                        .score(1 - candidate.distance())
+                        .build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 图中的节点数，包括尚未清除的逻辑删除节点
+     */
+    int graphSize() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- graph
+
+    private boolean isCurrent(String id, String hash) {
+        Integer index = nodesById.get(id);
+        return index != null && hash.equals(nodes.get(index).hash);
+    }
+
+    /**
+     * 插入节点，同 id 的旧节点改为逻辑删除
+     */
+    private void replace(Node node) {
+        markDeleted(node.id);
+        insert(node);
+    }
+
+    private void markDeleted(String id) {
+        Integer index = nodesById.remove(id);
+        if (index != null) {
+            nodes.get(index).deleted = true;
+            deletedNodes++;
+        }
+    }
+
+    /**
+     * 逻辑删除的节点超过 1/4 时，只用存活节点（保留原层级）重建图，并写入新快照
+     */
+    private void purgeIfNeeded() {
+        if (nodes.size() < MIN_PURGE_NODES || deletedNodes * 4 < nodes.size()) {
+            return;
+        }
+        List<Node> live = new ArrayList<>(nodes.size() - deletedNodes);
+        for (Node node : nodes) {
+            if (!node.deleted) {
+                live.add(new Node(node.id, node.text, node.metadata, node.hash, node.vector, node.level, m));
+            }
+        }
+        logger.info("Purging {} deleted nodes from the HNSW graph, rebuilding with {} nodes", deletedNodes, live.size());
+        nodes.clear();
+        nodesById.clear();
+        entryPoint = -1;
+        maxLevel = -1;
+        deletedNodes = 0;
+        for (Node node : live) {
+            insert(node);
+        }
+        writeSnapshot();
+    }
+
+    private void checkDimensions(List<Node> added) {
+        int expected = dimensions;
+        for (Node node : added) {
+            if (expected == 0) {
+                expected = node.vector.length;
+            } else if (node.vector.length != expected) {
+                throw dimensionMismatch(node.vector.length, expected);
+            }
+        }
+    }
+
+    private static IllegalArgumentException dimensionMismatch(int actual, int expected) {
+        return new IllegalArgumentException(String.format(
+                "Embedding dimension %d does not match store dimension %d", actual, expected));
+    }
+
+    private void insert(Node node) {
+        if (dimensions == 0) {
+            dimensions = node.vector.length;
+        } else if (node.vector.length != dimensions) {
+            throw dimensionMismatch(node.vector.length, dimensions);
+        }
+
+        int index = nodes.size();
+        nodes.add(node);
+        nodesById.put(node.id, index);
+
+        if (entryPoint < 0) {
+            entryPoint = index;
+            maxLevel = node.level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > node.level; layer--) {
+            current = closest(node.vector, current, layer);
+        }
+
+        List<Integer> entryPoints = List.of(current);
+        for (int layer = Math.min(node.level, maxLevel); layer >= 0; layer--) {
+            List<Candidate> found = new ArrayList<>(searchLayer(node.vector, entryPoints, efConstruction, layer));
+            found.sort(Comparator.comparingDouble(Candidate::distance));
+
+            for (Candidate neighbour : found.subList(0, Math.min(m, found.size()))) {
+                link(index, neighbour.node(), layer);
+                link(neighbour.node(), index, layer);
+            }
+            entryPoints = found.stream().map(Candidate::node).toList();
+        }
+
+        if (node.level > maxLevel) {
+            maxLevel = node.level;
+            entryPoint = index;
+        }
+    }
+
+    /**
+     * 添加一条有向边，超出该层最大连接数时只保留距离最近的邻居
+     */
+    private void link(int from, int to, int layer) {
+        Node node = nodes.get(from);
+        int[] links = node.links[layer];
+        int count = node.linkCounts[layer];
+        int maxConnections = maxConnections(layer);
+
+        if (count < maxConnections) {
+            links[count] = to;
+            node.linkCounts[layer] = count + 1;
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            candidates.add(new Candidate(links[i], distance(node.vector, links[i])));
+        }
+        candidates.add(new Candidate(to, distance(node.vector, to)));
+        candidates.sort(Comparator.comparingDouble(Candidate::distance));
+        for (int i = 0; i < maxConnections; i++) {
+            links[i] = candidates.get(i).node();
+        }
+    }
+
+    private int closest(float[] query, int entry, int layer) {
+        Candidate best = null;
+        for (Candidate candidate : searchLayer(query, List.of(entry), 1, layer)) {
+            if (best == null || candidate.distance() < best.distance()) {
+                best = candidate;
+            }
+        }
+        return best != null ? best.node() : entry;
+    }
+
+    /**
+     * 在指定层做贪心 best-first 搜索，返回最多 ef 个最近节点
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, List<Integer> entryPoints, int ef, int layer) {
+        Set<Integer> visited = new HashSet<>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::distance).reversed());
+
+        for (int entry : entryPoints) {
+            if (visited.add(entry)) {
+                Candidate candidate = new Candidate(entry, distance(query, entry));
+                candidates.add(candidate);
+                results.add(candidate);
+                if (results.size() > ef) {
+                    results.poll();
+                }
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate nearest = candidates.poll();
+            if (results.size() >= ef && nearest.distance() > results.peek().distance()) {
+                break;
+            }
+
+            Node node = nodes.get(nearest.node());
+            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                if (!visited.add(neighbour)) {
+                    continue;
+                }
+                double distance = distance(query, neighbour);
+                if (results.size() < ef || distance < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbour, distance);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private double distance(float[] query, int node) {
+        float[] vector = nodes.get(node).vector;
+        double dot = 0;
+        for (int i = 0; i < vector.length; i++) {
+            dot += vector[i] * query[i];
+        }
+        return 1 - dot;
+    }
+
+    private int maxConnections(int layer) {
+        return layer == 0 ? m * 2 : m;
+    }
+
+    private int randomLevel() {
+        return (int) Math.floor(-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+    }
+
+    // ---------------------------------------------------------------- persistence
+
+    /**
+     * 把图结构写入临时文件后原子替换，避免写到一半时崩溃损坏已有快照
+     */
+    public void save() {
+        lock.readLock().lock();
+        try {
+            writeSnapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 调用方需持有读锁或写锁；saveLock 保证并发的 save 不会同时写同一个临时文件
+     */
+    private void writeSnapshot() {
+        synchronized (saveLock) {
+            try {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(m);
+                    out.writeInt(dimensions);
+                    out.writeInt(entryPoint);
+                    out.writeInt(maxLevel);
+                    out.writeInt(nodes.size());
+                    for (Node node : nodes) {
+                        writeString(out, node.id);
+                        writeString(out, node.text);
+                        writeString(out, node.hash);
+                        writeString(out, objectMapper.writeValueAsString(node.metadata));
+                        out.writeBoolean(node.deleted);
+                        out.writeInt(node.level);
+                        for (float value : node.vector) {
+                            out.writeFloat(value);
+                        }
+                        for (int layer = 0; layer <= node.level; layer++) {
+                            out.writeInt(node.linkCounts[layer]);
+                            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                                out.writeInt(node.links[layer][i]);
+                            }
+                        }
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // 快照已包含日志中的所有写入；持有读锁期间没有新的写入
+                Files.deleteIfExists(walFile);
+                dirty = false;
+                logger.info("HNSW graph with {} nodes saved to {}", nodes.size(), file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to save HNSW graph to " + file, e);
+            }
+        }
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a supported HNSW graph file");
+            }
+            int storedM = in.readInt();
+            if (storedM != m) {
+                throw new IOException(String.format("Graph was built with M=%d but M=%d is configured", storedM, m));
+            }
+            dimensions = in.readInt();
+            entryPoint = in.readInt();
+            maxLevel = in.readInt();
+            int count = in.readInt();
+            for (int index = 0; index < count; index++) {
+                String id = readString(in);
+                String text = readString(in);
+                String hash = readString(in);
+                Map<String, Object> metadata = objectMapper.readValue(readString(in), new TypeReference<>() {
+                });
+                boolean deleted = in.readBoolean();
+                int level = in.readInt();
+                float[] vector = new float[dimensions];
+                for (int i = 0; i < dimensions; i++) {
+                    vector[i] = in.readFloat();
+                }
+
+                Node node = new Node(id, text, metadata, hash, vector, level, m);
+                node.deleted = deleted;
+                for (int layer = 0; layer <= level; layer++) {
+                    node.linkCounts[layer] = in.readInt();
+                    for (int i = 0; i < node.linkCounts[layer]; i++) {
+                        node.links[layer][i] = in.readInt();
+                    }
+                }
+                nodes.add(node);
+                if (!deleted) {
+                    nodesById.put(id, index);
+                } else {
+                    deletedNodes++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load HNSW graph from " + file, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- write-ahead log
+
+    /**
+     * 追加一批写入并刷盘；每条记录带长度前缀，重放时可以识别写到一半的末尾记录
+     */
+    private void appendWal(List<Node> added, List<String> deletedIds) {
+        try {
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(batch);
+            for (Node node : added) {
+                writeWalRecord(out, walAdd(node));
+            }
+            for (String id : deletedIds) {
+                writeWalRecord(out, walDelete(id));
+            }
+            out.flush();
+
+            Files.createDirectories(walFile.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(walFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to HNSW write-ahead log " + walFile, e);
+        }
+    }
+
+    private byte[] walAdd(Node node) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(WAL_ADD);
+        writeString(out, node.id);
+        writeString(out, node.text);
+        writeString(out, node.hash);
+        writeString(out, objectMapper.writeValueAsString(node.metadata));
+        out.writeInt(node.level);
+        out.writeInt(node.vector.length);
+        for (float value : node.vector) {
+            out.writeFloat(value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private byte[] walDelete(String id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(WAL_DELETE);
+        writeString(out, id);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeWalRecord(DataOutputStream out, byte[] record) throws IOException {
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    /**
+     * 重放快照之后的写入；末尾不完整或无法解码的记录（写入中途崩溃）被截断，
+     * 能解码但无法应用的记录（例如维度不一致）记录日志后跳过，不影响之后的记录
+     */
+    private void replayWal() {
+        if (!Files.exists(walFile)) {
+            return;
+        }
+        long validLength = 0;
+        int replayed = 0;
+        int skipped = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(walFile)))) {
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[in.readInt()];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                WalRecord decoded = decodeWalRecord(new DataInputStream(new ByteArrayInputStream(record)));
+                validLength += 4 + record.length;
+                try {
+                    applyWalRecord(decoded);
+                    replayed++;
+                } catch (RuntimeException e) {
+                    skipped++;
+                    logger.error("Skipping HNSW write-ahead log record at offset {} that cannot be applied",
+                            validLength - 4 - record.length, e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Corrupt HNSW write-ahead log record after {} bytes, truncating", validLength, e);
+        }
+
+        try (FileChannel channel = FileChannel.open(walFile, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                channel.truncate(validLength);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to truncate HNSW write-ahead log " + walFile, e);
+        }
+        if (replayed > 0 || skipped > 0) {
+            // 快照中不包含跳过的记录，保存后它们随日志一起清除
+            dirty = true;
+            logger.info("Replayed {} HNSW write-ahead log records from {} ({} skipped)", replayed, walFile, skipped);
+        }
+    }
+
+    private WalRecord decodeWalRecord(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        if (op == WAL_ADD) {
+            String id = readString(in);
+            String text = readString(in);
+            String hash = readString(in);
+            Map<String, Object> metadata = objectMapper.readValue(readString(in), new TypeReference<>() {
+            });
+            int level = in.readInt();
+            float[] vector = new float[in.readInt()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = in.readFloat();
+            }
+            return new WalRecord(new Node(id, text, metadata, hash, vector, level, m), null);
+        } else if (op == WAL_DELETE) {
+            return new WalRecord(null, readString(in));
+        }
+        throw new IOException("Unknown HNSW write-ahead log operation " + op);
+    }
+
+    private void applyWalRecord(WalRecord record) {
+        if (record.added() != null) {
+            checkDimensions(List.of(record.added()));
+            replace(record.added());
+        } else {
+            markDeleted(record.deletedId());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (dirty) {
+            save();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String contentHash(Document document) {
+        String content = document.getText() + '\u0000' + new TreeMap<>(document.getMetadata());
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码后的写前日志记录：added 和 deletedId 二选一
+     */
+    private record WalRecord(Node added, String deletedId) {
+    }
+
+    private record Candidate(int node, double distance) {
+    }
+
+    private static final class Node {
+        final String id;
+        final String text;
+        final Map<String, Object> metadata;
+        final String hash;
+        final float[] vector;
+        final int level;
+        final int[][] links;
+        final int[] linkCounts;
+        boolean deleted;
+
+        Node(String id, String text, Map<String, Object> metadata, String hash, float[] vector, int level, int m) {
+            this.id = id;
+            this.text = text;
+            this.metadata = metadata;
+            this.hash = hash;
+            this.vector = vector;
+            this.level = level;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[layer == 0 ? m * 2 : m];
+            }
+        }
+    }
+}
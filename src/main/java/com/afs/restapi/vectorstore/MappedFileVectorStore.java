@@ -0,0 +1,672 @@
+package com.afs.restapi.vectorstore;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.util.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 基于内存映射文件的持久化向量库
+ * <p>
+ * 目录结构：
+ * - vectors.bin：文件头 + 按槽位连续存放的归一化 float 向量，按段内存映射，不占用堆内存。
+ *   第一段约 64KB，之后每段翻倍直到 64MB，小语料不会一开始就把文件扩展到 64MB
+ * - documents.log：追加写的文档日志（每行一条 JSON：add / delete），是写入的提交记录。
+ *   被替换或删除的记录达到一定数量且不少于有效记录时，改写为只含有效文档的新日志（压缩）
+ * <p>
+ * 堆上只保留 id -> 槽位、槽位 -> 日志偏移量 和 槽位 -> 内容哈希 的索引，文档正文和元数据在命中时才从日志读取，
+ * 因此语料可以超过堆大小；重启时重放日志即可恢复索引，无需重新计算嵌入。
+ * 索引每个文档约占 150~200 字节堆内存（id 字符串和 HashMap 条目、32 字符的哈希、8 字节偏移量），
+ * 百万文档约 200MB，规划堆大小时需要计入。
+ * 相同 id 且内容不变的文档再次 add 时直接跳过，不会重新嵌入；嵌入在写锁外计算，不阻塞检索
+ * <p>
+ * 提交顺序：先写向量并刷盘（MappedByteBuffer.force），再追加日志并刷盘，日志记录落盘时对应的向量一定已经落盘。
+ * 删除或替换后空出的槽位在释放记录落盘后复用，vectors.bin 不会随更新次数无限增长
+ */
+public class MappedFileVectorStore implements VectorStore, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileVectorStore.class);
+
+    private static final int MAGIC = 0x56454331; // "VEC1"
+    private static final int HEADER_BYTES = 16;
+    private static final long FIRST_SEGMENT_BYTES = 64L * 1024;
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final int DEFAULT_COMPACTION_MIN_DEAD_RECORDS = 1000;
+
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final Path logFile;
+    private final int compactionMinDeadRecords;
+    private final FileChannel vectorChannel;
+    private FileChannel logChannel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Consumer<VectorStoreChangedEvent> changeListener = event -> {
+    };
+
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final BitSet liveSlots = new BitSet();
+    // 可以复用的槽位；释放记录尚未刷盘的槽位先放在 pendingFreeSlots
+    private final BitSet freeSlots = new BitSet();
+    private final BitSet pendingFreeSlots = new BitSet();
+    private final List<MappedByteBuffer> mappedSegments = new ArrayList<>();
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    private final BitSet dirtySegments = new BitSet();
+    private long[] slotLogOffsets = new long[1024];
+    private String[] slotHashes = new String[1024];
+    private int nextSlot;
+    private int dimensions;
+    // 段布局：前 growingSegments 段从 firstSegmentSlots 个槽位开始逐段翻倍，之后每段 maxSegmentSlots 个槽位
+    private int firstSegmentSlots;
+    private int maxSegmentSlots;
+    private int growingSegments;
+    private int growingSlots;
+    // 日志中已被替换或删除的记录数（含 delete 记录本身）
+    private int deadRecords;
+
+    public MappedFileVectorStore(EmbeddingModel embeddingModel, Path directory) {
+        this(embeddingModel, directory, DEFAULT_COMPACTION_MIN_DEAD_RECORDS);
+    }
+
+    /**
+     * @param compactionMinDeadRecords 运行期间触发日志压缩所需的最少失效记录数；关闭时只要失效记录不少于有效记录就压缩
+     */
+    public MappedFileVectorStore(EmbeddingModel embeddingModel, Path directory, int compactionMinDeadRecords) {
+        this.embeddingModel = embeddingModel;
+        this.compactionMinDeadRecords = compactionMinDeadRecords;
+        this.logFile = directory.resolve("documents.log");
+        try {
+            Files.createDirectories(directory);
+            this.vectorChannel = FileChannel.open(directory.resolve("vectors.bin"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // 压缩中途崩溃留下的临时文件，原日志仍然完整
+            Files.deleteIfExists(compactionFile());
+            this.logChannel = FileChannel.open(logFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            readHeader();
+            replayLog(logFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open vector store at " + directory, e);
+        }
+        logger.info("✅ MappedFileVectorStore opened at {} with {} documents (dimensions: {})",
+                directory, liveSlots.cardinality(), dimensions);
+    }
+
+    /**
+     * 设置文档增删后的回调，在写锁释放后调用
+     */
+    public void setChangeListener(Consumer<VectorStoreChangedEvent> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        // 内容没有变化的文档跳过，避免重复嵌入
+        List<Document> changed = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Document document : documents) {
+                String hash = contentHash(document);
+                if (!isCurrent(document.getId(), hash)) {
+                    changed.add(document);
+                    hashes.add(hash);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // 嵌入可能很慢（远程模型），在锁外计算
+        List<float[]> embeddings = embeddingModel.embed(changed.stream().map(Document::getText).toList());
+
+        List<String> addedIds = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < changed.size(); i++) {
+                Document document = changed.get(i);
+                // 嵌入期间其他线程可能已经写入了相同的内容
+                if (!isCurrent(document.getId(), hashes.get(i))) {
+                    append(document, hashes.get(i), normalize(embeddings.get(i)));
+                    addedIds.add(document.getId());
+                }
+            }
+            if (!addedIds.isEmpty()) {
+                commit();
+                compactIfNeeded(compactionMinDeadRecords);
+            }
+            logger.debug("Embedded and stored {} of {} documents", addedIds.size(), documents.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to add documents to vector store", e);
+        } finally {
+            lock.writeLock().unlock();
+            if (!addedIds.isEmpty()) {
+                changeListener.accept(new VectorStoreChangedEvent(addedIds, List.of()));
+            }
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        List<String> deletedIds = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                if (slotsById.containsKey(id)) {
+                    writeLogRecord(new LogRecord("delete", id, null, null, null, null));
+                    removeSlot(slotsById.remove(id));
+                    deadRecords += 2;
+                    deletedIds.add(id);
+                }
+            }
+            if (!deletedIds.isEmpty()) {
+                commit();
+                compactIfNeeded(compactionMinDeadRecords);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete documents from vector store", e);
+        } finally {
+            lock.writeLock().unlock();
+            if (!deletedIds.isEmpty()) {
+                changeListener.accept(new VectorStoreChangedEvent(List.of(), deletedIds));
+            }
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = MetadataFilter.of(filterExpression);
+        List<String> matching = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = liveSlots.nextSetBit(0); slot >= 0; slot = liveSlots.nextSetBit(slot + 1)) {
+                LogRecord record = readLogRecord(slotLogOffsets[slot]);
+                if (filter.test(record.metadata() != null ? record.metadata() : Map.of())) {
+                    matching.add(record.id());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(matching);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        Predicate<Map<String, Object>> filter = MetadataFilter.of(request.getFilterExpression());
+
+        lock.readLock().lock();
+        try {
+            if (dimensions == 0 || query.length != dimensions) {
+                return List.of();
+            }
+
+            // 小顶堆保留得分最高的 topK 个槽位
+            PriorityQueue<ScoredSlot> top = new PriorityQueue<>(Comparator.comparingDouble(ScoredSlot::score));
+            Map<Integer, LogRecord> records = new HashMap<>();
+            for (int slot = liveSlots.nextSetBit(0); slot >= 0; slot = liveSlots.nextSetBit(slot + 1)) {
+                double score = dot(slot, query);
+                if (score < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                if (top.size() >= request.getTopK() && score <= top.peek().score()) {
+                    continue;
+                }
+                if (request.hasFilterExpression()) {
+                    LogRecord record = readLogRecord(slotLogOffsets[slot]);
+                    if (!filter.test(record.metadata() != null ? record.metadata() : Map.of())) {
+                        continue;
+                    }
+                    records.put(slot, record);
+                }
+                top.add(new ScoredSlot(slot, score));
+                if (top.size() > request.getTopK()) {
+                    records.remove(top.poll().slot());
+                }
+            }
+
+            List<ScoredSlot> ranked = new ArrayList<>(top);
+            ranked.sort(Comparator.comparingDouble(ScoredSlot::score).reversed());
+            List<Document> results = new ArrayList<>(ranked.size());
+            for (ScoredSlot scored : ranked) {
+                LogRecord record = records.computeIfAbsent(scored.slot(), slot -> readLogRecord(slotLogOffsets[slot]));
+                results.add(Document.builder()
+                        .id(record.id())
+                        .text(record.text())
+                        .metadata(record.metadata() != null ? record.metadata() : Map.of())
+                        .score(scored.score())
+                        .build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已分配的槽位数，包括等待复用的空闲槽位
+     */
+    int allocatedSlots() {
+        lock.readLock().lock();
+        try {
+            return nextSlot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 文档日志的字节数
+     */
+    long logSize() throws IOException {
+        lock.readLock().lock();
+        try {
+            return logChannel.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (logChannel.isOpen()) {
+                try {
+                    compactIfNeeded(1);
+                } catch (IOException e) {
+                    logger.warn("Failed to compact vector store log on close", e);
+                }
+            }
+            vectorChannel.close();
+            logChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- writes
+
+    private void append(Document document, String hash, float[] vector) throws IOException {
+        if (dimensions == 0) {
+            initDimensions(vector.length);
+        } else if (vector.length != dimensions) {
+            throw new IllegalArgumentException(String.format(
+                    "Embedding dimension %d does not match store dimension %d", vector.length, dimensions));
+        }
+
+        int slot = freeSlots.nextSetBit(0);
+        if (slot >= 0) {
+            freeSlots.clear(slot);
+        } else {
+            slot = nextSlot++;
+        }
+        int index = segmentIndex(slot);
+        segment(index).put((slot - segmentStart(index)) * dimensions, vector);
+        dirtySegments.set(index);
+
+        // 先写向量，再写日志；日志记录是提交点，崩溃时未提交的槽位会被复用
+        long offset = writeLogRecord(new LogRecord("add", document.getId(), slot, hash,
+                document.getText(), document.getMetadata()));
+
+        Integer previous = slotsById.put(document.getId(), slot);
+        if (previous != null) {
+            removeSlot(previous);
+            deadRecords++;
+        }
+        registerSlot(slot, offset, hash);
+    }
+
+    /**
+     * 刷盘：先刷本批写入的向量段，再刷日志；之后释放记录已经落盘，空出的槽位可以复用
+     */
+    private void commit() throws IOException {
+        for (int index = dirtySegments.nextSetBit(0); index >= 0; index = dirtySegments.nextSetBit(index + 1)) {
+            mappedSegments.get(index).force();
+        }
+        dirtySegments.clear();
+        logChannel.force(false);
+        freeSlots.or(pendingFreeSlots);
+        pendingFreeSlots.clear();
+    }
+
+    /**
+     * 失效记录不少于有效记录且达到 minDeadRecords 时压缩日志：只保留有效文档的 add 记录，
+     * 新日志写入临时文件并刷盘后原子替换原日志，中途崩溃时原日志不受影响。
+     * 只在 commit 之后调用，此时所有释放记录都已落盘，槽位不变，向量文件无需改动
+     */
+    private void compactIfNeeded(int minDeadRecords) throws IOException {
+        int live = liveSlots.cardinality();
+        if (deadRecords < Math.max(minDeadRecords, live)) {
+            return;
+        }
+        long before = logChannel.size();
+        Path compacted = compactionFile();
+        long[] offsets = new long[slotLogOffsets.length];
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (int slot = liveSlots.nextSetBit(0); slot >= 0; slot = liveSlots.nextSetBit(slot + 1)) {
+                offsets[slot] = position;
+                ByteBuffer buffer = ByteBuffer.wrap(toLine(readLogRecord(slotLogOffsets[slot])));
+                while (buffer.hasRemaining()) {
+                    position += out.write(buffer, position);
+                }
+            }
+            out.force(true);
+        }
+
+        logChannel.close();
+        Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(logFile.getParent());
+        logChannel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        slotLogOffsets = offsets;
+        logger.info("Compacted vector store log: {} dead records dropped, {} -> {} bytes",
+                deadRecords, before, logChannel.size());
+        deadRecords = 0;
+    }
+
+    private Path compactionFile() {
+        return logFile.resolveSibling(logFile.getFileName() + ".compact");
+    }
+
+    /**
+     * 刷新目录项，让替换日志的重命名落盘；部分平台不支持打开目录，此时只能依赖文件系统自身
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not force directory {}", directory, e);
+        }
+    }
+
+    private boolean isCurrent(String id, String hash) {
+        Integer slot = slotsById.get(id);
+        return slot != null && hash.equals(slotHashes[slot]);
+    }
+
+    private long writeLogRecord(LogRecord record) throws IOException {
+        byte[] line = toLine(record);
+        long offset = logChannel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += logChannel.write(buffer, position);
+        }
+        return offset;
+    }
+
+    private byte[] toLine(LogRecord record) throws IOException {
+        return (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void registerSlot(int slot, long logOffset, String hash) {
+        if (slot >= slotLogOffsets.length) {
+            int capacity = Math.max(slot + 1, slotLogOffsets.length * 2);
+            slotLogOffsets = Arrays.copyOf(slotLogOffsets, capacity);
+            slotHashes = Arrays.copyOf(slotHashes, capacity);
+        }
+        slotLogOffsets[slot] = logOffset;
+        slotHashes[slot] = hash;
+        liveSlots.set(slot);
+    }
+
+    private void removeSlot(int slot) {
+        liveSlots.clear(slot);
+        slotHashes[slot] = null;
+        pendingFreeSlots.set(slot);
+    }
+
+    // ---------------------------------------------------------------- storage
+
+    private void readHeader() throws IOException {
+        if (vectorChannel.size() < HEADER_BYTES) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        vectorChannel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a vector store file (bad magic)");
+        }
+        int storedDimensions = header.getInt();
+        if (storedDimensions > 0) {
+            // 旧版本文件头中第一段槽位数为 0：所有段大小相同
+            int storedFirstSegmentSlots = header.getInt();
+            initLayout(storedDimensions, storedFirstSegmentSlots > 0 ? storedFirstSegmentSlots : Integer.MAX_VALUE);
+        }
+    }
+
+    private void initDimensions(int dimensions) throws IOException {
+        initLayout(dimensions, (int) Math.max(1, FIRST_SEGMENT_BYTES / (dimensions * 4L)));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(dimensions).putInt(firstSegmentSlots).flip();
+        vectorChannel.write(header, 0);
+        vectorChannel.force(true);
+    }
+
+    /**
+     * 计算段布局：第 k 段（k < growingSegments）有 firstSegmentSlots * 2^k 个槽位，最大一段不超过 SEGMENT_BYTES
+     */
+    private void initLayout(int dimensions, int requestedFirstSegmentSlots) {
+        int segmentSlotLimit = (int) Math.max(1, SEGMENT_BYTES / (dimensions * 4L));
+        this.dimensions = dimensions;
+        this.firstSegmentSlots = Math.min(requestedFirstSegmentSlots, segmentSlotLimit);
+        int growing = 1;
+        while (((long) firstSegmentSlots << growing) <= segmentSlotLimit) {
+            growing++;
+        }
+        this.growingSegments = growing;
+        this.maxSegmentSlots = firstSegmentSlots << (growing - 1);
+        this.growingSlots = firstSegmentSlots * ((1 << growing) - 1);
+    }
+
+    private int segmentIndex(int slot) {
+        if (slot < growingSlots) {
+            return 31 - Integer.numberOfLeadingZeros(slot / firstSegmentSlots + 1);
+        }
+        return growingSegments + (slot - growingSlots) / maxSegmentSlots;
+    }
+
+    private int segmentStart(int index) {
+        if (index < growingSegments) {
+            return firstSegmentSlots * ((1 << index) - 1);
+        }
+        return growingSlots + (index - growingSegments) * maxSegmentSlots;
+    }
+
+    private int segmentSlots(int index) {
+        return index < growingSegments ? firstSegmentSlots << index : maxSegmentSlots;
+    }
+
+    /**
+     * 获取（必要时创建并映射）第 index 段，映射超出文件末尾时文件会自动扩展
+     */
+    private FloatBuffer segment(int index) throws IOException {
+        while (segments.size() <= index) {
+            int next = segments.size();
+            long position = HEADER_BYTES + (long) segmentStart(next) * dimensions * 4;
+            long segmentBytes = (long) segmentSlots(next) * dimensions * 4;
+            MappedByteBuffer mapped = vectorChannel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes);
+            mappedSegments.add(mapped);
+            segments.add(mapped.asFloatBuffer());
+        }
+        return segments.get(index);
+    }
+
+    private double dot(int slot, float[] query) {
+        int index = segmentIndex(slot);
+        FloatBuffer segment = segments.get(index);
+        int base = (slot - segmentStart(index)) * dimensions;
+        double sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += segment.get(base + i) * query[i];
+        }
+        return sum;
+    }
+
+    // ---------------------------------------------------------------- log
+
+    /**
+     * 重放文档日志，重建 id -> 槽位 索引；末尾不完整的记录（写入中途崩溃）会被截断
+     */
+    private void replayLog(Path logFile) throws IOException {
+        long offset = 0;
+        long validLength = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(logFile))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                long lineOffset = offset;
+                offset += line.size() + 1;
+                try {
+                    applyLogRecord(objectMapper.readValue(line.toByteArray(), LogRecord.class), lineOffset);
+                } catch (IOException e) {
+                    logger.warn("Corrupt vector store log record at offset {}, truncating", lineOffset);
+                    break;
+                }
+                validLength = offset;
+                line.reset();
+            }
+        }
+
+        if (validLength < logChannel.size()) {
+            logChannel.truncate(validLength);
+        }
+        if (nextSlot > 0 && dimensions == 0) {
+            throw new IOException("Vector store log references vectors but vectors.bin has no header");
+        }
+        if (nextSlot > 0) {
+            segment(segmentIndex(nextSlot - 1));
+        }
+
+        // 不再被引用的槽位（删除、替换或写入后未提交）都可以复用
+        pendingFreeSlots.clear();
+        freeSlots.set(0, nextSlot);
+        freeSlots.andNot(liveSlots);
+    }
+
+    private void applyLogRecord(LogRecord record, long offset) {
+        if ("add".equals(record.op())) {
+            Integer previous = slotsById.put(record.id(), record.slot());
+            if (previous != null) {
+                removeSlot(previous);
+                deadRecords++;
+            }
+            registerSlot(record.slot(), offset, record.hash());
+            nextSlot = Math.max(nextSlot, record.slot() + 1);
+        } else if ("delete".equals(record.op())) {
+            Integer slot = slotsById.remove(record.id());
+            deadRecords++;
+            if (slot != null) {
+                removeSlot(slot);
+                deadRecords++;
+            }
+        }
+    }
+
+    private LogRecord readLogRecord(long offset) {
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long position = offset;
+            read:
+            while (true) {
+                buffer.clear();
+                int read = logChannel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        break read;
+                    }
+                    line.write(b);
+                }
+                position += read;
+            }
+            return objectMapper.readValue(line.toByteArray(), LogRecord.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read vector store log at offset " + offset, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private static String contentHash(Document document) {
+        // 元数据按 key 排序，保证不同进程间哈希稳定
+        String content = document.getText() + '\u0000' + new TreeMap<>(document.getMetadata());
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 归一化为单位向量，之后余弦相似度即点积
+     */
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private record ScoredSlot(int slot, double score) {
+    }
+
+    private record LogRecord(String op, String id, Integer slot, String hash, String text, Map<String, Object> metadata) {
+    }
+}
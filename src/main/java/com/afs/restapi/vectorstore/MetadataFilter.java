@@ -0,0 +1,36 @@
+package com.afs.restapi.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 元数据过滤
+ * 与 SimpleVectorStore 相同：把 Filter.Expression 转成 SpEL，在文档元数据（#metadata）上求值
+ */
+final class MetadataFilter {
+
+    private static final ExpressionParser PARSER = new SpelExpressionParser();
+    private static final SimpleVectorStoreFilterExpressionConverter CONVERTER = new SimpleVectorStoreFilterExpressionConverter();
+
+    private MetadataFilter() {
+    }
+
+    static Predicate<Map<String, Object>> of(Filter.Expression filterExpression) {
+        if (filterExpression == null) {
+            return metadata -> true;
+        }
+        Expression expression = PARSER.parseExpression(CONVERTER.convertExpression(filterExpression));
+        return metadata -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadata);
+            return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.afs.restapi.vectorstore;
+
+import java.util.List;
+
+/**
+ * 向量库中的文档发生变化（新增、内容更新或删除）后发布的事件
+ * 依赖 RAG 语料的缓存（如 /query 的响应缓存）据此失效
+ *
+ * @param addedIds   新增或内容变化的文档 id
+ * @param deletedIds 删除的文档 id
+ */
+public record VectorStoreChangedEvent(List<String> addedIds, List<String> deletedIds) {
+}
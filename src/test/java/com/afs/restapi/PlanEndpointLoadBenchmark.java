@@ -0,0 +1,294 @@
+package com.afs.restapi;
+
+import com.afs.restapi.testsupport.HashingEmbeddingModel;
+import com.afs.restapi.testsupport.StubBackend;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /plan 负载基准：分别以平台线程（server.tomcat.threads.max 限制请求线程数）和虚拟线程
+ * （spring.threads.virtual.enabled=true）启动完整应用，按并发客户端数逐级发送 POST /plan，
+ * 输出吞吐和请求延迟的 p50 / p99，最后给出各模式在 p99 不超过目标时的最大吞吐
+ * <p>
+ * LLM 由固定延迟的桩模型代替：规划返回两个并行步骤和一个依赖它们的步骤，总结返回固定文本；
+ * 步骤调用 StubBackend 上的 API 工具，后端以 sleep 模拟处理耗时。每个请求使用不同的货号，避免请求被合并
+ * <p>
+ * 运行：./gradlew benchmark --tests '*PlanEndpointLoadBenchmark*'
+ * 参数：benchmark.plan.tomcat-threads（默认 16）、benchmark.plan.max-concurrency（计划步骤并发数，默认 64）、benchmark.plan.llm-ms（每次 LLM 调用，默认 50）、
+ * benchmark.plan.step-ms（每次后端调用，默认 20）、benchmark.plan.clients（默认 8,16,32,64,128）、
+ * benchmark.plan.duration-ms（每级默认 2000）、benchmark.plan.p99-ms（默认 500）
+ */
+@Tag("benchmark")
+class PlanEndpointLoadBenchmark {
+
+    private static final int TOMCAT_THREADS = Integer.getInteger("benchmark.plan.tomcat-threads", 16);
+    private static final int MAX_STEPS = Integer.getInteger("benchmark.plan.max-concurrency", 64);
+    private static final long LLM_MS = Long.getLong("benchmark.plan.llm-ms", 50);
+    private static final long STEP_MS = Long.getLong("benchmark.plan.step-ms", 20);
+    private static final long DURATION_MS = Long.getLong("benchmark.plan.duration-ms", 2000);
+    private static final long TARGET_P99_MS = Long.getLong("benchmark.plan.p99-ms", 500);
+    private static final int[] LEVELS = Arrays.stream(System.getProperty("benchmark.plan.clients", "8,16,32,64,128").split(","))
+            .mapToInt(level -> Integer.parseInt(level.trim()))
+            .toArray();
+
+    private static final Pattern SHIPMENT_NUMBER = Pattern.compile("\\b\\d{10}\\b");
+
+    private static final Map<String, String> results = new ConcurrentSkipListMap<>();
+    private static StubBackend backend;
+    private static Path toolConfig;
+
+    @AfterAll
+    static void report() throws IOException {
+        System.out.printf("POST /plan, tomcat threads.max=%d, plan step max-concurrency=%d, llm=%d ms, step=%d ms%n",
+                TOMCAT_THREADS, MAX_STEPS, LLM_MS, STEP_MS);
+        results.values().forEach(System.out::println);
+        if (backend != null) {
+            backend.close();
+            Files.deleteIfExists(toolConfig);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = "spring.threads.virtual.enabled=false")
+    class PlatformThreads extends LoadTest {
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = "spring.threads.virtual.enabled=true")
+    class VirtualThreads extends LoadTest {
+    }
+
+    /**
+     * 两种模式共用的负载过程；模式只由 spring.threads.virtual.enabled 区分
+     * <p>
+     * 虚拟线程模式下所有请求的计划步骤共用 max-concurrency 个许可（非阻塞步骤同样计入），
+     * 默认值 8 会先于请求线程成为瓶颈，因此两种模式都放宽到 benchmark.plan.max-concurrency
+     */
+    @Import(StubModels.class)
+    @TestPropertySource(properties = {
+            "spring.ai.model.chat=none",
+            "spring.ai.openai.api-key=benchmark",
+            "agent.api-tools.watch=false",
+            "agent.api-tools.backend.max-concurrent-calls=4096",
+            "agent.plan-cache.enabled=false",
+            "agent.vector-store.path=build/tmp/plan-load-benchmark/vector-store",
+            // 每个请求的 INFO 日志和 SQL 日志会占用大量 CPU，掩盖线程模型的差异
+            "logging.level.com.afs.restapi=warn",
+            "spring.jpa.show-sql=false"})
+    @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+    abstract static class LoadTest {
+
+        @LocalServerPort
+        private int port;
+
+        @Value("${spring.threads.virtual.enabled}")
+        private boolean virtualThreads;
+
+        @DynamicPropertySource
+        static void properties(DynamicPropertyRegistry registry) {
+            registry.add("server.tomcat.threads.max", () -> TOMCAT_THREADS);
+            registry.add("agent.plan.executor.max-concurrency", () -> MAX_STEPS);
+            registry.add("agent.api-tools.location", () -> "file:" + toolConfig());
+        }
+
+        @Test
+        void measure_throughput_at_fixed_p99() throws Exception {
+            String mode = virtualThreads ? "virtual" : "platform";
+            // 负载端使用平台线程，避免和被测应用的虚拟线程争用同一个载体线程池
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://localhost:" + port + "/plan");
+
+            // 预热
+            run(client, uri, LEVELS[0], Math.min(DURATION_MS, 500));
+
+            double best = 0;
+            int bestClients = 0;
+            long failed = 0;
+            for (int clients : LEVELS) {
+                Run run = run(client, uri, clients, DURATION_MS);
+                System.out.printf("%s clients=%d | %.1f req/s, p50 %.1f ms, p99 %.1f ms, %d failed%n",
+                        mode, clients, run.throughput(), run.percentile(50), run.percentile(99), run.failed());
+                failed += run.failed();
+                if (run.failed() == 0 && run.percentile(99) <= TARGET_P99_MS && run.throughput() > best) {
+                    best = run.throughput();
+                    bestClients = clients;
+                }
+            }
+            results.put(mode, String.format("%s: max throughput with p99 <= %d ms: %.1f req/s (%d clients)",
+                    mode, TARGET_P99_MS, best, bestClients));
+            assertThat(failed).isZero();
+        }
+    }
+
+    /**
+     * 以指定并发客户端数持续发送请求，每个客户端串行发送
+     */
+    private static Run run(HttpClient client, URI uri, int clients, long durationMs) throws Exception {
+        AtomicLong nextShipment = new AtomicLong(1_000_000_000L);
+        long deadline = System.nanoTime() + durationMs * 1_000_000;
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        AtomicLong failed = new AtomicLong();
+        long start = System.nanoTime();
+        try (ExecutorService driver = Executors.newFixedThreadPool(clients)) {
+            for (int i = 0; i < clients; i++) {
+                futures.add(driver.submit(() -> {
+                    List<Long> latencies = new ArrayList<>();
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"userInput\": \"check shipment "
+                                        + nextShipment.incrementAndGet() + "\"}"))
+                                .build();
+                        long requestStart = System.nanoTime();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        latencies.add(System.nanoTime() - requestStart);
+                        if (response.statusCode() != 200) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        List<Long> latencies = new ArrayList<>();
+        for (Future<List<Long>> future : futures) {
+            latencies.addAll(future.get());
+        }
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Run(sorted, sorted.length * 1_000_000_000.0 / elapsed, failed.get());
+    }
+
+    /**
+     * 两个并行的查询步骤和一个依赖它们的步骤，都指向 StubBackend
+     */
+    private static synchronized Path toolConfig() {
+        if (toolConfig == null) {
+            try {
+                backend = new StubBackend();
+                backend.respond(request -> {
+                    sleep(STEP_MS);
+                    return "{\"status\": \"ok\"}";
+                });
+                StringBuilder tools = new StringBuilder();
+                for (String name : List.of("lookupRoute", "lookupCargo", "confirmShipment")) {
+                    tools.append(tools.isEmpty() ? "" : ",").append("""
+                            {"name": "%s", "description": "%s a shipment", "method": "GET",
+                             "url": "%s/%s/{shipmentNumber}",
+                             "parameters": [{"name": "shipmentNumber", "type": "String", "location": "path", "required": true}],
+                             "successMessage": "%s {shipmentNumber} done", "errorMessage": "%s {shipmentNumber} failed"}
+                            """.formatted(name, name, backend.url(), name, name, name));
+                }
+                toolConfig = Files.createTempFile("plan-load-benchmark", ".json");
+                Files.writeString(toolConfig, "{\"apiTools\": [" + tools + "]}");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return toolConfig;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 桩模型：规划（流式）按用户输入中的货号返回固定计划，总结（同步）返回固定文本，都等待 llm-ms 模拟模型延迟
+     */
+    @TestConfiguration
+    static class StubModels {
+
+        @Bean
+        ChatModel chatModel() {
+            return new ChatModel() {
+                @Override
+                public ChatResponse call(Prompt prompt) {
+                    sleep(LLM_MS);
+                    return response("All steps completed.");
+                }
+
+                @Override
+                public Flux<ChatResponse> stream(Prompt prompt) {
+                    Matcher matcher = SHIPMENT_NUMBER.matcher(prompt.getUserMessage().getText());
+                    String shipmentNumber = matcher.find() ? matcher.group() : "1000000000";
+                    String input = "\"input\": {\"shipmentNumber\": \"" + shipmentNumber + "\"}";
+                    return Flux.just(
+                                    "{\"id\": 1, \"function\": \"lookupRoute\", " + input + ", \"dependsOn\": []}\n",
+                                    "{\"id\": 2, \"function\": \"lookupCargo\", " + input + ", \"dependsOn\": []}\n",
+                                    "{\"id\": 3, \"function\": \"confirmShipment\", " + input + ", \"dependsOn\": [1, 2]}\n")
+                            .map(PlanEndpointLoadBenchmark::response)
+                            .delaySubscription(Duration.ofMillis(LLM_MS));
+                }
+            };
+        }
+
+        @Bean
+        EmbeddingModel embeddingModel() {
+            return new HashingEmbeddingModel();
+        }
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private record Run(long[] latencies, double throughput, long failed) {
+
+        double percentile(int percentile) {
+            if (latencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
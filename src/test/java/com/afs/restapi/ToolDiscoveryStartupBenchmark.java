@@ -0,0 +1,88 @@
+package com.afs.restapi;
+
+import com.afs.restapi.testsupport.HashingEmbeddingModel;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 启动耗时基准：分别使用构建时生成的 @Tool 索引和按 Bean 类型反射扫描启动完整的应用上下文，
+ * 输出启动耗时、工具扫描耗时和扫描时实例化的 Bean 数（取中位数）
+ * <p>
+ * 运行：./gradlew benchmark --tests '*ToolDiscoveryStartupBenchmark' [-Pbenchmark.rounds=5]
+ */
+@Tag("benchmark")
+@ExtendWith(OutputCaptureExtension.class)
+class ToolDiscoveryStartupBenchmark {
+
+    private static final Pattern SCAN_LOG = Pattern.compile(
+            "Tool scanning completed in (\\d+) ms \\(index: (?:yes|no)\\): .*?(\\d+) of (\\d+) bean definitions instantiated");
+
+    @Test
+    void compare_startup_with_and_without_tool_index(CapturedOutput output) {
+        int rounds = Integer.getInteger("benchmark.rounds", 3);
+
+        // 第一次启动包含类加载，不计入结果
+        start(true, output);
+
+        List<Sample> indexed = new ArrayList<>();
+        List<Sample> reflective = new ArrayList<>();
+        for (int i = 0; i < rounds; i++) {
+            indexed.add(start(true, output));
+            reflective.add(start(false, output));
+        }
+
+        report("index", indexed);
+        report("reflection", reflective);
+        assertThat(median(indexed, Sample::instantiated)).isEqualTo(median(reflective, Sample::instantiated));
+    }
+
+    private Sample start(boolean useIndex, CapturedOutput output) {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RestapiApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("embeddingModel", new HashingEmbeddingModel()))
+                .properties("server.port=0",
+                        "spring.ai.openai.api-key=benchmark",
+                        "agent.vector-store.path=build/tmp/startup-benchmark/vector-store",
+                        "agent.tools.use-index=" + useIndex)
+                .run()) {
+            long startupMs = (System.nanoTime() - start) / 1_000_000;
+            Matcher matcher = SCAN_LOG.matcher(output.getAll());
+            long scanMs = -1;
+            long instantiated = -1;
+            long definitions = -1;
+            while (matcher.find()) {
+                scanMs = Long.parseLong(matcher.group(1));
+                instantiated = Long.parseLong(matcher.group(2));
+                definitions = Long.parseLong(matcher.group(3));
+            }
+            return new Sample(startupMs, scanMs, instantiated, definitions, context.getBeanFactory().getSingletonCount());
+        }
+    }
+
+    private static void report(String mode, List<Sample> samples) {
+        System.out.printf("[%s] startup %d ms, tool scan %d ms, %d of %d bean definitions instantiated for scanning, "
+                        + "%d singletons after startup%n", mode,
+                median(samples, Sample::startupMs), median(samples, Sample::scanMs),
+                median(samples, Sample::instantiated), median(samples, Sample::definitions),
+                median(samples, Sample::singletons));
+    }
+
+    private static long median(List<Sample> samples, java.util.function.ToLongFunction<Sample> metric) {
+        return samples.stream().mapToLong(metric).sorted().skip(samples.size() / 2).findFirst().orElse(-1);
+    }
+
+    private record Sample(long startupMs, long scanMs, long instantiated, long definitions, long singletons) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.service.ApiToolCallback;
+import com.afs.restapi.service.ApiToolCallbackProvider;
+import com.afs.restapi.service.ApiToolConfigChangedEvent;
+import com.afs.restapi.service.ApiToolConfigRegistry;
+import com.afs.restapi.service.CompiledApiTool;
+import com.afs.restapi.service.GenericApiService;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class McpToolSyncTest {
+
+    private final McpSyncServer server = mock(McpSyncServer.class);
+    private final ApiToolCallbackProvider provider = mock(ApiToolCallbackProvider.class);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_remove_deleted_and_changed_tools_and_register_new_ones() {
+        ObjectProvider<McpSyncServer> serverProvider = mock(ObjectProvider.class);
+        when(serverProvider.getIfAvailable()).thenReturn(server);
+        McpToolSync sync = new McpToolSync(serverProvider, provider);
+
+        ApiToolConfigRegistry.Snapshot previous = snapshot(1, tool("kept", "same"), tool("changed", "old"),
+                tool("deleted", "gone"));
+        ApiToolConfigRegistry.Snapshot current = snapshot(2, tool("kept", "same"), tool("changed", "new"),
+                tool("added", "fresh"));
+        when(provider.getToolCallbacks()).thenReturn(callbacks(current));
+
+        sync.onApiToolConfigChanged(new ApiToolConfigChangedEvent(previous, current));
+
+        verify(server).removeTool("changed");
+        verify(server).removeTool("deleted");
+        verify(server, never()).removeTool("kept");
+        ArgumentCaptor<McpServerFeatures.SyncToolSpecification> added =
+                ArgumentCaptor.forClass(McpServerFeatures.SyncToolSpecification.class);
+        verify(server, times(2)).addTool(added.capture());
+        assertThat(added.getAllValues()).extracting(spec -> spec.tool().name()).containsExactly("changed", "added");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_compare_against_what_was_last_published() {
+        ObjectProvider<McpSyncServer> serverProvider = mock(ObjectProvider.class);
+        when(serverProvider.getIfAvailable()).thenReturn(server);
+        McpToolSync sync = new McpToolSync(serverProvider, provider);
+        ApiToolConfigRegistry.Snapshot first = snapshot(1, tool("a", "a"));
+        ApiToolConfigRegistry.Snapshot second = snapshot(2, tool("a", "a"), tool("b", "b"));
+        ApiToolConfigRegistry.Snapshot third = snapshot(3, tool("a", "a"), tool("b", "b"));
+
+        when(provider.getToolCallbacks()).thenReturn(callbacks(second));
+        sync.onApiToolConfigChanged(new ApiToolConfigChangedEvent(first, second));
+        when(provider.getToolCallbacks()).thenReturn(callbacks(third));
+        sync.onApiToolConfigChanged(new ApiToolConfigChangedEvent(second, third));
+
+        verify(server, times(1)).addTool(any());
+        verify(server, never()).removeTool(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_do_nothing_without_an_mcp_server() {
+        ObjectProvider<McpSyncServer> serverProvider = mock(ObjectProvider.class);
+        McpToolSync sync = new McpToolSync(serverProvider, provider);
+
+        sync.onApiToolConfigChanged(new ApiToolConfigChangedEvent(snapshot(1), snapshot(2, tool("a", "a"))));
+
+        verify(provider, never()).getToolCallbacks();
+    }
+
+    private static ToolCallback[] callbacks(ApiToolConfigRegistry.Snapshot snapshot) {
+        GenericApiService genericApiService = mock(GenericApiService.class);
+        return snapshot.tools().values().stream()
+                .map(tool -> new ApiToolCallback(tool.getTool(), genericApiService))
+                .toArray(ToolCallback[]::new);
+    }
+
+    private static ApiToolConfigRegistry.Snapshot snapshot(long version, ApiToolConfig.ApiTool... tools) {
+        Map<String, CompiledApiTool> compiled = new LinkedHashMap<>();
+        for (ApiToolConfig.ApiTool tool : tools) {
+            compiled.put(tool.getName(), CompiledApiTool.compile(tool, ApiToolConfig.HttpSettings.defaults()));
+        }
+        return new ApiToolConfigRegistry.Snapshot(version, new ApiToolConfig(), compiled);
+    }
+
+    private static ApiToolConfig.ApiTool tool(String name, String description) {
+        ApiToolConfig.ApiTool tool = new ApiToolConfig.ApiTool();
+        tool.setName(name);
+        tool.setDescription(description);
+        tool.setMethod("GET");
+        tool.setUrl("http://backend/" + name);
+        tool.setParameters(List.of());
+        return tool;
+    }
+}
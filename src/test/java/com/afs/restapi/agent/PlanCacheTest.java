@@ -0,0 +1,143 @@
+package com.afs.restapi.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlanCacheTest {
+
+    private final ToolCatalogue catalogue = ToolCatalogue.of(1, List.of());
+    private SimpleMeterRegistry meterRegistry;
+    private PlanCache planCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        planCache = new PlanCache(meterRegistry, true, 2, Duration.ofMinutes(10));
+        planCache.registerMetrics();
+    }
+
+    @Test
+    void should_normalize_literals_into_slots() {
+        PlanCache.NormalizedInput first = planCache.normalize("Verify shipment 7261242220!");
+        PlanCache.NormalizedInput second = planCache.normalize("verify   shipment 7261242221");
+
+        assertThat(first.key()).isEqualTo("verify shipment {#0}").isEqualTo(second.key());
+        assertThat(first.literals()).containsExactly("7261242220");
+        assertThat(planCache.normalize("add 'buy milk 2 cartons'").literals()).containsExactly("buy milk 2 cartons");
+    }
+
+    @Test
+    void should_rebind_a_cached_plan_to_the_literals_of_an_equivalent_input() {
+        PlanCache.NormalizedInput input = planCache.normalize("verify shipment 7261242220");
+        assertThat(planCache.put(input, catalogue, plan(step("verifyShipment", "Verify 7261242220",
+                Map.of("shipmentNumber", "7261242220"))))).isTrue();
+
+        PlannerService.PlanTaskResult hit = planCache.get(planCache.normalize("Verify shipment 7261242221."), catalogue);
+
+        assertThat(hit.getPlans()).hasSize(1);
+        assertThat(hit.getPlans().get(0).getVariables()).containsEntry("shipmentNumber", "7261242221");
+        assertThat(hit.getPlans().get(0).getDescription()).isEqualTo("Verify 7261242221");
+    }
+
+    @Test
+    void should_keep_numeric_parameters_numeric_and_bind_nested_values() {
+        PlanCache.NormalizedInput input = planCache.normalize("complete todo 3 and todo 12");
+        planCache.put(input, catalogue, plan(
+                step("complete", null, Map.of("id", 3)),
+                step("complete", null, Map.of("ids", List.of(12), "filter", Map.of("text", "todo 3")))));
+
+        List<PlanInfo> plans = planCache.get(planCache.normalize("complete todo 5 and todo 7"), catalogue).getPlans();
+
+        assertThat(plans.get(0).getVariables()).containsEntry("id", 5L);
+        assertThat(plans.get(1).getVariables()).containsEntry("ids", List.of(7L))
+                .containsEntry("filter", Map.of("text", "todo 5"));
+    }
+
+    @Test
+    void should_not_cache_a_plan_whose_parameters_are_not_bound_to_the_literals() {
+        // "1-3" is one literal, but the plan splits it into startId=1 and endId=3
+        PlanCache.NormalizedInput input = planCache.normalize("delete todos 1-3");
+
+        boolean cached = planCache.put(input, catalogue, plan(step("deleteRange", null, Map.of("startId", 1, "endId", 3))));
+
+        assertThat(cached).isFalse();
+        assertThat(planCache.get(planCache.normalize("delete todos 4-6"), catalogue)).isNull();
+    }
+
+    @Test
+    void should_not_cache_a_plan_that_ignores_a_literal_or_keeps_an_unbound_number() {
+        PlanCache.NormalizedInput unused = planCache.normalize("verify shipment 7261242220 for ticket T-99");
+        assertThat(planCache.put(unused, catalogue,
+                plan(step("verifyShipment", null, Map.of("shipmentNumber", "7261242220"))))).isFalse();
+
+        PlanCache.NormalizedInput extra = planCache.normalize("show the first todo");
+        assertThat(planCache.put(extra, catalogue, plan(step("findById", null, Map.of("id", 1))))).isFalse();
+
+        PlanCache.NormalizedInput mixed = planCache.normalize("rename todo 4");
+        assertThat(planCache.put(mixed, catalogue,
+                plan(step("updateText", null, Map.of("id", 4, "text", "todo 5"))))).isFalse();
+
+        assertThat(planCache.size()).isZero();
+    }
+
+    @Test
+    void should_cache_plans_without_literals() {
+        PlanCache.NormalizedInput input = planCache.normalize("list all todos");
+
+        assertThat(planCache.put(input, catalogue, plan(step("findAll", null, Map.of("done", false))))).isTrue();
+        assertThat(planCache.get(planCache.normalize("List all todos."), catalogue).getPlans()).hasSize(1);
+    }
+
+    @Test
+    void should_evict_least_recently_used_entries_and_clear_on_catalogue_change() {
+        put("list todos");
+        put("count todos");
+        planCache.get(planCache.normalize("list todos"), catalogue);
+        put("show status");
+
+        assertThat(planCache.get(planCache.normalize("count todos"), catalogue)).isNull();
+        assertThat(planCache.get(planCache.normalize("list todos"), catalogue)).isNotNull();
+        assertThat(meterRegistry.get("agent.plan.cache.size").gauge().value()).isEqualTo(2);
+
+        assertThat(planCache.get(planCache.normalize("list todos"), ToolCatalogue.of(2, List.of()))).isNull();
+        assertThat(planCache.size()).isZero();
+    }
+
+    @Test
+    void should_expire_entries_after_the_ttl() {
+        planCache = new PlanCache(meterRegistry, true, 2, Duration.ZERO);
+        put("list todos");
+        sleep(5);
+
+        assertThat(planCache.get(planCache.normalize("list todos"), catalogue)).isNull();
+        assertThat(meterRegistry.get("agent.plan.cache.evictions").counter().count()).isEqualTo(1);
+    }
+
+    private void put(String input) {
+        planCache.put(planCache.normalize(input), catalogue, plan(step("findAll", null, Map.of())));
+    }
+
+    private static PlannerService.PlanTaskResult plan(PlanInfo... steps) {
+        return new PlannerService.PlanTaskResult(new ArrayList<>(List.of(steps)));
+    }
+
+    private static PlanInfo step(String function, String description, Map<String, Object> variables) {
+        return new PlanInfo(function, description, variables);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
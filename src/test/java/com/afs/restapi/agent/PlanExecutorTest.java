@@ -0,0 +1,222 @@
+package com.afs.restapi.agent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlanExecutorTest {
+
+    private PlanExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void should_run_independent_steps_concurrently_and_return_results_in_plan_order() {
+        executor = new PlanExecutor(4, false);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        List<String> results = executor.execute(List.of(step(1, "slow", List.of()), step(2, "fast", List.of())), plan -> {
+            bothStarted.countDown();
+            await(bothStarted);
+            if (plan.getFunctionName().equals("slow")) {
+                sleep(50);
+            }
+            return plan.getFunctionName();
+        });
+
+        assertThat(results).containsExactly("slow", "fast");
+    }
+
+    @Test
+    void should_depend_on_previous_step_when_depends_on_is_missing() {
+        executor = new PlanExecutor(4, false);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        executor.execute(List.of(step(1, "first", List.of()), step(2, "second", null)), plan -> {
+            if (plan.getFunctionName().equals("first")) {
+                sleep(50);
+            }
+            order.add(plan.getFunctionName());
+            return plan.getFunctionName();
+        });
+
+        assertThat(order).containsExactly("first", "second");
+    }
+
+    @Test
+    void should_wait_for_declared_dependencies() {
+        executor = new PlanExecutor(4, false);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        executor.execute(List.of(
+                step(1, "a", List.of()),
+                step(2, "b", List.of()),
+                step(3, "c", List.of(1, 2))), plan -> {
+            if (!plan.getFunctionName().equals("c")) {
+                sleep(30);
+            }
+            order.add(plan.getFunctionName());
+            return plan.getFunctionName();
+        });
+
+        assertThat(order).hasSize(3).last().isEqualTo("c");
+    }
+
+    @Test
+    void should_fall_back_to_the_previous_step_when_a_dependency_cannot_be_resolved() {
+        executor = new PlanExecutor(4, false);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        executor.execute(List.of(
+                step(1, "write", List.of()),
+                step(2, "later", List.of(1, 9)),
+                step(3, "forward", List.of(4)),
+                step(4, "last", List.of())), plan -> {
+            if (!plan.getFunctionName().equals("last")) {
+                sleep(20);
+            }
+            order.add(plan.getFunctionName());
+            return plan.getFunctionName();
+        });
+
+        assertThat(order).filteredOn(name -> !name.equals("last")).containsExactly("write", "later", "forward");
+    }
+
+    @Test
+    void should_not_mix_declared_ids_with_positions_when_only_some_steps_declare_ids() {
+        executor = new PlanExecutor(4, false);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        executor.execute(List.of(
+                step(2, "declaredTwo", List.of()),
+                step(null, "secondPosition", List.of()),
+                step(null, "afterDeclaredTwo", List.of(2))), plan -> {
+            if (plan.getFunctionName().equals("declaredTwo")) {
+                sleep(50);
+            }
+            order.add(plan.getFunctionName());
+            return plan.getFunctionName();
+        });
+
+        assertThat(order).containsExactly("secondPosition", "declaredTwo", "afterDeclaredTwo");
+    }
+
+    @Test
+    void should_resolve_positions_of_steps_without_ids_and_reject_duplicate_ids() {
+        executor = new PlanExecutor(4, false);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        executor.execute(List.of(
+                step(null, "first", List.of()),
+                step(7, "dup", List.of()),
+                step(7, "dupAgain", List.of()),
+                step(null, "afterFirst", List.of(1)),
+                step(null, "afterAmbiguous", List.of(7))), plan -> {
+            switch (plan.getFunctionName()) {
+                case "first" -> sleep(60);
+                case "afterFirst" -> sleep(40);
+                default -> {
+                }
+            }
+            order.add(plan.getFunctionName());
+            return plan.getFunctionName();
+        });
+
+        assertThat(order.indexOf("afterFirst")).isGreaterThan(order.indexOf("first"));
+        assertThat(order).last().isEqualTo("afterAmbiguous");
+    }
+
+    @Test
+    void should_turn_a_failed_step_into_an_error_result_and_still_run_dependents() {
+        executor = new PlanExecutor(4, false);
+
+        List<String> results = executor.executeAsync(List.of(step(1, "broken", List.of()), step(2, "after", List.of(1))),
+                plan -> plan.getFunctionName().equals("broken")
+                        ? CompletableFuture.failedFuture(new IllegalStateException("boom"))
+                        : CompletableFuture.completedFuture("ok")).join();
+
+        assertThat(results.get(0)).startsWith("Error executing step 1").contains("boom");
+        assertThat(results.get(1)).isEqualTo("ok");
+    }
+
+    @Test
+    void should_notify_listener_as_steps_complete() {
+        executor = new PlanExecutor(4, false);
+        List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+
+        executor.executeAsync(List.of(step(1, "a", List.of()), step(2, "b", List.of())),
+                plan -> CompletableFuture.completedFuture(plan.getFunctionName()),
+                (stepNumber, plan, result) -> completed.add(stepNumber)).join();
+
+        assertThat(completed).containsExactlyInAnyOrder(1, 2);
+    }
+
+    @Test
+    void should_number_incrementally_submitted_steps_in_submission_order() {
+        executor = new PlanExecutor(4, false);
+        PlanExecutor.Execution execution = executor.start(
+                plan -> CompletableFuture.completedFuture(plan.getFunctionName()), (stepNumber, plan, result) -> {
+                });
+
+        assertThat(execution.submit(step(null, "a", List.of()))).isEqualTo(1);
+        assertThat(execution.submit(step(null, "b", List.of(1)))).isEqualTo(2);
+        assertThat(execution.finish().join()).containsExactly("a", "b");
+    }
+
+    @Test
+    void should_bound_async_steps_by_max_concurrency_in_virtual_thread_mode() {
+        executor = new PlanExecutor(2, true);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        List<PlanInfo> plans = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            plans.add(step(i, "call" + i, List.of()));
+        }
+        executor.executeAsync(plans, plan -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return "done";
+            }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        }).join();
+
+        assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    private static PlanInfo step(Integer id, String function, List<Integer> dependsOn) {
+        PlanInfo plan = new PlanInfo(function, null, Map.of());
+        plan.setId(id);
+        plan.setDependsOn(dependsOn);
+        return plan;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.service.ApiToolConfigRegistry;
+import com.afs.restapi.service.GenericApiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.core.io.DefaultResourceLoader;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PlannerServiceTest {
+
+    private static final String VERIFY = "{\"step\": 1, \"function\": \"verifyShipment\", \"input\": {\"shipmentNumber\": \"7261242220\"}}";
+    private static final String UPDATE = "{\"step\": 2, \"function\": \"updateShipmentPOR\", \"input\": {\"shipmentNumber\": \"7261242220\"}}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+    private final GenericApiService genericApiService = mock(GenericApiService.class);
+    private PlanExecutor planExecutor;
+    private PlannerService plannerService;
+
+    @BeforeEach
+    void setUp() {
+        ChatClient.Builder builder = mock(ChatClient.Builder.class);
+        when(builder.build()).thenReturn(chatClient);
+
+        ToolLoader toolLoader = mock(ToolLoader.class);
+        when(toolLoader.getToolCatalogue()).thenReturn(ToolCatalogue.of(1, List.of(
+                ToolCatalogueTest.tool("verifyShipment", "Verify a shipment"),
+                ToolCatalogueTest.tool("updateShipmentPOR", "Update the POR of a shipment"))));
+        ToolSelector toolSelector = mock(ToolSelector.class);
+        when(toolSelector.select(anyString(), any())).thenAnswer(invocation -> ((ToolCatalogue) invocation.getArgument(1)).getTools());
+
+        when(genericApiService.hasTool(anyString())).thenReturn(true);
+        when(genericApiService.isReadOnlyTool("verifyShipment")).thenReturn(true);
+        when(genericApiService.executeApiCallAsync(anyString(), anyMap()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0) + " ok"));
+        when(genericApiService.projectResult(anyString(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+
+        PromptTemplateRegistry templates = new PromptTemplateRegistry(new DefaultResourceLoader(), "classpath:", List.of(), false, 0);
+        planExecutor = new PlanExecutor(4, false);
+        plannerService = new PlannerService(builder, toolLoader, planExecutor, templates, toolSelector,
+                new PlanCache(meterRegistry, false, 16, Duration.ofMinutes(10)), genericApiService,
+                new SummaryPolicy(meterRegistry, "llm", 1),
+                new PromptBudget(meterRegistry, true, 8000, 12000, 4, 100),
+                new SpeculativeExecutor(mock(ApiToolConfigRegistry.class), genericApiService, meterRegistry, false, 4));
+    }
+
+    @AfterEach
+    void tearDown() {
+        planExecutor.shutdown();
+    }
+
+    @Test
+    void should_stream_planned_plan_step_summary_and_done_events_in_order() {
+        streamResponses(List.of(Flux.just(VERIFY.substring(0, 25), VERIFY.substring(25)), Flux.just("Shipment ", "verified.")));
+
+        List<PlanEvent> events = plannerService.planStream("verify shipment 7261242220").collectList().block(Duration.ofSeconds(5));
+
+        assertThat(events).extracting(PlanEvent::type)
+                .containsExactly("planned", "plan", "step", "summary", "summary", "done");
+        assertThat(events.get(0).data()).asInstanceOf(MAP)
+                .containsEntry("step", 1);
+        assertThat(events.get(2).data()).asInstanceOf(MAP)
+                .containsEntry("function", "verifyShipment")
+                .containsEntry("result", "verifyShipment ok");
+        assertThat(events.subList(3, 5)).extracting(PlanEvent::data).containsExactly("Shipment ", "verified.");
+    }
+
+    @Test
+    void should_project_step_results_in_the_summary_prompt_but_stream_them_in_full() {
+        when(genericApiService.projectResult("verifyShipment", "verifyShipment ok")).thenReturn("verifyShipment projected");
+        streamResponses(List.of(Flux.just(VERIFY), Flux.just("Shipment verified.")));
+
+        List<PlanEvent> events = plannerService.planStream("verify shipment 7261242220").collectList().block(Duration.ofSeconds(5));
+
+        assertThat(events).filteredOn(event -> "step".equals(event.type())).singleElement()
+                .extracting(PlanEvent::data).asInstanceOf(MAP).containsEntry("result", "verifyShipment ok");
+        ArgumentCaptor<String> systemPrompts = ArgumentCaptor.forClass(String.class);
+        verify(chatClient.prompt(), atLeastOnce()).system(systemPrompts.capture());
+        assertThat(systemPrompts.getValue()).contains("verifyShipment projected").doesNotContain("verifyShipment ok");
+    }
+
+    @Test
+    void should_end_the_stream_with_an_error_event_when_planning_fails() {
+        streamResponses(List.of(Flux.error(new IllegalStateException("model unavailable"))));
+
+        List<PlanEvent> events = plannerService.planStream("verify shipment 7261242220").collectList().block(Duration.ofSeconds(5));
+
+        assertThat(events).containsExactly(PlanEvent.error("model unavailable"));
+    }
+
+    @Test
+    void should_start_leading_read_only_steps_early_and_hold_writes_until_the_plan_completes() {
+        Sinks.Many<String> planning = Sinks.many().unicast().onBackpressureBuffer();
+        streamResponses(List.of(planning.asFlux(), Flux.just("Done.")));
+
+        CompletableFuture<List<PlanEvent>> events = plannerService.planStream("update POR for 7261242220, then verify")
+                .collectList().toFuture();
+        planning.tryEmitNext(VERIFY + "\n" + UPDATE + "\n" + VERIFY.replace("\"step\": 1", "\"step\": 3"));
+
+        verify(genericApiService, timeout(5000)).executeApiCallAsync(eq("verifyShipment"), anyMap());
+        verify(genericApiService, after(200).never()).executeApiCallAsync(eq("updateShipmentPOR"), anyMap());
+
+        planning.tryEmitComplete();
+
+        assertThat(events.join()).extracting(PlanEvent::type)
+                .containsSubsequence("planned", "planned", "planned", "plan").endsWith("done");
+        verify(genericApiService).executeApiCallAsync(eq("updateShipmentPOR"), anyMap());
+        verify(genericApiService, times(2)).executeApiCallAsync(eq("verifyShipment"), anyMap());
+    }
+
+    @Test
+    void should_fail_the_plan_without_writing_when_a_later_step_is_malformed() {
+        streamResponses(List.of(Flux.just(VERIFY, UPDATE, "{\"step\": 3, \"function\": verifyShipment}")));
+
+        List<PlanEvent> events = plannerService.planStream("update POR for 7261242220, then verify").collectList().block(Duration.ofSeconds(5));
+
+        assertThat(events).last().extracting(PlanEvent::type).isEqualTo("error");
+        assertThat(events).extracting(PlanEvent::type).doesNotContain("plan", "summary");
+        verify(genericApiService, never()).executeApiCallAsync(eq("updateShipmentPOR"), anyMap());
+    }
+
+    @Test
+    void should_fail_the_plan_when_the_response_ends_inside_a_step() {
+        streamResponses(List.of(Flux.just(VERIFY, UPDATE.substring(0, 30))));
+
+        List<PlanEvent> events = plannerService.planStream("update POR for 7261242220, then verify").collectList().block(Duration.ofSeconds(5));
+
+        assertThat(events).last().extracting(PlanEvent::type).isEqualTo("error");
+        verify(genericApiService, never()).executeApiCallAsync(eq("updateShipmentPOR"), anyMap());
+    }
+
+    private void streamResponses(List<Flux<String>> responses) {
+        Iterator<Flux<String>> next = responses.iterator();
+        when(chatClient.prompt().system(anyString()).user(anyString()).stream().content())
+                .thenAnswer(invocation -> next.next());
+    }
+}
@@ -0,0 +1,99 @@
+package com.afs.restapi.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptBudgetTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void should_estimate_ascii_by_chars_per_token_and_other_characters_one_each() {
+        PromptBudget budget = budget(1000, 1000);
+
+        assertThat(budget.estimateTokens(null)).isZero();
+        assertThat(budget.estimateTokens("")).isZero();
+        assertThat(budget.estimateTokens("abcde")).isEqualTo(2);
+        assertThat(budget.estimateTokens("更新POR")).isEqualTo(3);
+        assertThat(budget.estimateTokens("😀")).isEqualTo(1);
+    }
+
+    @Test
+    void should_keep_the_tools_that_fit_and_at_least_one() {
+        List<ToolCallback> tools = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tools.add(ToolCatalogueTest.tool("tool" + i, "x".repeat(200)));
+        }
+        ToolCatalogue catalogue = ToolCatalogue.of(1, tools);
+        PromptBudget probe = budget(100_000, 100_000);
+        int perTool = probe.estimateTokens(catalogue.describe(List.of(tools.get(0))));
+
+        assertThat(budget(100 + 5 * perTool, 100_000).fitTools(tools, catalogue, 100, probe.begin())).isSameAs(tools);
+        assertThat(budget(100 + 2 * perTool + 1, 100_000).fitTools(tools, catalogue, 100, probe.begin()))
+                .containsExactlyElementsOf(tools.subList(0, 2));
+        assertThat(budget(50, 100_000).fitTools(tools, catalogue, 100, probe.begin()))
+                .containsExactly(tools.get(0));
+        assertThat(meterRegistry.counter("agent.prompt.truncations", "phase", "planning").count()).isEqualTo(2);
+    }
+
+    @Test
+    void should_return_results_unchanged_when_they_fit() {
+        PromptBudget budget = budget(1000, 1000);
+        List<String> results = List.of("ok", "done");
+
+        assertThat(budget.fitResults(results, 100, budget.begin())).isSameAs(results);
+    }
+
+    @Test
+    void should_keep_small_results_whole_and_shrink_large_json_and_text_results() {
+        PromptBudget budget = budget(400, 100_000);
+        StringBuilder items = new StringBuilder("[");
+        for (int i = 0; i < 50; i++) {
+            items.append(i > 0 ? "," : "").append("{\"id\": ").append(i).append(", \"name\": \"shipment ").append(i).append("\"}");
+        }
+        String json = "Success. Response: " + items.append("]");
+        String text = "log line ".repeat(200);
+
+        List<String> fitted = budget.fitResults(List.of("✅ POR updated", json, text), 100, budget.begin());
+
+        assertThat(fitted.get(0)).isEqualTo("✅ POR updated");
+        assertThat(fitted.get(1)).startsWith("Success. Response: [{\"id\":0,").contains("more items\"]");
+        assertThat(fitted.get(2)).startsWith("log line").endsWith("... [truncated]");
+        assertThat(fitted.stream().mapToInt(budget::estimateTokens).sum()).isLessThanOrEqualTo(300);
+        assertThat(meterRegistry.counter("agent.prompt.truncations", "phase", "summary").count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_leave_the_summary_only_what_planning_did_not_use_of_the_request_ceiling() {
+        PromptBudget budget = budget(8000, 1000);
+        PromptBudget.Usage usage = budget.begin();
+        String result = "y".repeat(2000);
+
+        assertThat(budget.fitResults(List.of(result), 100, usage)).containsExactly(result);
+
+        budget.record(usage, "planning", "p".repeat(2400));
+        List<String> fitted = budget.fitResults(List.of(result), 100, usage);
+
+        assertThat(usage.getTokens()).isEqualTo(600);
+        assertThat(budget.estimateTokens(fitted.get(0))).isLessThanOrEqualTo(300);
+        assertThat(meterRegistry.summary("agent.prompt.tokens", "phase", "planning").totalAmount()).isEqualTo(600);
+    }
+
+    @Test
+    void should_not_touch_anything_when_disabled() {
+        PromptBudget budget = new PromptBudget(meterRegistry, false, 10, 10, 4, 1);
+        List<String> results = List.of("z".repeat(1000));
+
+        assertThat(budget.fitResults(results, 100, budget.begin())).isSameAs(results);
+    }
+
+    private PromptBudget budget(int maxTokens, int maxRequestTokens) {
+        return new PromptBudget(meterRegistry, true, maxTokens, maxRequestTokens, 4, 10);
+    }
+}
@@ -0,0 +1,73 @@
+package com.afs.restapi.agent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 总结提示词的渲染开销：原来每次请求读取 classpath 文件并做 6 次 String.replace，
+ * 现在使用启动时编译好的 PromptTemplate
+ * <p>
+ * 运行：./gradlew jmh -Pjmh.include=PromptTemplateBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptTemplateBenchmark {
+
+    private static final String TEMPLATE = "summary-prompt.txt";
+
+    private PromptTemplate compiled;
+    private String userInput;
+    private String executionPlan;
+    private String executionResult;
+
+    @Setup
+    public void setUp() throws IOException {
+        compiled = PromptTemplate.compile(new ClassPathResource(TEMPLATE).getContentAsString(StandardCharsets.UTF_8));
+        userInput = "Update POR for shipment 7261242220 to 738872886233503, then verify the shipment";
+        executionPlan = "Total of 2 steps executed:\n1. updateShipmentPOR\n2. verifyShipment\n";
+        executionResult = "Results:\n" + "Plan 1 ... Result : {\"shipmentNumber\":\"7261242220\",\"por\":\"738872886233503\"}\n".repeat(20);
+    }
+
+    /**
+     * 原实现：每次读取模板文件，再依次替换带空格和不带空格的占位符
+     */
+    @Benchmark
+    public String readAndReplace() throws IOException {
+        return new ClassPathResource(TEMPLATE).getContentAsString(StandardCharsets.UTF_8)
+                .replace("{{ $userInput }}", userInput)
+                .replace("{{$userInput}}", userInput)
+                .replace("{{ $executionPlan }}", executionPlan)
+                .replace("{{$executionPlan}}", executionPlan)
+                .replace("{{ $executionResult }}", executionResult)
+                .replace("{{$executionResult}}", executionResult);
+    }
+
+    /**
+     * 新实现：复用编译结果，一次遍历写入预估好容量的 StringBuilder
+     */
+    @Benchmark
+    public String compiledRender() {
+        return compiled.render(Map.of(
+                "userInput", userInput,
+                "executionPlan", executionPlan,
+                "executionResult", executionResult));
+    }
+}
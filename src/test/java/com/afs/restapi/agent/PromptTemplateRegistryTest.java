@@ -0,0 +1,76 @@
+package com.afs.restapi.agent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PromptTemplateRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void should_compile_each_template_once_without_hot_reload() throws Exception {
+        Path file = write("greeting.txt", "Hi {{ $name }}", 1_000);
+        PromptTemplateRegistry registry = registry(false);
+
+        PromptTemplate first = registry.get("greeting.txt");
+        write("greeting.txt", "Bye {{ $name }}", 5_000);
+
+        assertThat(registry.get("greeting.txt")).isSameAs(first);
+        assertThat(registry.get("greeting.txt").render(Map.of("name", "Ann"))).isEqualTo("Hi Ann");
+        assertThat(file).exists();
+    }
+
+    @Test
+    void should_recompile_a_modified_template_with_hot_reload() throws Exception {
+        write("greeting.txt", "Hi {{ $name }}", 1_000);
+        PromptTemplateRegistry registry = registry(true);
+        assertThat(registry.get("greeting.txt").render(Map.of("name", "Ann"))).isEqualTo("Hi Ann");
+
+        write("greeting.txt", "Bye {{ $name }}", 5_000);
+
+        assertThat(registry.get("greeting.txt").render(Map.of("name", "Ann"))).isEqualTo("Bye Ann");
+    }
+
+    @Test
+    void should_preload_configured_templates_and_fail_fast_on_missing_ones() throws Exception {
+        write("a.txt", "a", 1_000);
+        PromptTemplateRegistry missing = new PromptTemplateRegistry(new DefaultResourceLoader(),
+                dir.toUri().toString(), List.of("a.txt", "missing.txt"), false, 0);
+
+        assertThatThrownBy(missing::init).hasMessageContaining("missing.txt");
+    }
+
+    @Test
+    void should_inject_tools_and_input_into_the_bundled_plan_prompt() {
+        PromptTemplateRegistry bundled = new PromptTemplateRegistry(new DefaultResourceLoader(),
+                "classpath:", List.of(), false, 0);
+
+        String prompt = bundled.get("plan-prompt.txt").render(Map.of(
+                "functions", "verifyShipment: Verify a shipment",
+                "input", "verify shipment 7261242220"));
+
+        assertThat(prompt).contains("verifyShipment: Verify a shipment", "verify shipment 7261242220")
+                .doesNotContain("{{ $");
+    }
+
+    private PromptTemplateRegistry registry(boolean hotReload) {
+        return new PromptTemplateRegistry(new DefaultResourceLoader(), dir.toUri().toString(), List.of(), hotReload, 0);
+    }
+
+    private Path write(String name, String content, long lastModified) throws Exception {
+        Path file = Files.writeString(dir.resolve(name), content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file;
+    }
+}
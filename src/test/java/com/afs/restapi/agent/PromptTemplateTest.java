@@ -0,0 +1,54 @@
+package com.afs.restapi.agent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptTemplateTest {
+
+    @Test
+    void should_render_placeholders_with_and_without_spaces() {
+        PromptTemplate template = PromptTemplate.compile("Tools: {{ $functions }}\nInput: {{$input}}.");
+
+        String rendered = template.render(Map.of("functions", "[a, b]", "input", "list todos"));
+
+        assertThat(rendered).isEqualTo("Tools: [a, b]\nInput: list todos.");
+    }
+
+    @Test
+    void should_render_repeated_placeholders_every_time() {
+        PromptTemplate template = PromptTemplate.compile("{{ $x }}-{{ $x }}-{{ $x }}");
+
+        assertThat(template.render(Map.of("x", "1"))).isEqualTo("1-1-1");
+    }
+
+    @Test
+    void should_keep_placeholders_without_values_verbatim() {
+        PromptTemplate template = PromptTemplate.compile("Hello {{ $name }}, {{ $missing }}!");
+
+        assertThat(template.render(Map.of("name", "Ann"))).isEqualTo("Hello Ann, {{ $missing }}!");
+    }
+
+    @Test
+    void should_leave_non_dollar_braces_untouched() {
+        PromptTemplate template = PromptTemplate.compile("{{findAll}} {\"id\":1} {{ $input }}");
+
+        assertThat(template.render(Map.of("input", "x"))).isEqualTo("{{findAll}} {\"id\":1} x");
+    }
+
+    @Test
+    void should_not_interpret_values_as_placeholders_or_regex_replacements() {
+        PromptTemplate template = PromptTemplate.compile("A {{ $a }} B {{ $b }}");
+
+        assertThat(template.render(Map.of("a", "{{ $b }}", "b", "$1 \\n")))
+                .isEqualTo("A {{ $b }} B $1 \\n");
+    }
+
+    @Test
+    void should_render_template_without_placeholders_as_is() {
+        assertThat(PromptTemplate.compile("plain text").render(Map.of("x", "y"))).isEqualTo("plain text");
+        assertThat(PromptTemplate.compile("").render(Map.of())).isEmpty();
+    }
+}
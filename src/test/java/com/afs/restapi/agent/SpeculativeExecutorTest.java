@@ -0,0 +1,209 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.service.ApiToolConfigRegistry;
+import com.afs.restapi.service.CompiledApiTool;
+import com.afs.restapi.service.GenericApiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpeculativeExecutorTest {
+
+    private static final String INPUT = "update POR of 7261242220 to 738872886233503, then verify";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ApiToolConfigRegistry configRegistry = mock(ApiToolConfigRegistry.class);
+    private final GenericApiService genericApiService = mock(GenericApiService.class);
+    private final Map<String, ToolCallback> toolMap = new LinkedHashMap<>();
+    private SpeculativeExecutor executor;
+    private Consumer<String> writeListener;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, CompiledApiTool> tools = new LinkedHashMap<>();
+        for (ApiToolConfig.ApiTool tool : List.of(verifyShipment(), write("updateShipmentPOR", "shipment:{shipmentNumber}"),
+                write("resetBackend", null))) {
+            tools.put(tool.getName(), CompiledApiTool.compile(tool, ApiToolConfig.HttpSettings.defaults()));
+            toolMap.put(tool.getName(), ToolCatalogueTest.tool(tool.getName(), tool.getName()));
+        }
+        when(configRegistry.getSnapshot()).thenReturn(new ApiToolConfigRegistry.Snapshot(1, new ApiToolConfig(), tools));
+        when(genericApiService.executeApiCallAsync(anyString(), anyMap()))
+                .thenAnswer(invocation -> Mono.just("viewShp " + invocation.<Map<String, String>>getArgument(1).get("shipmentNumber")));
+
+        executor = new SpeculativeExecutor(configRegistry, genericApiService, meterRegistry, true, 4);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(genericApiService).addWriteListener(listener.capture());
+        writeListener = listener.getValue();
+    }
+
+    @Test
+    void should_start_matching_read_only_tools_and_hand_the_call_to_a_step_with_the_same_arguments() {
+        SpeculativeExecutor.Speculation speculation = executor.begin(toolMap);
+        speculation.start(INPUT);
+
+        verify(genericApiService).executeApiCallAsync("verifyShipment", Map.of("shipmentNumber", "7261242220"));
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220", "type", "browse")).join())
+                .isEqualTo("viewShp 7261242220");
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220"))).isNull();
+        assertThat(count("started")).isEqualTo(1);
+        assertThat(count("used")).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_match_different_arguments_or_tools_missing_from_the_request() {
+        SpeculativeExecutor.Speculation speculation = executor.begin(toolMap);
+        speculation.start(INPUT);
+
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "1111111111"))).isNull();
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220", "type", "detail"))).isNull();
+
+        toolMap.remove("verifyShipment");
+        executor.begin(toolMap).start(INPUT);
+        verify(genericApiService, times(1)).executeApiCallAsync(anyString(), anyMap());
+    }
+
+    @Test
+    void should_limit_calls_per_tool_and_skip_duplicate_matches() {
+        SpeculativeExecutor.Speculation speculation = executor.begin(toolMap);
+        speculation.start("check 1000000001, 1000000001, 1000000002, 1000000003 and 1000000004");
+
+        verify(genericApiService, times(3)).executeApiCallAsync(eq("verifyShipment"), anyMap());
+        verify(genericApiService, never()).executeApiCallAsync("verifyShipment", Map.of("shipmentNumber", "1000000004"));
+    }
+
+    @Test
+    void should_drop_the_speculation_once_a_write_to_the_same_resource_is_submitted() {
+        SpeculativeExecutor.Speculation speculation = executor.begin(toolMap);
+        speculation.start("verify 7261242220 and 1000000001");
+
+        speculation.stepSubmitted(step("verifyShipment", "7261242220"));
+        speculation.stepSubmitted(step("updateShipmentPOR", "7261242220"));
+
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220"))).isNull();
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "1000000001"))).isNotNull();
+        assertThat(count("invalidated")).isEqualTo(1);
+    }
+
+    @Test
+    void should_drop_every_speculation_when_a_write_without_resource_key_is_submitted() {
+        SpeculativeExecutor.Speculation speculation = executor.begin(toolMap);
+        speculation.start("verify 7261242220 and 1000000001");
+
+        speculation.stepSubmitted(new PlanInfo("resetBackend", null, Map.of()));
+
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220"))).isNull();
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "1000000001"))).isNull();
+        assertThat(count("invalidated")).isEqualTo(2);
+    }
+
+    @Test
+    void should_refuse_to_claim_after_a_write_to_the_resource_started_anywhere() {
+        SpeculativeExecutor.Speculation speculation = executor.begin(toolMap);
+        speculation.start("verify 7261242220 and 1000000001");
+
+        writeListener.accept("shipment:7261242220");
+
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220"))).isNull();
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "1000000001"))).isNotNull();
+    }
+
+    @Test
+    void should_drop_every_speculation_when_a_write_without_resource_key_started_anywhere() {
+        SpeculativeExecutor.Speculation first = executor.begin(toolMap);
+        first.start("verify 7261242220");
+        SpeculativeExecutor.Speculation second = executor.begin(toolMap);
+        second.start("verify 1000000001");
+
+        writeListener.accept(null);
+
+        assertThat(first.claim("verifyShipment", Map.of("shipmentNumber", "7261242220"))).isNull();
+        assertThat(second.claim("verifyShipment", Map.of("shipmentNumber", "1000000001"))).isNull();
+        assertThat(count("invalidated")).isEqualTo(2);
+    }
+
+    @Test
+    void should_discard_unused_results_and_stop_tracking_writes_on_close() {
+        SpeculativeExecutor.Speculation speculation = executor.begin(toolMap);
+        speculation.start(INPUT);
+
+        speculation.close();
+        writeListener.accept("shipment:7261242220");
+
+        assertThat(count("discarded")).isEqualTo(1);
+        assertThat(count("invalidated")).isZero();
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220"))).isNull();
+    }
+
+    @Test
+    void should_do_nothing_when_disabled() {
+        SpeculativeExecutor disabled = new SpeculativeExecutor(configRegistry, genericApiService, meterRegistry, false, 4);
+        SpeculativeExecutor.Speculation speculation = disabled.begin(toolMap);
+        speculation.start(INPUT);
+
+        verify(genericApiService, never()).executeApiCallAsync(anyString(), anyMap());
+        assertThat(speculation.claim("verifyShipment", Map.of("shipmentNumber", "7261242220"))).isNull();
+    }
+
+    private double count(String result) {
+        return meterRegistry.find("agent.plan.speculation").tag("result", result).counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private static PlanInfo step(String function, String shipmentNumber) {
+        return new PlanInfo(function, null, Map.of("shipmentNumber", shipmentNumber));
+    }
+
+    private static ApiToolConfig.ApiTool verifyShipment() {
+        ApiToolConfig.SpeculateSettings speculate = new ApiToolConfig.SpeculateSettings();
+        speculate.setInputPattern("\\b(?<shipmentNumber>\\d{10})\\b");
+        speculate.setMaxCalls(3);
+
+        ApiToolConfig.ApiTool tool = tool("verifyShipment", "GET", "http://backend/viewShp", "shipment:{shipmentNumber}");
+        tool.setParameters(List.of(param("type", "query", "browse"), param("shipmentNumber", "query", null)));
+        tool.setReadOnly(true);
+        tool.setSpeculate(speculate);
+        return tool;
+    }
+
+    private static ApiToolConfig.ApiTool write(String name, String resourceKey) {
+        ApiToolConfig.ApiTool tool = tool(name, "PUT", "http://backend/" + name + "/{shipmentNumber}", resourceKey);
+        tool.setParameters(List.of(param("shipmentNumber", "path", "all")));
+        return tool;
+    }
+
+    private static ApiToolConfig.ApiTool tool(String name, String method, String url, String resourceKey) {
+        ApiToolConfig.ApiTool tool = new ApiToolConfig.ApiTool();
+        tool.setName(name);
+        tool.setMethod(method);
+        tool.setUrl(url);
+        tool.setResourceKey(resourceKey);
+        return tool;
+    }
+
+    private static ApiToolConfig.Parameter param(String name, String location, String defaultValue) {
+        ApiToolConfig.Parameter param = new ApiToolConfig.Parameter();
+        param.setName(name);
+        param.setLocation(location);
+        param.setDefaultValue(defaultValue);
+        return param;
+    }
+}
@@ -0,0 +1,97 @@
+package com.afs.restapi.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingPlanParserTest {
+
+    private static final String STEP_1 = "{\"step\": 1, \"function\": \"verifyShipment\", \"input\": {\"shipmentNumber\": \"7261242220\"}}";
+    private static final String STEP_2 = "{\"step\": 2, \"function\": \"updateShipmentPOR\", \"input\": {\"por\": \"CNSHA\"}, \"dependsOn\": [1]}";
+
+    private final StreamingPlanParser parser = new StreamingPlanParser(new ObjectMapper());
+
+    @Test
+    void should_emit_each_direct_json_step_as_soon_as_it_closes() {
+        assertThat(parser.feed(STEP_1 + "\n" + STEP_2.substring(0, 20))).extracting(PlanInfo::getFunctionName)
+                .containsExactly("verifyShipment");
+        assertThat(parser.feed(STEP_2.substring(20))).extracting(PlanInfo::getFunctionName)
+                .containsExactly("updateShipmentPOR");
+
+        parser.finish();
+        assertThat(parser.getParsedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void should_only_parse_objects_inside_markdown_fences() {
+        String response = "Plan {draft}: first verify, then update {the POR}.\n"
+                + "```json\n" + STEP_1 + "\n```\n"
+                + "Then {another} remark.\n"
+                + "```\n" + STEP_2 + "\n```\n";
+
+        List<PlanInfo> plans = parser.feed(response);
+
+        assertThat(plans).extracting(PlanInfo::getFunctionName).containsExactly("verifyShipment", "updateShipmentPOR");
+        assertThat(plans.get(1).getDependsOn()).containsExactly(1);
+    }
+
+    @Test
+    void should_ignore_braces_and_escaped_quotes_inside_strings() {
+        String step = "{\"function\": \"verifyShipment\", \"description\": \"check } and { and \\\"quoted }\\\" text\","
+                + " \"input\": {\"shipmentNumber\": \"7261242220\"}}";
+
+        List<PlanInfo> plans = parser.feed(step);
+
+        assertThat(plans).hasSize(1);
+        assertThat(plans.get(0).getDescription()).isEqualTo("check } and { and \"quoted }\" text");
+        assertThat(plans.get(0).getVariables()).containsEntry("shipmentNumber", "7261242220");
+    }
+
+    @Test
+    void should_give_the_same_steps_whatever_the_chunk_boundaries() {
+        String response = "Here is the plan:\n```json\n" + STEP_1 + "\n" + STEP_2 + "\n```\nDone {ok}.";
+
+        for (int size = 1; size <= 7; size++) {
+            StreamingPlanParser chunked = new StreamingPlanParser(new ObjectMapper());
+            List<PlanInfo> plans = new ArrayList<>();
+            for (int i = 0; i < response.length(); i += size) {
+                plans.addAll(chunked.feed(response.substring(i, Math.min(response.length(), i + size))));
+            }
+            chunked.finish();
+
+            assertThat(plans).as("chunk size %d", size).extracting(PlanInfo::getFunctionName)
+                    .containsExactly("verifyShipment", "updateShipmentPOR");
+            assertThat(chunked.getText()).isEqualTo(response);
+        }
+    }
+
+    @Test
+    void should_fail_on_a_step_that_is_not_valid_json() {
+        parser.feed(STEP_1);
+
+        assertThatThrownBy(() -> parser.feed("{\"function\": \"updateShipmentPOR\", \"input\": {\"por\": CNSHA}}"))
+                .isInstanceOf(StreamingPlanParser.MalformedPlanException.class)
+                .hasMessageContaining("step 2");
+    }
+
+    @Test
+    void should_fail_on_a_step_without_a_function() {
+        assertThatThrownBy(() -> parser.feed("{\"step\": 1, \"input\": {}}"))
+                .isInstanceOf(StreamingPlanParser.MalformedPlanException.class)
+                .hasMessageContaining("no function");
+    }
+
+    @Test
+    void should_fail_on_finish_when_the_response_ends_inside_a_step() {
+        parser.feed(STEP_1 + "\n" + STEP_2.substring(0, 30));
+
+        assertThatThrownBy(parser::finish)
+                .isInstanceOf(StreamingPlanParser.MalformedPlanException.class)
+                .hasMessageContaining("step 2");
+    }
+}
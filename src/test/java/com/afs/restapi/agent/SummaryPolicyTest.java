@@ -0,0 +1,78 @@
+package com.afs.restapi.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SummaryPolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void should_use_the_template_for_a_single_successful_step_in_adaptive_mode() {
+        SummaryPolicy policy = new SummaryPolicy(meterRegistry, "adaptive", 1);
+
+        SummaryPolicy.Decision decision = policy.decide(List.of(step("verifyShipment")), List.of("✅ Shipment verified"));
+
+        assertThat(decision).isEqualTo(new SummaryPolicy.Decision(true, "success"));
+        assertThat(meterRegistry.counter("agent.plan.summary", "path", "template", "reason", "success").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void should_call_the_llm_for_failures_multiple_steps_and_empty_plans_in_adaptive_mode() {
+        SummaryPolicy policy = new SummaryPolicy(meterRegistry, "adaptive", 1);
+
+        assertThat(policy.decide(List.of(step("verifyShipment")), List.of("❌ Shipment not found")).reason())
+                .isEqualTo("failure");
+        assertThat(policy.decide(List.of(step("a"), step("b")), List.of("ok", "ok")).reason())
+                .isEqualTo("multi-step");
+        assertThat(policy.decide(List.of(), List.of()).reason()).isEqualTo("empty-plan");
+        assertThat(meterRegistry.find("agent.plan.summary").tag("path", "llm").counters()).hasSize(3);
+    }
+
+    @Test
+    void should_follow_forced_modes_regardless_of_results() {
+        SummaryPolicy template = new SummaryPolicy(meterRegistry, " Template ", 1);
+        SummaryPolicy llm = new SummaryPolicy(meterRegistry, "llm", 1);
+
+        assertThat(template.decide(List.of(step("a")), List.of("❌ failed")))
+                .isEqualTo(new SummaryPolicy.Decision(true, "forced"));
+        assertThat(llm.decide(List.of(step("a")), List.of("ok")))
+                .isEqualTo(new SummaryPolicy.Decision(false, "forced"));
+    }
+
+    @Test
+    void should_recognise_failure_results() {
+        SummaryPolicy policy = new SummaryPolicy(meterRegistry, "adaptive", 1);
+
+        assertThat(policy.isFailure(null)).isTrue();
+        assertThat(policy.isFailure("❌ Error executing API call: timeout")).isTrue();
+        assertThat(policy.isFailure("Error executing step 2: boom")).isTrue();
+        assertThat(policy.isFailure("Tool not found: deleteAll")).isTrue();
+        assertThat(policy.isFailure("Failed to update POR. Status: 500")).isTrue();
+        assertThat(policy.isFailure("\"❌ Todo not found\"")).isTrue();
+        assertThat(policy.isFailure("✅ POR updated")).isFalse();
+        assertThat(policy.isFailure("\"Todo created\"")).isFalse();
+    }
+
+    @Test
+    void should_render_a_single_result_as_is_and_list_multiple_results_in_plan_order() {
+        SummaryPolicy policy = new SummaryPolicy(meterRegistry, "template", 1);
+
+        assertThat(policy.renderTemplate(List.of(), List.of())).isEqualTo("No actions were needed.");
+        assertThat(policy.renderTemplate(List.of(step("createTodo")), List.of("\"Todo created\"")))
+                .isEqualTo("Todo created");
+        assertThat(policy.renderTemplate(List.of(step("updateShipmentPOR"), step("verifyShipment")),
+                List.of("✅ POR updated", "\"✅ Shipment verified\"")))
+                .isEqualTo("1. updateShipmentPOR: ✅ POR updated\n2. verifyShipment: ✅ Shipment verified");
+    }
+
+    private static PlanInfo step(String function) {
+        return new PlanInfo(function, null, Map.of());
+    }
+}
@@ -0,0 +1,75 @@
+package com.afs.restapi.agent;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ToolCatalogueTest {
+
+    @Test
+    void should_keep_only_the_first_tool_with_a_given_name() {
+        ToolCallback first = tool("findAll", "first");
+        ToolCallback duplicate = tool("findAll", "second");
+        ToolCallback other = tool("count", "count todos");
+
+        ToolCatalogue catalogue = ToolCatalogue.of(3, List.of(first, duplicate, other));
+
+        assertThat(catalogue.getVersion()).isEqualTo(3);
+        assertThat(catalogue.size()).isEqualTo(2);
+        assertThat(catalogue.getTools()).containsExactly(first, other);
+        assertThat(catalogue.getToolsByName()).containsEntry("findAll", first).containsEntry("count", other);
+    }
+
+    @Test
+    void should_pre_render_descriptions_in_registration_order() {
+        ToolCatalogue catalogue = ToolCatalogue.of(1, List.of(tool("a", "tool a"), tool("b", "tool b")));
+
+        assertThat(catalogue.getDescription()).isEqualTo(
+                "{\"function\":\"a\",\"description\":\"tool a\",\"schema\":\"{}\"}"
+                        + "{\"function\":\"b\",\"description\":\"tool b\",\"schema\":\"{}\"}");
+    }
+
+    @Test
+    void should_describe_a_selection_by_reusing_rendered_descriptions() {
+        ToolCallback a = tool("a", "tool a");
+        ToolCallback b = tool("b", "tool b");
+        ToolCatalogue catalogue = ToolCatalogue.of(1, List.of(a, b));
+
+        assertThat(catalogue.describe(catalogue.getTools())).isSameAs(catalogue.getDescription());
+        assertThat(catalogue.describe(List.of(b))).isEqualTo("{\"function\":\"b\",\"description\":\"tool b\",\"schema\":\"{}\"}");
+        assertThat(catalogue.describe(List.of(tool("c", "not in catalogue")))).contains("\"function\":\"c\"");
+    }
+
+    @Test
+    void should_expose_immutable_views() {
+        ToolCatalogue catalogue = ToolCatalogue.of(1, List.of(tool("a", "tool a")));
+
+        assertThatThrownBy(() -> catalogue.getTools().add(tool("b", "b"))).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> catalogue.getToolsByName().clear()).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    static ToolCallback tool(String name, String description) {
+        ToolDefinition definition = DefaultToolDefinition.builder()
+                .name(name)
+                .description(description)
+                .inputSchema("{}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return name + ":" + toolInput;
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.service.ApiToolCallbackProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ToolLoader 并发压力测试：大量线程同时读取工具列表时工具数量保持不变；
+ * 无锁读取的吞吐量随线程数增长（依赖机器性能，标记为 benchmark，通过 ./gradlew benchmark 运行）
+ */
+class ToolLoaderConcurrencyTest {
+
+    private static final int CALLS_PER_THREAD = 200_000;
+
+    private ToolLoader toolLoader;
+
+    @BeforeEach
+    void setUp() {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("sampleTools", SampleTools.class);
+        context.refresh();
+
+        ChatClient.Builder chatClientBuilder = mock(ChatClient.Builder.class);
+        when(chatClientBuilder.build()).thenReturn(mock(ChatClient.class));
+        ApiToolCallbackProvider apiTools = mock(ApiToolCallbackProvider.class);
+        when(apiTools.getToolCallbacks()).thenReturn(new ToolCallback[]{ToolCatalogueTest.tool("verifyShipment", "api tool")});
+
+        toolLoader = new ToolLoader(context, chatClientBuilder, false, apiTools);
+    }
+
+    @Test
+    void should_keep_tool_count_constant_under_concurrent_reads() throws Exception {
+        int expected = toolLoader.getGeneralTools().size();
+        assertThat(expected).isEqualTo(3);
+
+        Set<Integer> observedSizes = ConcurrentHashMap.newKeySet();
+        run(16, 20_000, () -> observedSizes.add(toolLoader.getGeneralTools().size()));
+
+        assertThat(observedSizes).containsExactly(expected);
+        assertThat(toolLoader.getGeneralTools()).hasSize(expected);
+        assertThat(toolLoader.getToolCatalogue().getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void should_publish_whole_snapshots_while_tools_are_registered_and_removed() throws Exception {
+        int base = toolLoader.getGeneralTools().size();
+        MoreTools moreTools = new MoreTools();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread writer = new Thread(() -> {
+            while (running.get()) {
+                toolLoader.registerToolBean(moreTools);
+                toolLoader.unregisterToolBean(moreTools);
+            }
+        });
+        writer.start();
+        Set<Integer> observedSizes = ConcurrentHashMap.newKeySet();
+        try {
+            run(8, 20_000, () -> observedSizes.add(toolLoader.getGeneralTools().size()));
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        assertThat(observedSizes).isSubsetOf(base, base + 1);
+        assertThat(toolLoader.getGeneralTools()).hasSize(base);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void should_scale_read_throughput_with_threads() throws Exception {
+        int processors = Runtime.getRuntime().availableProcessors();
+        toolLoader.getGeneralTools();
+
+        double single = throughput(1);
+        double parallel = throughput(Math.min(processors, 8));
+        System.out.printf("ToolLoader.getGeneralTools throughput: 1 thread %.0f ops/s, %d threads %.0f ops/s%n",
+                single, Math.min(processors, 8), parallel);
+
+        // 单核环境无法体现扩展性，只输出数据
+        assumeThat(processors).isGreaterThanOrEqualTo(4);
+        assertThat(parallel).isGreaterThan(single * 1.5);
+    }
+
+    private double throughput(int threads) throws Exception {
+        long start = System.nanoTime();
+        run(threads, CALLS_PER_THREAD, () -> toolLoader.getGeneralTools().size());
+        return (double) threads * CALLS_PER_THREAD / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void run(int threads, int callsPerThread, Runnable call) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < callsPerThread; i++) {
+                        call.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public static class SampleTools {
+
+        @Tool(description = "List all todos")
+        public String findAll() {
+            return "[]";
+        }
+
+        @Tool(description = "Count todos")
+        public int count() {
+            return 0;
+        }
+    }
+
+    public static class MoreTools {
+
+        @Tool(description = "Export todos")
+        public String export() {
+            return "[]";
+        }
+    }
+}
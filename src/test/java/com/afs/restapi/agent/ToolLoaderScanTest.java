@@ -0,0 +1,175 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.service.ApiToolCallbackProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ToolLoader 扫描测试：只实例化承载 @Tool 方法的 Bean，懒加载的普通 Bean 不会因为扫描被创建
+ */
+class ToolLoaderScanTest {
+
+    private static final AtomicInteger lazyInstances = new AtomicInteger();
+    private static final AtomicInteger lazyToolInstances = new AtomicInteger();
+
+    private StaticApplicationContext context;
+
+    @BeforeEach
+    void setUp() {
+        lazyInstances.set(0);
+        lazyToolInstances.set(0);
+        context = new StaticApplicationContext();
+        context.registerSingleton("sampleTools", ToolLoaderConcurrencyTest.SampleTools.class);
+        RootBeanDefinition lazyService = new RootBeanDefinition(LazyService.class);
+        lazyService.setLazyInit(true);
+        context.registerBeanDefinition("lazyService", lazyService);
+        RootBeanDefinition lazyTools = new RootBeanDefinition(LazyTools.class);
+        lazyTools.setLazyInit(true);
+        context.registerBeanDefinition("lazyTools", lazyTools);
+    }
+
+    @Test
+    void should_not_instantiate_lazy_non_tool_beans_when_scanning_by_reflection() {
+        context.refresh();
+
+        ToolLoader toolLoader = newToolLoader(false);
+
+        assertThat(toolLoader.getGeneralTools()).hasSize(4);
+        assertThat(lazyInstances).hasValue(0);
+        assertThat(lazyToolInstances).hasValue(1);
+    }
+
+    @Test
+    void should_only_instantiate_indexed_beans_when_scanning_with_the_tool_index() {
+        indexClasses("package " + ToolLoader.class.getPackageName(), LazyTools.class.getName(), LazyService.class.getName());
+        context.refresh();
+
+        ToolLoader toolLoader = newToolLoader(true);
+
+        // 索引中没有 sampleTools；LazyService 在索引中但没有 @Tool 方法，同样不会被创建
+        assertThat(toolLoader.getGeneralTools()).hasSize(2);
+        assertThat(lazyInstances).hasValue(0);
+        assertThat(lazyToolInstances).hasValue(1);
+    }
+
+    @Test
+    void should_fall_back_to_reflection_for_classes_outside_the_indexed_packages() {
+        indexClasses("package com.example.other", LazyTools.class.getName());
+        context.refresh();
+
+        ToolLoader toolLoader = newToolLoader(true);
+
+        assertThat(toolLoader.getGeneralTools()).hasSize(4);
+        assertThat(lazyInstances).hasValue(0);
+    }
+
+    @Test
+    void should_inspect_the_instance_when_the_declared_type_is_an_interface() {
+        // 未 refresh：非懒加载单例尚未创建，getType 只能得到 @Bean 方法声明的接口类型
+        context.registerBean("declaredAsInterface", Archiver.class, InterfaceTools::new);
+        RootBeanDefinition lazyInterface = new RootBeanDefinition(Archiver.class, LazyInterfaceTools::new);
+        lazyInterface.setLazyInit(true);
+        context.registerBeanDefinition("lazyInterface", lazyInterface);
+
+        ToolLoader toolLoader = newToolLoader(false);
+
+        assertThat(toolLoader.getGeneralTools()).extracting(tool -> tool.getToolDefinition().name())
+                .contains("restore")
+                .doesNotContain("purge");
+        assertThat(lazyInstances).hasValue(0);
+    }
+
+    @Test
+    void should_fall_back_to_reflection_when_the_tool_index_is_missing() {
+        context.setResourceLoader(new PathMatchingResourcePatternResolver() {
+            @Override
+            public Resource[] getResources(String locationPattern) {
+                return new Resource[0];
+            }
+        });
+        context.refresh();
+
+        ToolLoader toolLoader = newToolLoader(true);
+
+        assertThat(toolLoader.getGeneralTools()).hasSize(4);
+        assertThat(lazyInstances).hasValue(0);
+    }
+
+    private void indexClasses(String... classNames) {
+        byte[] index = String.join("\n", classNames).getBytes(StandardCharsets.UTF_8);
+        context.setResourceLoader(new PathMatchingResourcePatternResolver() {
+            @Override
+            public Resource[] getResources(String locationPattern) throws IOException {
+                return locationPattern.endsWith(ToolLoader.TOOL_INDEX_LOCATION)
+                        ? new Resource[]{new ByteArrayResource(index)}
+                        : super.getResources(locationPattern);
+            }
+        });
+    }
+
+    private ToolLoader newToolLoader(boolean useIndex) {
+        ChatClient.Builder chatClientBuilder = mock(ChatClient.Builder.class);
+        when(chatClientBuilder.build()).thenReturn(mock(ChatClient.class));
+        ApiToolCallbackProvider apiTools = mock(ApiToolCallbackProvider.class);
+        when(apiTools.getToolCallbacks()).thenReturn(new ToolCallback[]{ToolCatalogueTest.tool("verifyShipment", "api tool")});
+        return new ToolLoader(context, chatClientBuilder, useIndex, apiTools);
+    }
+
+    static class LazyService {
+        LazyService() {
+            lazyInstances.incrementAndGet();
+        }
+
+        public String describe() {
+            return "not a tool";
+        }
+    }
+
+    interface Archiver {
+    }
+
+    static class InterfaceTools implements Archiver {
+        @Tool(description = "Restore archived todos")
+        public String restore() {
+            return "restored";
+        }
+    }
+
+    static class LazyInterfaceTools implements Archiver {
+        LazyInterfaceTools() {
+            lazyInstances.incrementAndGet();
+        }
+
+        @Tool(description = "Purge archived todos")
+        public String purge() {
+            return "purged";
+        }
+    }
+
+    static class LazyTools {
+        LazyTools() {
+            lazyToolInstances.incrementAndGet();
+        }
+
+        @Tool(description = "Archive completed todos")
+        public String archive() {
+            return "archived";
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.afs.restapi.agent;
+
+import com.afs.restapi.testsupport.HashingEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ToolSelectorTest {
+
+    private final HashingEmbeddingModel embeddingModel = new HashingEmbeddingModel(256);
+
+    @Test
+    void should_select_the_most_similar_tools_for_the_input() {
+        ToolSelector selector = new ToolSelector(embeddingModel, true, 2, 0.0, 3);
+        ToolCatalogue catalogue = catalogue(1);
+
+        List<ToolCallback> selected = selector.select("verify shipment 7261242220", catalogue);
+
+        assertThat(selected).hasSize(2);
+        assertThat(selected.get(0).getToolDefinition().name()).isEqualTo("verifyShipment");
+    }
+
+    @Test
+    void should_embed_tool_descriptions_once_per_catalogue_version() {
+        ToolSelector selector = new ToolSelector(embeddingModel, true, 2, 0.0, 3);
+        ToolCatalogue catalogue = catalogue(1);
+
+        selector.select("verify shipment", catalogue);
+        int afterFirst = embeddingModel.getCalls();
+        selector.select("delete todo", catalogue);
+        assertThat(embeddingModel.getCalls()).isEqualTo(afterFirst + 1);
+
+        selector.select("delete todo", catalogue(2));
+        assertThat(embeddingModel.getCalls()).isGreaterThan(afterFirst + 1 + catalogue.size());
+    }
+
+    @Test
+    void should_use_all_tools_when_disabled_or_the_catalogue_is_small() {
+        ToolCatalogue catalogue = catalogue(1);
+
+        assertThat(new ToolSelector(embeddingModel, false, 2, 0.0, 3).select("verify shipment", catalogue))
+                .isSameAs(catalogue.getTools());
+        assertThat(new ToolSelector(embeddingModel, true, 2, 0.0, 16).select("verify shipment", catalogue))
+                .isSameAs(catalogue.getTools());
+        assertThat(embeddingModel.getCalls()).isZero();
+    }
+
+    @Test
+    void should_use_all_tools_when_nothing_matches_the_threshold() {
+        ToolSelector selector = new ToolSelector(embeddingModel, true, 2, 0.99, 3);
+        ToolCatalogue catalogue = catalogue(1);
+
+        assertThat(selector.select("weather forecast", catalogue)).isSameAs(catalogue.getTools());
+    }
+
+    @Test
+    void should_use_all_tools_when_embedding_fails() {
+        EmbeddingModel failing = mock(EmbeddingModel.class);
+        when(failing.embed(any(String.class))).thenThrow(new IllegalStateException("model offline"));
+        when(failing.embed(anyList(), any(), any())).thenThrow(new IllegalStateException("model offline"));
+        ToolSelector selector = new ToolSelector(failing, true, 2, 0.0, 3);
+        ToolCatalogue catalogue = catalogue(1);
+
+        assertThat(selector.select("verify shipment", catalogue)).isSameAs(catalogue.getTools());
+    }
+
+    private static ToolCatalogue catalogue(long version) {
+        List<ToolCallback> tools = new ArrayList<>();
+        tools.add(ToolCatalogueTest.tool("verifyShipment", "Verify shipment details by shipment number"));
+        tools.add(ToolCatalogueTest.tool("updateShipmentPOR", "Update the place of receipt of a shipment"));
+        tools.add(ToolCatalogueTest.tool("deleteTodo", "Delete a todo item by id"));
+        tools.add(ToolCatalogueTest.tool("createTodo", "Create a new todo item with text"));
+        tools.add(ToolCatalogueTest.tool("countTodos", "Count completed and incomplete todo items"));
+        return ToolCatalogue.of(version, tools);
+    }
+}
@@ -0,0 +1,220 @@
+package com.afs.restapi.config;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiBackendGuardTest {
+
+    private static final URI BACKEND = URI.create("http://backend:8080/shipments");
+    private static final RuntimeException FAILURE = new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void should_open_when_failure_rate_reaches_threshold_and_count_4xx_as_success() {
+        ApiBackendGuard guard = guard(16, Duration.ofMinutes(1), 1);
+
+        guard.acquire(BACKEND).complete(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+        guard.acquire(BACKEND).complete(null);
+        guard.acquire(BACKEND).complete(FAILURE);
+        assertThat(state(guard)).isEqualTo("CLOSED");
+        guard.acquire(BACKEND).complete(FAILURE);
+
+        assertThat(state(guard)).isEqualTo("OPEN");
+        assertThatThrownBy(() -> guard.acquire(BACKEND)).isInstanceOf(ApiBackendGuard.BackendUnavailableException.class);
+        assertThat(rejected("open")).isEqualTo(1);
+    }
+
+    @Test
+    void should_close_after_all_half_open_trials_succeed_and_reject_extra_trials() {
+        ApiBackendGuard guard = guard(16, Duration.ofMillis(20), 2);
+        open(guard);
+        advance(Duration.ofMillis(30));
+
+        ApiBackendGuard.Permit first = guard.tryAcquire(BACKEND);
+        ApiBackendGuard.Permit second = guard.tryAcquire(BACKEND);
+        assertThat(state(guard)).isEqualTo("HALF_OPEN");
+        assertThatThrownBy(() -> guard.tryAcquire(BACKEND)).isInstanceOf(ApiBackendGuard.BackendUnavailableException.class);
+
+        first.complete(null);
+        assertThat(state(guard)).isEqualTo("HALF_OPEN");
+        second.complete(null);
+        assertThat(state(guard)).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void should_reopen_when_a_half_open_trial_fails() {
+        ApiBackendGuard guard = guard(16, Duration.ofMillis(20), 2);
+        open(guard);
+        advance(Duration.ofMillis(30));
+
+        guard.tryAcquire(BACKEND).complete(FAILURE);
+
+        assertThat(state(guard)).isEqualTo("OPEN");
+    }
+
+    @Test
+    void should_ignore_calls_admitted_before_half_open_when_judging_trials() {
+        ApiBackendGuard guard = guard(16, Duration.ofMillis(20), 1);
+        ApiBackendGuard.Permit lateSuccess = guard.acquire(BACKEND);
+        ApiBackendGuard.Permit lateFailure = guard.acquire(BACKEND);
+        open(guard);
+        advance(Duration.ofMillis(30));
+
+        ApiBackendGuard.Permit trial = guard.tryAcquire(BACKEND);
+        lateSuccess.complete(null);
+        lateFailure.complete(FAILURE);
+        assertThat(state(guard)).isEqualTo("HALF_OPEN");
+
+        trial.complete(null);
+        assertThat(state(guard)).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void should_reject_when_bulkhead_is_full_and_give_back_the_trial() {
+        ApiBackendGuard guard = guard(1, Duration.ofMillis(20), 1);
+        ApiBackendGuard.Permit held = guard.tryAcquire(BACKEND);
+        assertThatThrownBy(() -> guard.tryAcquire(BACKEND)).isInstanceOf(ApiBackendGuard.BackendUnavailableException.class);
+        assertThat(rejected("bulkhead")).isEqualTo(1);
+
+        open(guard, held);
+        advance(Duration.ofMillis(30));
+        ApiBackendGuard.Permit blocker = guard.tryAcquire(BACKEND);
+        blocker.cancel();
+
+        // 取消的试探归还名额，下一次调用仍可作为试探放行
+        guard.tryAcquire(BACKEND).complete(null);
+        assertThat(state(guard)).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void should_count_timeouts_as_censored_latency_samples() {
+        ApiBackendGuard guard = guard(16, Duration.ofMinutes(1), 1);
+        ApiToolConfig.HttpSettings settings = ApiToolConfig.HttpSettings.defaults();
+        assertThat(guard.responseTimeout(BACKEND, settings)).isEqualTo(Duration.ofMillis(30000));
+
+        for (int i = 0; i < 3; i++) {
+            ApiBackendGuard.Permit permit = guard.acquire(BACKEND);
+            advance(Duration.ofMillis(5));
+            permit.complete(null);
+        }
+        long fast = guard.responseTimeout(BACKEND, settings).toMillis();
+        assertThat(fast).isLessThan(1000);
+
+        ApiBackendGuard.Permit timedOut = guard.acquire(BACKEND);
+        advance(Duration.ofMillis(300));
+        timedOut.complete(new ResourceAccessException("read timed out", new SocketTimeoutException("timeout")));
+
+        assertThat(guard.responseTimeout(BACKEND, settings).toMillis()).isGreaterThanOrEqualTo(600);
+    }
+
+    @Test
+    void should_use_the_configured_timeout_for_half_open_trials() {
+        ApiBackendGuard guard = guard(16, Duration.ofMillis(20), 1);
+        ApiToolConfig.HttpSettings settings = ApiToolConfig.HttpSettings.defaults();
+        for (int i = 0; i < 3; i++) {
+            ApiBackendGuard.Permit permit = guard.acquire(BACKEND);
+            advance(Duration.ofMillis(5));
+            permit.complete(null);
+        }
+        assertThat(guard.responseTimeout(BACKEND, settings).toMillis()).isLessThan(1000);
+
+        open(guard);
+        advance(Duration.ofMillis(30));
+        guard.tryAcquire(BACKEND);
+
+        assertThat(guard.responseTimeout(BACKEND, settings)).isEqualTo(Duration.ofMillis(30000));
+    }
+
+    @Test
+    void should_wait_for_a_released_permit_without_blocking() {
+        ApiBackendGuard guard = guard(1, 200, Duration.ofMinutes(1), 1);
+        ApiBackendGuard.Permit held = guard.tryAcquire(BACKEND);
+
+        CompletableFuture<ApiBackendGuard.Permit> waiting = guard.acquireAsync(BACKEND).toFuture();
+        assertThat(waiting).isNotDone();
+
+        held.complete(null);
+        waiting.orTimeout(5, TimeUnit.SECONDS).join().complete(null);
+        assertThat(rejected("bulkhead")).isZero();
+    }
+
+    @Test
+    void should_reject_an_async_acquire_once_max_wait_has_passed() {
+        ApiBackendGuard guard = guard(1, 200, Duration.ofMinutes(1), 1);
+        guard.tryAcquire(BACKEND);
+
+        CompletableFuture<ApiBackendGuard.Permit> waiting = guard.acquireAsync(BACKEND).toFuture();
+        advance(Duration.ofMillis(200));
+
+        assertThatThrownBy(() -> waiting.orTimeout(5, TimeUnit.SECONDS).join())
+                .hasCauseInstanceOf(ApiBackendGuard.BackendUnavailableException.class);
+        assertThat(rejected("bulkhead")).isEqualTo(1);
+    }
+
+    @Test
+    void should_reject_an_async_acquire_immediately_while_open() {
+        ApiBackendGuard guard = guard(16, 200, Duration.ofMinutes(1), 1);
+        open(guard);
+
+        assertThatThrownBy(() -> guard.acquireAsync(BACKEND).block(Duration.ofSeconds(5)))
+                .isInstanceOf(ApiBackendGuard.BackendUnavailableException.class);
+    }
+
+    @Test
+    void should_detect_read_timeouts_through_wrapping_exceptions() {
+        assertThat(ApiBackendGuard.isTimeout(new ResourceAccessException("io", new SocketTimeoutException()))).isTrue();
+        assertThat(ApiBackendGuard.isTimeout(new IllegalStateException(ReadTimeoutException.INSTANCE))).isTrue();
+        assertThat(ApiBackendGuard.isTimeout(FAILURE)).isFalse();
+    }
+
+    private ApiBackendGuard guard(int maxConcurrentCalls, Duration openDuration, int halfOpenCalls) {
+        return guard(maxConcurrentCalls, 0, openDuration, halfOpenCalls);
+    }
+
+    /**
+     * 滑动窗口 4 次、最少 4 次、失败率 50%；自适应超时最少 3 个样本，p99 × 2，下限 1 ms；时钟由 {@link #advance} 推进
+     */
+    private ApiBackendGuard guard(int maxConcurrentCalls, long maxWaitMs, Duration openDuration, int halfOpenCalls) {
+        return new ApiBackendGuard(meterRegistry, maxConcurrentCalls, maxWaitMs, 50, 4, 4, openDuration, halfOpenCalls,
+                0.99, 2.0, 1, 3, nanos::get);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private static void open(ApiBackendGuard guard, ApiBackendGuard.Permit... held) {
+        for (ApiBackendGuard.Permit permit : held) {
+            permit.complete(FAILURE);
+        }
+        do {
+            guard.tryAcquire(BACKEND).complete(FAILURE);
+        } while (!"OPEN".equals(state(guard)));
+    }
+
+    private static String state(ApiBackendGuard guard) {
+        return String.valueOf(guard.backendStats().get("backend:8080").get("state"));
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.counter("agent.api.backend.rejected", "host", "backend:8080", "reason", reason).count();
+    }
+}
@@ -0,0 +1,109 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ApiRateLimiterTest {
+
+    private static final URI BACKEND = URI.create("http://backend/shipments");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ApiToolConfigRegistry configRegistry = mock(ApiToolConfigRegistry.class);
+    private final ApiRateLimiter rateLimiter = new ApiRateLimiter(configRegistry, meterRegistry);
+
+    @Test
+    void should_pass_burst_then_delay_within_max_wait_then_reject() {
+        hostLimits(Map.of("backend", limit(10, 2, 150)));
+        CompiledApiTool tool = tool("tool", null);
+
+        assertThat(rateLimiter.reserve(tool, BACKEND)).isZero();
+        assertThat(rateLimiter.reserve(tool, BACKEND)).isZero();
+        assertThat(rateLimiter.reserve(tool, BACKEND)).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(150));
+        assertThatThrownBy(() -> rateLimiter.reserve(tool, BACKEND)).isInstanceOf(ApiRateLimiter.RateLimitedException.class);
+
+        assertThat(count("host:backend", "passed")).isEqualTo(2);
+        assertThat(count("host:backend", "delayed")).isEqualTo(1);
+        assertThat(count("host:backend", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    void should_return_the_host_token_when_the_tool_limit_rejects() {
+        hostLimits(Map.of("backend", limit(0.001, 2, 0)));
+        CompiledApiTool limited = tool("limited", limit(0.001, 1, 0));
+        CompiledApiTool other = tool("other", null);
+
+        rateLimiter.reserve(limited, BACKEND);
+        assertThatThrownBy(() -> rateLimiter.reserve(limited, BACKEND)).isInstanceOf(ApiRateLimiter.RateLimitedException.class);
+
+        assertThat(rateLimiter.reserve(other, BACKEND)).isZero();
+    }
+
+    @Test
+    void should_refund_host_and_tool_tokens_for_calls_that_were_not_sent() {
+        hostLimits(Map.of("backend", limit(0.001, 1, 0)));
+        CompiledApiTool tool = tool("tool", limit(0.001, 1, 0));
+
+        rateLimiter.reserve(tool, BACKEND);
+        rateLimiter.refund(tool, BACKEND);
+
+        assertThat(rateLimiter.reserve(tool, BACKEND)).isZero();
+    }
+
+    @Test
+    void should_keep_buckets_across_reloads_and_rebuild_only_those_whose_settings_changed() {
+        hostLimits(Map.of("backend", limit(0.001, 1, 0)));
+        CompiledApiTool tool = tool("tool", null);
+        rateLimiter.reserve(tool, BACKEND);
+
+        hostLimits(Map.of("backend", limit(0.001, 1, 0)));
+        assertThatThrownBy(() -> rateLimiter.reserve(tool, BACKEND)).isInstanceOf(ApiRateLimiter.RateLimitedException.class);
+
+        hostLimits(Map.of("backend", limit(0.001, 2, 0)));
+        assertThat(rateLimiter.reserve(tool, BACKEND)).isZero();
+    }
+
+    @Test
+    void should_not_limit_hosts_and_tools_without_settings() {
+        hostLimits(null);
+        CompiledApiTool tool = tool("tool", null);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(rateLimiter.reserve(tool, BACKEND)).isZero();
+        }
+    }
+
+    private void hostLimits(Map<String, ApiToolConfig.RateLimitSettings> rateLimits) {
+        ApiToolConfig config = new ApiToolConfig();
+        config.setRateLimits(rateLimits);
+        when(configRegistry.getSnapshot()).thenReturn(new ApiToolConfigRegistry.Snapshot(1, config, Map.of()));
+    }
+
+    private double count(String scope, String result) {
+        return meterRegistry.counter("agent.api.ratelimit", "scope", scope, "result", result).count();
+    }
+
+    static CompiledApiTool tool(String name, ApiToolConfig.RateLimitSettings rateLimit) {
+        ApiToolConfig.ApiTool tool = CompiledApiToolTest.tool("GET", "http://backend/shipments");
+        tool.setName(name);
+        tool.setRateLimit(rateLimit);
+        return CompiledApiToolTest.compile(tool);
+    }
+
+    static ApiToolConfig.RateLimitSettings limit(double permitsPerSecond, int burst, long maxWaitMs) {
+        ApiToolConfig.RateLimitSettings settings = new ApiToolConfig.RateLimitSettings();
+        settings.setPermitsPerSecond(permitsPerSecond);
+        settings.setBurst(burst);
+        settings.setMaxWaitMs(maxWaitMs);
+        return settings;
+    }
+}
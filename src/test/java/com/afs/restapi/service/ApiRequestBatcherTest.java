@@ -0,0 +1,145 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import com.afs.restapi.config.ApiBackendGuard;
+import com.afs.restapi.config.ApiHttpClientFactory;
+import com.afs.restapi.testsupport.StubBackend;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ApiRequestBatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ApiToolConfigRegistry configRegistry = mock(ApiToolConfigRegistry.class);
+    private final ApiRateLimiter rateLimiter = new ApiRateLimiter(configRegistry, meterRegistry);
+
+    private StubBackend backend;
+    private ApiHttpClientFactory httpClientFactory;
+    private ApiRequestBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        backend = new StubBackend();
+        // 按请求中的元素顺序逐个回显 shipmentNumber
+        backend.respond(request -> {
+            try {
+                JsonNode items = objectMapper.readTree(request.body()).path("shipments");
+                StringBuilder results = new StringBuilder("{\"results\":[");
+                for (int i = 0; i < items.size(); i++) {
+                    results.append(i > 0 ? "," : "").append("{\"number\":\"")
+                            .append(items.get(i).path("shipmentNumber").asText()).append("\"}");
+                }
+                return results.append("]}").toString();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        when(configRegistry.getSnapshot()).thenReturn(new ApiToolConfigRegistry.Snapshot(1, new ApiToolConfig(), Map.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        httpClientFactory.shutdown();
+        backend.close();
+    }
+
+    @Test
+    void should_send_a_full_batch_at_once_and_dispatch_results_in_order() {
+        batcher = batcher(guard(16));
+        CompiledApiTool tool = batchTool(3, 10_000, null);
+
+        List<CompletableFuture<ResponseEntity<String>>> results = List.of(
+                batcher.submit(tool, Map.of("shipmentNumber", "1")),
+                batcher.submit(tool, Map.of("shipmentNumber", "2")),
+                batcher.submit(tool, Map.of("shipmentNumber", "3")));
+
+        assertThat(results).extracting(result -> result.join().getBody())
+                .containsExactly("{\"number\":\"1\"}", "{\"number\":\"2\"}", "{\"number\":\"3\"}");
+        assertThat(backend.requests()).singleElement().satisfies(request -> {
+            assertThat(request.method()).isEqualTo("POST");
+            assertThat(request.body()).isEqualTo("{\"shipments\":[{\"shipmentNumber\":\"1\",\"type\":\"SHIPMENT\"},"
+                    + "{\"shipmentNumber\":\"2\",\"type\":\"SHIPMENT\"},{\"shipmentNumber\":\"3\",\"type\":\"SHIPMENT\"}]}");
+        });
+    }
+
+    @Test
+    void should_flush_a_partial_batch_after_max_delay() throws Exception {
+        batcher = batcher(guard(16));
+        CompiledApiTool tool = batchTool(10, 20, null);
+
+        ResponseEntity<String> response = batcher.submit(tool, Map.of("shipmentNumber", "1")).get(5, TimeUnit.SECONDS);
+
+        assertThat(response.getBody()).isEqualTo("{\"number\":\"1\"}");
+        assertThat(meterRegistry.summary("agent.api.batch.size", "tool", "verifyShipments").count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_fail_every_call_when_the_response_size_does_not_match() {
+        batcher = batcher(guard(16));
+        backend.respond(request -> "{\"results\":[]}");
+        CompiledApiTool tool = batchTool(2, 10_000, null);
+
+        CompletableFuture<ResponseEntity<String>> first = batcher.submit(tool, Map.of("shipmentNumber", "1"));
+        CompletableFuture<ResponseEntity<String>> second = batcher.submit(tool, Map.of("shipmentNumber", "2"));
+
+        assertThatThrownBy(first::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void should_refund_the_rate_limit_token_when_the_backend_guard_rejects_the_batch() {
+        batcher = batcher(guard(0));
+        CompiledApiTool tool = batchTool(1, 10_000, ApiRateLimiterTest.limit(0.001, 1, 0));
+
+        assertThatThrownBy(() -> batcher.submit(tool, Map.of("shipmentNumber", "1")).join())
+                .hasCauseInstanceOf(ApiBackendGuard.BackendUnavailableException.class);
+
+        assertThat(rateLimiter.reserve(tool, URI.create(backend.url() + "/batch"))).isZero();
+        assertThat(backend.requests()).isEmpty();
+    }
+
+    private ApiRequestBatcher batcher(ApiBackendGuard guard) {
+        httpClientFactory = new ApiHttpClientFactory(meterRegistry, guard);
+        return new ApiRequestBatcher(objectMapper, httpClientFactory, guard, rateLimiter, meterRegistry);
+    }
+
+    private ApiBackendGuard guard(int maxConcurrentCalls) {
+        return new ApiBackendGuard(meterRegistry, maxConcurrentCalls, 0, 50, 20, 10, Duration.ofSeconds(30), 3,
+                0.99, 3.0, 1000, 20);
+    }
+
+    private CompiledApiTool batchTool(int maxSize, long maxDelayMs, ApiToolConfig.RateLimitSettings rateLimit) {
+        ApiToolConfig.ApiTool tool = CompiledApiToolTest.tool("GET", backend.url() + "/shipments/{shipmentNumber}",
+                CompiledApiToolTest.param("shipmentNumber", "path", null),
+                CompiledApiToolTest.param("type", "query", "SHIPMENT"));
+        tool.setName("verifyShipments");
+        ApiToolConfig.BatchSettings batch = new ApiToolConfig.BatchSettings();
+        batch.setUrl(backend.url() + "/batch");
+        batch.setMaxSize(maxSize);
+        batch.setMaxDelayMs(maxDelayMs);
+        batch.setRequestField("shipments");
+        batch.setResponseField("results");
+        tool.setBatch(batch);
+        tool.setRateLimit(rateLimit);
+        return CompiledApiToolTest.compile(tool);
+    }
+}
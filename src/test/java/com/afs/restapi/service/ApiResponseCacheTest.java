@@ -0,0 +1,158 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiResponseCacheTest {
+
+    private static final Map<String, String> PARAMS = Map.of("shipmentNumber", "7261242220");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ApiResponseCache cache = new ApiResponseCache(meterRegistry);
+
+    @Test
+    void should_skip_tools_without_cache_settings() {
+        CompiledApiTool tool = CompiledApiToolTest.compile(CompiledApiToolTest.tool("GET", "http://backend/shipments"));
+
+        assertThat(cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS)).isSameAs(ApiResponseCache.Lookup.NONE);
+        assertThat(meterRegistry.find("agent.api.cache.requests").counters()).isEmpty();
+    }
+
+    @Test
+    void should_count_miss_at_lookup_and_hit_after_store() {
+        CompiledApiTool tool = cachedGet(30000, 10);
+
+        ApiResponseCache.Lookup miss = cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS);
+        assertThat(miss.fresh()).isFalse();
+        assertThat(count("miss")).isEqualTo(1);
+
+        cache.complete(tool, PARAMS, miss, ResponseEntity.ok("body"));
+        assertThat(count("miss")).isEqualTo(1);
+
+        ApiResponseCache.Lookup hit = cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS);
+        assertThat(hit.fresh()).isTrue();
+        assertThat(hit.cachedResponse().getBody()).isEqualTo("body");
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void should_key_on_vary_headers_of_the_actual_request() {
+        CompiledApiTool tool = cachedGet(30000, 10);
+        tool.getTool().getCache().setVaryHeaders(List.of("Accept"));
+        HttpHeaders json = headers("application/json");
+        HttpHeaders xml = headers("application/xml");
+
+        cache.complete(tool, PARAMS, cache.lookup(tool, uri(tool), json, PARAMS), ResponseEntity.ok("json"));
+
+        assertThat(cache.lookup(tool, uri(tool), json, PARAMS).fresh()).isTrue();
+        assertThat(cache.lookup(tool, uri(tool), xml, PARAMS).fresh()).isFalse();
+    }
+
+    @Test
+    void should_not_store_a_response_whose_resource_was_invalidated_in_flight() {
+        CompiledApiTool tool = cachedGet(30000, 10);
+        ApiResponseCache.Lookup lookup = cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS);
+
+        cache.invalidate("shipment:7261242220");
+        cache.complete(tool, PARAMS, lookup, ResponseEntity.ok("stale"));
+
+        assertThat(cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS).fresh()).isFalse();
+    }
+
+    @Test
+    void should_not_store_a_response_started_before_a_config_reload() {
+        CompiledApiTool tool = cachedGet(30000, 10);
+        ApiResponseCache.Lookup lookup = cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS);
+
+        cache.onConfigChanged(null);
+        cache.lookup(tool, uri(tool), new HttpHeaders(), Map.of("shipmentNumber", "other"));
+        cache.complete(tool, PARAMS, lookup, ResponseEntity.ok("stale"));
+
+        assertThat(cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS).fresh()).isFalse();
+    }
+
+    @Test
+    void should_invalidate_cached_reads_after_a_successful_write_to_the_same_resource() {
+        CompiledApiTool read = cachedGet(30000, 10);
+        ApiToolConfig.ApiTool writeConfig = CompiledApiToolTest.tool("POST", "http://backend/shipments/por");
+        writeConfig.setResourceKey("shipment:{shipmentNumber}");
+        CompiledApiTool write = CompiledApiToolTest.compile(writeConfig);
+        cache.complete(read, PARAMS, cache.lookup(read, uri(read), new HttpHeaders(), PARAMS), ResponseEntity.ok("old"));
+
+        cache.complete(write, PARAMS, ApiResponseCache.Lookup.NONE, ResponseEntity.internalServerError().body("failed"));
+        assertThat(cache.lookup(read, uri(read), new HttpHeaders(), PARAMS).fresh()).isTrue();
+
+        cache.complete(write, PARAMS, ApiResponseCache.Lookup.NONE, ResponseEntity.ok("updated"));
+        assertThat(cache.lookup(read, uri(read), new HttpHeaders(), PARAMS).fresh()).isFalse();
+    }
+
+    @Test
+    void should_revalidate_expired_entries_with_etag() throws InterruptedException {
+        CompiledApiTool tool = cachedGet(1, 10);
+        cache.complete(tool, PARAMS, cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS),
+                ResponseEntity.ok().eTag("\"v1\"").body("body"));
+        Thread.sleep(5);
+
+        ApiResponseCache.Lookup stale = cache.lookup(tool, uri(tool), new HttpHeaders(), PARAMS);
+        assertThat(stale.fresh()).isFalse();
+        assertThat(cache.requestHeaders(stale, new HttpHeaders()).getIfNoneMatch()).containsExactly("\"v1\"");
+
+        ResponseEntity<String> response = cache.complete(tool, PARAMS, stale, ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo("body");
+        assertThat(count("revalidated")).isEqualTo(1);
+    }
+
+    @Test
+    void should_evict_least_recently_used_entries_beyond_max_entries() {
+        CompiledApiTool tool = cachedGet(30000, 2);
+        for (String number : List.of("1", "2")) {
+            Map<String, String> params = Map.of("shipmentNumber", number);
+            cache.complete(tool, params, cache.lookup(tool, tool.bindUri(params), new HttpHeaders(), params), ResponseEntity.ok(number));
+        }
+        Map<String, String> first = Map.of("shipmentNumber", "1");
+        assertThat(cache.lookup(tool, tool.bindUri(first), new HttpHeaders(), first).fresh()).isTrue();
+
+        Map<String, String> third = Map.of("shipmentNumber", "3");
+        cache.complete(tool, third, cache.lookup(tool, tool.bindUri(third), new HttpHeaders(), third), ResponseEntity.ok("3"));
+
+        Map<String, String> second = Map.of("shipmentNumber", "2");
+        assertThat(cache.lookup(tool, tool.bindUri(first), new HttpHeaders(), first).fresh()).isTrue();
+        assertThat(cache.lookup(tool, tool.bindUri(second), new HttpHeaders(), second).fresh()).isFalse();
+    }
+
+    private CompiledApiTool cachedGet(long ttlMs, int maxEntries) {
+        ApiToolConfig.ApiTool tool = CompiledApiToolTest.tool("GET", "http://backend/shipments/{shipmentNumber}",
+                CompiledApiToolTest.param("shipmentNumber", "path", null));
+        ApiToolConfig.CacheSettings settings = new ApiToolConfig.CacheSettings();
+        settings.setTtlMs(ttlMs);
+        settings.setMaxEntries(maxEntries);
+        tool.setCache(settings);
+        tool.setResourceKey("shipment:{shipmentNumber}");
+        return CompiledApiToolTest.compile(tool);
+    }
+
+    private static URI uri(CompiledApiTool tool) {
+        return tool.bindUri(PARAMS);
+    }
+
+    private static HttpHeaders headers(String accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, accept);
+        return headers;
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("agent.api.cache.requests", "tool", "tool", "result", result).count();
+    }
+}
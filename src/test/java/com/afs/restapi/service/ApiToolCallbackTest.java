@@ -0,0 +1,125 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiToolCallbackTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void should_generate_input_schema_from_parameters() throws Exception {
+        ApiToolConfig.ApiTool tool = CompiledApiToolTest.tool("GET", "http://backend/shipments/{shipmentNumber}",
+                parameter("shipmentNumber", "string", true, null, "Shipment number"),
+                parameter("type", "string", true, "SHIPMENT", null),
+                parameter("limit", "Integer", false, null, null),
+                parameter("filters", "map", false, null, null));
+
+        JsonNode schema = objectMapper.readTree(ApiToolCallback.inputSchema(tool));
+
+        assertThat(schema.get("type").asText()).isEqualTo("object");
+        assertThat(schema.at("/properties/shipmentNumber/description").asText()).isEqualTo("Shipment number");
+        assertThat(schema.at("/properties/type/default").asText()).isEqualTo("SHIPMENT");
+        assertThat(schema.at("/properties/limit/type").asText()).isEqualTo("integer");
+        assertThat(schema.at("/properties/filters/type").asText()).isEqualTo("object");
+        assertThat(schema.get("required")).hasSize(1);
+        assertThat(schema.at("/required/0").asText()).isEqualTo("shipmentNumber");
+        assertThat(schema.get("additionalProperties").asBoolean()).isFalse();
+    }
+
+    @Test
+    void should_convert_arguments_to_api_parameters() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("shipmentNumber", 7261242220L);
+        arguments.put("flag", true);
+        arguments.put("ids", List.of(1, 2));
+        arguments.put("body", Map.of("a", "b"));
+        arguments.put("ignored", null);
+
+        assertThat(ApiToolCallback.toApiParameters(arguments)).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "shipmentNumber", "7261242220",
+                "flag", "true",
+                "ids", "[1,2]",
+                "body", "{\"a\":\"b\"}"));
+        assertThat(ApiToolCallback.toApiParameters(null)).isEmpty();
+    }
+
+    @Test
+    void should_call_generic_api_service_with_parsed_arguments() {
+        GenericApiService genericApiService = mock(GenericApiService.class);
+        when(genericApiService.executeApiCall("verifyShipment", Map.of("shipmentNumber", "7261242220"))).thenReturn("ok");
+        ApiToolCallback callback = new ApiToolCallback(named("verifyShipment"), genericApiService);
+
+        assertThat(callback.call("{\"shipmentNumber\": \"7261242220\"}")).isEqualTo("ok");
+    }
+
+    @Test
+    void should_report_invalid_input_without_calling_the_api() {
+        GenericApiService genericApiService = mock(GenericApiService.class);
+        ApiToolCallback callback = new ApiToolCallback(named("verifyShipment"), genericApiService);
+
+        assertThat(callback.call("{not json")).startsWith("❌ Invalid input for tool verifyShipment");
+        verify(genericApiService, never()).executeApiCall(anyString(), any());
+    }
+
+    @Test
+    void should_regenerate_callbacks_only_when_the_snapshot_version_changes() {
+        ApiToolConfigRegistry registry = mock(ApiToolConfigRegistry.class);
+        ApiToolCallbackProvider provider = new ApiToolCallbackProvider(registry, mock(GenericApiService.class));
+        when(registry.getSnapshot()).thenReturn(snapshot(1, "a", "b"));
+
+        ToolCallback[] first = provider.getToolCallbacks();
+        ToolCallback[] again = provider.getToolCallbacks();
+        when(registry.getSnapshot()).thenReturn(snapshot(2, "c"));
+        ToolCallback[] reloaded = provider.getToolCallbacks();
+
+        assertThat(names(first)).containsExactly("a", "b");
+        assertThat(again).isNotSameAs(first).containsExactly(first);
+        assertThat(names(reloaded)).containsExactly("c");
+    }
+
+    static ApiToolConfigRegistry.Snapshot snapshot(long version, String... toolNames) {
+        Map<String, CompiledApiTool> tools = new LinkedHashMap<>();
+        for (String name : toolNames) {
+            tools.put(name, CompiledApiToolTest.compile(named(name)));
+        }
+        return new ApiToolConfigRegistry.Snapshot(version, new ApiToolConfig(), tools);
+    }
+
+    static ApiToolConfig.ApiTool named(String name) {
+        ApiToolConfig.ApiTool tool = CompiledApiToolTest.tool("GET", "http://backend/" + name);
+        tool.setName(name);
+        tool.setDescription(name + " tool");
+        return tool;
+    }
+
+    private static List<String> names(ToolCallback[] callbacks) {
+        return Arrays.stream(callbacks).map(callback -> callback.getToolDefinition().name()).toList();
+    }
+
+    private static ApiToolConfig.Parameter parameter(String name, String type, boolean required, String defaultValue,
+                                                     String description) {
+        ApiToolConfig.Parameter param = CompiledApiToolTest.param(name, "query", defaultValue);
+        param.setType(type);
+        param.setRequired(required);
+        param.setDescription(description);
+        return param;
+    }
+}
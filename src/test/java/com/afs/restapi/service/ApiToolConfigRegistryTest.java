@@ -0,0 +1,157 @@
+package com.afs.restapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiToolConfigRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+    private ApiToolConfigRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void should_compile_tools_with_tool_settings_over_client_defaults_and_keep_the_first_duplicate() throws IOException {
+        Path file = write("""
+                {"httpClient": {"readTimeoutMs": 1000, "maxConnections": 5},
+                 "apiTools": [
+                   {"name": "a", "method": "GET", "url": "http://backend/a", "http": {"readTimeoutMs": 200}},
+                   {"name": "b", "method": "GET", "url": "http://backend/b"},
+                   {"name": "a", "method": "POST", "url": "http://backend/other"}
+                 ]}
+                """);
+
+        registry = registry(file, false);
+
+        ApiToolConfigRegistry.Snapshot snapshot = registry.getSnapshot();
+        assertThat(snapshot.version()).isEqualTo(1);
+        assertThat(snapshot.tools().keySet()).containsExactly("a", "b");
+        assertThat(snapshot.getTool("a").getTool().getUrl()).isEqualTo("http://backend/a");
+        assertThat(snapshot.getTool("a").getHttpSettings().getReadTimeoutMs()).isEqualTo(200);
+        assertThat(snapshot.getTool("a").getHttpSettings().getMaxConnections()).isEqualTo(5);
+        assertThat(snapshot.getTool("b").getHttpSettings().getReadTimeoutMs()).isEqualTo(1000);
+        assertThat(snapshot.getTool("b").getHttpSettings().getConnectTimeoutMs()).isEqualTo(5000);
+    }
+
+    @Test
+    void should_fail_startup_when_configuration_cannot_be_read() {
+        registry = new ApiToolConfigRegistry(new DefaultResourceLoader(), new ObjectMapper(), events::add,
+                dir.resolve("missing.json").toUri().toString(), false, 0);
+
+        assertThatThrownBy(registry::init).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void should_swap_snapshot_and_publish_event_on_reload() throws IOException {
+        Path file = write(config("a"));
+        registry = registry(file, false);
+        ApiToolConfigRegistry.Snapshot first = registry.getSnapshot();
+
+        write(config("b"));
+
+        assertThat(registry.reload()).isTrue();
+        assertThat(registry.getSnapshot().version()).isEqualTo(2);
+        assertThat(registry.getSnapshot().tools()).containsOnlyKeys("b");
+        assertThat(events).singleElement().isEqualTo(new ApiToolConfigChangedEvent(first, registry.getSnapshot()));
+    }
+
+    @Test
+    void should_keep_previous_snapshot_when_reload_fails() throws IOException {
+        Path file = write(config("a"));
+        registry = registry(file, false);
+        ApiToolConfigRegistry.Snapshot first = registry.getSnapshot();
+
+        write("{ not json");
+
+        assertThat(registry.reload()).isFalse();
+        assertThat(registry.getSnapshot()).isSameAs(first);
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void should_reload_when_the_watched_file_changes() throws Exception {
+        Path file = write(config("a"));
+        registry = registry(file, true);
+
+        write(config("b"));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (registry.getSnapshot().version() == 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(registry.getSnapshot().tools()).containsOnlyKeys("b");
+    }
+
+    @Test
+    void should_keep_watching_when_a_change_listener_fails() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        Path file = write(config("a"));
+        registry = registry(file, true, event -> {
+            if (failing.get()) {
+                throw new IllegalStateException("listener failed");
+            }
+            events.add(event);
+        });
+
+        write(config("b"));
+        awaitTool("b");
+        assertThat(registry.getSnapshot().tools()).containsOnlyKeys("b");
+        assertThatThrownBy(registry::reload).hasMessage("listener failed");
+
+        failing.set(false);
+        write(config("c"));
+        awaitTool("c");
+        assertThat(registry.getSnapshot().tools()).containsOnlyKeys("c");
+        assertThat(events).isNotEmpty();
+    }
+
+    private void awaitTool(String toolName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!registry.getSnapshot().tools().containsKey(toolName) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private ApiToolConfigRegistry registry(Path file, boolean watch) {
+        return registry(file, watch, events::add);
+    }
+
+    private ApiToolConfigRegistry registry(Path file, boolean watch, ApplicationEventPublisher eventPublisher) {
+        ApiToolConfigRegistry registry = new ApiToolConfigRegistry(new DefaultResourceLoader(), new ObjectMapper(),
+                eventPublisher, file.toUri().toString(), watch, 20);
+        registry.init();
+        return registry;
+    }
+
+    private Path write(String json) throws IOException {
+        return Files.writeString(dir.resolve("api-tools-config.json"), json);
+    }
+
+    private static String config(String toolName) {
+        return """
+                {"apiTools": [{"name": "%s", "method": "GET", "url": "http://backend/%s"}]}
+                """.formatted(toolName, toolName);
+    }
+}
@@ -0,0 +1,106 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledApiToolTest {
+
+    @Test
+    void should_bind_path_slots_in_url_order_and_encode_values() {
+        CompiledApiTool tool = compile(tool("GET", "http://backend/shipments/{shipmentNumber}/legs/{leg}",
+                param("leg", "path", null), param("shipmentNumber", "path", null)));
+
+        assertThat(tool.bindUri(Map.of("shipmentNumber", "72 61", "leg", "a/b")).toString())
+                .isEqualTo("http://backend/shipments/72%2061/legs/a%2Fb");
+    }
+
+    @Test
+    void should_fall_back_to_default_and_reject_missing_path_parameter() {
+        CompiledApiTool tool = compile(tool("GET", "http://backend/shipments/{shipmentNumber}",
+                param("shipmentNumber", "path", null)));
+        CompiledApiTool withDefault = compile(tool("GET", "http://backend/shipments/{shipmentNumber}",
+                param("shipmentNumber", "path", "1")));
+
+        assertThat(withDefault.bindUri(Map.of()).toString()).isEqualTo("http://backend/shipments/1");
+        assertThatThrownBy(() -> tool.bindUri(Map.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("shipmentNumber");
+    }
+
+    @Test
+    void should_append_only_present_query_parameters_with_the_right_separator() {
+        CompiledApiTool tool = compile(tool("GET", "http://backend/search?fixed=1",
+                param("q", "query", null), param("page", "query", "1"), param("sort", "query", null)));
+        CompiledApiTool plain = compile(tool("GET", "http://backend/search", param("q", "query", null)));
+
+        assertThat(tool.bindUri(Map.of("q", "a&b c")).toString())
+                .isEqualTo("http://backend/search?fixed=1&q=a%26b%20c&page=1");
+        assertThat(plain.bindUri(Map.of("q", "x")).toString()).isEqualTo("http://backend/search?q=x");
+        assertThat(plain.bindUri(Map.of()).toString()).isEqualTo("http://backend/search");
+    }
+
+    @Test
+    void should_parse_content_type_and_keep_other_headers_read_only() {
+        ApiToolConfig.ApiTool config = tool("POST", "http://backend/shipments");
+        config.setHeaders(Map.of("Content-Type", "application/json", "X-Client", "agent"));
+
+        CompiledApiTool tool = compile(config);
+
+        assertThat(tool.getMethod()).isEqualTo(HttpMethod.POST);
+        assertThat(tool.getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(tool.getHeaders().getFirst("X-Client")).isEqualTo("agent");
+        assertThatThrownBy(() -> tool.getHeaders().set("X-Other", "1")).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void should_project_responses_only_when_result_fields_are_configured() {
+        ApiToolConfig.ApiTool config = tool("GET", "http://backend/shipments");
+        config.setResultFields(List.of("data.id"));
+
+        assertThat(compile(config).projectResponse("{\"data\":{\"id\":1,\"noise\":2}}")).isEqualTo("{\"data\":{\"id\":1}}");
+        assertThat(compile(tool("GET", "http://backend/shipments")).projectResponse("{\"a\":1}")).isEqualTo("{\"a\":1}");
+    }
+
+    @Test
+    void should_compile_speculate_pattern_only_for_read_only_tools() {
+        ApiToolConfig.SpeculateSettings speculate = new ApiToolConfig.SpeculateSettings();
+        speculate.setInputPattern("(?<shipmentNumber>\\d{10})");
+        ApiToolConfig.ApiTool readOnly = tool("GET", "http://backend/shipments");
+        readOnly.setReadOnly(true);
+        readOnly.setSpeculate(speculate);
+        ApiToolConfig.ApiTool write = tool("POST", "http://backend/shipments");
+        write.setSpeculate(speculate);
+
+        assertThat(compile(readOnly).getSpeculatePattern()).isNotNull();
+        assertThat(compile(write).getSpeculatePattern()).isNull();
+    }
+
+    static CompiledApiTool compile(ApiToolConfig.ApiTool tool) {
+        return CompiledApiTool.compile(tool, ApiToolConfig.HttpSettings.defaults());
+    }
+
+    static ApiToolConfig.ApiTool tool(String method, String url, ApiToolConfig.Parameter... parameters) {
+        ApiToolConfig.ApiTool tool = new ApiToolConfig.ApiTool();
+        tool.setName("tool");
+        tool.setMethod(method);
+        tool.setUrl(url);
+        tool.setParameters(List.of(parameters));
+        return tool;
+    }
+
+    static ApiToolConfig.Parameter param(String name, String location, String defaultValue) {
+        ApiToolConfig.Parameter param = new ApiToolConfig.Parameter();
+        param.setName(name);
+        param.setLocation(location);
+        param.setDefaultValue(defaultValue);
+        return param;
+    }
+}
@@ -0,0 +1,206 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.agent.ApiToolConfig;
+import com.afs.restapi.config.ApiBackendGuard;
+import com.afs.restapi.config.ApiHttpClientFactory;
+import com.afs.restapi.testsupport.StubBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GenericApiServiceTest {
+
+    private static final Map<String, String> PARAMS = Map.of("shipmentNumber", "7261242220");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ApiToolConfigRegistry configRegistry = mock(ApiToolConfigRegistry.class);
+    private final ApiRateLimiter rateLimiter = new ApiRateLimiter(configRegistry, meterRegistry);
+
+    private StubBackend backend;
+    private ApiHttpClientFactory httpClientFactory;
+    private ApiRequestBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        backend = new StubBackend();
+        backend.respond(request -> "{\"data\":{\"shipmentNumber\":\"7261242220\",\"noise\":true}}");
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        httpClientFactory.shutdown();
+        backend.close();
+    }
+
+    @Test
+    void should_format_the_full_success_response_for_sync_and_async_calls() {
+        GenericApiService service = service(guard(16), tool(null));
+        String expected = "Shipment 7261242220 verified. Response: {\"data\":{\"shipmentNumber\":\"7261242220\",\"noise\":true}}";
+
+        assertThat(service.executeApiCall("verifyShipment", PARAMS)).isEqualTo(expected);
+        assertThat(service.executeApiCallAsync("verifyShipment", PARAMS).block()).isEqualTo(expected);
+        assertThat(backend.requests()).extracting(StubBackend.Request::uri)
+                .containsOnly("/shipments/7261242220");
+    }
+
+    @Test
+    void should_project_only_the_response_body_of_api_tool_results() {
+        GenericApiService service = service(guard(16), tool(null));
+
+        assertThat(service.projectResult("verifyShipment", service.executeApiCall("verifyShipment", PARAMS)))
+                .isEqualTo("Shipment 7261242220 verified. Response: {\"data\":{\"shipmentNumber\":\"7261242220\"}}");
+        assertThat(service.projectResult("verifyShipment", "Failed to verify 7261242220. Status: 500, Response: {\"data\":{}}"))
+                .isEqualTo("Failed to verify 7261242220. Status: 500, Response: {\"data\":{}}");
+        assertThat(service.projectResult("getTodos", "Todos. Response: {\"data\":1}")).isEqualTo("Todos. Response: {\"data\":1}");
+        assertThat(service.projectResult("verifyShipment", null)).isNull();
+    }
+
+    @Test
+    void should_refund_the_token_when_the_backend_guard_rejects_a_sync_call() {
+        ApiToolConfig.ApiTool tool = tool(ApiRateLimiterTest.limit(0.001, 1, 0));
+        GenericApiService service = service(guard(0), tool);
+
+        assertThat(service.executeApiCall("verifyShipment", PARAMS)).contains("Backend unavailable");
+        assertThat(service.executeApiCall("verifyShipment", PARAMS)).contains("Backend unavailable");
+        assertThat(backend.requests()).isEmpty();
+    }
+
+    @Test
+    void should_refund_the_token_when_the_backend_guard_rejects_an_async_call() {
+        ApiToolConfig.ApiTool tool = tool(ApiRateLimiterTest.limit(0.001, 1, 0));
+        GenericApiService service = service(guard(0), tool);
+
+        assertThat(service.executeApiCallAsync("verifyShipment", PARAMS).block()).contains("Backend unavailable");
+        assertThat(service.executeApiCallAsync("verifyShipment", PARAMS).block()).contains("Backend unavailable");
+    }
+
+    @Test
+    void should_refund_the_token_when_an_async_call_is_cancelled_while_waiting_for_the_rate_limit() {
+        // 合并的调用由 SingleFlight 独立执行，单个订阅者取消不会取消它，这里关闭合并
+        ApiToolConfig.ApiTool tool = tool(ApiRateLimiterTest.limit(1, 1, 1500));
+        tool.setCoalesce(false);
+        GenericApiService service = service(guard(16), tool);
+        CompiledApiTool compiled = configRegistry.getSnapshot().getTool("verifyShipment");
+        URI uri = URI.create(backend.url() + "/shipments/7261242220");
+        service.executeApiCall("verifyShipment", PARAMS);
+
+        // 第二次调用需要等待约 1 秒，等待期间取消
+        service.executeApiCallAsync("verifyShipment", PARAMS).subscribe().dispose();
+
+        // 令牌已归还：再次预约只需等待约 1 秒，否则需要约 2 秒并超过 maxWaitMs 被拒绝
+        assertThat(rateLimiter.reserve(compiled, uri)).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertThat(backend.requests()).hasSize(1);
+    }
+
+    @Test
+    void should_keep_the_token_when_an_async_call_is_cancelled_after_the_request_was_sent() throws Exception {
+        ApiToolConfig.ApiTool tool = tool(ApiRateLimiterTest.limit(1, 1, 1500));
+        tool.setCoalesce(false);
+        GenericApiService service = service(guard(16), tool);
+        CompiledApiTool compiled = configRegistry.getSnapshot().getTool("verifyShipment");
+        URI uri = URI.create(backend.url() + "/shipments/7261242220");
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        backend.respond(request -> {
+            received.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "{}";
+        });
+
+        Disposable call = service.executeApiCallAsync("verifyShipment", PARAMS).subscribe();
+        assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+        call.dispose();
+        release.countDown();
+
+        // 请求已经发出，令牌不归还：下一次预约需要等待约 1 秒
+        assertThat(rateLimiter.reserve(compiled, uri)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void should_report_rate_limited_calls_without_calling_the_backend() {
+        GenericApiService service = service(guard(16), tool(ApiRateLimiterTest.limit(0.001, 1, 0)));
+
+        service.executeApiCall("verifyShipment", PARAMS);
+
+        assertThat(service.executeApiCall("verifyShipment", PARAMS))
+                .startsWith("Failed to verify 7261242220. Rate limited:");
+        assertThat(service.executeApiCallAsync("verifyShipment", PARAMS).block())
+                .startsWith("Failed to verify 7261242220. Rate limited:");
+        assertThat(backend.requests()).hasSize(1);
+    }
+
+    @Test
+    void should_notify_write_listeners_before_calls_to_tools_that_are_not_read_only() {
+        ApiToolConfig.ApiTool tool = tool(null);
+        tool.setResourceKey("shipment:{shipmentNumber}");
+        GenericApiService service = service(guard(16), tool);
+        List<String> writes = new ArrayList<>();
+        service.addWriteListener(writes::add);
+
+        service.executeApiCall("verifyShipment", PARAMS);
+        service.executeApiCallAsync("verifyShipment", PARAMS).block();
+        assertThat(writes).containsExactly("shipment:7261242220", "shipment:7261242220");
+
+        tool.setReadOnly(true);
+        service.executeApiCall("verifyShipment", PARAMS);
+        assertThat(writes).hasSize(2);
+    }
+
+    @Test
+    void should_notify_write_listeners_with_null_when_the_tool_has_no_resource_key() {
+        GenericApiService service = service(guard(16), tool(null));
+        List<String> writes = new ArrayList<>();
+        service.addWriteListener(writes::add);
+
+        service.executeApiCall("verifyShipment", PARAMS);
+
+        assertThat(writes).containsExactly((String) null);
+    }
+
+    private GenericApiService service(ApiBackendGuard guard, ApiToolConfig.ApiTool tool) {
+        ApiToolConfig config = new ApiToolConfig();
+        config.setApiTools(List.of(tool));
+        when(configRegistry.getSnapshot()).thenReturn(new ApiToolConfigRegistry.Snapshot(1, config,
+                Map.of(tool.getName(), CompiledApiTool.compile(tool, ApiToolConfig.HttpSettings.defaults()))));
+        httpClientFactory = new ApiHttpClientFactory(meterRegistry, guard);
+        batcher = new ApiRequestBatcher(new ObjectMapper(), httpClientFactory, guard, rateLimiter, meterRegistry);
+        return new GenericApiService(configRegistry, httpClientFactory, new ApiResponseCache(meterRegistry),
+                new SingleFlight(meterRegistry), guard, rateLimiter, batcher);
+    }
+
+    private ApiBackendGuard guard(int maxConcurrentCalls) {
+        return new ApiBackendGuard(meterRegistry, maxConcurrentCalls, 0, 50, 20, 10, Duration.ofSeconds(30), 3,
+                0.99, 3.0, 1000, 20);
+    }
+
+    private ApiToolConfig.ApiTool tool(ApiToolConfig.RateLimitSettings rateLimit) {
+        ApiToolConfig.ApiTool tool = CompiledApiToolTest.tool("GET", backend.url() + "/shipments/{shipmentNumber}",
+                CompiledApiToolTest.param("shipmentNumber", "path", null));
+        tool.setName("verifyShipment");
+        tool.setSuccessMessage("Shipment {shipmentNumber} verified");
+        tool.setErrorMessage("Failed to verify {shipmentNumber}");
+        tool.setResultFields(List.of("data.shipmentNumber"));
+        tool.setRateLimit(rateLimit);
+        return tool;
+    }
+}
@@ -0,0 +1,49 @@
+package com.afs.restapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseProjectionTest {
+
+    @Test
+    void should_not_compile_without_result_fields() {
+        assertThat(ResponseProjection.compile(null)).isNull();
+        assertThat(ResponseProjection.compile(List.of())).isNull();
+    }
+
+    @Test
+    void should_keep_only_the_configured_paths() {
+        ResponseProjection projection = ResponseProjection.compile(List.of("data.shipmentNumber", " data.por ", "code"));
+
+        String projected = projection.apply("{\"code\": 200, \"message\": \"ok\", "
+                + "\"data\": {\"shipmentNumber\": \"7261242220\", \"por\": \"CNSHA\", \"vessel\": \"COSCO\"}}");
+
+        assertThat(projected).isEqualTo("{\"data\":{\"shipmentNumber\":\"7261242220\",\"por\":\"CNSHA\"},\"code\":200}");
+    }
+
+    @Test
+    void should_project_each_array_element_and_keep_whole_subtrees_at_path_ends() {
+        ResponseProjection projection = ResponseProjection.compile(List.of("items.id", "items.route"));
+
+        String projected = projection.apply("{\"items\": ["
+                + "{\"id\": 1, \"route\": {\"from\": \"CNSHA\", \"to\": \"NLRTM\"}, \"notes\": \"x\"},"
+                + "{\"notes\": \"only notes\"},"
+                + "{\"id\": 3}]}");
+
+        assertThat(projected).isEqualTo("{\"items\":[{\"id\":1,\"route\":{\"from\":\"CNSHA\",\"to\":\"NLRTM\"}},{\"id\":3}]}");
+    }
+
+    @Test
+    void should_return_the_original_body_when_nothing_matches_or_it_is_not_json() {
+        ResponseProjection projection = ResponseProjection.compile(List.of("data.shipmentNumber"));
+
+        assertThat(projection.apply("{\"error\": \"not found\"}")).isEqualTo("{\"error\": \"not found\"}");
+        assertThat(projection.apply("{\"data\": \"plain\"}")).isEqualTo("{\"data\": \"plain\"}");
+        assertThat(projection.apply("Service unavailable")).isEqualTo("Service unavailable");
+        assertThat(projection.apply("")).isEmpty();
+        assertThat(projection.apply(null)).isNull();
+    }
+}
@@ -0,0 +1,169 @@
+package com.afs.restapi.service;
+
+import com.afs.restapi.testsupport.HashingEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticResponseCacheTest {
+
+    private final HashingEmbeddingModel embeddingModel = new HashingEmbeddingModel(256);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void should_answer_exact_and_paraphrased_questions_from_the_cache() {
+        SemanticResponseCache cache = cache(10, Duration.ofMinutes(5));
+
+        assertThat(cache.call("chat", "how do I return a product", false, () -> answer("30 days"))).isEqualTo("30 days");
+        assertThat(cache.call("chat", "how do I return a product", false, () -> answer("other"))).isEqualTo("30 days");
+        assertThat(cache.call("chat", "How do I return a product?", false, () -> answer("other"))).isEqualTo("30 days");
+
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("agent.response.cache.requests").tag("result", "hit").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void should_not_reuse_an_answer_for_a_similar_question_about_another_shipment() {
+        SemanticResponseCache cache = new SemanticResponseCache(embeddingModel, meterRegistry, true, 0.85, 10, Duration.ofMinutes(5));
+        cache.call("chat", "what is the current status of shipment number 7261242220 for me", false, () -> answer("in transit"));
+
+        assertThat(cache.call("chat", "what is the current status of shipment number 7261242221 for me", false,
+                () -> answer("delivered"))).isEqualTo("delivered");
+        assertThat(cache.call("chat", "What is the current status of shipment number 7261242220 for me?", false,
+                () -> answer("other"))).isEqualTo("in transit");
+        assertThat(cache.call("chat", "what is the current status of shipment number 7261242220 and 42 for me", false,
+                () -> answer("both"))).isEqualTo("both");
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void should_keep_namespaces_apart_and_honour_bypass() {
+        SemanticResponseCache cache = cache(10, Duration.ofMinutes(5));
+        cache.call("chat", "shipping cost", false, () -> answer("chat answer"));
+
+        assertThat(cache.call("query", "shipping cost", false, () -> answer("rag answer"))).isEqualTo("rag answer");
+        assertThat(cache.call("chat", "shipping cost", true, () -> answer("fresh"))).isEqualTo("fresh");
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void should_replay_cached_stream_chunks_and_collect_each_subscription_separately() {
+        SemanticResponseCache cache = cache(10, Duration.ofMinutes(5));
+        Flux<String> first = cache.stream("query", "return policy", false, () -> {
+            loads.incrementAndGet();
+            return Flux.just("Return ", "within ", "30 days");
+        });
+
+        // 同一个 Flux 订阅两次：每次订阅都有自己的分片列表，缓存的分片不会重复
+        assertThat(first.collectList().block()).containsExactly("Return ", "within ", "30 days");
+        assertThat(first.collectList().block()).containsExactly("Return ", "within ", "30 days");
+
+        Flux<String> replay = cache.stream("query", "return policy", false, () -> Flux.just("other"));
+        assertThat(replay.collectList().block()).containsExactly("Return ", "within ", "30 days");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void should_not_cache_a_stream_that_fails() {
+        SemanticResponseCache cache = cache(10, Duration.ofMinutes(5));
+        Flux<String> failing = cache.stream("chat", "hello", false,
+                () -> Flux.concat(Flux.just("Hel"), Flux.error(new IllegalStateException("boom"))));
+
+        assertThat(failing.onErrorResume(e -> Flux.empty()).collectList().block()).containsExactly("Hel");
+        assertThat(cache.call("chat", "hello", false, () -> answer("Hello"))).isEqualTo("Hello");
+    }
+
+    @Test
+    void should_drop_invalidated_entries_and_answers_started_before_invalidation() {
+        SemanticResponseCache cache = cache(10, Duration.ofMinutes(5));
+        cache.call("query", "return policy", false, () -> answer("old corpus"));
+
+        cache.invalidate("query");
+        assertThat(cache.call("query", "return policy", false, () -> {
+            // 回答生成期间语料再次变化
+            cache.invalidate("query");
+            return answer("stale answer");
+        })).isEqualTo("stale answer");
+
+        assertThat(cache.call("query", "return policy", false, () -> answer("new corpus"))).isEqualTo("new corpus");
+        assertThat(cache.call("query", "return policy", false, () -> answer("other"))).isEqualTo("new corpus");
+    }
+
+    @Test
+    void should_evict_the_least_recently_used_entry_when_full() {
+        SemanticResponseCache cache = cache(2, Duration.ofMinutes(5));
+        cache.call("chat", "alpha question", false, () -> answer("a"));
+        sleep(2);
+        cache.call("chat", "beta question", false, () -> answer("b"));
+        sleep(2);
+        cache.call("chat", "alpha question", false, () -> answer("a2"));
+        sleep(2);
+        cache.call("chat", "gamma question", false, () -> answer("c"));
+
+        assertThat(cache.call("chat", "alpha question", false, () -> answer("a3"))).isEqualTo("a");
+        assertThat(cache.call("chat", "beta question", false, () -> answer("b2"))).isEqualTo("b2");
+    }
+
+    @Test
+    void should_expire_entries_after_the_ttl() {
+        SemanticResponseCache cache = cache(10, Duration.ZERO);
+        cache.call("chat", "alpha question", false, () -> answer("a"));
+        sleep(5);
+
+        assertThat(cache.call("chat", "alpha question", false, () -> answer("a2"))).isEqualTo("a2");
+    }
+
+    @Test
+    void should_serve_concurrent_lookups() throws Exception {
+        SemanticResponseCache cache = cache(100, Duration.ofMinutes(5));
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            cache.call("chat", "question number " + n + " about topic" + n, false, () -> answer("answer " + n));
+        }
+
+        List<Thread> readers = new ArrayList<>();
+        AtomicInteger wrong = new AtomicInteger();
+        for (int t = 0; t < 8; t++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    int n = i % 50;
+                    String result = cache.call("chat", "question number " + n + " about topic" + n, false, () -> "miss");
+                    if (!result.equals("answer " + n)) {
+                        wrong.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertThat(wrong).hasValue(0);
+        assertThat(loads).hasValue(50);
+    }
+
+    private SemanticResponseCache cache(int maxEntries, Duration ttl) {
+        return new SemanticResponseCache(embeddingModel, meterRegistry, true, 0.95, maxEntries, ttl);
+    }
+
+    private String answer(String text) {
+        loads.incrementAndGet();
+        return text;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
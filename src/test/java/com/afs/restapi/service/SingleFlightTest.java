@@ -0,0 +1,135 @@
+package com.afs.restapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(meterRegistry);
+
+    @Test
+    void should_share_the_leader_result_with_concurrent_callers() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("tool", "key", () -> {
+            calls.incrementAndGet();
+            entered.countDown();
+            await(release);
+            return "result";
+        }));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> singleFlight.execute("tool", "key", () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        waitForCount("coalesced", 1);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(count("executed")).isEqualTo(1);
+    }
+
+    @Test
+    void should_execute_again_once_the_previous_call_finished() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("tool", "key", () -> "first" + calls.incrementAndGet());
+        String second = singleFlight.execute("tool", "key", () -> "second" + calls.incrementAndGet());
+
+        assertThat(second).isEqualTo("second2");
+    }
+
+    @Test
+    void should_release_waiters_and_the_key_when_the_leader_throws_an_error() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("tool", "key", () -> {
+            entered.countDown();
+            await(release);
+            throw new OutOfMemoryError("simulated");
+        }));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> singleFlight.execute("tool", "key", () -> "other"));
+        waitForCount("coalesced", 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+        assertThat(singleFlight.execute("tool", "key", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void should_subscribe_once_for_concurrent_async_callers() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        Sinks.One<String> response = Sinks.one();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("tool", "key",
+                () -> response.asMono().doOnSubscribe(s -> subscriptions.incrementAndGet())).toFuture();
+        CompletableFuture<String> second = singleFlight.executeAsync("tool", "key",
+                () -> Mono.just("other")).toFuture();
+        response.tryEmitValue("result");
+
+        assertThat(first.join()).isEqualTo("result");
+        assertThat(second.join()).isEqualTo("result");
+        assertThat(subscriptions.get()).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_cancel_the_shared_call_when_one_async_caller_cancels() {
+        Sinks.One<String> response = Sinks.one();
+
+        Disposable cancelled = singleFlight.executeAsync("tool", "key", response::asMono).subscribe();
+        CompletableFuture<String> other = singleFlight.executeAsync("tool", "key", () -> Mono.just("other")).toFuture();
+        cancelled.dispose();
+        response.tryEmitValue("result");
+
+        assertThat(other.join()).isEqualTo("result");
+    }
+
+    @Test
+    void should_fail_and_release_the_key_when_the_async_call_cannot_be_created() {
+        Mono<String> failing = singleFlight.executeAsync("tool", "key", () -> {
+            throw new IllegalStateException("no client");
+        });
+
+        assertThatThrownBy(failing::block).isInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.executeAsync("tool", "key", () -> Mono.just("recovered")).block()).isEqualTo("recovered");
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("agent.api.calls", "tool", "tool", "result", result).count();
+    }
+
+    private void waitForCount(String result, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count(result) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
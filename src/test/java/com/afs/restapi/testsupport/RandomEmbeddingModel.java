@@ -0,0 +1,78 @@
+package com.afs.restapi.testsupport;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 测试用的随机嵌入模型：以文本的哈希为种子生成高斯随机向量，
+ * 同一文本总是得到同一向量，用于按精确检索结果计算近似检索的召回率
+ * <p>
+ * clusters 大于 0 时向量围绕按文本哈希选中的簇中心分布（簇中心 + spread 倍的噪声），
+ * 更接近真实嵌入的分布；高维独立同分布的随机向量之间距离高度集中，是近似检索最难的情况
+ */
+public class RandomEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+    private final int clusters;
+    private final double spread;
+
+    public RandomEmbeddingModel(int dimensions) {
+        this(dimensions, 0, 1);
+    }
+
+    public RandomEmbeddingModel(int dimensions, int clusters, double spread) {
+        this.dimensions = dimensions;
+        this.clusters = clusters;
+        this.spread = spread;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>();
+        for (String text : request.getInstructions()) {
+            embeddings.add(new Embedding(vector(text), embeddings.size()));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return vector(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 文本对应的向量（未归一化）
+     */
+    public float[] vector(String text) {
+        float[] vector = gaussian(text.hashCode());
+        if (clusters > 0) {
+            float[] centroid = gaussian(-1 - Math.floorMod(text.hashCode(), clusters));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] = (float) (centroid[i] + spread * vector[i]);
+            }
+        }
+        return vector;
+    }
+
+    private float[] gaussian(long seed) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L);
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            // Box-Muller 变换
+            vector[i] = (float) (Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble()));
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,127 @@
+package com.afs.restapi.vectorstore;
+
+import com.afs.restapi.testsupport.RandomEmbeddingModel;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HNSW 召回率和延迟基准：随机向量语料上对比 HnswVectorStore 与精确暴力检索（MappedFileVectorStore），
+ * 输出建库耗时、recall@k 以及单次检索的 p50 / p99 延迟
+ * <p>
+ * 运行：./gradlew benchmark --tests '*HnswRecallBenchmark' -Pbenchmark.hnsw.sizes=10000,100000,1000000
+ * 其他参数：benchmark.hnsw.dimensions（默认 128）、benchmark.hnsw.queries（默认 200）、benchmark.hnsw.k（默认 10）、
+ * benchmark.hnsw.m / ef-construction / ef-search（默认 16 / 200 / 64）、
+ * benchmark.hnsw.cluster-size / spread（默认每簇 100 个文档、噪声 0.5 倍；cluster-size 为 0 时为独立同分布的随机向量）
+ */
+@Tag("benchmark")
+class HnswRecallBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void measure_recall_and_latency() {
+        int dimensions = Integer.getInteger("benchmark.hnsw.dimensions", 128);
+        int queries = Integer.getInteger("benchmark.hnsw.queries", 200);
+        int k = Integer.getInteger("benchmark.hnsw.k", 10);
+        int m = Integer.getInteger("benchmark.hnsw.m", 16);
+        int efConstruction = Integer.getInteger("benchmark.hnsw.ef-construction", 200);
+        int efSearch = Integer.getInteger("benchmark.hnsw.ef-search", 64);
+        int clusterSize = Integer.getInteger("benchmark.hnsw.cluster-size", 100);
+        double spread = Double.parseDouble(System.getProperty("benchmark.hnsw.spread", "0.5"));
+
+        for (String size : System.getProperty("benchmark.hnsw.sizes", "10000").split(",")) {
+            int count = Integer.parseInt(size.trim());
+            int clusters = clusterSize > 0 ? Math.max(1, count / clusterSize) : 0;
+            RandomEmbeddingModel embeddingModel = new RandomEmbeddingModel(dimensions, clusters, spread);
+            Path base = dir.resolve("n" + count);
+
+            MappedFileVectorStore exact = new MappedFileVectorStore(embeddingModel, base.resolve("mapped"));
+            HnswVectorStore hnsw = new HnswVectorStore(embeddingModel, base.resolve("hnsw.graph"), m, efConstruction, efSearch);
+            long exactBuildMs = build(exact, count);
+            long hnswBuildMs = build(hnsw, count);
+
+            Run exactRun = search(exact, queries, k);
+            Run hnswRun = search(hnsw, queries, k);
+
+            System.out.printf("n=%d dim=%d clusters=%d k=%d M=%d efC=%d efS=%d | exact: build %d ms, p50 %.2f ms, p99 %.2f ms"
+                            + " | hnsw: build %d ms, recall@%d %.4f, p50 %.2f ms, p99 %.2f ms%n",
+                    count, dimensions, clusters, k, m, efConstruction, efSearch,
+                    exactBuildMs, exactRun.percentile(50), exactRun.percentile(99),
+                    hnswBuildMs, k, hnswRun.recall(exactRun), hnswRun.percentile(50), hnswRun.percentile(99));
+        }
+    }
+
+    private static long build(VectorStore store, int count) {
+        long start = System.nanoTime();
+        for (int from = 0; from < count; from += BATCH) {
+            List<Document> batch = new ArrayList<>(BATCH);
+            for (int i = from; i < Math.min(count, from + BATCH); i++) {
+                batch.add(new Document("doc-" + i, "document " + i, Map.of()));
+            }
+            store.add(batch);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * 预热后执行查询，记录每次的耗时和结果
+     */
+    private static Run search(VectorStore store, int queries, int k) {
+        for (int q = 0; q < Math.min(50, queries); q++) {
+            store.similaritySearch(SearchRequest.builder().query("warmup " + q).topK(k).build());
+        }
+
+        long[] nanos = new long[queries];
+        List<Set<String>> results = new ArrayList<>(queries);
+        for (int q = 0; q < queries; q++) {
+            SearchRequest request = SearchRequest.builder().query("query " + q).topK(k).build();
+            long start = System.nanoTime();
+            List<Document> documents = store.similaritySearch(request);
+            nanos[q] = System.nanoTime() - start;
+
+            Set<String> ids = new HashSet<>();
+            documents.forEach(document -> ids.add(document.getId()));
+            results.add(ids);
+        }
+        return new Run(nanos, results);
+    }
+
+    private record Run(long[] nanos, List<Set<String>> results) {
+
+        double percentile(int percentile) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        /**
+         * 以精确检索的结果为标准计算召回率
+         */
+        double recall(Run exact) {
+            int found = 0;
+            int total = 0;
+            for (int q = 0; q < results.size(); q++) {
+                Set<String> expected = exact.results().get(q);
+                total += expected.size();
+                found += (int) results.get(q).stream().filter(expected::contains).count();
+            }
+            return total == 0 ? 1 : (double) found / total;
+        }
+    }
+}
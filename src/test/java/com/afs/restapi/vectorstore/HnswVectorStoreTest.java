@@ -0,0 +1,202 @@
+package com.afs.restapi.vectorstore;
+
+import com.afs.restapi.testsupport.RandomEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 16;
+
+    @TempDir
+    Path dir;
+
+    private final RandomEmbeddingModel embeddingModel = new RandomEmbeddingModel(DIMENSIONS);
+
+    @Test
+    void should_find_most_exact_nearest_neighbours() {
+        List<Document> documents = documents(2000);
+        HnswVectorStore store = store();
+        store.add(documents);
+
+        int k = 10;
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            String query = "query " + q;
+            Set<String> exact = exactTopK(documents, query, k);
+            found += (int) store.similaritySearch(SearchRequest.builder().query(query).topK(k).build()).stream()
+                    .map(Document::getId)
+                    .filter(exact::contains)
+                    .count();
+        }
+
+        double recall = (double) found / (queries * k);
+        assertThat(recall).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void should_recover_writes_from_the_write_ahead_log_without_close() {
+        HnswVectorStore crashed = store();
+        crashed.add(documents(20));
+        crashed.delete(List.of("doc-3"));
+        crashed.add(List.of(new Document("doc-4", "replaced text", Map.of("version", 2))));
+        // 不调用 close：模拟进程崩溃
+
+        HnswVectorStore reopened = store();
+
+        assertThat(reopened.graphSize()).isEqualTo(21);
+        Document replaced = top(reopened, "replaced text");
+        assertThat(replaced.getId()).isEqualTo("doc-4");
+        assertThat(replaced.getMetadata()).containsEntry("version", 2);
+        assertThat(top(reopened, "document 3").getId()).isNotEqualTo("doc-3");
+        for (int i = 5; i < 20; i++) {
+            assertThat(top(reopened, "document " + i).getId()).isEqualTo("doc-" + i);
+        }
+    }
+
+    @Test
+    void should_snapshot_on_close_and_truncate_a_torn_log_record() throws Exception {
+        HnswVectorStore store = store();
+        store.add(documents(10));
+        store.close();
+        assertThat(dir.resolve("hnsw.graph")).exists();
+        assertThat(dir.resolve("hnsw.graph.wal")).doesNotExist();
+
+        HnswVectorStore next = store();
+        next.add(documents(12));
+        Path wal = dir.resolve("hnsw.graph.wal");
+        long validLength = Files.size(wal);
+        Files.write(wal, new byte[]{0, 0, 1, 0, 1, 2}, StandardOpenOption.APPEND);
+
+        HnswVectorStore reopened = store();
+        assertThat(Files.size(wal)).isEqualTo(validLength);
+        assertThat(reopened.graphSize()).isEqualTo(12);
+        for (int i = 0; i < 12; i++) {
+            assertThat(top(reopened, "document " + i).getId()).isEqualTo("doc-" + i);
+        }
+    }
+
+    @Test
+    void should_reject_a_dimension_mismatch_before_writing_the_log() throws Exception {
+        store().add(documents(3));
+        Path wal = dir.resolve("hnsw.graph.wal");
+        long validLength = Files.size(wal);
+
+        HnswVectorStore otherModel = new HnswVectorStore(new RandomEmbeddingModel(8), dir.resolve("hnsw.graph"), 16, 100, 64);
+        assertThatThrownBy(() -> otherModel.add(List.of(new Document("doc-9", "document 9", Map.of()))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(Files.size(wal)).isEqualTo(validLength);
+        assertThat(store().graphSize()).isEqualTo(3);
+    }
+
+    @Test
+    void should_skip_log_records_that_cannot_be_applied_and_keep_replaying() throws Exception {
+        // 分别生成三段日志再拼接：中间一条记录的维度与其他记录不同
+        Path wal = dir.resolve("hnsw.graph.wal");
+        for (int part = 0; part < 3; part++) {
+            int dimensions = part == 1 ? 8 : DIMENSIONS;
+            Path partFile = dir.resolve("part-" + part).resolve("hnsw.graph");
+            new HnswVectorStore(new RandomEmbeddingModel(dimensions), partFile, 16, 100, 64)
+                    .add(List.of(new Document("doc-" + part, "document " + part, Map.of())));
+            Files.write(wal, Files.readAllBytes(partFile.resolveSibling("hnsw.graph.wal")),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        long length = Files.size(wal);
+
+        HnswVectorStore reopened = store();
+
+        assertThat(Files.size(wal)).isEqualTo(length);
+        assertThat(reopened.graphSize()).isEqualTo(2);
+        assertThat(top(reopened, "document 0").getId()).isEqualTo("doc-0");
+        assertThat(top(reopened, "document 2").getId()).isEqualTo("doc-2");
+    }
+
+    @Test
+    void should_purge_deleted_nodes_once_they_exceed_a_quarter_of_the_graph() {
+        HnswVectorStore store = store();
+        store.add(documents(100));
+        store.delete(IntStream.range(0, 20).mapToObj(i -> "doc-" + i).toList());
+        assertThat(store.graphSize()).isEqualTo(100);
+
+        store.delete(IntStream.range(20, 30).mapToObj(i -> "doc-" + i).toList());
+
+        assertThat(store.graphSize()).isEqualTo(70);
+        assertThat(dir.resolve("hnsw.graph.wal")).doesNotExist();
+        assertThat(top(store, "document 50").getId()).isEqualTo("doc-50");
+        assertThat(top(store, "document 29").getId()).isNotEqualTo("doc-29");
+        HnswVectorStore reopened = store();
+        assertThat(reopened.graphSize()).isEqualTo(70);
+        for (int i = 30; i < 100; i++) {
+            assertThat(top(reopened, "document " + i).getId()).isEqualTo("doc-" + i);
+        }
+    }
+
+    @Test
+    void should_skip_unchanged_documents_and_notify_listeners() {
+        List<VectorStoreChangedEvent> events = new ArrayList<>();
+        HnswVectorStore store = store();
+        store.setChangeListener(events::add);
+
+        store.add(documents(5));
+        store.add(documents(5));
+        store.delete(List.of("doc-1", "missing"));
+        store.delete(List.of("missing"));
+
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).addedIds()).hasSize(5);
+        assertThat(events.get(1).deletedIds()).containsExactly("doc-1");
+        assertThat(store.graphSize()).isEqualTo(5);
+    }
+
+    private static Document top(HnswVectorStore store, String query) {
+        return store.similaritySearch(SearchRequest.builder().query(query).topK(1).build()).get(0);
+    }
+
+    private HnswVectorStore store() {
+        return new HnswVectorStore(embeddingModel, dir.resolve("hnsw.graph"), 16, 100, 64);
+    }
+
+    private Set<String> exactTopK(List<Document> documents, String query, int k) {
+        float[] q = MappedFileVectorStore.normalize(embeddingModel.vector(query));
+        return documents.stream()
+                .sorted(Comparator.comparingDouble((Document d) ->
+                        -dot(MappedFileVectorStore.normalize(embeddingModel.vector(d.getText())), q)))
+                .limit(k)
+                .map(Document::getId)
+                .collect(HashSet::new, Set::add, Set::addAll);
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document("doc-" + i, "document " + i, Map.of("index", i)));
+        }
+        return documents;
+    }
+}
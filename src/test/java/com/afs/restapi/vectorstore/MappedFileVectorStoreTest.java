@@ -0,0 +1,203 @@
+package com.afs.restapi.vectorstore;
+
+import com.afs.restapi.testsupport.HashingEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedFileVectorStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final HashingEmbeddingModel embeddingModel = new HashingEmbeddingModel(128);
+
+    @Test
+    void should_return_the_most_similar_documents_first() throws Exception {
+        try (MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, dir)) {
+            store.add(corpus());
+
+            List<Document> results = store.similaritySearch(SearchRequest.builder()
+                    .query("return a product within 30 days").topK(2).build());
+
+            assertThat(results).hasSize(2);
+            assertThat(results.get(0).getId()).isEqualTo("returns");
+            assertThat(results.get(0).getScore()).isGreaterThanOrEqualTo(results.get(1).getScore());
+        }
+    }
+
+    @Test
+    void should_reopen_without_re_embedding_unchanged_documents() throws Exception {
+        try (MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, dir)) {
+            store.add(corpus());
+        }
+        int embedded = embeddingModel.getCalls();
+
+        try (MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, dir)) {
+            store.add(corpus());
+            assertThat(embeddingModel.getCalls()).isEqualTo(embedded);
+
+            List<Document> results = store.similaritySearch(SearchRequest.builder().query("free shipping orders").topK(1).build());
+            assertThat(results).extracting(Document::getId).containsExactly("shipping");
+            assertThat(results.get(0).getMetadata()).containsEntry("type", "shipping");
+        }
+    }
+
+    @Test
+    void should_delete_by_id_and_by_filter_and_notify_listeners() throws Exception {
+        List<VectorStoreChangedEvent> events = new ArrayList<>();
+        try (MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, dir)) {
+            store.setChangeListener(events::add);
+            store.add(corpus());
+            store.delete(List.of("returns", "unknown"));
+            store.delete(new FilterExpressionBuilder().eq("type", "shipping").build());
+
+            List<Document> results = store.similaritySearch(SearchRequest.builder().query("phone").topK(10).build());
+            assertThat(results).extracting(Document::getId).containsExactly("iphone");
+        }
+
+        assertThat(events).extracting(VectorStoreChangedEvent::deletedIds)
+                .containsExactly(List.of(), List.of("returns"), List.of("shipping"));
+        try (MappedFileVectorStore reopened = new MappedFileVectorStore(embeddingModel, dir)) {
+            assertThat(reopened.similaritySearch(SearchRequest.builder().query("phone").topK(10).build()))
+                    .extracting(Document::getId).containsExactly("iphone");
+        }
+    }
+
+    @Test
+    void should_reuse_slots_freed_by_updates_and_deletes() throws Exception {
+        try (MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, dir)) {
+            store.add(corpus());
+            for (int i = 0; i < 20; i++) {
+                store.add(List.of(new Document("returns", "Returns accepted within " + i + " days", Map.of())));
+            }
+            store.delete(List.of("shipping"));
+            store.add(List.of(new Document("ipad", "The iPad has a large display", Map.of())));
+
+            assertThat(store.allocatedSlots()).isEqualTo(4);
+            assertThat(store.similaritySearch(SearchRequest.builder().query("returns accepted within 19 days").topK(1).build()))
+                    .extracting(Document::getText).containsExactly("Returns accepted within 19 days");
+        }
+
+        // 关闭时压缩了日志，末尾的空闲槽位不再有记录，重新打开后从这里继续分配
+        try (MappedFileVectorStore reopened = new MappedFileVectorStore(embeddingModel, dir)) {
+            assertThat(reopened.allocatedSlots()).isEqualTo(3);
+            assertThat(reopened.similaritySearch(SearchRequest.builder().query("ipad large display").topK(1).build()))
+                    .extracting(Document::getId).containsExactly("ipad");
+        }
+    }
+
+    @Test
+    void should_grow_vector_segments_geometrically_from_a_small_first_segment() throws Exception {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            documents.add(new Document("doc-" + i, "document number " + i, Map.of()));
+        }
+
+        try (MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, dir)) {
+            store.add(List.of(documents.get(0)));
+            // 128 维向量每个槽位 512 字节，第一段 64KB 即 128 个槽位
+            assertThat(Files.size(dir.resolve("vectors.bin"))).isEqualTo(16 + 64 * 1024);
+
+            store.add(documents);
+            assertThat(Files.size(dir.resolve("vectors.bin"))).isEqualTo(16 + (128 + 256 + 512 + 1024) * 512);
+        }
+
+        try (MappedFileVectorStore reopened = new MappedFileVectorStore(embeddingModel, dir)) {
+            // 各段首尾槽位的向量都能读回：与原文完全相同的查询相似度为 1
+            for (int i : new int[]{0, 127, 128, 383, 384, 999}) {
+                assertThat(reopened.similaritySearch(SearchRequest.builder().query("document number " + i)
+                        .similarityThreshold(0.999).topK(1000).build()))
+                        .extracting(Document::getId).contains("doc-" + i);
+            }
+        }
+    }
+
+    @Test
+    void should_compact_the_log_once_dead_records_outnumber_live_ones() throws Exception {
+        try (MappedFileVectorStore store = new MappedFileVectorStore(embeddingModel, dir, 10)) {
+            store.add(corpus());
+            long initial = store.logSize();
+            for (int i = 0; i < 9; i++) {
+                store.add(List.of(new Document("returns", "Returns accepted within " + i + " days", Map.of())));
+            }
+            assertThat(store.logSize()).isGreaterThan(initial);
+
+            store.add(List.of(new Document("returns", "Returns accepted within 60 days", Map.of())));
+            assertThat(Files.readAllLines(dir.resolve("documents.log"))).hasSize(3);
+
+            store.add(List.of(new Document("returns", "Returns accepted within 90 days", Map.of())));
+            store.delete(List.of("shipping"));
+        }
+
+        // 关闭时失效记录不少于有效记录，即使没有达到运行期间的阈值也会压缩
+        assertThat(Files.readAllLines(dir.resolve("documents.log"))).hasSize(2);
+        try (MappedFileVectorStore reopened = new MappedFileVectorStore(embeddingModel, dir, 10)) {
+            assertThat(reopened.similaritySearch(SearchRequest.builder().query("returns accepted within 90 days").topK(5).build()))
+                    .extracting(Document::getId).containsExactly("returns", "iphone");
+            assertThat(reopened.similaritySearch(SearchRequest.builder().query("returns accepted within 90 days").topK(1).build()))
+                    .extracting(Document::getText).containsExactly("Returns accepted within 90 days");
+        }
+    }
+
+    @Test
+    void should_keep_searching_while_documents_are_being_embedded() throws Exception {
+        CountDownLatch embedding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HashingEmbeddingModel slowModel = new HashingEmbeddingModel(128) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                if (request.getInstructions().size() > 1) {
+                    embedding.countDown();
+                    await(release);
+                }
+                return super.call(request);
+            }
+        };
+
+        try (MappedFileVectorStore store = new MappedFileVectorStore(slowModel, dir)) {
+            store.add(List.of(corpus().get(0)));
+            CompletableFuture<Void> add = CompletableFuture.runAsync(() -> store.add(corpus()));
+            assertThat(embedding.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // 写入方正在嵌入时检索不会被阻塞
+            CompletableFuture<List<Document>> search = CompletableFuture.supplyAsync(() ->
+                    store.similaritySearch(SearchRequest.builder().query("iphone").topK(5).build()));
+            assertThat(search.get(5, TimeUnit.SECONDS)).hasSize(1);
+
+            release.countDown();
+            add.get(5, TimeUnit.SECONDS);
+            assertThat(store.similaritySearch(SearchRequest.builder().query("iphone").topK(5).build())).hasSize(3);
+        }
+    }
+
+    private static List<Document> corpus() {
+        return List.of(
+                new Document("iphone", "The iPhone 15 Pro phone has a titanium design", Map.of("type", "product")),
+                new Document("shipping", "Free shipping is available for orders over 50", Map.of("type", "shipping")),
+                new Document("returns", "To return a product contact us within 30 days", Map.of("type", "return")));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}